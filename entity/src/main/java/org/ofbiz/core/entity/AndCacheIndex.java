@@ -0,0 +1,199 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.util.UtilCache;
+import org.ofbiz.core.util.UtilValidate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An inverted index of the "by and" cache of a {@link GenericDelegator}: for each entity, field and value, the
+ * cache keys that constrain that field to that value.
+ * <p>
+ * This lets the delegator find the cache lines that a changed {@link GenericValue} could appear in without building
+ * a candidate key for every combination of fields that has ever been cached for the entity. Each key is indexed
+ * under just one of its fields (the first in alphabetical order), so the candidates found through the index are
+ * disjoint, and each one is then checked against the remaining fields of the key.
+ * </p>
+ * <p>
+ * The index is kept in sync with the cache through {@link UtilCache.RemovalListener}; keys are added by
+ * {@link #add(EntityCacheKey)} before they are put in the cache, so that no put can leave a line that the index does
+ * not know about, and only leave it when the cache says their line has gone or was declined. The delegator therefore
+ * only ever removes lines from the cache, never keys from the index directly, as a key dropped from the index while a
+ * load was putting its line would leave that line stale.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class AndCacheIndex implements UtilCache.RemovalListener<EntityCacheKey> {
+
+    /**
+     * Stands in for null field values, which ConcurrentHashMap can't hold
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    // entity name -> indexed field name -> field value -> keys
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<Object, Set<EntityCacheKey>>>> index =
+            new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<Object, Set<EntityCacheKey>>>>();
+
+    // entity name -> keys without any fields, which match every value of the entity
+    private final ConcurrentMap<String, Set<EntityCacheKey>> unconstrainedKeys = new ConcurrentHashMap<String, Set<EntityCacheKey>>();
+
+    /**
+     * Adds the given "by and" cache key to the index.
+     *
+     * @param key the key, as put in the cache
+     */
+    public void add(final EntityCacheKey key) {
+        final int indexedField = getIndexedField(key);
+        if (indexedField < 0) {
+            unconstrainedKeys.computeIfAbsent(key.getEntityName(), entityName -> ConcurrentHashMap.<EntityCacheKey>newKeySet())
+                    .add(key);
+            return;
+        }
+        final ConcurrentMap<Object, Set<EntityCacheKey>> keysByValue = index
+                .computeIfAbsent(key.getEntityName(), entityName -> new ConcurrentHashMap<String, ConcurrentMap<Object, Set<EntityCacheKey>>>())
+                .computeIfAbsent(key.getFieldName(indexedField), fieldName -> new ConcurrentHashMap<Object, Set<EntityCacheKey>>());
+        keysByValue.compute(mask(key.getValue(indexedField)), (value, keys) -> {
+            final Set<EntityCacheKey> newKeys = keys == null ? ConcurrentHashMap.<EntityCacheKey>newKeySet() : keys;
+            newKeys.add(key);
+            return newKeys;
+        });
+    }
+
+    /**
+     * Removes the given key from the index; keys that are not in the index are ignored.
+     *
+     * @param key the key to remove
+     */
+    public void remove(final EntityCacheKey key) {
+        final int indexedField = getIndexedField(key);
+        if (indexedField < 0) {
+            final Set<EntityCacheKey> keys = unconstrainedKeys.get(key.getEntityName());
+            if (keys != null) {
+                keys.remove(key);
+            }
+            return;
+        }
+        final Map<String, ConcurrentMap<Object, Set<EntityCacheKey>>> fieldIndex = index.get(key.getEntityName());
+        if (fieldIndex == null) {
+            return;
+        }
+        final ConcurrentMap<Object, Set<EntityCacheKey>> keysByValue = fieldIndex.get(key.getFieldName(indexedField));
+        if (keysByValue != null) {
+            // drop the set once it is empty, so that the index doesn't keep every value that was ever cached
+            keysByValue.computeIfPresent(mask(key.getValue(indexedField)), (value, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    public void removed(final EntityCacheKey key) {
+        remove(key);
+    }
+
+    /**
+     * Removes everything from the index.
+     */
+    public void clear() {
+        index.clear();
+        unconstrainedKeys.clear();
+    }
+
+    /**
+     * Returns all the indexed keys for the given entity.
+     *
+     * @param entityName the name of the entity
+     * @return a copy of the keys; never null
+     */
+    public Collection<EntityCacheKey> getKeys(final String entityName) {
+        final List<EntityCacheKey> keys = new ArrayList<EntityCacheKey>();
+        final Set<EntityCacheKey> unconstrained = unconstrainedKeys.get(entityName);
+        if (unconstrained != null) {
+            keys.addAll(unconstrained);
+        }
+        final Map<String, ConcurrentMap<Object, Set<EntityCacheKey>>> fieldIndex = index.get(entityName);
+        if (fieldIndex != null) {
+            for (Map<Object, Set<EntityCacheKey>> keysByValue : fieldIndex.values()) {
+                for (Set<EntityCacheKey> valueKeys : keysByValue.values()) {
+                    keys.addAll(valueKeys);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Finds the indexed keys that the given value matches, i.e. whose fields all have the same values as the given
+     * value. If the value has been modified since it was read from the database, the keys that its original values
+     * match are included as well.
+     *
+     * @param value the value that has been created, updated or removed
+     * @return the matching keys; never null
+     */
+    public Collection<EntityCacheKey> getMatchingKeys(final GenericValue value) {
+        final Map<String, Object> originalDbValues =
+                value.isModified() && value.originalDbValuesAvailable() ? value.originalDbValues : null;
+        final Set<EntityCacheKey> unconstrained = unconstrainedKeys.get(value.getEntityName());
+        final Map<String, ConcurrentMap<Object, Set<EntityCacheKey>>> fieldIndex = index.get(value.getEntityName());
+        if (fieldIndex == null) {
+            return unconstrained == null ? Collections.<EntityCacheKey>emptyList() : new ArrayList<EntityCacheKey>(unconstrained);
+        }
+
+        final List<EntityCacheKey> matchingKeys = new ArrayList<EntityCacheKey>();
+        if (unconstrained != null) {
+            matchingKeys.addAll(unconstrained);
+        }
+        for (Map.Entry<String, ConcurrentMap<Object, Set<EntityCacheKey>>> entry : fieldIndex.entrySet()) {
+            final Map<Object, Set<EntityCacheKey>> keysByValue = entry.getValue();
+            final Object newValue = value.fields.get(entry.getKey());
+            final Set<EntityCacheKey> candidates = keysByValue.get(mask(newValue));
+            if (candidates != null) {
+                for (EntityCacheKey candidate : candidates) {
+                    if (candidate.matches(value.fields) || (originalDbValues != null && candidate.matches(originalDbValues))) {
+                        matchingKeys.add(candidate);
+                    }
+                }
+            }
+            if (originalDbValues != null) {
+                final Object originalValue = originalDbValues.get(entry.getKey());
+                if (!UtilValidate.areEqual(newValue, originalValue)) {
+                    final Set<EntityCacheKey> originalCandidates = keysByValue.get(mask(originalValue));
+                    if (originalCandidates != null) {
+                        for (EntityCacheKey candidate : originalCandidates) {
+                            if (candidate.matches(originalDbValues)) {
+                                matchingKeys.add(candidate);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return matchingKeys;
+    }
+
+    /**
+     * Returns the position in the given key of the field under which it is indexed: the alphabetically first of its
+     * fields; -1 if it has none.
+     */
+    private static int getIndexedField(final EntityCacheKey key) {
+        int indexedField = -1;
+        for (int i = 0; i < key.size(); i++) {
+            if (indexedField < 0 || key.getFieldName(i).compareTo(key.getFieldName(indexedField)) < 0) {
+                indexedField = i;
+            }
+        }
+        return indexedField;
+    }
+
+    private static Object mask(final Object value) {
+        return value == null ? NULL_VALUE : value;
+    }
+}
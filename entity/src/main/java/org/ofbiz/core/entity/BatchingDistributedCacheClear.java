@@ -0,0 +1,219 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.ofbiz.core.util.Debug;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between a {@link GenericDelegator} and its {@link DistributedCacheClear}, so that clearing the caches doesn't
+ * send a remote message per value on the write path.
+ * <p>
+ * Clears are queued and sent in the background, either once the first of them has waited for the flush interval or
+ * as soon as the batch size is reached. While queued, repeated clears of the same key are sent once, the clears of an
+ * entity that has more than the entity threshold of them are replaced by a single clear of all its lines if the
+ * delegate {@link DistributedCacheClear#supportsEntityClears() supports that}, and a clear of all the caches replaces
+ * everything.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class BatchingDistributedCacheClear implements DistributedCacheClear {
+
+    public static final String module = BatchingDistributedCacheClear.class.getName();
+
+    // one daemon thread is plenty for sending the batches of all the delegators
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("entity-distributed-cache-clear-%d").build());
+
+    // the kinds of line clear, which are queued under keys that start with their kind
+    private enum Kind { VALUE, PRIMARY_KEY, FLEXIBLE }
+
+    private final DistributedCacheClear delegate;
+    private final long flushIntervalMillis;
+    private final int batchSize;
+    private final int entityThreshold;
+
+    // the pending clears, guarded by this
+    private final Map<String, Map<List<?>, GenericEntity>> pendingLines = new LinkedHashMap<String, Map<List<?>, GenericEntity>>();
+    private final Set<String> pendingEntities = new LinkedHashSet<String>();
+    private boolean pendingClearAll;
+    private int pendingCount;
+    private boolean flushScheduled;
+    private boolean flushRequested;
+
+    // makes sure batches are sent one at a time, in order
+    private final Object sendLock = new Object();
+
+    /**
+     * @param delegate            sends the clears to the other servers
+     * @param flushIntervalMillis how long a clear can wait to be sent
+     * @param batchSize           how many clears can wait before they are sent straight away
+     * @param entityThreshold     how many line clears of one entity can wait before they are replaced by a clear of
+     *                            all of its lines
+     */
+    public BatchingDistributedCacheClear(final DistributedCacheClear delegate, final long flushIntervalMillis,
+                                         final int batchSize, final int entityThreshold) {
+        this.delegate = delegate;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+        this.entityThreshold = entityThreshold;
+    }
+
+    public void setDelegator(final GenericDelegator delegator, final String userLoginId) {
+        delegate.setDelegator(delegator, userLoginId);
+    }
+
+    public void distributedClearCacheLine(final GenericValue value) {
+        final GenericValue snapshot = TransactionCacheOverlay.snapshot(value);
+        enqueue(snapshot, Arrays.asList(Kind.VALUE, snapshot.getAllFields(), snapshot.originalDbValues));
+    }
+
+    public void distributedClearCacheLineFlexible(final GenericEntity dummyPK) {
+        final GenericEntity copy = (GenericEntity) dummyPK.clone();
+        enqueue(copy, Arrays.asList(Kind.FLEXIBLE, copy.getAllFields()));
+    }
+
+    public void distributedClearCacheLine(final GenericPK primaryKey) {
+        final GenericPK copy = (GenericPK) primaryKey.clone();
+        enqueue(copy, Arrays.asList(Kind.PRIMARY_KEY, copy.getAllFields()));
+    }
+
+    public void distributedClearCacheLines(final String entityName) {
+        synchronized (this) {
+            if (pendingClearAll || !pendingEntities.add(entityName)) {
+                return;
+            }
+            final Map<List<?>, GenericEntity> lines = pendingLines.remove(entityName);
+            pendingCount += 1 - (lines == null ? 0 : lines.size());
+            scheduleFlush();
+        }
+    }
+
+    public boolean supportsEntityClears() {
+        return delegate.supportsEntityClears();
+    }
+
+    public void clearAllCaches() {
+        synchronized (this) {
+            if (pendingClearAll) {
+                return;
+            }
+            pendingClearAll = true;
+            pendingLines.clear();
+            pendingEntities.clear();
+            pendingCount = 1;
+            scheduleFlush();
+        }
+    }
+
+    private void enqueue(final GenericEntity entity, final List<?> key) {
+        final String entityName = entity.getEntityName();
+        synchronized (this) {
+            if (pendingClearAll || pendingEntities.contains(entityName)) {
+                return;
+            }
+            Map<List<?>, GenericEntity> lines = pendingLines.get(entityName);
+            if (lines == null) {
+                lines = new LinkedHashMap<List<?>, GenericEntity>();
+                pendingLines.put(entityName, lines);
+            }
+            if (lines.put(key, entity) != null) {
+                return;
+            }
+            pendingCount++;
+            // a delegate without entity clears would clear every cache of the other servers instead
+            if (lines.size() > entityThreshold && delegate.supportsEntityClears()) {
+                pendingLines.remove(entityName);
+                pendingEntities.add(entityName);
+                pendingCount -= lines.size() - 1;
+            }
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Schedules the sending of the pending clears, straight away if there are enough of them; must hold the lock.
+     */
+    private void scheduleFlush() {
+        if (pendingCount >= batchSize) {
+            if (!flushRequested) {
+                flushRequested = true;
+                FLUSHER.execute(this::flush);
+            }
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            FLUSHER.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the pending clears now.
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            final boolean clearAll;
+            final Set<String> entities;
+            final Map<String, Map<List<?>, GenericEntity>> lines;
+            synchronized (this) {
+                flushScheduled = false;
+                flushRequested = false;
+                if (pendingCount == 0) {
+                    return;
+                }
+                clearAll = pendingClearAll;
+                entities = new LinkedHashSet<String>(pendingEntities);
+                lines = new LinkedHashMap<String, Map<List<?>, GenericEntity>>(pendingLines);
+                pendingClearAll = false;
+                pendingEntities.clear();
+                pendingLines.clear();
+                pendingCount = 0;
+            }
+            try {
+                send(clearAll, entities, lines);
+            } catch (RuntimeException e) {
+                Debug.logError(e, "Could not send the distributed cache clears", module);
+            }
+        }
+    }
+
+    private void send(final boolean clearAll, final Set<String> entities,
+                      final Map<String, Map<List<?>, GenericEntity>> lines) {
+        if (clearAll) {
+            delegate.clearAllCaches();
+            return;
+        }
+        for (String entityName : entities) {
+            delegate.distributedClearCacheLines(entityName);
+        }
+        for (Map<List<?>, GenericEntity> entityLines : lines.values()) {
+            for (Map.Entry<List<?>, GenericEntity> line : entityLines.entrySet()) {
+                switch ((Kind) line.getKey().get(0)) {
+                    case VALUE:
+                        delegate.distributedClearCacheLine((GenericValue) line.getValue());
+                        break;
+                    case PRIMARY_KEY:
+                        delegate.distributedClearCacheLine((GenericPK) line.getValue());
+                        break;
+                    default:
+                        delegate.distributedClearCacheLineFlexible(line.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of clears waiting to be sent
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+}
@@ -31,9 +31,13 @@ import org.ofbiz.core.entity.model.ModelReader;
 import org.ofbiz.core.util.UtilCache;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Delegator Interface
@@ -87,6 +91,24 @@ public interface DelegatorInterface {
 
     GenericValue create(GenericPK primaryKey, boolean doCacheClear) throws GenericEntityException;
 
+    default int createAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return createAll(values, true);
+    }
+
+    /**
+     * Creates the given values; this default creates them one at a time, the {@link GenericDelegator} does it in
+     * batches.
+     */
+    default int createAll(List<? extends GenericValue> values, boolean doCacheClear) throws GenericEntityException {
+        int count = 0;
+        for (GenericValue value : values) {
+            if (create(value, doCacheClear) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     GenericValue findByPrimaryKey(GenericPK primaryKey) throws GenericEntityException;
 
     GenericValue findByPrimaryKeyCache(GenericPK primaryKey) throws GenericEntityException;
@@ -145,6 +167,13 @@ public interface DelegatorInterface {
 
     List<GenericValue> findByCondition(String entityName, EntityCondition entityCondition, Collection<String> fieldsToSelect, List<String> orderBy) throws GenericEntityException;
 
+    /**
+     * Finds the values matching the given condition, from the condition cache if there is one; this default has none.
+     */
+    default List<GenericValue> findByConditionCache(String entityName, EntityCondition entityCondition, Collection<String> fieldsToSelect, List<String> orderBy) throws GenericEntityException {
+        return findByCondition(entityName, entityCondition, fieldsToSelect, orderBy);
+    }
+
     int countByAnd(String entityName, String fieldName, List<? extends EntityCondition> expressions, EntityFindOptions findOptions) throws GenericEntityException;
 
     int countByOr(String entityName, String fieldName, List<? extends EntityCondition> expressions, EntityFindOptions findOptions) throws GenericEntityException;
@@ -156,6 +185,18 @@ public interface DelegatorInterface {
     EntityListIterator findListIteratorByCondition(String entityName, EntityCondition entityCondition,
                                                    Collection<String> fieldsToSelect, List<String> orderBy) throws GenericEntityException;
 
+    default Stream<GenericValue> stream(String entityName, EntityCondition entityCondition, Collection<String> fieldsToSelect,
+                                        List<String> orderBy, EntityFindOptions findOptions) throws GenericEntityException {
+        final EntityListIteratorSpliterator spliterator = new EntityListIteratorSpliterator(
+                findListIteratorByCondition(entityName, entityCondition, null, fieldsToSelect, orderBy, findOptions));
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    default List<ParallelScan.Partition> parallelScan(String entityName, EntityCondition entityCondition, int partitions,
+                                                      Consumer<? super GenericValue> consumer) throws GenericEntityException {
+        return new ParallelScan(this, entityName, entityCondition, partitions).run(consumer);
+    }
+
     EntityListIterator findListIteratorByCondition(String entityName, EntityCondition whereEntityCondition,
                                                    EntityCondition havingEntityCondition, Collection<String> fieldsToSelect, List<String> orderBy, EntityFindOptions findOptions)
             throws GenericEntityException;
@@ -204,6 +245,22 @@ public interface DelegatorInterface {
 
     int storeAll(List<? extends GenericValue> values, boolean doCacheClear) throws GenericEntityException;
 
+    default int upsert(GenericValue value) throws GenericEntityException {
+        return upsertAll(Collections.singletonList(value), true);
+    }
+
+    default int upsertAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return upsertAll(values, true);
+    }
+
+    /**
+     * Inserts or updates the given values; this default uses {@link #storeAll(List, boolean)}, which looks each one
+     * up first, the {@link GenericDelegator} does it in one statement where the database can.
+     */
+    default int upsertAll(List<? extends GenericValue> values, boolean doCacheClear) throws GenericEntityException {
+        return storeAll(values, doCacheClear);
+    }
+
     int removeAll(List<? extends GenericEntity> dummyPKs) throws GenericEntityException;
 
     int removeAll(List<? extends GenericEntity> dummyPKs, boolean doCacheClear) throws GenericEntityException;
@@ -226,6 +283,17 @@ public interface DelegatorInterface {
 
     void clearCacheLine(GenericValue value, boolean distribute);
 
+    default void clearCacheLines(String entityName) {
+        clearCacheLines(entityName, true);
+    }
+
+    /**
+     * Clears the cache lines of the given entity; this default clears all the caches.
+     */
+    default void clearCacheLines(String entityName, boolean distribute) {
+        clearAllCaches(distribute);
+    }
+
     Set<Set<String>> getFieldNameSetsCopy(String entityName);
 
     void clearAllCacheLinesByDummyPK(Collection<? extends GenericEntity> dummyPKs);
@@ -258,12 +326,32 @@ public interface DelegatorInterface {
 
     void refreshSequencer();
 
+    /**
+     * @deprecated use {@link GenericDelegator#getPrimaryKeyCacheByCacheKey()}; the returned view's
+     * {@code cacheLineTable} is always empty
+     */
+    @Deprecated
     UtilCache<GenericEntity, GenericValue> getPrimaryKeyCache();
 
+    /**
+     * @deprecated use {@link GenericDelegator#getAndCacheByCacheKey()}; the returned view's {@code cacheLineTable} is
+     * always empty
+     */
+    @Deprecated
     UtilCache<GenericPK, List<GenericValue>> getAndCache();
 
     UtilCache<String, List<GenericValue>> getAllCache();
 
+    /**
+     * Remembers that the given primary key has no row; this default has no cache for that, so does nothing.
+     */
+    default void putInMissingPrimaryKeyCache(GenericPK primaryKey) {
+    }
+
+    default boolean isKnownMissing(GenericPK primaryKey) {
+        return false;
+    }
+
     /**
      * Applies the given transformation to any entities matching the given condition.
      *
@@ -41,4 +41,26 @@ public interface DistributedCacheClear {
     public void distributedClearCacheLine(GenericPK primaryKey);
 
     public void clearAllCaches();
+
+    /**
+     * Clears all the cache lines of the given entity on the other servers. Implementations that can't do this more
+     * cheaply clear all the caches instead.
+     *
+     * @param entityName the name of the entity
+     * @since 1.2.6
+     */
+    public default void distributedClearCacheLines(String entityName) {
+        clearAllCaches();
+    }
+
+    /**
+     * Returns whether {@link #distributedClearCacheLines(String)} clears just the lines of the entity, rather than
+     * all the caches; implementations that override it to do so should override this to return true.
+     *
+     * @return false by default
+     * @since 1.2.6
+     */
+    public default boolean supportsEntityClears() {
+        return false;
+    }
 }
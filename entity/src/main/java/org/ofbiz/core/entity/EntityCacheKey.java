@@ -0,0 +1,192 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * The key of a line in the primary key or "by and" cache of a {@link GenericDelegator}: the entity and the values
+ * of some of its fields, e.g. of its primary key.
+ * <p>
+ * Unlike the {@link GenericPK} it is made from, a key never changes, holds the fields in the order of the entity in
+ * two arrays rather than a map, and works out its hash code once, so that a lookup hashes nothing and compares two
+ * keys without allocating. The hash code is mixed so that keys that only differ in a sequential id still spread
+ * across the buckets of the cache.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public final class EntityCacheKey {
+
+    private final String entityName;
+    private final String[] fieldNames;
+    private final Object[] values;
+    private final int hashCode;
+
+    private EntityCacheKey(final String entityName, final String[] fieldNames, final Object[] values) {
+        this.entityName = entityName;
+        this.fieldNames = fieldNames;
+        this.values = values;
+        int hash = entityName.hashCode();
+        for (int i = 0; i < fieldNames.length; i++) {
+            hash = 31 * hash + fieldNames[i].hashCode();
+            hash = 31 * hash + (values[i] == null ? 0 : values[i].hashCode());
+        }
+        this.hashCode = mix(hash);
+    }
+
+    /**
+     * Creates the key for the fields that the given entity has a value for, e.g. all the fields of a
+     * {@link GenericPK}.
+     *
+     * @param entity the primary key or "by and" fields to look up (required)
+     * @return a new key
+     */
+    public static EntityCacheKey of(final GenericEntity entity) {
+        final ModelEntity modelEntity = entity.getModelEntity();
+        final int fieldCount = entity.fields.size();
+        final String[] fieldNames = new String[fieldCount];
+        final Object[] values = new Object[fieldCount];
+        int i = 0;
+        for (int fi = 0; fi < modelEntity.getFieldsSize() && i < fieldCount; fi++) {
+            final String fieldName = modelEntity.getField(fi).getName();
+            if (entity.fields.containsKey(fieldName)) {
+                fieldNames[i] = fieldName;
+                values[i] = copy(entity.fields.get(fieldName));
+                i++;
+            }
+        }
+        if (i < fieldCount) {
+            throw new IllegalArgumentException("Not all the fields of " + entity + " are fields of its entity");
+        }
+        return new EntityCacheKey(entity.getEntityName(), fieldNames, values);
+    }
+
+    /**
+     * Creates the key for the primary key of the given entity, as {@link #of} would for
+     * {@link GenericEntity#getPrimaryKey()} but without making that first.
+     *
+     * @param entity the value whose primary key to look up (required)
+     * @return a new key
+     */
+    public static EntityCacheKey ofPrimaryKey(final GenericEntity entity) {
+        final ModelEntity modelEntity = entity.getModelEntity();
+        final int pkCount = modelEntity.getPksSize();
+        final String[] fieldNames = new String[pkCount];
+        final Object[] values = new Object[pkCount];
+        int i = 0;
+        for (int fi = 0; fi < modelEntity.getFieldsSize() && i < pkCount; fi++) {
+            final ModelField modelField = modelEntity.getField(fi);
+            if (modelField.getIsPk()) {
+                fieldNames[i] = modelField.getName();
+                values[i] = copy(entity.fields.get(modelField.getName()));
+                i++;
+            }
+        }
+        if (i < pkCount) {
+            // the primary key has a field that is not flagged as one, e.g. in a hand-made model
+            return of(entity.getPrimaryKey());
+        }
+        return new EntityCacheKey(entity.getEntityName(), fieldNames, values);
+    }
+
+    // dates are the only mutable values a key is likely to have
+    private static Object copy(final Object value) {
+        return value instanceof Date ? ((Date) value).clone() : value;
+    }
+
+    // the finalizer of MurmurHash3, so that every bit of the hash depends on every bit of the fields' hash codes
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * @return the number of fields in this key
+     */
+    public int size() {
+        return fieldNames.length;
+    }
+
+    /**
+     * @param index the position of a field in this key, in the order of the entity
+     * @return the name of that field
+     */
+    public String getFieldName(final int index) {
+        return fieldNames[index];
+    }
+
+    /**
+     * @param index the position of a field in this key, in the order of the entity
+     * @return the value of that field, which can be null
+     */
+    public Object getValue(final int index) {
+        return values[index];
+    }
+
+    /**
+     * Tells whether the given row has the same value for each field of this key.
+     *
+     * @param fields the field values of the row, e.g. the fields or original DB values of a GenericValue
+     * @return true if a "by and" find on this key would return the row
+     */
+    public boolean matches(final Map<String, ?> fields) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            final Object value = fields.get(fieldNames[i]);
+            if (values[i] == null ? value != null : !values[i].equals(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof EntityCacheKey)) {
+            return false;
+        }
+        final EntityCacheKey other = (EntityCacheKey) obj;
+        if (hashCode != other.hashCode || fieldNames.length != other.fieldNames.length
+                || !entityName.equals(other.entityName)) {
+            return false;
+        }
+        for (int i = 0; i < fieldNames.length; i++) {
+            // the names mostly come from the same ModelField, so are the same String
+            if (!fieldNames[i].equals(other.fieldNames[i])) {
+                return false;
+            }
+            final Object value = values[i];
+            if (value == null ? other.values[i] != null : !value.equals(other.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("[CacheKey::").append(entityName);
+        for (int i = 0; i < fieldNames.length; i++) {
+            builder.append("::").append(fieldNames[i]).append('=').append(values[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,123 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.util.UtilCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One of the caches of a {@link GenericDelegator}, split into segments: the entities that have a cache policy of their
+ * own (see {@link ModelEntity#hasOwnCachePolicy()}) each get a {@link UtilCache} sized by that policy, and all the
+ * other entities share the delegator-wide one. This way a small reference table and a huge table don't compete for
+ * the same cache budget.
+ * <p>
+ * The segment of an entity is named after the shared cache and the entity, e.g.
+ * <code>entity.FindByAnd.default.Issue</code>, so like any other cache it can be tuned in cache.properties, which
+ * takes precedence over the entity model.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class EntityCacheSegments<K, V> {
+
+    private final UtilCache<K, V> sharedCache;
+    private final String name;
+    private final boolean useSoftReference;
+    private final UtilCache.Weigher<? super K, ? super V> weigher;
+    private final UtilCache.RemovalListener<? super K> removalListener;
+    private final ConcurrentMap<String, UtilCache<K, V>> segments = new ConcurrentHashMap<String, UtilCache<K, V>>();
+
+    /**
+     * @param name             the name of the shared cache, used as the prefix of the segments' names
+     * @param useSoftReference whether lines are softly referenced when the entity's policy doesn't say
+     * @param weigher          estimates the weight of the lines of every segment (can be null)
+     * @param removalListener  told about the lines that leave any segment (can be null)
+     */
+    public EntityCacheSegments(final String name, final boolean useSoftReference,
+                               final UtilCache.Weigher<? super K, ? super V> weigher,
+                               final UtilCache.RemovalListener<? super K> removalListener) {
+        this.name = name;
+        this.useSoftReference = useSoftReference;
+        this.weigher = weigher;
+        this.removalListener = removalListener;
+        this.sharedCache = newCache(name, 0, 0, 0, useSoftReference);
+    }
+
+    /**
+     * @return the cache shared by the entities that have no cache policy of their own
+     */
+    public UtilCache<K, V> getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Returns the cache that holds the lines of the given entity, creating its segment if need be.
+     *
+     * @param entity the entity
+     * @return the segment of the entity, or the shared cache
+     */
+    public UtilCache<K, V> get(final ModelEntity entity) {
+        if (!entity.hasOwnCachePolicy()) {
+            return sharedCache;
+        }
+        UtilCache<K, V> segment = segments.get(entity.getEntityName());
+        if (segment == null) {
+            final Boolean softReference = entity.getCacheSoftReference();
+            segment = newCache(name + "." + entity.getEntityName(), entity.getCacheMaxEntries(),
+                    entity.getCacheExpireTime(), entity.getCacheMaxWeight(),
+                    softReference != null ? softReference : useSoftReference);
+            final UtilCache<K, V> existing = segments.putIfAbsent(entity.getEntityName(), segment);
+            if (existing != null) {
+                UtilCache.removeCache(segment.getName());
+                segment = existing;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Indicates whether the lines of the given entity are kept apart from those of the other entities, i.e. whether
+     * clearing its whole segment would clear nothing else.
+     *
+     * @param entity the entity
+     * @return false if the entity uses the shared cache
+     */
+    public boolean isSegmented(final ModelEntity entity) {
+        return entity.hasOwnCachePolicy();
+    }
+
+    /**
+     * @return the shared cache followed by the segments created so far
+     */
+    public Collection<UtilCache<K, V>> getAll() {
+        final List<UtilCache<K, V>> caches = new ArrayList<UtilCache<K, V>>(segments.size() + 1);
+        caches.add(sharedCache);
+        caches.addAll(segments.values());
+        return caches;
+    }
+
+    /**
+     * Removes all the lines of all the segments.
+     */
+    public void clear() {
+        for (UtilCache<K, V> cache : getAll()) {
+            cache.clear();
+        }
+    }
+
+    private UtilCache<K, V> newCache(final String cacheName, final long maxSize, final long expireTime,
+                                     final long maxWeight, final boolean softReference) {
+        final UtilCache<K, V> cache = new UtilCache<K, V>(cacheName, maxSize, expireTime, softReference);
+        if (maxWeight > 0 && cache.getMaxWeight() == 0) {
+            // cache.properties wins, as it does for the other settings
+            cache.setMaxWeight(maxWeight);
+        }
+        cache.setWeigher(weigher);
+        cache.setRemovalListener(removalListener);
+        return cache;
+    }
+}
@@ -0,0 +1,211 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.util.CacheStatistics;
+import org.ofbiz.core.util.Debug;
+import org.ofbiz.core.util.UtilCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * One of the caches of a {@link GenericDelegator} that are keyed on {@link EntityCacheKey}s, seen as the
+ * {@link UtilCache} keyed on {@link GenericEntity}s that {@link DelegatorInterface#getPrimaryKeyCache()} and
+ * {@link DelegatorInterface#getAndCache()} used to return, so that code written against those keeps working.
+ * <p>
+ * Each key is turned into an EntityCacheKey and looked up in the segment of its entity, and puts go through the
+ * delegator so that its indexes stay in step. The name, settings and statistics are those of the shared cache; the
+ * weigher and removal listener belong to the delegator and can't be seen or changed here, so setting them only logs a
+ * warning. The lines are keyed differently and spread over the segments, so the {@link #cacheLineTable} of a view is
+ * always empty; use {@link #getCacheLineKeys()} and {@link #get} instead.
+ * </p>
+ *
+ * @param <K> the type of the keys, a {@link GenericPK} or any other entity whose fields are the key
+ * @param <V> the type of the values
+ * @since 1.2.6
+ */
+class EntityCacheView<K extends GenericEntity, V> extends UtilCache<K, V> {
+
+    public static final String module = EntityCacheView.class.getName();
+
+    private final GenericDelegator delegator;
+    private final EntityCacheSegments<EntityCacheKey, V> segments;
+    private final BiConsumer<K, V> putter;
+
+    /**
+     * @param delegator the delegator that owns the cache
+     * @param segments  the cache
+     * @param putter    puts a value in the cache through the delegator
+     */
+    EntityCacheView(final GenericDelegator delegator, final EntityCacheSegments<EntityCacheKey, V> segments,
+                    final BiConsumer<K, V> putter) {
+        super(segments.getSharedCache());
+        this.delegator = delegator;
+        this.segments = segments;
+        this.putter = putter;
+    }
+
+    private UtilCache<EntityCacheKey, V> getSegment(final GenericEntity key) {
+        return segments.get(key.getModelEntity());
+    }
+
+    private UtilCache<EntityCacheKey, V> getSharedCache() {
+        return segments.getSharedCache();
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        if (key != null) {
+            putter.accept(key, value);
+        }
+    }
+
+    @Override
+    public V get(final K key) {
+        return key == null ? null : getSegment(key).get(EntityCacheKey.of(key));
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        if (!(key instanceof GenericEntity)) {
+            return null;
+        }
+        final GenericEntity entity = (GenericEntity) key;
+        return getSegment(entity).remove(EntityCacheKey.of(entity));
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof GenericEntity)) {
+            return false;
+        }
+        final GenericEntity entity = (GenericEntity) key;
+        return getSegment(entity).containsKey(EntityCacheKey.of(entity));
+    }
+
+    @Override
+    public boolean hasExpired(final K key) {
+        return key != null && getSegment(key).hasExpired(EntityCacheKey.of(key));
+    }
+
+    @Override
+    public void clear() {
+        segments.clear();
+    }
+
+    @Override
+    public void clearExpired() {
+        for (UtilCache<EntityCacheKey, V> segment : segments.getAll()) {
+            segment.clearExpired();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (UtilCache<EntityCacheKey, V> segment : segments.getAll()) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the keys of all the segments, as the {@link GenericPK}s they were made from
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<K> getCacheLineKeys() {
+        final Set<K> keys = new HashSet<K>();
+        for (UtilCache<EntityCacheKey, V> segment : segments.getAll()) {
+            for (EntityCacheKey cacheKey : segment.getCacheLineKeys()) {
+                final ModelEntity modelEntity = delegator.getModelEntity(cacheKey.getEntityName());
+                final Map<String, Object> fields = new HashMap<String, Object>();
+                for (int i = 0; i < cacheKey.size(); i++) {
+                    fields.put(cacheKey.getFieldName(i), cacheKey.getValue(i));
+                }
+                // K is a GenericPK, or a GenericEntity that the GenericPK is equal to
+                keys.add((K) new GenericPK(modelEntity, fields));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public long getHitCount() {
+        return getSharedCache().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return getSharedCache().getMissCount();
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return getSharedCache().getStatistics();
+    }
+
+    @Override
+    public void clearCounters() {
+        getSharedCache().clearCounters();
+    }
+
+    @Override
+    public void setMaxSize(final long maxSize) {
+        getSharedCache().setMaxSize(maxSize);
+    }
+
+    @Override
+    public long getMaxSize() {
+        return getSharedCache().getMaxSize();
+    }
+
+    @Override
+    public void setMaxWeight(final long maxWeight) {
+        getSharedCache().setMaxWeight(maxWeight);
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return getSharedCache().getMaxWeight();
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return getSharedCache().getTotalWeight();
+    }
+
+    @Override
+    public void setWeigher(final Weigher<? super K, ? super V> weigher) {
+        Debug.logWarning("Ignoring the weigher set on " + getName() + ", which is set by the delegator", module);
+    }
+
+    @Override
+    public void setRemovalListener(final RemovalListener<? super K> removalListener) {
+        Debug.logWarning("Ignoring the removal listener set on " + getName() + ", which is set by the delegator",
+                module);
+    }
+
+    @Override
+    public void setExpireTime(final long expireTime) {
+        getSharedCache().setExpireTime(expireTime);
+    }
+
+    @Override
+    public long getExpireTime() {
+        return getSharedCache().getExpireTime();
+    }
+
+    @Override
+    public void setUseSoftReference(final boolean useSoftReference) {
+        getSharedCache().setUseSoftReference(useSoftReference);
+    }
+
+    @Override
+    public boolean getUseSoftReference() {
+        return getSharedCache().getUseSoftReference();
+    }
+}
@@ -0,0 +1,228 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.collect.MapMaker;
+import org.ofbiz.core.entity.jdbc.SqlJdbcUtil;
+import org.ofbiz.core.entity.jdbc.SqlJdbcUtil.FieldType;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+import org.ofbiz.core.entity.model.ModelFieldType;
+import org.ofbiz.core.util.Debug;
+import org.ofbiz.core.util.UtilCache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the retained heap size, in bytes, of the keys and values held by the entity caches of the
+ * {@link GenericDelegator}; a single {@link GenericEntity}, or a list of them as held by the find-all and
+ * find-by-and caches.
+ * <p>
+ * The estimate of each field is based on the {@link FieldType} of its {@link ModelField}, plus the actual length
+ * of variable length values (Strings and byte arrays). It is deliberately cheap rather than exact: it assumes a 64
+ * bit JVM with compressed references, and does not look inside serialized objects or LOBs.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class EntityCacheWeigher implements UtilCache.Weigher<Object, Object> {
+
+    public static final String module = EntityCacheWeigher.class.getName();
+
+    // Object header plus the fields of a GenericEntity/GenericValue
+    private static final long ENTITY_OVERHEAD = 64;
+    // A HashMap with its table
+    private static final long MAP_OVERHEAD = 64;
+    // A HashMap.Node plus its slot in the table
+    private static final long MAP_ENTRY_OVERHEAD = 40;
+    // A FieldValueMap, without its arrays
+    private static final long FIELD_VALUE_MAP_OVERHEAD = 32;
+    // An EntityCacheKey, without its arrays
+    private static final long CACHE_KEY_OVERHEAD = 24;
+    // An ArrayList with its array
+    private static final long LIST_OVERHEAD = 40;
+    private static final long REFERENCE_SIZE = 4;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long ARRAY_OVERHEAD = 16;
+    // What we assume for values whose size we cannot tell, e.g. serialized objects and LOBs
+    private static final long UNKNOWN_VALUE_SIZE = 128;
+
+    /**
+     * The field types of each entity, in the order of {@link ModelEntity#getField(int)}; weak keys so that a
+     * reloaded model does not keep the old one alive.
+     */
+    private final ConcurrentMap<ModelEntity, FieldType[]> fieldTypes = new MapMaker().weakKeys().makeMap();
+
+    public long weigh(final Object key, final Object value) {
+        return weighObject(key) + weighObject(value);
+    }
+
+    private long weighObject(final Object object) {
+        if (object instanceof GenericEntity) {
+            return weighEntity((GenericEntity) object);
+        }
+        if (object instanceof EntityCacheKey) {
+            return weighKey((EntityCacheKey) object);
+        }
+        if (object instanceof Collection) {
+            final Collection<?> collection = (Collection<?>) object;
+            long weight = LIST_OVERHEAD + REFERENCE_SIZE * collection.size();
+            for (Object element : collection) {
+                weight += weighObject(element);
+            }
+            return weight;
+        }
+        if (object instanceof String) {
+            return STRING_OVERHEAD + 2L * ((String) object).length();
+        }
+        return object == null ? 0 : UNKNOWN_VALUE_SIZE;
+    }
+
+    /**
+     * Estimates the size of an entity, including its own copy of its original database values, if any.
+     *
+     * @param entity the entity to weigh
+     * @return the estimated size in bytes
+     */
+    public long weighEntity(final GenericEntity entity) {
+        final ModelEntity modelEntity = entity.getModelEntity();
+        if (modelEntity == null) {
+            return ENTITY_OVERHEAD + weighMap(entity.fields, null);
+        }
+        final FieldType[] types = getFieldTypes(entity, modelEntity);
+        long weight = ENTITY_OVERHEAD + weighFields(entity.fields, modelEntity, types);
+        if (entity instanceof GenericValue) {
+            final Map<String, Object> originalDbValues = ((GenericValue) entity).originalDbValues;
+            // until a field is changed, the original values are the fields themselves
+            if (originalDbValues != null && originalDbValues != entity.fields) {
+                weight += weighFields(originalDbValues, modelEntity, types);
+            }
+        }
+        return weight;
+    }
+
+    private static long weighKey(final EntityCacheKey key) {
+        // the field names are shared with the model
+        long weight = CACHE_KEY_OVERHEAD + 2 * (ARRAY_OVERHEAD + REFERENCE_SIZE * key.size());
+        for (int i = 0; i < key.size(); i++) {
+            final Object value = key.getValue(i);
+            if (value instanceof String) {
+                weight += weighValue(value, null);
+            } else if (value != null) {
+                // keys are mostly ids, so assume a boxed number
+                weight += 24;
+            }
+        }
+        return weight;
+    }
+
+    private long weighFields(final Map<String, Object> fields, final ModelEntity modelEntity, final FieldType[] types) {
+        final long entryOverhead;
+        long weight;
+        if (fields instanceof FieldValueMap) {
+            // the values and the bits telling which fields are set, in two arrays
+            final int capacity = ((FieldValueMap) fields).capacity();
+            entryOverhead = 0;
+            weight = FIELD_VALUE_MAP_OVERHEAD + ARRAY_OVERHEAD + REFERENCE_SIZE * capacity +
+                    ARRAY_OVERHEAD + 8L * ((capacity + 63) / 64);
+        } else {
+            entryOverhead = MAP_ENTRY_OVERHEAD;
+            weight = MAP_OVERHEAD;
+        }
+        for (int i = 0; i < types.length; i++) {
+            final ModelField modelField = modelEntity.getField(i);
+            if (fields.containsKey(modelField.getName())) {
+                weight += entryOverhead + weighValue(fields.get(modelField.getName()), types[i]);
+            }
+        }
+        return weight;
+    }
+
+    private long weighMap(final Map<String, Object> fields, final FieldType type) {
+        long weight = MAP_OVERHEAD;
+        for (Object value : fields.values()) {
+            weight += MAP_ENTRY_OVERHEAD + weighValue(value, type);
+        }
+        return weight;
+    }
+
+    private static long weighValue(final Object value, final FieldType type) {
+        if (value == null) {
+            return 0;
+        }
+        if (type != null) {
+            switch (type) {
+                case BOOLEAN:
+                    // Boolean.TRUE and Boolean.FALSE are shared
+                    return 0;
+                case INTEGER:
+                case FLOAT:
+                    return 16;
+                case LONG:
+                case DOUBLE:
+                case DATE:
+                case TIME:
+                    return 24;
+                case TIMESTAMP:
+                    return 32;
+                case STRING:
+                case BYTE_ARRAY:
+                case OBJECT:
+                case CLOB:
+                case BLOB:
+                    // variable length, look at the value itself
+                    break;
+            }
+        }
+        if (value instanceof String) {
+            return STRING_OVERHEAD + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ARRAY_OVERHEAD + ((byte[]) value).length;
+        }
+        return UNKNOWN_VALUE_SIZE;
+    }
+
+    private FieldType[] getFieldTypes(final GenericEntity entity, final ModelEntity modelEntity) {
+        FieldType[] types = fieldTypes.get(modelEntity);
+        if (types == null) {
+            types = new FieldType[modelEntity.getFieldsSize()];
+            // the values in the caches come from a delegator, so only look at the one we already have; resolving
+            // it by name could create a delegator just to weigh a value
+            final GenericDelegator delegator = entity.internalDelegator;
+            if (delegator == null) {
+                // look at the values themselves this time, and try again for the next value of the entity
+                return types;
+            }
+            boolean complete = true;
+            for (int i = 0; i < types.length; i++) {
+                final ModelField modelField = modelEntity.getField(i);
+                try {
+                    types[i] = getFieldType(delegator, modelEntity, modelField);
+                } catch (GenericEntityException e) {
+                    complete = false;
+                    Debug.logVerbose(e, "Could not determine the type of field " + modelField.getName() + " of " +
+                            modelEntity.getEntityName() + " for weighing", module);
+                }
+            }
+            if (complete) {
+                fieldTypes.put(modelEntity, types);
+            }
+        }
+        return types;
+    }
+
+    private static FieldType getFieldType(final GenericDelegator delegator, final ModelEntity modelEntity,
+            final ModelField modelField) throws GenericEntityException {
+        final ModelFieldType modelFieldType = delegator.getEntityFieldType(modelEntity, modelField.getType());
+        if (modelFieldType == null) {
+            return null;
+        }
+        try {
+            return SqlJdbcUtil.getFieldType(modelFieldType.getJavaType());
+        } catch (IllegalArgumentException e) {
+            // a Java type the engine does not map, which will not change; look at the value itself instead
+            return null;
+        }
+    }
+}
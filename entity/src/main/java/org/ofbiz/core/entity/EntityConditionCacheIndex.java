@@ -0,0 +1,100 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.util.UtilCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the keys in the condition cache of a {@link GenericDelegator} by entity, so that the lines that a
+ * changed {@link GenericValue} affects can be found by evaluating the condition of each of the entity's keys
+ * against the value.
+ * <p>
+ * The index is kept in sync with the cache through {@link UtilCache.RemovalListener}; keys are added by
+ * {@link #add(EntityConditionCacheKey)} before they are put in the cache, so that no put can leave a line that the
+ * index does not know about, and only leave it when the cache says their line has gone or was declined, as for the
+ * {@link AndCacheIndex}.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class EntityConditionCacheIndex implements UtilCache.RemovalListener<EntityConditionCacheKey> {
+
+    private final ConcurrentMap<String, Set<EntityConditionCacheKey>> keysByEntity =
+            new ConcurrentHashMap<String, Set<EntityConditionCacheKey>>();
+
+    /**
+     * Adds the given condition cache key to the index.
+     *
+     * @param key the key, about to be put in the cache
+     */
+    public void add(final EntityConditionCacheKey key) {
+        keysByEntity.computeIfAbsent(key.getEntityName(), entityName -> ConcurrentHashMap.<EntityConditionCacheKey>newKeySet())
+                .add(key);
+    }
+
+    /**
+     * Removes the given key from the index; keys that are not in the index are ignored.
+     *
+     * @param key the key to remove
+     */
+    public void remove(final EntityConditionCacheKey key) {
+        final Set<EntityConditionCacheKey> keys = keysByEntity.get(key.getEntityName());
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    public void removed(final EntityConditionCacheKey key) {
+        remove(key);
+    }
+
+    /**
+     * Removes everything from the index.
+     */
+    public void clear() {
+        keysByEntity.clear();
+    }
+
+    /**
+     * Returns all the indexed keys for the given entity.
+     *
+     * @param entityName the name of the entity
+     * @return a copy of the keys; never null
+     */
+    public Collection<EntityConditionCacheKey> getKeys(final String entityName) {
+        final Set<EntityConditionCacheKey> keys = keysByEntity.get(entityName);
+        return keys == null ? Collections.<EntityConditionCacheKey>emptyList() : new ArrayList<EntityConditionCacheKey>(keys);
+    }
+
+    /**
+     * Finds the indexed keys whose results the given value could be in, either as it is now or as it was when it was
+     * read from the database. If the value was not read from the database, we can't tell which rows of the database
+     * it replaces, so all of the keys for its entity are returned.
+     *
+     * @param value the value that has been created, updated or removed
+     * @return the matching keys; never null
+     */
+    public Collection<EntityConditionCacheKey> getMatchingKeys(final GenericValue value) {
+        final Set<EntityConditionCacheKey> keys = keysByEntity.get(value.getEntityName());
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        if (!value.originalDbValuesAvailable()) {
+            return new ArrayList<EntityConditionCacheKey>(keys);
+        }
+        final boolean checkOriginals = value.isModified();
+        final List<EntityConditionCacheKey> matchingKeys = new ArrayList<EntityConditionCacheKey>();
+        for (EntityConditionCacheKey key : keys) {
+            if (key.mightMatch(value.fields) || (checkOriginals && key.mightMatch(value.originalDbValues))) {
+                matchingKeys.add(key);
+            }
+        }
+        return matchingKeys;
+    }
+}
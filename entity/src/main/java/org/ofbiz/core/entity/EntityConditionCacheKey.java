@@ -0,0 +1,410 @@
+package org.ofbiz.core.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The key of a line in the condition cache of a {@link GenericDelegator}: the entity, a normalized form of the
+ * {@link EntityCondition}, the fields to select and the order by.
+ * <p>
+ * The condition is normalized so that conditions that only differ in ways that can't change the result share a
+ * line, e.g. the order of the conditions in an AND or OR, of the entries of an {@link EntityFieldMap} or of the
+ * values of an IN. Only conditions that can also be evaluated in memory can be cached, as that is how the cache
+ * finds the lines that a changed value invalidates; {@link #create} returns null for any other condition, such as
+ * an {@link EntityWhereString}.
+ * </p>
+ * <p>
+ * The key takes an immutable copy of the condition when it is created, so later changes to the lists and values
+ * the condition was built from don't affect it.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public final class EntityConditionCacheKey {
+
+    private final String entityName;
+    private final Node condition;
+    private final String normalizedCondition;
+    private final List<String> fieldsToSelect;
+    private final List<String> orderBy;
+    private final int hashCode;
+
+    private EntityConditionCacheKey(final String entityName, final Node condition,
+                                    final List<String> fieldsToSelect, final List<String> orderBy) {
+        this.entityName = entityName;
+        this.condition = condition;
+        this.normalizedCondition = condition.toString();
+        this.fieldsToSelect = fieldsToSelect;
+        this.orderBy = orderBy;
+        int hash = entityName.hashCode();
+        hash = 31 * hash + normalizedCondition.hashCode();
+        hash = 31 * hash + (fieldsToSelect == null ? 0 : fieldsToSelect.hashCode());
+        hash = 31 * hash + (orderBy == null ? 0 : orderBy.hashCode());
+        this.hashCode = hash;
+    }
+
+    /**
+     * Creates the cache key for the given query.
+     *
+     * @param entityName     the entity being queried (required)
+     * @param condition      the condition of the query; null for all rows
+     * @param fieldsToSelect the fields to select; null or empty for all fields
+     * @param orderBy        the order by of the query; can be null
+     * @return null if the results of the query can't be cached, because the condition can't be evaluated in memory
+     */
+    public static EntityConditionCacheKey create(final String entityName, final EntityCondition condition,
+                                                 final Collection<String> fieldsToSelect, final List<String> orderBy) {
+        final Node node = condition == null ? ALL : normalize(condition);
+        if (node == null) {
+            return null;
+        }
+        final List<String> sortedFields = fieldsToSelect == null || fieldsToSelect.isEmpty() ? null :
+                Collections.unmodifiableList(new ArrayList<String>(new TreeSet<String>(fieldsToSelect)));
+        final List<String> orderByCopy = orderBy == null || orderBy.isEmpty() ? null :
+                Collections.unmodifiableList(new ArrayList<String>(orderBy));
+        return new EntityConditionCacheKey(entityName, node, sortedFields, orderByCopy);
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Tells whether the given row could be in the results of this query, by evaluating the condition against it with
+     * {@link EntityOperator#compare}. This errs on the side of caution: a field that is not in the map, or a value
+     * that can't be compared, counts as a match. So do strings that only differ in case, as many databases compare
+     * them case-insensitively by default, and any string for an ordering comparison, as the order depends on the
+     * collation of the database.
+     *
+     * @param fields the field values of the row, e.g. the fields or original DB values of a GenericValue
+     * @return false only if the row can't be in the results
+     */
+    public boolean mightMatch(final Map<String, ?> fields) {
+        return condition.mightMatch(fields);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof EntityConditionCacheKey)) {
+            return false;
+        }
+        final EntityConditionCacheKey other = (EntityConditionCacheKey) obj;
+        return hashCode == other.hashCode
+                && entityName.equals(other.entityName)
+                && normalizedCondition.equals(other.normalizedCondition)
+                && (fieldsToSelect == null ? other.fieldsToSelect == null : fieldsToSelect.equals(other.fieldsToSelect))
+                && (orderBy == null ? other.orderBy == null : orderBy.equals(other.orderBy));
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "[ConditionCacheKey::" + entityName + "::" + normalizedCondition + "::" + fieldsToSelect + "::" + orderBy + "]";
+    }
+
+    private static Node normalize(final EntityCondition condition) {
+        if (condition instanceof EntityExpr) {
+            final EntityExpr expr = (EntityExpr) condition;
+            if (expr.getLhs() instanceof String) {
+                return FieldNode.create(expr);
+            }
+            if (expr.getLhs() instanceof EntityCondition && expr.getRhs() instanceof EntityCondition) {
+                final List<EntityCondition> conditions = new ArrayList<EntityCondition>(2);
+                conditions.add((EntityCondition) expr.getLhs());
+                conditions.add((EntityCondition) expr.getRhs());
+                return JunctionNode.create(expr.getOperator(), conditions);
+            }
+            return null;
+        }
+        if (condition instanceof EntityConditionList) {
+            final EntityConditionList list = (EntityConditionList) condition;
+            final List<EntityCondition> conditions = new ArrayList<EntityCondition>(list.getConditionListSize());
+            for (int i = 0; i < list.getConditionListSize(); i++) {
+                conditions.add(list.getCondition(i));
+            }
+            return JunctionNode.create(list.getOperator(), conditions);
+        }
+        if (condition instanceof EntityExprList) {
+            final EntityExprList list = (EntityExprList) condition;
+            final List<EntityCondition> conditions = new ArrayList<EntityCondition>(list.getExprListSize());
+            for (int i = 0; i < list.getExprListSize(); i++) {
+                conditions.add(list.getExpr(i));
+            }
+            return JunctionNode.create(list.getOperator(), conditions);
+        }
+        if (condition instanceof EntityFieldMap) {
+            final EntityFieldMap fieldMap = (EntityFieldMap) condition;
+            final List<EntityCondition> conditions = new ArrayList<EntityCondition>();
+            if (fieldMap.fieldMap != null) {
+                for (String fieldName : new TreeSet<String>(fieldMap.fieldMap.keySet())) {
+                    conditions.add(new EntityExpr(fieldName, EntityOperator.EQUALS, fieldMap.getField(fieldName)));
+                }
+            }
+            return JunctionNode.create(fieldMap.getOperator(), conditions);
+        }
+        // e.g. an EntityWhereString, which we can't evaluate
+        return null;
+    }
+
+    /**
+     * Appends a value so that values which are equal as far as the query is concerned (and only those) come out
+     * the same; the type is included so that e.g. a String "1" and a Long 1 are never confused.
+     */
+    private static void appendValue(final StringBuilder builder, final Object value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        final String string = value.toString();
+        builder.append(value.getClass().getName()).append('#').append(string.length()).append(':').append(string);
+    }
+
+    /**
+     * Whether we can rely on the toString, equals and compareTo of the given value; anything else might be mutable
+     * or not have a stable string form, so we don't cache conditions on it.
+     */
+    private static boolean isSimpleValue(final Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Date
+                || value instanceof Boolean || value instanceof Character;
+    }
+
+    private static final Node ALL = new Node() {
+        boolean mightMatch(final Map<String, ?> fields) {
+            return true;
+        }
+
+        public String toString() {
+            return "ALL";
+        }
+    };
+
+    /**
+     * A node of the normalized, immutable copy of the condition.
+     */
+    private abstract static class Node {
+
+        abstract boolean mightMatch(Map<String, ?> fields);
+    }
+
+    private static final class FieldNode extends Node {
+
+        private final String fieldName;
+        private final boolean leftUpper;
+        private final EntityOperator operator;
+        private final Object rhs;
+        private final String string;
+
+        private FieldNode(final String fieldName, final boolean leftUpper, final EntityOperator operator, final Object rhs,
+                          final boolean sortValues) {
+            this.fieldName = fieldName;
+            this.leftUpper = leftUpper;
+            this.operator = operator;
+            this.rhs = rhs;
+
+            final StringBuilder builder = new StringBuilder();
+            builder.append(fieldName.length()).append(':').append(fieldName);
+            if (leftUpper) {
+                builder.append(" UPPER");
+            }
+            builder.append(' ').append(operator.getCode()).append(' ');
+            if (rhs instanceof Collection) {
+                // the order of the values of an IN doesn't matter, but the order of the bounds of a BETWEEN does
+                final Collection<String> values = sortValues ? new TreeSet<String>() : new ArrayList<String>();
+                for (Object value : (Collection<?>) rhs) {
+                    final StringBuilder valueBuilder = new StringBuilder();
+                    appendValue(valueBuilder, value);
+                    values.add(valueBuilder.toString());
+                }
+                builder.append(values);
+            } else {
+                appendValue(builder, rhs);
+            }
+            this.string = builder.toString();
+        }
+
+        static FieldNode create(final EntityExpr expr) {
+            final EntityOperator operator = expr.getOperator();
+            final Object rhs = expr.getRhs();
+            if (rhs instanceof Collection) {
+                if (!EntityOperator.IN.equals(operator) && !EntityOperator.BETWEEN.equals(operator)) {
+                    return null;
+                }
+                final List<Object> values = new ArrayList<Object>(((Collection<?>) rhs).size());
+                for (Object value : (Collection<?>) rhs) {
+                    if (!isSimpleValue(value)) {
+                        return null;
+                    }
+                    values.add(copy(upper(value, expr.isRUpper())));
+                }
+                return new FieldNode((String) expr.getLhs(), expr.isLUpper(), operator,
+                        Collections.unmodifiableList(values), EntityOperator.IN.equals(operator));
+            }
+            if (!isSimpleValue(rhs) || !isComparison(operator)) {
+                return null;
+            }
+            return new FieldNode((String) expr.getLhs(), expr.isLUpper(), operator, copy(upper(rhs, expr.isRUpper())), false);
+        }
+
+        private static Object copy(final Object value) {
+            // dates are the only mutable simple values
+            return value instanceof Date ? ((Date) value).clone() : value;
+        }
+
+        private static boolean isComparison(final EntityOperator operator) {
+            switch (operator.getId()) {
+                case EntityOperator.ID_EQUALS:
+                case EntityOperator.ID_NOT_EQUAL:
+                case EntityOperator.ID_LESS_THAN:
+                case EntityOperator.ID_GREATER_THAN:
+                case EntityOperator.ID_LESS_THAN_EQUAL_TO:
+                case EntityOperator.ID_GREATER_THAN_EQUAL_TO:
+                case EntityOperator.ID_IN:
+                case EntityOperator.ID_LIKE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static Object upper(final Object value, final boolean upper) {
+            return upper && value instanceof String ? ((String) value).toUpperCase() : value;
+        }
+
+        boolean mightMatch(final Map<String, ?> fields) {
+            if (!fields.containsKey(fieldName)) {
+                // we don't know the value, so it could match
+                return true;
+            }
+            final Object value = upper(fields.get(fieldName), leftUpper);
+            if (rhs == null) {
+                // EntityExpr turns a null rhs into IS NULL, or IS NOT NULL for NOT_EQUAL, whatever the operator
+                return EntityOperator.NOT_EQUAL.equals(operator) ? value != null : value == null;
+            }
+            try {
+                if (value instanceof String) {
+                    return mightMatchString((String) value);
+                }
+                return operator.compare(value, rhs);
+            } catch (RuntimeException e) {
+                // e.g. the value and rhs are not of comparable types
+                return true;
+            }
+        }
+
+        /**
+         * Compares a string the way a database with a case-insensitive collation might, i.e. without telling apart
+         * strings that only differ in case, and without knowing how it orders strings.
+         */
+        private boolean mightMatchString(final String value) {
+            switch (operator.getId()) {
+                case EntityOperator.ID_EQUALS:
+                    return equalsIgnoringCase(value, rhs);
+                case EntityOperator.ID_IN:
+                    if (rhs instanceof Collection) {
+                        for (Object element : (Collection<?>) rhs) {
+                            if (equalsIgnoringCase(value, element)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                    return equalsIgnoringCase(value, rhs);
+                case EntityOperator.ID_LIKE:
+                    return EntityOperator.LIKE.compare(value.toUpperCase(), rhs.toString().toUpperCase());
+                case EntityOperator.ID_NOT_EQUAL:
+                    // strings that are equal whatever the collation are never different
+                    return operator.compare(value, rhs);
+                default:
+                    // the order of strings depends on the collation, so the value could be in any range
+                    return true;
+            }
+        }
+
+        private static boolean equalsIgnoringCase(final String value, final Object other) {
+            return other instanceof String ?
+                    value.equalsIgnoreCase((String) other) : EntityOperator.EQUALS.compare(value, other);
+        }
+
+        public String toString() {
+            return string;
+        }
+    }
+
+    private static final class JunctionNode extends Node {
+
+        private static final Comparator<Node> BY_STRING = new Comparator<Node>() {
+            public int compare(final Node node1, final Node node2) {
+                return node1.toString().compareTo(node2.toString());
+            }
+        };
+
+        private final boolean and;
+        private final List<Node> nodes;
+        private final String string;
+
+        private JunctionNode(final boolean and, final List<Node> nodes) {
+            this.and = and;
+            this.nodes = nodes;
+            final StringBuilder builder = new StringBuilder(and ? "AND[" : "OR[");
+            for (int i = 0; i < nodes.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append('(').append(nodes.get(i)).append(')');
+            }
+            this.string = builder.append(']').toString();
+        }
+
+        static JunctionNode create(final EntityOperator operator, final List<? extends EntityCondition> conditions) {
+            final boolean and;
+            if (EntityOperator.AND.equals(operator)) {
+                and = true;
+            } else if (EntityOperator.OR.equals(operator)) {
+                and = false;
+            } else {
+                return null;
+            }
+            final List<Node> nodes = new ArrayList<Node>(conditions.size());
+            for (EntityCondition condition : conditions) {
+                final Node node = condition == null ? null : normalize(condition);
+                if (node == null) {
+                    return null;
+                }
+                nodes.add(node);
+            }
+            // the order of the conditions doesn't matter to the database
+            Collections.sort(nodes, BY_STRING);
+            return new JunctionNode(and, nodes);
+        }
+
+        boolean mightMatch(final Map<String, ?> fields) {
+            if (nodes.isEmpty()) {
+                // an empty list doesn't constrain the query at all
+                return true;
+            }
+            for (Node node : nodes) {
+                if (node.mightMatch(fields) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        public String toString() {
+            return string;
+        }
+    }
+}
@@ -25,6 +25,8 @@ package org.ofbiz.core.entity;
 
 import java.io.Serializable;
 import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Advanced options for finding entities.
@@ -122,6 +124,18 @@ public class EntityFindOptions implements Serializable {
     protected int maxResults = -1;
     protected int offset;
     protected int fetchSize = Integer.valueOf(System.getProperty("entity.find.options.fetch.size", "-1"));
+    /**
+     * the values of the ordered fields in the last row of the previous page, for keyset pagination - null means none
+     */
+    protected HashMap<String, Object> lastRowKey;
+    /**
+     * whether to stream the results from the database rather than let the driver read them all into memory
+     */
+    protected boolean streaming;
+    /**
+     * whether the iterator refills the same value for each row rather than making a new one
+     */
+    protected boolean reuseValue;
 
     /**
      * Default constructor. Defaults are as follows:
@@ -310,6 +324,60 @@ public class EntityFindOptions implements Serializable {
         }
     }
 
+    /**
+     * Returns the values of the ordered fields in the last row of the previous page, see {@link #after(Map)}.
+     *
+     * @return null if not paging by keyset
+     */
+    public Map<String, Object> getLastRowKey() {
+        return lastRowKey;
+    }
+
+    /**
+     * Specifies the values of the ordered fields in the last row of the previous page, see {@link #after(Map)}.
+     *
+     * @param lastRowKey null to stop paging by keyset
+     */
+    public void setLastRowKey(final Map<String, ?> lastRowKey) {
+        this.lastRowKey = lastRowKey == null ? null : new HashMap<String, Object>(lastRowKey);
+    }
+
+    /**
+     * Indicates whether the results are streamed from the database, see {@link #streaming()}.
+     *
+     * @return see above
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Specifies whether the results are streamed from the database, see {@link #streaming()}.
+     *
+     * @param streaming see above
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Indicates whether the iterator reuses one value for all the rows, see {@link #reuseValue()}.
+     *
+     * @return see above
+     */
+    public boolean isReuseValue() {
+        return reuseValue;
+    }
+
+    /**
+     * Specifies whether the iterator reuses one value for all the rows, see {@link #reuseValue()}.
+     *
+     * @param reuseValue see above
+     */
+    public void setReuseValue(final boolean reuseValue) {
+        this.reuseValue = reuseValue;
+    }
+
     /**
      * Specifies the value to use for the fetch size on the prepared statement.
      * Please see the comments in {@link #setFetchSize(int)} for restrictions.
@@ -445,6 +513,60 @@ public class EntityFindOptions implements Serializable {
         return this;
     }
 
+    /**
+     * Streams the results from the database a batch at a time, so that reading a large result set through an
+     * {@link EntityListIterator} takes a constant amount of memory. The result set is forward only and read only,
+     * and the fetch size and auto-commit mode are whatever the
+     * {@link org.ofbiz.core.entity.jdbc.dbtype.DatabaseType#getStreamingFetchSize() database type} needs to stream,
+     * overriding the options set here: e.g. <code>Integer.MIN_VALUE</code> on MySQL, or a transaction of its own on
+     * PostgreSQL.
+     * <p>
+     * <b>WARNING</b>: on MySQL, no other statement can run on the connection until the iterator is closed, so read
+     * the results to the end, or close the iterator, before doing anything else in the same transaction.
+     * </p>
+     *
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public EntityFindOptions streaming() {
+        streaming = true;
+        return this;
+    }
+
+    /**
+     * Makes the {@link EntityListIterator} refill the same {@link GenericValue} with each row it reads, instead of
+     * making a new value, map of fields and copy of the original values for every row, so that reading through a
+     * large result set, e.g. with {@link #streaming()}, leaves almost no garbage.
+     * <p>
+     * <b>WARNING</b>: the value returned by <code>next()</code> is only valid until the next call; use
+     * {@link EntityListIterator#detach()} to get a copy of the current row that can be kept.
+     * </p>
+     *
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public EntityFindOptions reuseValue() {
+        reuseValue = true;
+        return this;
+    }
+
+    /**
+     * Finds the rows that come after the given row in the order of the query, which makes the database seek to the
+     * page instead of skipping <code>offset</code> rows to get to it, so that deep pages of a big table cost no more
+     * than the first one. The query must have an <code>orderBy</code> list on non-null fields that together are
+     * unique, e.g. ending with the primary key; the <code>offset</code> is ignored, but <code>maxResults</code> still
+     * sets the size of the page.
+     * <p>
+     * The key of the next page is the {@link EntityListIterator#getContinuationKey() continuation key} of the
+     * iterator that read the current one.
+     * </p>
+     *
+     * @param lastRowKey the values of the ordered fields in the last row of the previous page
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public EntityFindOptions after(final Map<String, ?> lastRowKey) {
+        setLastRowKey(lastRowKey);
+        return this;
+    }
+
     /**
      * Specifies the range of results to find.
      *
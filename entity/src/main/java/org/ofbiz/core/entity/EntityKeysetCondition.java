@@ -0,0 +1,174 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Selects the rows that come after a given row in the order of an <code>orderBy</code> list, which is how keyset (or
+ * seek) pagination gets its next page: instead of skipping <code>offset</code> rows, which costs the database more
+ * the deeper the page, the query starts right after the last row of the previous page, e.g. for
+ * <code>orderBy = ["key", "id DESC"]</code>:
+ * <pre>
+ * KEY &gt; ? OR (KEY = ? AND ID &lt; ?)
+ * </pre>
+ * When all the fields are sorted the same way and the database supports it, the row value form
+ * <code>(KEY, ID) &gt; (?, ?)</code> is used instead.
+ * <p>
+ * For the pages to be complete and not overlap, the ordered fields must be non-null and together unique, typically by
+ * ending the <code>orderBy</code> list with the primary key. See {@link EntityFindOptions#after(Map)}.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class EntityKeysetCondition extends EntityCondition {
+
+    private final List<String> fieldNames;
+    private final List<Boolean> descending;
+    private final Map<String, ?> lastRowKey;
+    private final boolean rowValueComparison;
+
+    /**
+     * @param orderBy            the order of the query, with an optional " ASC" or " DESC", or "+" or "-" prefix on
+     *                           each field, as for the order by clause
+     * @param lastRowKey         the values of the ordered fields in the last row of the previous page
+     * @param rowValueComparison whether the database can compare row values
+     */
+    public EntityKeysetCondition(final List<String> orderBy, final Map<String, ?> lastRowKey,
+                                 final boolean rowValueComparison) {
+        this.fieldNames = new ArrayList<String>(orderBy.size());
+        this.descending = new ArrayList<Boolean>(orderBy.size());
+        for (String orderByField : orderBy) {
+            fieldNames.add(getFieldName(orderByField));
+            descending.add(isDescending(orderByField));
+        }
+        this.lastRowKey = lastRowKey;
+        this.rowValueComparison = rowValueComparison;
+    }
+
+    /**
+     * Returns the names of the fields of an <code>orderBy</code> list, without their sort direction.
+     *
+     * @param orderBy the order of a query (can be null)
+     * @return an empty list if orderBy is null
+     */
+    public static List<String> getFieldNames(final List<String> orderBy) {
+        if (orderBy == null) {
+            return Collections.emptyList();
+        }
+        final List<String> names = new ArrayList<String>(orderBy.size());
+        for (String orderByField : orderBy) {
+            names.add(getFieldName(orderByField));
+        }
+        return names;
+    }
+
+    private static String getFieldName(final String orderByField) {
+        final String trimmed = orderByField.trim();
+        final int spaceIdx = trimmed.indexOf(' ');
+        final String name = spaceIdx > 0 ? trimmed.substring(0, spaceIdx) : trimmed;
+        if (name.startsWith("-") || name.startsWith("+")) {
+            return name.substring(1);
+        }
+        return name;
+    }
+
+    private static boolean isDescending(final String orderByField) {
+        final String trimmed = orderByField.trim();
+        if (trimmed.startsWith("-")) {
+            return true;
+        }
+        final int spaceIdx = trimmed.indexOf(' ');
+        return spaceIdx > 0 && trimmed.substring(spaceIdx).trim().toUpperCase().startsWith("DESC");
+    }
+
+    public String makeWhereString(final ModelEntity modelEntity, final List<? super EntityConditionParam> entityConditionParams) {
+        final List<ModelField> fields = getModelFields(modelEntity);
+        final StringBuilder whereString = new StringBuilder();
+        if (isRowValueForm()) {
+            whereString.append('(');
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    whereString.append(", ");
+                }
+                whereString.append(fields.get(i).getColName());
+            }
+            whereString.append(descending.get(0) ? ") < (" : ") > (");
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    whereString.append(", ");
+                }
+                whereString.append('?');
+                addParam(fields.get(i), entityConditionParams);
+            }
+            return whereString.append(')').toString();
+        }
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                whereString.append(" OR ");
+            }
+            whereString.append('(');
+            for (int j = 0; j < i; j++) {
+                whereString.append(fields.get(j).getColName()).append(" = ? AND ");
+                addParam(fields.get(j), entityConditionParams);
+            }
+            whereString.append(fields.get(i).getColName()).append(descending.get(i) ? " < ?" : " > ?");
+            addParam(fields.get(i), entityConditionParams);
+            whereString.append(')');
+        }
+        return whereString.toString();
+    }
+
+    private boolean isRowValueForm() {
+        // the row value comparison only works when every field is sorted the same way
+        return rowValueComparison && fieldNames.size() > 1 && !descending.contains(!descending.get(0));
+    }
+
+    private void addParam(final ModelField field, final List<? super EntityConditionParam> entityConditionParams) {
+        entityConditionParams.add(new EntityConditionParam(field, lastRowKey.get(field.getName())));
+    }
+
+    private List<ModelField> getModelFields(final ModelEntity modelEntity) {
+        final List<ModelField> fields = new ArrayList<ModelField>(fieldNames.size());
+        for (String fieldName : fieldNames) {
+            final ModelField field = modelEntity.getField(fieldName);
+            if (field == null) {
+                throw new IllegalArgumentException("ModelField with field name " + fieldName + " not found");
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    public void checkCondition(final ModelEntity modelEntity) throws GenericModelException {
+        if (fieldNames.isEmpty()) {
+            throw new GenericModelException("Keyset pagination needs an orderBy list");
+        }
+        for (String fieldName : fieldNames) {
+            if (modelEntity.getField(fieldName) == null) {
+                throw new GenericModelException("Field with name " + fieldName + " not found in the " + modelEntity.getEntityName() + " Entity");
+            }
+            if (lastRowKey.get(fieldName) == null) {
+                throw new GenericModelException("The last row key has no value for the ordered field " + fieldName);
+            }
+        }
+    }
+
+    @Override
+    public int getParameterCount(final ModelEntity modelEntity) {
+        final int size = fieldNames.size();
+        if (isRowValueForm()) {
+            return size;
+        }
+        return size * (size + 1) / 2;
+    }
+
+    public String toString() {
+        return "[Keyset::" + fieldNames + "::" + lastRowKey + "]";
+    }
+}
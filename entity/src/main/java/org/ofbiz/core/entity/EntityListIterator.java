@@ -34,9 +34,12 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 
 /**
@@ -56,6 +59,10 @@ public class EntityListIterator implements ListIterator<GenericValue> {
     protected boolean closed = false;
     protected boolean haveMadeValue = false;
     protected GenericDelegator delegator = null;
+    private List<String> continuationKeyFields = Collections.emptyList();
+    private GenericValue lastValue = null;
+    // whether each row is read into lastValue rather than a new value, see EntityFindOptions.reuseValue()
+    private boolean reuseValue = false;
 
     public EntityListIterator(SQLProcessor sqlp, ModelEntity modelEntity, List<ModelField> selectFields, ModelFieldTypeReader modelFieldTypeReader) {
         this.sqlp = sqlp;
@@ -69,6 +76,67 @@ public class EntityListIterator implements ListIterator<GenericValue> {
         this.delegator = delegator;
     }
 
+    /**
+     * Sets the fields that make the {@link #getContinuationKey() continuation key}, i.e. the ordered fields.
+     */
+    void setContinuationKeyFields(final List<String> continuationKeyFields) {
+        this.continuationKeyFields = continuationKeyFields;
+    }
+
+    /**
+     * Sets whether each row is read into the same value, see {@link EntityFindOptions#reuseValue()}.
+     */
+    void setReuseValue(final boolean reuseValue) {
+        this.reuseValue = reuseValue;
+    }
+
+    /**
+     * Indicates whether this iterator reads each row into the same value, see {@link EntityFindOptions#reuseValue()}.
+     *
+     * @return true if the values it returns are only valid until it moves on
+     */
+    public boolean isReuseValue() {
+        return reuseValue;
+    }
+
+    /**
+     * Returns the row last read from this iterator as a value that stays valid after the iterator moves on. When the
+     * iterator {@link #isReuseValue() reuses its value}, this is a copy of it, including any changes made to it and
+     * its original database values; otherwise it is the value that was returned.
+     *
+     * @return null if no row has been read yet
+     */
+    public GenericValue detach() {
+        if (!reuseValue || lastValue == null) {
+            return lastValue;
+        }
+        final GenericValue value = new GenericValue(lastValue);
+        value.modified = lastValue.modified;
+        if (lastValue.originalDbValues == lastValue.fields) {
+            value.copyOriginalDbValues();
+        } else if (lastValue.originalDbValues != null) {
+            value.originalDbValues = FieldValueMap.copyOf(lastValue.originalDbValues);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the values of the ordered fields in the last value read from this iterator, which is where the next
+     * page starts when passed to {@link EntityFindOptions#after(Map)}.
+     *
+     * @return null if no value has been read yet, or the query was not ordered
+     */
+    public Map<String, Object> getContinuationKey() {
+        if (lastValue == null || continuationKeyFields.isEmpty()) {
+            return null;
+        }
+        final Map<String, Object> continuationKey = new LinkedHashMap<String, Object>();
+        for (String fieldName : continuationKeyFields) {
+            continuationKey.put(fieldName, lastValue.get(fieldName));
+        }
+        return continuationKey;
+    }
+
     /**
      * Detect whether or not the column data is case sensitive.
      *
@@ -171,7 +239,14 @@ public class EntityListIterator implements ListIterator<GenericValue> {
         if (closed)
             throw new GenericResultSetClosedException("This EntityListIterator has been closed, this operation cannot be performed");
 
-        GenericValue value = new GenericValue(modelEntity);
+        final GenericValue value;
+        if (reuseValue && lastValue != null) {
+            value = lastValue;
+            // forget the previous row, so that refilling the fields doesn't first copy them to keep its original values
+            value.resetFields(null);
+        } else {
+            value = new GenericValue(modelEntity);
+        }
 
         for (int j = 0; j < selectFields.size(); j++) {
             ModelField curField = selectFields.get(j);
@@ -183,6 +258,7 @@ public class EntityListIterator implements ListIterator<GenericValue> {
         value.copyOriginalDbValues();
         value.setDelegator(this.delegator);
         this.haveMadeValue = true;
+        this.lastValue = value;
         return value;
     }
 
@@ -331,7 +407,7 @@ public class EntityListIterator implements ListIterator<GenericValue> {
             GenericValue nextValue = null;
 
             while ((nextValue = this.next()) != null) {
-                list.add(nextValue);
+                list.add(reuseValue ? detach() : nextValue);
             }
             return list;
         } catch (SQLException e) {
@@ -356,7 +432,8 @@ public class EntityListIterator implements ListIterator<GenericValue> {
             }
 
             // get the first as the current one
-            list.add(this.currentGenericValue());
+            this.currentGenericValue();
+            list.add(detach());
 
             GenericValue nextValue = null;
             // init numRetreived to one since we have already grabbed the initial one
@@ -364,7 +441,7 @@ public class EntityListIterator implements ListIterator<GenericValue> {
 
             //number > numRetreived comparison goes first to avoid the unwanted call to next
             while (number > numRetreived && (nextValue = this.next()) != null) {
-                list.add(nextValue);
+                list.add(reuseValue ? detach() : nextValue);
                 numRetreived++;
             }
             return list;
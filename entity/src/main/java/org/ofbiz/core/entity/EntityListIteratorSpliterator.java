@@ -0,0 +1,71 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.util.Debug;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the values of an {@link EntityListIterator}, see
+ * {@link GenericDelegator#stream(String, EntityCondition, java.util.Collection, java.util.List, EntityFindOptions)}.
+ * <p>
+ * The size is unknown up front. {@link #trySplit()} reads the next batch of values into an array and hands it off,
+ * with batches growing as in {@link Spliterators.AbstractSpliterator}, so a parallel stream runs the work downstream
+ * on other threads while a single thread at a time drains the result set.
+ * </p>
+ * <p>
+ * When the iterator {@link EntityListIterator#isReuseValue() reuses its value}, each row is handed on as a
+ * {@link EntityListIterator#detach() detached} copy, as the stream may keep it after reading the next one, e.g. in a
+ * batch or a collection.
+ * </p>
+ * <p>
+ * The iterator is closed as soon as its last value has been read, and by {@link #close()}, which is safe to call more
+ * than once.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class EntityListIteratorSpliterator extends Spliterators.AbstractSpliterator<GenericValue> {
+
+    public static final String module = EntityListIteratorSpliterator.class.getName();
+
+    private final EntityListIterator entityListIterator;
+    private volatile boolean closed;
+
+    /**
+     * @param entityListIterator the iterator to read from, positioned before the first value to return
+     */
+    public EntityListIteratorSpliterator(final EntityListIterator entityListIterator) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.entityListIterator = entityListIterator;
+    }
+
+    public boolean tryAdvance(final Consumer<? super GenericValue> action) {
+        if (closed) {
+            return false;
+        }
+        final GenericValue value = entityListIterator.next();
+        if (value == null) {
+            close();
+            return false;
+        }
+        action.accept(entityListIterator.isReuseValue() ? entityListIterator.detach() : value);
+        return true;
+    }
+
+    /**
+     * Closes the iterator, unless it's closed already; errors are logged, as there's nothing more a caller could do.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            entityListIterator.close();
+        } catch (GenericEntityException e) {
+            Debug.logWarning(e, "Error closing the EntityListIterator of a stream", module);
+        }
+    }
+}
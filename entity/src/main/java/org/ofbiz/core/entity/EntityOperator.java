@@ -24,6 +24,10 @@
 
 package org.ofbiz.core.entity;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.regex.Pattern;
 
 /**
  * Encapsulates operations between entities and entity fields. This is a immutable class.
@@ -51,71 +55,125 @@ public class EntityOperator implements java.io.Serializable {
 
     public static final EntityOperator EQUALS = new EntityOperator(ID_EQUALS, "=") {
         public boolean compare(Object o1, Object o2) {
-            return ((o1 == null && o2 == null) || (o1 != null && o1.equals(o2)));
+            return areEqual(o1, o2);
         }
     };
     public static final EntityOperator NOT_EQUAL = new EntityOperator(ID_NOT_EQUAL, "<>") {
         public boolean compare(Object o1, Object o2) {
-            return !((o1 == null && o2 == null) || (o1 != null && o1.equals(o2)));
+            return !areEqual(o1, o2);
         }
     };
     public static final EntityOperator LESS_THAN = new EntityOperator(ID_LESS_THAN, "<") {
         public boolean compare(Object o1, Object o2) {
-            Comparable c1 = null;
-            if (o1 != null && o1 instanceof Comparable<?>) {
-                c1 = (Comparable) o1;
-                return c1.compareTo(o1) < 0;
-            } else
-                return false;
+            return o1 != null && o2 != null && compareValues(o1, o2) < 0;
         }
     };
     public static final EntityOperator GREATER_THAN = new EntityOperator(ID_GREATER_THAN, ">") {
         public boolean compare(Object o1, Object o2) {
-            Comparable c1 = null;
-            if (o1 != null && o1 instanceof Comparable)
-                c1 = (Comparable) o1;
-
-            return c1.compareTo(o1) > 0;
+            return o1 != null && o2 != null && compareValues(o1, o2) > 0;
         }
     };
     public static final EntityOperator LESS_THAN_EQUAL_TO = new EntityOperator(ID_LESS_THAN_EQUAL_TO, "<=") {
         public boolean compare(Object o1, Object o2) {
-            return !(GREATER_THAN.compare(o1, o2));
+            return o1 != null && o2 != null && compareValues(o1, o2) <= 0;
         }
     };
     public static final EntityOperator GREATER_THAN_EQUAL_TO = new EntityOperator(ID_GREATER_THAN_EQUAL_TO, ">=") {
         public boolean compare(Object o1, Object o2) {
-            return !(LESS_THAN.compare(o1, o2));
+            return o1 != null && o2 != null && compareValues(o1, o2) >= 0;
+        }
+    };
+    public static final EntityOperator IN = new EntityOperator(ID_IN, "IN") {
+        public boolean compare(Object o1, Object o2) {
+            if (o1 == null) {
+                // as in SQL, null is not in anything
+                return false;
+            }
+            if (o2 instanceof Collection) {
+                for (Object element : (Collection<?>) o2) {
+                    if (areEqual(o1, element)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return areEqual(o1, o2);
+        }
+    };
+    public static final EntityOperator BETWEEN = new EntityOperator(ID_BETWEEN, "BETWEEN") {
+        public boolean compare(Object o1, Object o2) {
+            if (!(o2 instanceof Collection) || ((Collection<?>) o2).size() != 2) {
+                throw new IllegalArgumentException("BETWEEN needs a Collection of the two bounds, not " + o2);
+            }
+            final Iterator<?> bounds = ((Collection<?>) o2).iterator();
+            return GREATER_THAN_EQUAL_TO.compare(o1, bounds.next()) && LESS_THAN_EQUAL_TO.compare(o1, bounds.next());
         }
     };
-    public static final EntityOperator IN = new EntityOperator(ID_IN, "IN");
-    public static final EntityOperator BETWEEN = new EntityOperator(ID_BETWEEN, "BETWEEN");
     public static final EntityOperator NOT = new EntityOperator(ID_NOT, "NOT");
     public static final EntityOperator AND = new EntityOperator(ID_AND, "AND");
     public static final EntityOperator OR = new EntityOperator(ID_OR, "OR");
     public static final EntityOperator LIKE = new EntityOperator(ID_LIKE, "LIKE") {
         public boolean compare(Object o1, Object o2) {
             if (o1 == null) {
-                if (o2 == null) {
-                    // Should not happen very often as using the like operator to compare nulls is not a good way to go
-                    return true;
-                } else {
-                    return false;
-                }
-            } else {
-                if (o2 == null) {
-                    return false;
-                } else {
-                    String s1 = (String) o1;
-                    String s2 = (String) o2;
-                    // Not a good way of doing it as it ignores the '%' inside the match.
-                    // Should do for now :(
-                    return s1.contains(s2);
-                }
+                // Should not happen very often as using the like operator to compare nulls is not a good way to go
+                return o2 == null;
+            }
+            if (o2 == null) {
+                return false;
             }
+            return likePattern(o2.toString()).matcher(o1.toString()).matches();
         }
     };
 
+    /**
+     * Compares two values for equality the way the database would, i.e. numbers of different types (such as an
+     * Integer given in a condition and the Long read from the database) are equal if they have the same value.
+     */
+    private static boolean areEqual(Object o1, Object o2) {
+        if (o1 == null || o2 == null) {
+            return o1 == o2;
+        }
+        if (o1 instanceof Number && o2 instanceof Number && o1.getClass() != o2.getClass()) {
+            return compareValues(o1, o2) == 0;
+        }
+        return o1.equals(o2);
+    }
+
+    /**
+     * Compares two non-null values, widening numbers of different types to BigDecimal.
+     *
+     * @throws ClassCastException if the values can't be compared with each other
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object o1, Object o2) {
+        if (o1 instanceof Number && o2 instanceof Number && o1.getClass() != o2.getClass()) {
+            return new BigDecimal(o1.toString()).compareTo(new BigDecimal(o2.toString()));
+        }
+        return ((Comparable<Object>) o1).compareTo(o2);
+    }
+
+    /**
+     * Turns a SQL LIKE pattern into a regular expression: '%' matches any run of characters, '_' any single one.
+     */
+    private static Pattern likePattern(String sqlPattern) {
+        final StringBuilder regex = new StringBuilder(sqlPattern.length() + 16);
+        int literalStart = 0;
+        for (int i = 0; i < sqlPattern.length(); i++) {
+            final char c = sqlPattern.charAt(i);
+            if (c == '%' || c == '_') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(sqlPattern.substring(literalStart, i)));
+                }
+                regex.append(c == '%' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < sqlPattern.length()) {
+            regex.append(Pattern.quote(sqlPattern.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
     private int idInt;
     private String codeString;
 
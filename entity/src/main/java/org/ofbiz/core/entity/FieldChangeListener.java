@@ -0,0 +1,20 @@
+package org.ofbiz.core.entity;
+
+/**
+ * Told when a field of a {@link GenericEntity} is set, see {@link GenericEntity#addFieldChangeListener}.
+ * <p>
+ * The listener is called on the thread that set the field, after the new value is in place.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public interface FieldChangeListener {
+
+    /**
+     * Called after a field of the entity has been set.
+     *
+     * @param entity    the entity that changed
+     * @param fieldName the name of the field that was set
+     */
+    void fieldChanged(GenericEntity entity, String fieldName);
+}
@@ -0,0 +1,276 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelFieldIndex;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The field values of a {@link GenericEntity}, kept in an array by the position of each field in its
+ * {@link ModelFieldIndex} rather than in a hash table, which saves a table and an entry object per field.
+ * <p>
+ * A bit per field tells a field that is not set from one that is set to null, as a <code>HashMap</code> would with
+ * {@link #containsKey(Object)}. Keys that are not fields of the entity, e.g. of a field added to the model after the
+ * index was built, go to an ordinary map. The fields are iterated in the order of the entity, then the other keys.
+ * </p>
+ * <p>
+ * Like a <code>HashMap</code>, this is not thread-safe.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+final class FieldValueMap extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ModelFieldIndex index;
+    private final Object[] values;
+    // one bit per field, set if the field has a value, even a null one
+    private final long[] present;
+    private int fieldCount;
+    // null until a key that is not a field is put
+    private Map<String, Object> others;
+
+    FieldValueMap(final ModelFieldIndex index) {
+        this.index = index;
+        this.values = new Object[index.size()];
+        this.present = new long[(index.size() + 63) >>> 6];
+    }
+
+    private FieldValueMap(final FieldValueMap map) {
+        this.index = map.index;
+        this.values = map.values.clone();
+        this.present = map.present.clone();
+        this.fieldCount = map.fieldCount;
+        this.others = map.others == null ? null : new LinkedHashMap<String, Object>(map.others);
+    }
+
+    /**
+     * Writes this map as a <code>HashMap</code>, so that the stream neither names this class, which a node on an
+     * older version doesn't have, nor carries the field names of the index; {@link GenericEntity#readResolve()}
+     * makes it compact again.
+     *
+     * @return a copy of this map
+     * @throws ObjectStreamException never
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new HashMap<String, Object>(this);
+    }
+
+    /**
+     * Copies the given field values into a new map of the same kind.
+     *
+     * @param fields the values to copy
+     * @return an independent copy
+     */
+    static Map<String, Object> copyOf(final Map<String, Object> fields) {
+        if (fields instanceof FieldValueMap) {
+            return new FieldValueMap((FieldValueMap) fields);
+        }
+        return new HashMap<String, Object>(fields);
+    }
+
+    /**
+     * @return the number of fields that this map has room for
+     */
+    int capacity() {
+        return values.length;
+    }
+
+    private boolean isPresent(final int i) {
+        return (present[i >>> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public Object get(final Object key) {
+        final int i = index.indexOf(key);
+        if (i >= 0) {
+            return values[i];
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        final int i = index.indexOf(key);
+        if (i >= 0) {
+            return isPresent(i);
+        }
+        return others != null && others.containsKey(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        final int i = index.indexOf(key);
+        if (i < 0) {
+            if (others == null) {
+                others = new LinkedHashMap<String, Object>();
+            }
+            return others.put(key, value);
+        }
+        final Object previousValue = values[i];
+        values[i] = value;
+        if (!isPresent(i)) {
+            present[i >>> 6] |= 1L << i;
+            fieldCount++;
+        }
+        return previousValue;
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        final int i = index.indexOf(key);
+        if (i < 0) {
+            return others == null ? null : others.remove(key);
+        }
+        return removeField(i);
+    }
+
+    private Object removeField(final int i) {
+        final Object previousValue = values[i];
+        values[i] = null;
+        if (isPresent(i)) {
+            present[i >>> 6] &= ~(1L << i);
+            fieldCount--;
+        }
+        return previousValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(present, 0);
+        fieldCount = 0;
+        others = null;
+    }
+
+    @Override
+    public int size() {
+        return fieldCount + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return FieldValueMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                FieldValueMap.this.clear();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int nextField = nextPresentField(0);
+        private int lastField = -1;
+        private Iterator<Entry<String, Object>> otherEntries;
+
+        private int nextPresentField(int i) {
+            while (i < values.length && !isPresent(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        public boolean hasNext() {
+            if (nextField < values.length) {
+                return true;
+            }
+            if (otherEntries == null && others != null) {
+                otherEntries = others.entrySet().iterator();
+            }
+            return otherEntries != null && otherEntries.hasNext();
+        }
+
+        public Entry<String, Object> next() {
+            if (nextField < values.length) {
+                lastField = nextField;
+                nextField = nextPresentField(nextField + 1);
+                return new FieldEntry(lastField);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastField = -1;
+            return otherEntries.next();
+        }
+
+        public void remove() {
+            if (lastField >= 0) {
+                removeField(lastField);
+                lastField = -1;
+            } else if (otherEntries != null) {
+                otherEntries.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private final class FieldEntry implements Entry<String, Object> {
+        private final int i;
+
+        FieldEntry(final int i) {
+            this.i = i;
+        }
+
+        public String getKey() {
+            return index.getName(i);
+        }
+
+        public Object getValue() {
+            return values[i];
+        }
+
+        public Object setValue(final Object value) {
+            final Object previousValue = values[i];
+            values[i] = value;
+            return previousValue;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> other = (Entry<?, ?>) o;
+            final Object value = values[i];
+            return getKey().equals(other.getKey()) &&
+                    (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            final Object value = values[i];
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + values[i];
+        }
+    }
+}
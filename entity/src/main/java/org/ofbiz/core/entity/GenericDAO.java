@@ -44,8 +44,10 @@ import org.ofbiz.core.entity.jdbc.PassThruSQLProcessor;
 import org.ofbiz.core.entity.jdbc.ReadOnlySQLProcessor;
 import org.ofbiz.core.entity.jdbc.SQLProcessor;
 import org.ofbiz.core.entity.jdbc.SqlJdbcUtil;
+import org.ofbiz.core.entity.jdbc.dbtype.AbstractDatabaseType;
 import org.ofbiz.core.entity.jdbc.dbtype.DatabaseType;
 import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelEntityStatements;
 import org.ofbiz.core.entity.model.ModelField;
 import org.ofbiz.core.entity.model.ModelFieldTypeReader;
 import org.ofbiz.core.entity.model.ModelKeyMap;
@@ -59,6 +61,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -66,6 +69,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -98,6 +102,14 @@ public class GenericDAO {
     public static final int ORACLE_MAX_LIST_SIZE = 1000;
     public static final int MS_SQL_MAX_PARAMETER_COUNT = 2000;
 
+    /**
+     * How many rows are looked up by primary key with one query (per entity, and per group of composite keys that
+     * fits the SQL Server parameter limit). Longer lists of single-column keys would be split up or rewritten as for
+     * any other IN condition anyway; this limit bounds the size of the statements and how many rows storeAll holds in
+     * memory at once.
+     */
+    static final int PRIMARY_KEYS_PER_SELECT = 5000;
+
     private static final Logger LOGGER = Logger.getLogger(GenericDAO.class);
 
     // The maximum amount of time to back off when contending with another thread for an atomic update
@@ -109,6 +121,10 @@ public class GenericDAO {
     protected DatasourceInfo datasourceInfo;
     private final LimitHelper limitHelper;
     private final CountHelper countHelper;
+    // whether the database supports upserts, once someone has asked
+    private volatile Boolean upsertSupported;
+    // whether the database compares row values, once someone has asked
+    private volatile Boolean rowValueComparisonSupported;
 
     private static final AtomicInteger temporaryTableCounter = new AtomicInteger(1);
 
@@ -173,7 +189,7 @@ public class GenericDAO {
 
         SQLProcessor sqlP = new AutoCommitSQLProcessor(helperName);
         try {
-            return singleInsert(entity, modelEntity, modelEntity.getFieldsCopy(), sqlP.getConnection());
+            return singleInsert(entity, modelEntity, getAllFields(modelEntity), sqlP.getConnection());
         } catch (GenericDataSourceException e) {
             sqlP.rollback();
             throw new GenericDataSourceException("Exception while inserting the following entity: " + entity.toString(), e);
@@ -192,9 +208,7 @@ public class GenericDAO {
             entity.set(ModelEntity.STAMP_FIELD, UtilDateTime.nowTimestamp());
         }
 
-        final String sql = "INSERT INTO " + modelEntity.getTableName(datasourceInfo) + " (" +
-                modelEntity.colNameString(fieldsToSave) + ") VALUES (" +
-                modelEntity.fieldsStringList(fieldsToSave, "?", ", ") + ')';
+        final String sql = getInsertSql(modelEntity, fieldsToSave);
 
         SQLProcessor sqlP = new PassThruSQLProcessor(helperName, connection);
         try {
@@ -214,6 +228,46 @@ public class GenericDAO {
         }
     }
 
+    private String getInsertSql(final ModelEntity modelEntity, final List<ModelField> fieldsToSave)
+            throws GenericEntityException {
+        final ModelEntityStatements statements = modelEntity.getStatements(datasourceInfo);
+        if (statements.getInsertSql() != null && fieldsToSave.equals(statements.getAllFields())) {
+            return statements.getInsertSql();
+        }
+        return "INSERT INTO " + modelEntity.getTableName(datasourceInfo) + " (" +
+                modelEntity.colNameString(fieldsToSave) + ") VALUES (" +
+                modelEntity.fieldsStringList(fieldsToSave, "?", ", ") + ')';
+    }
+
+    /**
+     * Inserts the given entities in one transaction, sending them to the database in JDBC batches of up to
+     * {@link DatasourceInfo#getBatchSize()} rows.
+     *
+     * @param entities the entities to insert (can be null)
+     * @return the number of rows inserted
+     * @throws GenericEntityException if any of the rows could not be inserted, in which case none of them are
+     */
+    public int insertAll(final List<? extends GenericEntity> entities) throws GenericEntityException {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+
+        final SQLProcessor sqlP = new ExplicitCommitSQLProcessor(helperName);
+        final BatchWriter writer = new BatchWriter(sqlP, datasourceInfo.getBatchSize());
+        try {
+            for (final GenericEntity entity : entities) {
+                writer.insert(entity);
+            }
+            return writer.finish();
+        } catch (GenericDataSourceException e) {
+            sqlP.rollback();
+            throw new GenericDataSourceException("Exception occurred in insertAll", e);
+        } finally {
+            writer.close();
+            closeSafely(entities, sqlP);
+        }
+    }
+
     public int updateAll(final GenericEntity entity) throws GenericEntityException {
         ModelEntity modelEntity = entity.getModelEntity();
 
@@ -336,15 +390,7 @@ public class GenericDAO {
             entity.set(ModelEntity.STAMP_FIELD, UtilDateTime.nowTimestamp());
         }
 
-        final List<ModelField> whereFields = modelEntity.getPksCopy();
-        if (nonPkCondition != null) {
-            whereFields.add(nonPkCondition.getModelField());
-        }
-
-        final String sql = String.format("UPDATE %s SET %s WHERE %s",
-                modelEntity.getTableName(datasourceInfo),
-                modelEntity.colNameString(fieldsToSave, "=?, ", "=?"),
-                makeWhereStringFromFields(whereFields, entity, "AND"));
+        final String sql = getUpdateSql(modelEntity, fieldsToSave, nonPkCondition, entity);
 
         final SQLProcessor sqlP = new PassThruSQLProcessor(helperName, connection);
         int retVal = 0;
@@ -373,6 +419,26 @@ public class GenericDAO {
         return retVal;
     }
 
+    private String getUpdateSql(final ModelEntity modelEntity, final List<ModelField> fieldsToSave,
+                                @Nullable final EntityConditionParam nonPkCondition, final GenericEntity entity)
+            throws GenericEntityException {
+        if (nonPkCondition == null && hasCompletePrimaryKey(entity, modelEntity)) {
+            final ModelEntityStatements statements = modelEntity.getStatements(datasourceInfo);
+            if (statements.getUpdateAllSql() != null && fieldsToSave.equals(statements.getOtherFields())) {
+                return statements.getUpdateAllSql();
+            }
+        }
+
+        final List<ModelField> whereFields = modelEntity.getPksCopy();
+        if (nonPkCondition != null) {
+            whereFields.add(nonPkCondition.getModelField());
+        }
+        return String.format("UPDATE %s SET %s WHERE %s",
+                modelEntity.getTableName(datasourceInfo),
+                modelEntity.colNameString(fieldsToSave, "=?, ", "=?"),
+                makeWhereStringFromFields(whereFields, entity, "AND"));
+    }
+
     /**
      * Store the passed entity - insert if does not exist, otherwise update
      */
@@ -386,10 +452,22 @@ public class GenericDAO {
         } catch (GenericEntityNotFoundException e) {
             // Debug.logInfo(e);
             // select failed, does not exist, insert
-            return singleInsert(entity, modelEntity, modelEntity.getFieldsCopy(), connection);
+            return singleInsert(entity, modelEntity, getAllFields(modelEntity), connection);
         }
         // select did not fail, so exists, update
+        return singleUpdate(entity, modelEntity, getChangedFields(entity, modelEntity, tempPK), connection, null);
+    }
 
+    /**
+     * Returns the non-PK fields of the given entity that differ from the stored row.
+     *
+     * @param entity      the entity being stored
+     * @param modelEntity the model of that entity
+     * @param storedRow   the row as it is in the database
+     * @return the fields to update, possibly none
+     */
+    private static List<ModelField> getChangedFields(final GenericEntity entity, final ModelEntity modelEntity,
+                                                     final GenericEntity storedRow) {
         List<ModelField> partialFields = new ArrayList<ModelField>();
         Collection<String> keys = entity.getAllKeys();
 
@@ -398,42 +476,689 @@ public class GenericDAO {
 
             // we don't want to update ALL fields, just the nonpk fields that are in the passed GenericEntity
             if (keys.contains(curField.getName())) {
-                //also, only update the fields that have changed, since we have the selected values in tempPK we can compare
+                //also, only update the fields that have changed, since we have the selected values in storedRow we can compare
                 if (entity.get(curField.getName()) == null) {
-                    if (tempPK.get(curField.getName()) != null) {
-                        //entity field is null, tempPK is not so are different
+                    if (storedRow.get(curField.getName()) != null) {
+                        //entity field is null, storedRow is not so are different
                         partialFields.add(curField);
                     }
-                } else if (!entity.get(curField.getName()).equals(tempPK.get(curField.getName()))) {
-                    //entity field is not null, and compared to tempPK field is different
+                } else if (!entity.get(curField.getName()).equals(storedRow.get(curField.getName()))) {
+                    //entity field is not null, and compared to storedRow field is different
                     partialFields.add(curField);
                 }
             }
         }
-
-        return singleUpdate(entity, modelEntity, partialFields, connection, null);
+        return partialFields;
     }
 
+    /**
+     * Stores the given entities in one transaction, inserting those that don't exist and updating the changed fields
+     * of those that do. The writes are sent to the database in JDBC batches of up to
+     * {@link DatasourceInfo#getBatchSize()} rows.
+     *
+     * @param entities the entities to store (can be null)
+     * @return the number of rows stored
+     * @throws GenericEntityException if any of the rows could not be stored, in which case none of them are
+     */
     public int storeAll(List<? extends GenericEntity> entities) throws GenericEntityException {
         if (entities == null || entities.isEmpty()) {
             return 0;
         }
 
         final SQLProcessor sqlP = new ExplicitCommitSQLProcessor(helperName);
+        final BatchWriter writer = new BatchWriter(sqlP, datasourceInfo.getBatchSize());
         try {
-            int totalStored = 0;
-            for (final GenericEntity entity : entities) {
-                totalStored += singleStore(entity, sqlP.getConnection());
-            }
-            return totalStored;
+            storeAll(entities, writer, sqlP.getConnection());
+            return writer.finish();
         } catch (GenericDataSourceException e) {
             sqlP.rollback();
             throw new GenericDataSourceException("Exception occurred in storeAll", e);
         } finally {
+            writer.close();
+            closeSafely(entities, sqlP);
+        }
+    }
+
+    private void storeAll(final List<? extends GenericEntity> entities, final BatchWriter writer,
+                          final Connection connection) throws GenericEntityException {
+        // the values of the keys checked so far; an entity given twice is checked again, as its first write changes
+        // the answer
+        final Set<List<Object>> checkedPks = new HashSet<List<Object>>();
+        for (final List<? extends GenericEntity> chunk : Lists.partition(entities, PRIMARY_KEYS_PER_SELECT)) {
+            final PrimaryKeyMatcher storedRows = selectStoredRows(chunk, checkedPks, connection);
+            for (final GenericEntity entity : chunk) {
+                final GenericPK primaryKey = getCheckablePrimaryKey(entity);
+                if (primaryKey != null && checkedPks.add(PrimaryKeyMatcher.getKeyValues(primaryKey))) {
+                    writer.store(entity, storedRows.get(primaryKey));
+                } else {
+                    writer.store(entity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the given entities in one transaction, like {@link #storeAll(List)}, but with the database's own
+     * insert-or-update statement where it has one (see {@link DatabaseType#getUpsertSQL}), so that rows don't have to
+     * be read first and concurrent writers can't both decide to insert. Unlike storeAll, existing rows get all the
+     * fields the entities have, not just those that differ. Views, entities with optimistic locking and databases
+     * without upserts are stored as storeAll would.
+     *
+     * @param entities the entities to store (can be null)
+     * @return the number of entities stored
+     * @throws GenericEntityException if any of the rows could not be stored, in which case none of them are
+     */
+    public int upsertAll(final List<? extends GenericEntity> entities) throws GenericEntityException {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+
+        final SQLProcessor sqlP = new ExplicitCommitSQLProcessor(helperName);
+        final BatchWriter writer = new BatchWriter(sqlP, datasourceInfo.getBatchSize());
+        try {
+            final DatabaseType databaseType = getUpsertDatabaseType(sqlP.getConnection());
+            if (databaseType == null) {
+                storeAll(entities, writer, sqlP.getConnection());
+            } else {
+                for (final GenericEntity entity : entities) {
+                    writer.upsert(entity, databaseType);
+                }
+            }
+            return writer.finish();
+        } catch (GenericDataSourceException e) {
+            sqlP.rollback();
+            throw new GenericDataSourceException("Exception occurred in upsertAll", e);
+        } finally {
+            writer.close();
             closeSafely(entities, sqlP);
         }
     }
 
+    /**
+     * @return the type of the database if it supports upserts, otherwise null
+     */
+    private DatabaseType getUpsertDatabaseType(final Connection connection) throws GenericDataSourceException {
+        final DatabaseType databaseType = datasourceInfo.getDatabaseTypeFromJDBCConnection();
+        if (databaseType == null) {
+            return null;
+        }
+        Boolean supported = upsertSupported;
+        if (supported == null) {
+            try {
+                supported = databaseType.isUpsertSupported(connection);
+            } catch (SQLException e) {
+                throw new GenericDataSourceException("Could not tell whether " + databaseType + " supports upserts", e);
+            }
+            upsertSupported = supported;
+        }
+        return supported ? databaseType : null;
+    }
+
+    /**
+     * @param connection the connection to ask the database on, or null to use one of its own
+     * @return whether the given type of database compares row values, which depends on its version
+     */
+    private boolean isRowValueComparisonSupported(@Nullable final DatabaseType databaseType,
+                                                  @Nullable final Connection connection)
+            throws GenericEntityException {
+        if (databaseType == null) {
+            return false;
+        }
+        Boolean supported = rowValueComparisonSupported;
+        if (supported == null) {
+            final SQLProcessor sqlP = connection == null ? new ReadOnlySQLProcessor(helperName) : null;
+            try {
+                supported = databaseType.isRowValueComparisonSupported(
+                        connection == null ? sqlP.getConnection() : connection);
+            } catch (SQLException e) {
+                throw new GenericDataSourceException(
+                        "Could not tell whether " + databaseType + " compares row values", e);
+            } finally {
+                if (sqlP != null) {
+                    closeSafely("isRowValueComparisonSupported", sqlP);
+                }
+            }
+            rowValueComparisonSupported = supported;
+        }
+        return supported;
+    }
+
+    /**
+     * Reads the stored rows of the given entities with as few queries as possible, see
+     * {@link #selectByPrimaryKeys(Collection)}.
+     *
+     * @param entities    the entities about to be stored
+     * @param checkedPks  the values of the keys to leave out, as they have been checked before
+     * @param connection  the connection of the transaction that will write them
+     * @return the rows that exist, by primary key; the keys of the other checkable entities have no row
+     * @throws GenericEntityException if the rows can't be read
+     */
+    private PrimaryKeyMatcher selectStoredRows(final List<? extends GenericEntity> entities,
+                                               final Set<List<Object>> checkedPks, final Connection connection)
+            throws GenericEntityException {
+        final Map<String, Map<List<Object>, GenericPK>> primaryKeysByEntity =
+                new LinkedHashMap<String, Map<List<Object>, GenericPK>>();
+        for (final GenericEntity entity : entities) {
+            final GenericPK primaryKey = getCheckablePrimaryKey(entity);
+            if (primaryKey != null && !checkedPks.contains(PrimaryKeyMatcher.getKeyValues(primaryKey))) {
+                addPrimaryKey(primaryKeysByEntity, primaryKey);
+            }
+        }
+
+        return selectByPrimaryKeys(primaryKeysByEntity, connection);
+    }
+
+    /**
+     * Adds the given key to those of its entity, unless one with the same values is there already; the keys are
+     * compared on their values, see {@link PrimaryKeyMatcher}, as two GenericPKs can't tell an Integer from a Long.
+     */
+    private static void addPrimaryKey(final Map<String, Map<List<Object>, GenericPK>> primaryKeysByEntity,
+                                      final GenericPK primaryKey) {
+        Map<List<Object>, GenericPK> primaryKeys = primaryKeysByEntity.get(primaryKey.getEntityName());
+        if (primaryKeys == null) {
+            primaryKeys = new LinkedHashMap<List<Object>, GenericPK>();
+            primaryKeysByEntity.put(primaryKey.getEntityName(), primaryKeys);
+        }
+        final List<Object> keyValues = PrimaryKeyMatcher.getKeyValues(primaryKey);
+        if (!primaryKeys.containsKey(keyValues)) {
+            primaryKeys.put(keyValues, primaryKey);
+        }
+    }
+
+    /**
+     * Finds the rows with the given primary keys, with a query per entity and up to {@link #PRIMARY_KEYS_PER_SELECT}
+     * keys rather than a query per key.
+     *
+     * @param primaryKeys the primary keys to look up (can contain duplicates and keys of different entities)
+     * @return the rows that exist, in the order of their keys; keys without a row are left out, and a row is given
+     * once for each key it has, whichever way round the database matches them
+     * @throws GenericEntityException if the rows can't be read
+     */
+    public List<GenericValue> selectByPrimaryKeys(final Collection<? extends GenericPK> primaryKeys)
+            throws GenericEntityException {
+        final Map<String, Map<List<Object>, GenericPK>> primaryKeysByEntity =
+                new LinkedHashMap<String, Map<List<Object>, GenericPK>>();
+        for (final GenericPK primaryKey : primaryKeys) {
+            addPrimaryKey(primaryKeysByEntity, primaryKey);
+        }
+
+        final PrimaryKeyMatcher rows = selectByPrimaryKeys(primaryKeysByEntity, null);
+        final List<GenericValue> results = new ArrayList<GenericValue>(primaryKeys.size());
+        for (final GenericPK primaryKey : primaryKeys) {
+            final GenericValue row = rows.get(primaryKey);
+            if (row != null) {
+                results.add(row);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param primaryKeysByEntity the primary keys to look up, by their values, by entity name
+     * @param connection          the connection to use, or null to use a connection of its own for each query
+     * @return the rows that exist, by primary key; a key without a row has none in the database
+     */
+    private PrimaryKeyMatcher selectByPrimaryKeys(
+            final Map<String, Map<List<Object>, GenericPK>> primaryKeysByEntity, @Nullable final Connection connection)
+            throws GenericEntityException {
+        final List<GenericPK> allPrimaryKeys = new ArrayList<GenericPK>();
+        for (final Map<List<Object>, GenericPK> entityPrimaryKeys : primaryKeysByEntity.values()) {
+            allPrimaryKeys.addAll(entityPrimaryKeys.values());
+        }
+        final PrimaryKeyMatcher rows = new PrimaryKeyMatcher(allPrimaryKeys);
+        for (final Map<List<Object>, GenericPK> entityPrimaryKeys : primaryKeysByEntity.values()) {
+            final List<GenericPK> primaryKeys = new ArrayList<GenericPK>(entityPrimaryKeys.values());
+            final ModelEntity modelEntity = primaryKeys.get(0).getModelEntity();
+            if (modelEntity == null) {
+                throw new GenericModelException("Could not find ModelEntity record for entityName: " + primaryKeys.get(0).getEntityName());
+            }
+            if (modelEntity.getPksSize() <= 0) {
+                throw new GenericEntityException("Entity has no primary keys, cannot select by primary key");
+            }
+            if (modelEntity.getPksSize() == 1) {
+                final String pkName = modelEntity.getPk(0).getName();
+                for (final List<GenericPK> keys : Lists.partition(primaryKeys, PRIMARY_KEYS_PER_SELECT)) {
+                    final List<Object> pkValues = new ArrayList<Object>(keys.size());
+                    for (final GenericPK primaryKey : keys) {
+                        pkValues.add(primaryKey.get(pkName));
+                    }
+                    final EntityCondition condition = new EntityExpr(pkName, EntityOperator.IN, pkValues);
+                    if (!selectRows(modelEntity, condition, connection, rows)) {
+                        selectUnmatchedKeys(keys, connection, rows);
+                    }
+                }
+            } else {
+                // every tuple takes one parameter per key column, which SQL Server limits per statement
+                final int tuplesPerQuery = Math.max(1, MS_SQL_MAX_PARAMETER_COUNT / modelEntity.getPksSize() - 1);
+                for (final List<GenericPK> tuples : Lists.partition(primaryKeys, tuplesPerQuery)) {
+                    final List<EntityCondition> tupleConditions = new ArrayList<EntityCondition>(tuples.size());
+                    for (final GenericPK primaryKey : tuples) {
+                        tupleConditions.add(new EntityFieldMap(primaryKey.getAllFields(), EntityOperator.AND));
+                    }
+                    if (!selectRows(modelEntity, new EntityConditionList(tupleConditions, EntityOperator.OR),
+                            connection, rows)) {
+                        selectUnmatchedKeys(tuples, connection, rows);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return false if a row matched none of the keys, see {@link PrimaryKeyMatcher}
+     */
+    private boolean selectRows(final ModelEntity modelEntity, final EntityCondition condition,
+                               @Nullable final Connection connection, final PrimaryKeyMatcher rows)
+            throws GenericEntityException {
+        final EntityListIterator iterator =
+                selectListIteratorByCondition(modelEntity, condition, null, null, null, null, connection);
+        boolean allMatched = true;
+        try {
+            GenericValue row;
+            while ((row = iterator.next()) != null) {
+                allMatched &= rows.add(row);
+            }
+        } finally {
+            iterator.close();
+        }
+        return allMatched;
+    }
+
+    /**
+     * Selects the given keys that have no row one at a time, for when the query for them returned a row that matched
+     * none of them, as the database compares their values differently, e.g. ignoring case.
+     */
+    private void selectUnmatchedKeys(final List<GenericPK> primaryKeys, @Nullable final Connection connection,
+                                     final PrimaryKeyMatcher rows) throws GenericEntityException {
+        for (final GenericPK primaryKey : primaryKeys) {
+            if (rows.get(primaryKey) != null) {
+                continue;
+            }
+            final GenericValue row = new GenericValue(primaryKey);
+            try {
+                if (connection == null) {
+                    select(row);
+                } else {
+                    select(row, connection);
+                }
+            } catch (GenericEntityNotFoundException e) {
+                continue;
+            }
+            rows.put(primaryKey, row);
+        }
+    }
+
+    /**
+     * Returns the primary key of the given entity if its existence can be checked in bulk, i.e. if it's not a view
+     * and its key is complete.
+     *
+     * @param entity the entity to be stored
+     * @return null if the entity must be checked on its own
+     */
+    private static GenericPK getCheckablePrimaryKey(final GenericEntity entity) {
+        final ModelEntity modelEntity = entity.getModelEntity();
+        if (modelEntity == null || modelEntity instanceof ModelViewEntity || !hasCompletePrimaryKey(entity, modelEntity)) {
+            return null;
+        }
+        return entity.getPrimaryKey();
+    }
+
+    /**
+     * Indicates whether none of the primary key values of the given entity is null, in which case its row can be
+     * addressed by the {@link ModelEntityStatements statement templates} of its entity.
+     *
+     * @param entity      the entity
+     * @param modelEntity the model of the entity
+     * @return false if the entity has no primary key, or a null value in it
+     */
+    private static boolean hasCompletePrimaryKey(final GenericEntity entity, final ModelEntity modelEntity) {
+        if (modelEntity.getPksSize() == 0) {
+            return false;
+        }
+        for (int i = 0; i < modelEntity.getPksSize(); i++) {
+            if (entity.get(modelEntity.getPk(i).getName()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns all the fields of the given entity, in the order of its insert statement template; unlike
+     * {@link ModelEntity#getFieldsCopy()} this doesn't copy them, so the list must not be modified.
+     */
+    private List<ModelField> getAllFields(final ModelEntity modelEntity) throws GenericEntityException {
+        return modelEntity.getStatements(datasourceInfo).getAllFields();
+    }
+
+    private static List<String> getColumnNames(final List<ModelField> fields) {
+        final List<String> columnNames = new ArrayList<String>(fields.size());
+        for (final ModelField field : fields) {
+            columnNames.add(field.getColName());
+        }
+        return columnNames;
+    }
+
+    private enum WriteKind {
+        INSERT, UPDATE, UPSERT
+    }
+
+    /**
+     * Writes rows to the connection of one transaction in JDBC batches, with one batch per statement, e.g. one for the
+     * inserts into each table. An update only sets the fields that differ from the stored row, so updates share a
+     * batch when they change the same fields of the same table; those that change every field use the cached
+     * update-all statement.
+     * <p>
+     * A row joins the latest batch for its statement unless a batch opened after that one holds rows of the same
+     * entity, rows of an entity it refers to, or a row with the same primary key; otherwise it opens a new batch.
+     * The batches are executed in the order they were opened, so a child row still reaches the database after the
+     * parent row it refers to, and interleaved rows of several tables are still written in a few large batches.
+     * </p>
+     * <p>
+     * Views and entities with optimistic locking can't be batched, as they need to read before they write, so they
+     * are written on their own once the open batches have been executed; so is everything if the batch size is 1 or
+     * less.
+     * </p>
+     */
+    private class BatchWriter {
+
+        // the most batches held open at once, each of which holds a statement
+        private static final int MAX_OPEN_BATCHES = 8;
+
+        private final SQLProcessor transaction;
+        private final int batchSize;
+        // in the order they were opened, which is the order they must be executed in
+        private final List<Batch> openBatches = new ArrayList<Batch>();
+        // the names of the entities each batched entity refers to, which must be written before it
+        private final Map<ModelEntity, Set<String>> referencedEntities = new HashMap<ModelEntity, Set<String>>();
+        private int rowsWritten;
+
+        BatchWriter(final SQLProcessor transaction, final int batchSize) {
+            this.transaction = transaction;
+            this.batchSize = batchSize;
+        }
+
+        void insert(final GenericEntity entity) throws GenericEntityException {
+            final ModelEntity modelEntity = getModelEntity(entity);
+            if (!canBatch(modelEntity)) {
+                executeBatches();
+                rowsWritten += singleInsert(entity, modelEntity, getAllFields(modelEntity), transaction.getConnection());
+                return;
+            }
+            final List<ModelField> fields = getAllFields(modelEntity);
+            addToBatch(entity, modelEntity, getInsertSql(modelEntity, fields), fields, WriteKind.INSERT);
+        }
+
+        void store(final GenericEntity entity) throws GenericEntityException {
+            final ModelEntity modelEntity = getModelEntity(entity);
+            if (!canBatch(modelEntity)) {
+                executeBatches();
+                rowsWritten += singleStore(entity, transaction.getConnection());
+                return;
+            }
+
+            final GenericPK storedRow = entity.getPrimaryKey();
+            if (isPending(PrimaryKeyMatcher.getKeyValues(storedRow))) {
+                executeBatches();
+            }
+            try {
+                select(storedRow, transaction.getConnection());
+            } catch (GenericEntityNotFoundException e) {
+                insert(entity);
+                return;
+            }
+            update(entity, modelEntity, storedRow);
+        }
+
+        /**
+         * Stores the given entity, whose existence has already been checked.
+         *
+         * @param entity    the entity to store
+         * @param storedRow the row as it is in the database, or null if there isn't one
+         * @throws GenericEntityException if the entity can't be stored
+         */
+        void store(final GenericEntity entity, @Nullable final GenericEntity storedRow) throws GenericEntityException {
+            if (storedRow == null) {
+                insert(entity);
+            } else {
+                update(entity, getModelEntity(entity), storedRow);
+            }
+        }
+
+        /**
+         * Inserts the given entity, or updates the fields it has if its row exists, without reading the row first.
+         *
+         * @param entity       the entity to store
+         * @param databaseType the type of the database, which must support upserts
+         * @throws GenericEntityException if the entity can't be stored
+         */
+        void upsert(final GenericEntity entity, final DatabaseType databaseType) throws GenericEntityException {
+            final ModelEntity modelEntity = getModelEntity(entity);
+            if (modelEntity instanceof ModelViewEntity || modelEntity.lock()) {
+                store(entity);
+                return;
+            }
+
+            final List<ModelField> otherFields = new ArrayList<ModelField>();
+            final Collection<String> keys = entity.getAllKeys();
+            for (int fi = 0; fi < modelEntity.getNopksSize(); fi++) {
+                final ModelField curField = modelEntity.getNopk(fi);
+                if (keys.contains(curField.getName()) || curField.getName().equals(ModelEntity.STAMP_FIELD)) {
+                    otherFields.add(curField);
+                }
+            }
+            final List<ModelField> fields = modelEntity.getPksCopy();
+            fields.addAll(otherFields);
+            final String sql = databaseType.getUpsertSQL(modelEntity.getTableName(datasourceInfo),
+                    getColumnNames(modelEntity.getPksCopy()), getColumnNames(otherFields));
+            addToBatch(entity, modelEntity, sql, fields, WriteKind.UPSERT);
+        }
+
+        private void update(final GenericEntity entity, final ModelEntity modelEntity, final GenericEntity storedRow)
+                throws GenericEntityException {
+            final List<ModelField> changedFields = getChangedFields(entity, modelEntity, storedRow);
+            if (!canBatch(modelEntity)) {
+                executeBatches();
+                rowsWritten += singleUpdate(entity, modelEntity, changedFields, transaction.getConnection(), null);
+                return;
+            }
+            if (changedFields.isEmpty()) {
+                // nothing to update, but it counts as stored, as with singleUpdate
+                rowsWritten++;
+                return;
+            }
+            // set the stamp first, so that it doesn't change the SQL of consecutive rows
+            if (modelEntity.isField(ModelEntity.STAMP_FIELD)) {
+                entity.set(ModelEntity.STAMP_FIELD, UtilDateTime.nowTimestamp());
+            }
+            // the statement depends on the changed fields only, so rows that change the same fields share a batch
+            final String sql = getUpdateSql(modelEntity, changedFields, null, entity);
+            addToBatch(entity, modelEntity, sql, changedFields, WriteKind.UPDATE);
+        }
+
+        /**
+         * Executes the open batches, if any.
+         *
+         * @return the number of rows written since this writer was created
+         * @throws GenericEntityException if a batch fails
+         */
+        int finish() throws GenericEntityException {
+            executeBatches();
+            return rowsWritten;
+        }
+
+        /**
+         * Releases the statements of the open batches, if any, without executing them.
+         */
+        void close() {
+            for (final Batch batch : openBatches) {
+                batch.close();
+            }
+            openBatches.clear();
+        }
+
+        private ModelEntity getModelEntity(final GenericEntity entity) throws GenericModelException {
+            final ModelEntity modelEntity = entity.getModelEntity();
+            if (modelEntity == null) {
+                throw new GenericModelException("Could not find ModelEntity record for entityName: " + entity.getEntityName());
+            }
+            return modelEntity;
+        }
+
+        private boolean canBatch(final ModelEntity modelEntity) {
+            return batchSize > 1 && !(modelEntity instanceof ModelViewEntity) && !modelEntity.lock();
+        }
+
+        private boolean isPending(final List<Object> keyValues) {
+            for (final Batch batch : openBatches) {
+                if (batch.pendingPks.contains(keyValues)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addToBatch(final GenericEntity entity, final ModelEntity modelEntity, final String sql,
+                                final List<ModelField> fields, final WriteKind kind) throws GenericEntityException {
+            final List<Object> keyValues = PrimaryKeyMatcher.getKeyValues(entity);
+            Batch batch = findBatch(modelEntity, sql, keyValues);
+            if (batch == null) {
+                if (openBatches.size() >= MAX_OPEN_BATCHES) {
+                    executeBatches();
+                }
+                batch = new Batch(modelEntity, sql, kind, transaction.getConnection());
+                openBatches.add(batch);
+            }
+
+            if (kind != WriteKind.UPDATE && modelEntity.isField(ModelEntity.STAMP_FIELD)) {
+                entity.set(ModelEntity.STAMP_FIELD, UtilDateTime.nowTimestamp());
+            }
+            try {
+                SqlJdbcUtil.setValues(batch.processor, fields, entity, modelFieldTypeReader);
+                if (kind == WriteKind.UPDATE) {
+                    SqlJdbcUtil.setPkValues(batch.processor, modelEntity, entity, modelFieldTypeReader);
+                }
+                batch.processor.addBatch();
+            } catch (GenericEntityException e) {
+                throw new GenericEntityException("while batching: " + entity.toString(), e);
+            }
+            batch.pendingEntities.add(entity);
+            batch.pendingPks.add(keyValues);
+
+            if (batch.pendingEntities.size() >= batchSize) {
+                // the batches opened before it may hold rows that it depends on
+                executeBatches(openBatches.indexOf(batch) + 1);
+            }
+        }
+
+        /**
+         * Returns the open batch that the given row can join without being written before a row it may depend on.
+         *
+         * @return the latest batch with the given statement, or null if there is none or a later batch holds such a row
+         */
+        @Nullable
+        private Batch findBatch(final ModelEntity modelEntity, final String sql, final List<Object> keyValues) {
+            final Set<String> referenced = getReferencedEntities(modelEntity);
+            for (int i = openBatches.size() - 1; i >= 0; i--) {
+                final Batch batch = openBatches.get(i);
+                if (batch.sql.equals(sql)) {
+                    return batch;
+                }
+                if (batch.modelEntity == modelEntity || referenced.contains(batch.modelEntity.getEntityName())
+                        || batch.pendingPks.contains(keyValues)) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private Set<String> getReferencedEntities(final ModelEntity modelEntity) {
+            Set<String> referenced = referencedEntities.get(modelEntity);
+            if (referenced == null) {
+                referenced = new HashSet<String>();
+                for (int i = 0; i < modelEntity.getRelationsSize(); i++) {
+                    final ModelRelation relation = modelEntity.getRelation(i);
+                    // "one" and "one-nofk" relations refer to a row that may be written in the same transaction
+                    if (relation.getType().startsWith("one")) {
+                        referenced.add(relation.getRelEntityName());
+                    }
+                }
+                referencedEntities.put(modelEntity, referenced);
+            }
+            return referenced;
+        }
+
+        private void executeBatches() throws GenericEntityException {
+            executeBatches(openBatches.size());
+        }
+
+        /**
+         * Executes the given number of the open batches, oldest first.
+         */
+        private void executeBatches(final int count) throws GenericEntityException {
+            for (int i = 0; i < count; i++) {
+                // removed first, so that a failed batch isn't left open
+                executeBatch(openBatches.remove(0));
+            }
+        }
+
+        private void executeBatch(final Batch batch) throws GenericEntityException {
+            try {
+                final int[] updateCounts = batch.processor.executeBatch();
+                for (int i = 0; i < batch.pendingEntities.size(); i++) {
+                    final GenericEntity entity = batch.pendingEntities.get(i);
+                    // a driver may report fewer counts than rows, or none at all, when it can't tell them apart
+                    final int updateCount = i < updateCounts.length ? updateCounts[i] : Statement.SUCCESS_NO_INFO;
+                    if (updateCount == Statement.EXECUTE_FAILED) {
+                        throw new GenericDataSourceException("Batched write failed for: " + entity);
+                    }
+                    if (batch.kind == WriteKind.UPSERT) {
+                        // databases count an upsert in their own ways, e.g. MySQL counts an update as 2 rows
+                        rowsWritten++;
+                    } else if (updateCount == 0) {
+                        throw new GenericEntityNotFoundException("Tried to update an entity that does not exist.");
+                    } else {
+                        rowsWritten += updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount;
+                    }
+                    entity.modified = false;
+                    if (entity instanceof GenericValue) {
+                        ((GenericValue) entity).copyOriginalDbValues();
+                    }
+                }
+            } finally {
+                batch.close();
+            }
+        }
+    }
+
+    /**
+     * The rows batched for one statement.
+     */
+    private class Batch {
+
+        final ModelEntity modelEntity;
+        final String sql;
+        final WriteKind kind;
+        final SQLProcessor processor;
+        // the key values of the rows in this batch, as a row written twice must see its first write
+        final Set<List<Object>> pendingPks = new HashSet<List<Object>>();
+        final List<GenericEntity> pendingEntities = new ArrayList<GenericEntity>();
+
+        Batch(final ModelEntity modelEntity, final String sql, final WriteKind kind, final Connection connection)
+                throws GenericEntityException {
+            this.modelEntity = modelEntity;
+            this.sql = sql;
+            this.kind = kind;
+            this.processor = new PassThruSQLProcessor(helperName, connection);
+            processor.prepareStatement(sql);
+        }
+
+        void close() {
+            closeSafely(sql, processor);
+        }
+    }
+
     /**
      * Try to update the given ModelViewEntity by trying to insert/update on the entities of which the view is composed.
      *
@@ -610,16 +1335,20 @@ public class GenericDAO {
             throw new GenericEntityException("Entity has no primary keys, cannot select by primary key");
         }
 
-        StringBuilder sqlBuffer = new StringBuilder(256).append("SELECT ");
-        if (modelEntity.getNopksSize() > 0) {
-            sqlBuffer.append(modelEntity.colNameString(modelEntity.getNopksCopy(), ", ", ""));
+        final String sql;
+        if (hasCompletePrimaryKey(entity, modelEntity)) {
+            sql = modelEntity.getStatements(datasourceInfo).getSelectByPrimaryKeySql();
         } else {
-            sqlBuffer.append('*');
+            final StringBuilder sqlBuffer = new StringBuilder(256).append("SELECT ");
+            if (modelEntity.getNopksSize() > 0) {
+                sqlBuffer.append(modelEntity.colNameString(modelEntity.getNopksCopy(), ", ", ""));
+            } else {
+                sqlBuffer.append('*');
+            }
+            sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, datasourceInfo));
+            sqlBuffer.append(SqlJdbcUtil.makeWhereClause(modelEntity, modelEntity.getPksCopy(), entity, "AND", datasourceInfo.getJoinStyle()));
+            sql = sqlBuffer.toString();
         }
-        sqlBuffer.append(SqlJdbcUtil.makeFromClause(modelEntity, datasourceInfo));
-        sqlBuffer.append(SqlJdbcUtil.makeWhereClause(modelEntity, modelEntity.getPksCopy(), entity, "AND", datasourceInfo.getJoinStyle()));
-
-        final String sql = sqlBuffer.toString();
         final SQLProcessor sqlP = new PassThruSQLProcessor(helperName, connection);
         try {
             sqlP.prepareStatement(sql, true, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
@@ -823,15 +1552,37 @@ public class GenericDAO {
                                                             final EntityCondition havingEntityCondition, final Collection<String> fieldsToSelect,
                                                             final List<String> orderBy, final EntityFindOptions findOptions)
             throws GenericEntityException {
+        return selectListIteratorByCondition(modelEntity, whereEntityCondition, havingEntityCondition, fieldsToSelect,
+                orderBy, findOptions, null);
+    }
+
+    /**
+     * As {@link #selectListIteratorByCondition(ModelEntity, EntityCondition, EntityCondition, Collection, List, EntityFindOptions)},
+     * but optionally on a connection that is already in use, e.g. to see the uncommitted writes of its transaction.
+     *
+     * @param connection the connection to use, or null to get one of its own; closing the iterator leaves it open
+     */
+    private EntityListIterator selectListIteratorByCondition(final ModelEntity modelEntity, EntityCondition whereEntityCondition,
+                                                             final EntityCondition havingEntityCondition, final Collection<String> fieldsToSelect,
+                                                             final List<String> orderBy, final EntityFindOptions findOptions,
+                                                             @Nullable final Connection connection)
+            throws GenericEntityException {
         if (modelEntity == null) {
             return null;
         }
-        final EntityFindOptions nonNullFindOptions = findOptions == null ? new EntityFindOptions() : findOptions;
+        final DatabaseType databaseType = datasourceInfo.getDatabaseTypeFromJDBCConnection();
+        final EntityFindOptions nonNullFindOptions;
+        if (findOptions == null) {
+            nonNullFindOptions = new EntityFindOptions();
+        } else if (findOptions.isStreaming()) {
+            nonNullFindOptions = getStreamingFindOptions(findOptions, databaseType);
+        } else {
+            nonNullFindOptions = findOptions;
+        }
 
         //JRA-19317: Oracle does not allow lists with more than 1000 elements ORA-01795
         // if we are on Oracle we split such long lists into equivalent expression
         // e.g. pid in (1, 2, 3, ..., 1000, 1001, 1002, ...) will be split into (pid in (1, 2, 3, ..., 1000) or pid in (1001, 1002, ...))
-        final DatabaseType databaseType = datasourceInfo.getDatabaseTypeFromJDBCConnection();
         if (databaseType == ORACLE_8I || databaseType == ORACLE_10G) {
             whereEntityCondition = rewriteConditionToSplitListsLargerThan(whereEntityCondition, ORACLE_MAX_LIST_SIZE);
         }
@@ -854,6 +1605,17 @@ public class GenericDAO {
             whereRewrite = Optional.absent();
         }
 
+        // keyset pagination: only the rows after the last row of the previous page
+        final Map<String, Object> lastRowKey = nonNullFindOptions.getLastRowKey();
+        if (lastRowKey != null) {
+            final EntityKeysetCondition keysetCondition = new EntityKeysetCondition(
+                    orderBy == null ? Collections.<String>emptyList() : orderBy, lastRowKey,
+                    isRowValueComparisonSupported(databaseType, connection));
+            keysetCondition.checkCondition(modelEntity);
+            whereEntityCondition = whereEntityCondition == null ? keysetCondition :
+                    new EntityExpr(whereEntityCondition, EntityOperator.AND, keysetCondition);
+        }
+
         if (Debug.verboseOn()) {
             Debug.logVerbose("Doing selectListIteratorByCondition with whereEntityCondition: " + whereEntityCondition);
         }
@@ -866,7 +1628,10 @@ public class GenericDAO {
                 havingEntityCondition, whereEntityConditionParams, havingEntityConditionParams, databaseType);
 
         final SQLProcessor sqlP;
-        if (whereRewrite.isPresent()) {
+        if (connection != null) {
+            sqlP = new PassThruSQLProcessor(helperName, connection);
+        } else if (whereRewrite.isPresent() || isAutoCommitOffForStreaming(nonNullFindOptions, databaseType)) {
+            // with auto-commit off, which the temporary tables and streaming on some databases need
             sqlP = new SQLProcessor(helperName);
         } else {
             sqlP = new ReadOnlySQLProcessor(helperName);
@@ -882,7 +1647,38 @@ public class GenericDAO {
             }
         }
 
-        return createEntityListIterator(sqlP, sql, nonNullFindOptions, modelEntity, selectFields, whereEntityConditionParams, havingEntityConditionParams, temporaryTableNames);
+        final EntityListIterator entityListIterator = createEntityListIterator(sqlP, sql, nonNullFindOptions, modelEntity,
+                selectFields, whereEntityConditionParams, havingEntityConditionParams, temporaryTableNames);
+        entityListIterator.setContinuationKeyFields(EntityKeysetCondition.getFieldNames(orderBy));
+        entityListIterator.setReuseValue(nonNullFindOptions.isReuseValue());
+        return entityListIterator;
+    }
+
+    /**
+     * Translates {@link EntityFindOptions#streaming()} into the result set type, concurrency and fetch size that make
+     * the given type of database stream the results, without changing the given options.
+     */
+    @VisibleForTesting
+    static EntityFindOptions getStreamingFindOptions(final EntityFindOptions findOptions,
+                                                     @Nullable final DatabaseType databaseType) {
+        final int fetchSize = databaseType == null ?
+                AbstractDatabaseType.DEFAULT_STREAMING_FETCH_SIZE : databaseType.getStreamingFetchSize();
+        final EntityFindOptions streamingOptions = EntityFindOptions.findOptions().forwardOnly().readOnly()
+                .fetchSize(fetchSize).maxResults(findOptions.getMaxResults()).streaming();
+        streamingOptions.setDistinct(findOptions.getDistinct());
+        streamingOptions.setOffset(findOptions.getOffset());
+        streamingOptions.setLastRowKey(findOptions.getLastRowKey());
+        streamingOptions.setReuseValue(findOptions.isReuseValue());
+        return streamingOptions;
+    }
+
+    /**
+     * @return whether the given query must run with auto-commit off, which some databases need to stream the results
+     */
+    @VisibleForTesting
+    static boolean isAutoCommitOffForStreaming(final EntityFindOptions findOptions,
+                                               @Nullable final DatabaseType databaseType) {
+        return findOptions.isStreaming() && databaseType != null && databaseType.isAutoCommitOffForStreaming();
     }
 
     /**
@@ -1086,7 +1882,9 @@ public class GenericDAO {
         sqlBuilder.append(SqlJdbcUtil.makeOrderByClause(modelEntity, orderBy, datasourceInfo));
         String sql = sqlBuilder.toString();
         if (findOptions.getMaxResults() > 0) {
-            sql = limitHelper.addLimitClause(sql, selectFields, findOptions.getOffset(), findOptions.getMaxResults());
+            // a keyset page starts where the condition says, not at an offset
+            final int offset = findOptions.getLastRowKey() == null ? findOptions.getOffset() : 0;
+            sql = limitHelper.addLimitClause(sql, selectFields, offset, findOptions.getMaxResults());
         }
 
         return sql;
@@ -1315,8 +2113,13 @@ public class GenericDAO {
             throw new org.ofbiz.core.entity.GenericNotImplementedException("Operation delete not supported yet for view entities");
         }
 
-        String sql = "DELETE FROM " + modelEntity.getTableName(datasourceInfo) + " WHERE " +
-                makeWhereStringFromFields(modelEntity.getPksCopy(), entity, "AND");
+        final String sql;
+        if (hasCompletePrimaryKey(entity, modelEntity)) {
+            sql = modelEntity.getStatements(datasourceInfo).getDeleteByPrimaryKeySql();
+        } else {
+            sql = "DELETE FROM " + modelEntity.getTableName(datasourceInfo) + " WHERE " +
+                    makeWhereStringFromFields(modelEntity.getPksCopy(), entity, "AND");
+        }
 
         SQLProcessor sqlP = new PassThruSQLProcessor(helperName, connection);
         int retVal;
@@ -1494,7 +2297,12 @@ public class GenericDAO {
         if (entityCondition != null) {
             entityCondWhereString = entityCondition.makeWhereString(modelEntity, whereEntityConditionParams);
         }
-        final String sql = countHelper.buildCountSelectStatement(tableName, columnName, entityCondWhereString, distinct);
+        final String sql;
+        if (columnName == null && entityCondWhereString == null) {
+            sql = modelEntity.getStatements(datasourceInfo).getCountAllSql();
+        } else {
+            sql = countHelper.buildCountSelectStatement(tableName, columnName, entityCondWhereString, distinct);
+        }
 
         if (verboseOn) {
             // put this inside an if statement so that we don't have to generate the string when not used...
@@ -36,6 +36,7 @@ import org.ofbiz.core.entity.model.ModelGroupReader;
 import org.ofbiz.core.entity.model.ModelKeyMap;
 import org.ofbiz.core.entity.model.ModelReader;
 import org.ofbiz.core.entity.model.ModelRelation;
+import org.ofbiz.core.util.CacheStatistics;
 import org.ofbiz.core.util.Debug;
 import org.ofbiz.core.util.UtilCache;
 import org.ofbiz.core.util.UtilMisc;
@@ -48,6 +49,8 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,7 +61,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.ofbiz.core.entity.EntityOperator.AND;
 import static org.ofbiz.core.entity.EntityOperator.LIKE;
@@ -84,6 +92,7 @@ public class GenericDelegator implements DelegatorInterface {
     public static final String module = GenericDelegator.class.getName();
 
     private static final String MESSAGE = "Database is locked";
+    private static final long DEFAULT_MISSING_PRIMARY_KEY_CACHE_SIZE = 10000;
 
     // A cache of delegator names to instances
     private static final LoadingCache<String, GenericDelegator> delegatorCache =
@@ -107,6 +116,17 @@ public class GenericDelegator implements DelegatorInterface {
         return delegatorCache.getUnchecked(delegatorName);
     }
 
+    /**
+     * Returns the delegator with the given name if it has been made already, without making it.
+     *
+     * @param delegatorName the name of the server configuration that corresponds to this delegator
+     * @return null if there is no such delegator yet
+     * @since 1.2.6
+     */
+    static GenericDelegator getGenericDelegatorIfPresent(final String delegatorName) {
+        return delegatorCache.getIfPresent(delegatorName);
+    }
+
     /**
      * Removes any references to the delegator with the given name.
      *
@@ -136,13 +156,41 @@ public class GenericDelegator implements DelegatorInterface {
     protected ModelReader modelReader;
     protected SequenceUtil sequencer;
     protected String delegatorName;
-    protected UtilCache<GenericEntity, GenericValue> primaryKeyCache;
-    protected UtilCache<GenericPK, List<GenericValue>> andCache;
+    protected UtilCache<EntityCacheKey, GenericValue> primaryKeyCache;
+    protected UtilCache<EntityCacheKey, List<GenericValue>> andCache;
     protected UtilCache<String, List<GenericValue>> allCache;
+    protected UtilCache<EntityConditionCacheKey, List<GenericValue>> conditionCache;
+    // the caches above are shared by the entities without a cache policy of their own, the segments hold the others;
+    // see ModelEntity.hasOwnCachePolicy()
+    protected EntityCacheSegments<EntityCacheKey, GenericValue> primaryKeyCacheSegments;
+    protected EntityCacheSegments<EntityCacheKey, List<GenericValue>> andCacheSegments;
+    protected EntityCacheSegments<String, List<GenericValue>> allCacheSegments;
+    protected EntityCacheSegments<EntityConditionCacheKey, List<GenericValue>> conditionCacheSegments;
+    // primary keys known to have no row, mapped to when that knowledge expires; see ModelEntity.getMissingCacheTtl()
+    protected UtilCache<EntityCacheKey, Long> missingPrimaryKeyCache;
+
+    // the statistics of the cached finds of each entity, across all the caches
+    protected final ConcurrentMap<String, CacheStatistics> entityCacheStatistics =
+            new ConcurrentHashMap<String, CacheStatistics>();
 
     // keeps a list of field key sets used in the by and cache, a Set (of Sets of fieldNames) for each entityName
     protected Map<String, Set<Set<String>>> andCacheFieldSets = new HashMap<String, Set<Set<String>>>();
 
+    // the keys of the by and cache by entity, field and value, to find the lines that a changed value affects
+    protected final AndCacheIndex andCacheIndex = new AndCacheIndex();
+
+    // the keys of the condition cache by entity, to find the lines that a changed value affects
+    protected final EntityConditionCacheIndex conditionCacheIndex = new EntityConditionCacheIndex();
+
+    // coalesce concurrent misses on the same line, so that only one of them goes to the database
+    protected final SingleFlightLoader<EntityCacheKey, GenericValue> primaryKeyCacheLoader =
+            new SingleFlightLoader<EntityCacheKey, GenericValue>(DelegatorInfo.DEFAULT_CACHE_LOAD_WAIT_MILLIS);
+    protected final SingleFlightLoader<List<?>, List<GenericValue>> andCacheLoader =
+            new SingleFlightLoader<List<?>, List<GenericValue>>(DelegatorInfo.DEFAULT_CACHE_LOAD_WAIT_MILLIS);
+    protected final SingleFlightLoader<EntityConditionCacheKey, List<GenericValue>> conditionCacheLoader =
+            new SingleFlightLoader<EntityConditionCacheKey, List<GenericValue>>(
+                    DelegatorInfo.DEFAULT_CACHE_LOAD_WAIT_MILLIS);
+
     /**
      * Contructor is protected to enforce creation through the factory method.
      */
@@ -161,9 +209,26 @@ public class GenericDelegator implements DelegatorInterface {
         this.delegatorName = delegatorName;
         this.modelReader = ModelReader.getModelReader(delegatorName);
         this.modelGroupReader = ModelGroupReader.getModelGroupReader(delegatorName);
-        this.primaryKeyCache = new UtilCache<GenericEntity, GenericValue>("entity.xFindByPrimaryKey." + delegatorName, 0, 0, true);
-        this.allCache = new UtilCache<String, List<GenericValue>>("entity.FindAll." + delegatorName, 0, 0, true);
-        this.andCache = new UtilCache<GenericPK, List<GenericValue>>("entity.FindByAnd." + delegatorName, 0, 0, true);
+        // the list caches can hold anything from no rows to whole tables in one line, so they can (and should) be
+        // bounded by their estimated size in cache.properties, e.g. entity.FindByAnd.default.maxWeight=50000000
+        final EntityCacheWeigher cacheWeigher = new EntityCacheWeigher();
+        this.primaryKeyCacheSegments = new EntityCacheSegments<EntityCacheKey, GenericValue>(
+                "entity.xFindByPrimaryKey." + delegatorName, true, null, null);
+        this.allCacheSegments = new EntityCacheSegments<String, List<GenericValue>>(
+                "entity.FindAll." + delegatorName, true, cacheWeigher, null);
+        this.andCacheSegments = new EntityCacheSegments<EntityCacheKey, List<GenericValue>>(
+                "entity.FindByAnd." + delegatorName, true, cacheWeigher, andCacheIndex);
+        this.conditionCacheSegments = new EntityCacheSegments<EntityConditionCacheKey, List<GenericValue>>(
+                "entity.FindByCondition." + delegatorName, true, cacheWeigher, conditionCacheIndex);
+        this.primaryKeyCache = primaryKeyCacheSegments.getSharedCache();
+        this.allCache = allCacheSegments.getSharedCache();
+        this.andCache = andCacheSegments.getSharedCache();
+        this.conditionCache = conditionCacheSegments.getSharedCache();
+        this.missingPrimaryKeyCache = new UtilCache<EntityCacheKey, Long>(
+                "entity.MissingPrimaryKey." + delegatorName, DEFAULT_MISSING_PRIMARY_KEY_CACHE_SIZE, 0, false);
+        this.primaryKeyCacheLoader.setWaitMillis(getDelegatorInfo().cacheLoadWaitMillis);
+        this.andCacheLoader.setWaitMillis(getDelegatorInfo().cacheLoadWaitMillis);
+        this.conditionCacheLoader.setWaitMillis(getDelegatorInfo().cacheLoadWaitMillis);
 
         if (!isLocked()) {
             initialiseAndCheckDatabase();
@@ -178,8 +243,16 @@ public class GenericDelegator implements DelegatorInterface {
 
             try {
                 Class<?> dccClass = loader.loadClass(distributedCacheClearClassName);
-                this.distributedCacheClear = (DistributedCacheClear) dccClass.newInstance();
-                this.distributedCacheClear.setDelegator(this, getDelegatorInfo().distributedCacheClearUserLoginId);
+                DistributedCacheClear distributedCacheClear = (DistributedCacheClear) dccClass.newInstance();
+                if (getDelegatorInfo().distributedCacheClearFlushMillis > 0) {
+                    // take the remote calls off the write path, batching them up
+                    distributedCacheClear = new BatchingDistributedCacheClear(distributedCacheClear,
+                            getDelegatorInfo().distributedCacheClearFlushMillis,
+                            getDelegatorInfo().distributedCacheClearBatchSize,
+                            getDelegatorInfo().distributedCacheClearEntityThreshold);
+                }
+                distributedCacheClear.setDelegator(this, getDelegatorInfo().distributedCacheClearUserLoginId);
+                this.distributedCacheClear = distributedCacheClear;
             } catch (ClassNotFoundException e) {
                 Debug.logWarning(e, "DistributedCacheClear class with name " + distributedCacheClearClassName +
                         " was not found, distributed cache clearing will be disabled");
@@ -557,6 +630,8 @@ public class GenericDelegator implements DelegatorInterface {
 
         if (value != null) {
             value.setDelegator(this);
+            // even if the caller doesn't want the caches cleared, the row must not stay hidden by the missing cache
+            missingPrimaryKeyCache.remove(EntityCacheKey.ofPrimaryKey(value));
             if (value.lockEnabled()) {
                 refresh(value, doCacheClear);
             } else if (doCacheClear) {
@@ -592,6 +667,81 @@ public class GenericDelegator implements DelegatorInterface {
         return create(new GenericValue(primaryKey), doCacheClear);
     }
 
+    /**
+     * Creates the Entities from the List of GenericValue instances in the datasource, sending them to the database in
+     * batches rather than one statement per value.
+     * <br>These inserts all happen in one transaction, so they will either all succeed or all fail,
+     * if the data source supports transactions.
+     *
+     * @param values List of GenericValue instances containing the entities to create
+     * @return int representing number of rows affected by this operation
+     */
+    public int createAll(final List<? extends GenericValue> values) throws GenericEntityException {
+        checkIfLocked();
+        return createAll(values, true);
+    }
+
+    /**
+     * Creates the Entities from the List of GenericValue instances in the datasource, sending them to the database in
+     * batches rather than one statement per value.
+     * <br>These inserts all happen in one transaction, so they will either all succeed or all fail,
+     * if the data source supports transactions.
+     *
+     * @param values       List of GenericValue instances containing the entities to create
+     * @param doCacheClear whether to automatically clear cache entries related to this operation
+     * @return int representing number of rows affected by this operation
+     */
+    public int createAll(final List<? extends GenericValue> values, final boolean doCacheClear)
+            throws GenericEntityException {
+        checkIfLocked();
+        if (values == null) {
+            return 0;
+        }
+
+        final Map<String, List<GenericValue>> valuesPerHelper = getValuesPerHelper(values);
+        boolean beganTransaction = false;
+        int numberCreated = 0;
+
+        try {
+            // as with storeAll, only use the transaction manager if more than one datasource is involved
+            if (valuesPerHelper.size() > 1) {
+                beganTransaction = TransactionUtil.begin();
+            }
+
+            for (Map.Entry<String, List<GenericValue>> helperValues : valuesPerHelper.entrySet()) {
+                final GenericHelper helper = GenericHelperFactory.getHelper(helperValues.getKey());
+                for (GenericValue value : helperValues.getValue()) {
+                    value.setDelegator(this);
+                }
+                numberCreated += helper.createAll(helperValues.getValue());
+            }
+
+            // only commit the transaction if we started one...
+            TransactionUtil.commit(beganTransaction);
+        } catch (GenericEntityException e) {
+            try {
+                // only rollback the transaction if we started one...
+                TransactionUtil.rollback(beganTransaction);
+            } catch (GenericEntityException e2) {
+                Debug.logError("[GenericDelegator.createAll] Could not rollback transaction: ", module);
+                Debug.logError(e2, module);
+            }
+            // after rolling back, rethrow the exception
+            throw e;
+        }
+
+        for (GenericValue value : values) {
+            // even if the caller doesn't want the caches cleared, the rows must not stay hidden by the missing cache
+            missingPrimaryKeyCache.remove(EntityCacheKey.ofPrimaryKey(value));
+            if (value.lockEnabled()) {
+                refresh(value, doCacheClear);
+            } else if (doCacheClear) {
+                clearCacheLine(value);
+            }
+        }
+        return numberCreated;
+    }
+
     /**
      * Find a Generic Entity by its Primary Key.
      *
@@ -626,14 +776,39 @@ public class GenericDelegator implements DelegatorInterface {
      */
     public GenericValue findByPrimaryKeyCache(final GenericPK primaryKey) throws GenericEntityException {
         checkIfLocked();
-        GenericValue value = getFromPrimaryKeyCache(primaryKey);
-        if (value == null) {
-            value = findByPrimaryKey(primaryKey);
-            if (value != null) {
-                putInPrimaryKeyCache(primaryKey, value);
-            }
-        }
-        return value;
+        final GenericValue value = getFromPrimaryKeyCache(primaryKey);
+        if (value != null || isKnownMissing(primaryKey)) {
+            recordCacheHit(primaryKey.getModelEntity());
+            return value;
+        }
+        recordCacheMiss(primaryKey.getModelEntity());
+        final UtilCache<EntityCacheKey, GenericValue> cache = primaryKeyCacheSegments.get(primaryKey.getModelEntity());
+        if (TransactionUtil.isTransactionActive()) {
+            // the transaction may see rows that nobody else can yet, so its reads can't be shared
+            final GenericValue loadedValue =
+                    timedLoad(cache, primaryKey.getModelEntity(), () -> findByPrimaryKey(primaryKey));
+            putInPrimaryKeyCache(primaryKey, loadedValue);
+            return loadedValue;
+        }
+        final EntityCacheKey cacheKey = EntityCacheKey.of(primaryKey);
+        return primaryKeyCacheLoader.load(primaryKey.getEntityName(), cacheKey,
+                () -> timedLoad(cache, primaryKey.getModelEntity(), () -> findByPrimaryKey(primaryKey)),
+                new SingleFlightLoader.CacheWriter<GenericValue>() {
+                    public void write(final GenericValue loadedValue) {
+                        if (loadedValue == null) {
+                            putInMissingPrimaryKeyCache(primaryKey);
+                        } else {
+                            putInPrimaryKeyCache(primaryKey, loadedValue);
+                        }
+                    }
+
+                    public void remove(final GenericValue loadedValue) {
+                        cache.remove(cacheKey);
+                        if (missingPrimaryKeyCache != null) {
+                            missingPrimaryKeyCache.remove(cacheKey);
+                        }
+                    }
+                });
     }
 
     /**
@@ -704,8 +879,6 @@ public class GenericDelegator implements DelegatorInterface {
         if (primaryKeys == null) {
             return null;
         }
-        List<GenericValue> results = new LinkedList<GenericValue>();
-
         // from the delegator level this is complicated because different GenericPK
         // objects in the list may correspond to different helpers
         final Map<String, List<GenericPK>> pksPerHelper = new HashMap<String, List<GenericPK>>();
@@ -721,11 +894,52 @@ public class GenericDelegator implements DelegatorInterface {
             pks.add(primaryKey);
         }
 
+        final PrimaryKeyMatcher valuesByPrimaryKey = new PrimaryKeyMatcher(primaryKeys);
         for (Map.Entry<String, List<GenericPK>> entry : pksPerHelper.entrySet()) {
             String helperName = entry.getKey();
             GenericHelper helper = GenericHelperFactory.getHelper(helperName);
             List<GenericValue> values = helper.findAllByPrimaryKeys(entry.getValue());
-            results.addAll(values);
+            absorbList(values);
+            matchValues(entry.getValue(), values, valuesByPrimaryKey);
+        }
+        return inOrderOf(primaryKeys, valuesByPrimaryKey);
+    }
+
+    /**
+     * Matches the values a helper found to the keys they were found for. If one of them matches none of the keys, as
+     * the data source compares keys differently, e.g. ignoring case, the keys without a value are found one at a time,
+     * so that a key is only left without a value if it has no row.
+     */
+    private void matchValues(final List<GenericPK> primaryKeys, final List<GenericValue> values,
+                             final PrimaryKeyMatcher valuesByPrimaryKey) throws GenericEntityException {
+        boolean allMatched = true;
+        for (GenericValue value : values) {
+            allMatched &= valuesByPrimaryKey.add(value);
+        }
+        if (allMatched) {
+            return;
+        }
+        for (GenericPK primaryKey : primaryKeys) {
+            if (valuesByPrimaryKey.get(primaryKey) == null) {
+                final GenericValue value = findByPrimaryKey(primaryKey);
+                if (value != null) {
+                    valuesByPrimaryKey.put(primaryKey, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the values of the given primary keys, in the order of the keys, leaving out the keys without a value
+     */
+    private static List<GenericValue> inOrderOf(final Collection<? extends GenericPK> primaryKeys,
+                                                final PrimaryKeyMatcher valuesByPrimaryKey) {
+        final List<GenericValue> results = new ArrayList<GenericValue>(primaryKeys.size());
+        for (GenericPK primaryKey : primaryKeys) {
+            final GenericValue value = valuesByPrimaryKey.get(primaryKey);
+            if (value != null) {
+                results.add(value);
+            }
         }
         return results;
     }
@@ -745,7 +959,7 @@ public class GenericDelegator implements DelegatorInterface {
         if (primaryKeys == null) {
             return null;
         }
-        final List<GenericValue> results = new LinkedList<GenericValue>();
+        final PrimaryKeyMatcher valuesByPrimaryKey = new PrimaryKeyMatcher(primaryKeys);
 
         // from the delegator level this is complicated because different GenericPK
         // objects in the list may correspond to different helpers
@@ -757,8 +971,12 @@ public class GenericDelegator implements DelegatorInterface {
 
             if (value != null) {
                 // it is in the cache, so just put the cached value in the results
-                results.add(value);
+                recordCacheHit(primaryKey.getModelEntity());
+                valuesByPrimaryKey.put(primaryKey, value);
+            } else if (isKnownMissing(primaryKey)) {
+                recordCacheHit(primaryKey.getModelEntity());
             } else {
+                recordCacheMiss(primaryKey.getModelEntity());
                 // is not in the cache, so put in a list for a call to the helper
                 final String helperName = getEntityHelperName(primaryKey.getEntityName());
                 List<GenericPK> pks = pksPerHelper.get(helperName);
@@ -773,11 +991,25 @@ public class GenericDelegator implements DelegatorInterface {
         for (final Map.Entry<String, List<GenericPK>> stringListEntry : pksPerHelper.entrySet()) {
             final String helperName = stringListEntry.getKey();
             final GenericHelper helper = GenericHelperFactory.getHelper(helperName);
+            final long start = System.nanoTime();
             final List<GenericValue> values = helper.findAllByPrimaryKeys(stringListEntry.getValue());
+            // one query loads the lot, so share its time between the keys
+            final long nanosPerKey = (System.nanoTime() - start) / stringListEntry.getValue().size();
+            for (GenericPK primaryKey : stringListEntry.getValue()) {
+                recordLoad(primaryKeyCacheSegments.get(primaryKey.getModelEntity()), primaryKey.getModelEntity(),
+                        nanosPerKey);
+            }
+            absorbList(values);
             putAllInPrimaryKeyCache(values);
-            results.addAll(values);
+            matchValues(stringListEntry.getValue(), values, valuesByPrimaryKey);
+            for (GenericPK primaryKey : stringListEntry.getValue()) {
+                // matchValues has found the value of every key that has a row
+                if (valuesByPrimaryKey.get(primaryKey) == null) {
+                    putInMissingPrimaryKeyCache(primaryKey);
+                }
+            }
         }
-        return results;
+        return inOrderOf(primaryKeys, valuesByPrimaryKey);
     }
 
     /**
@@ -827,12 +1059,20 @@ public class GenericDelegator implements DelegatorInterface {
     public List<GenericValue> findAllCache(final String entityName, final List<String> orderBy)
             throws GenericEntityException {
         checkIfLocked();
+        final ModelEntity modelEntity = getModelEntity(entityName);
+        if (modelEntity == null) {
+            // let findAll report it
+            return findAll(entityName, orderBy);
+        }
         List<GenericValue> lst = getFromAllCache(entityName);
-        if (lst == null) {
-            lst = findAll(entityName, orderBy);
-            if (lst != null) {
-                putInAllCache(entityName, lst);
-            }
+        if (lst != null) {
+            recordCacheHit(modelEntity);
+            return lst;
+        }
+        recordCacheMiss(modelEntity);
+        lst = timedLoad(allCacheSegments.get(modelEntity), modelEntity, () -> findAll(entityName, orderBy));
+        if (lst != null) {
+            putInAllCache(entityName, lst);
         }
         return lst;
     }
@@ -962,14 +1202,40 @@ public class GenericDelegator implements DelegatorInterface {
             throws GenericEntityException {
         checkIfLocked();
         final ModelEntity modelEntity = getModelReader().getModelEntity(entityName);
-        List<GenericValue> lst = getFromAndCache(modelEntity, fields);
-        if (lst == null) {
-            lst = findByAnd(modelEntity, fields, orderBy);
-            if (lst != null) {
-                putInAndCache(modelEntity, fields, lst);
-            }
-        }
-        return lst;
+        final List<GenericValue> lst = getFromAndCache(modelEntity, fields);
+        if (lst != null) {
+            recordCacheHit(modelEntity);
+            return lst;
+        }
+        recordCacheMiss(modelEntity);
+        final UtilCache<EntityCacheKey, List<GenericValue>> cache = andCacheSegments.get(modelEntity);
+        if (TransactionUtil.isTransactionActive()) {
+            // the transaction may see rows that nobody else can yet, so its reads can't be shared
+            final List<GenericValue> values =
+                    timedLoad(cache, modelEntity, () -> findByAnd(modelEntity, fields, orderBy));
+            putInAndCache(modelEntity, fields, values);
+            return values;
+        }
+        // the lines are keyed on the fields only, but callers asking for a different order can't share a load
+        final EntityCacheKey cacheKey = EntityCacheKey.of(new GenericPK(modelEntity, fields));
+        final List<?> loadKey = Arrays.asList(cacheKey, orderBy);
+        return andCacheLoader.load(entityName, loadKey,
+                () -> {
+                    final List<GenericValue> values =
+                            timedLoad(cache, modelEntity, () -> findByAnd(modelEntity, fields, orderBy));
+                    // the list may be handed to several callers, so it must be as immutable as the cached one
+                    return values == null ? null : Collections.unmodifiableList(values);
+                },
+                new SingleFlightLoader.CacheWriter<List<GenericValue>>() {
+                    public void write(final List<GenericValue> values) {
+                        putInAndCache(modelEntity, fields, values);
+                    }
+
+                    public void remove(final List<GenericValue> values) {
+                        // the index drops the key through its removal listener
+                        cache.remove(cacheKey);
+                    }
+                });
     }
 
     /**
@@ -1087,6 +1353,75 @@ public class GenericDelegator implements DelegatorInterface {
         return list;
     }
 
+    /**
+     * Finds Generic Entity records by the given condition, looking first in the cache. The cache line is keyed
+     * on a normalized form of the condition, the fields to select and the order by; it is cleared when a value
+     * of the entity that matches the condition, before or after the change, is created, stored or removed
+     * through this delegator.
+     * <p>
+     * Only conditions that can be evaluated in memory are cached, i.e. combinations of {@link EntityExpr},
+     * {@link EntityExprList}, {@link EntityConditionList} and {@link EntityFieldMap} on plain values; the
+     * results of any other condition (such as an {@link EntityWhereString}) are read from the database every
+     * time, exactly like {@link #findByCondition(String, EntityCondition, Collection, List)}.
+     * </p>
+     *
+     * @param entityName      The Name of the Entity as defined in the entity XML file
+     * @param entityCondition The EntityCondition object that specifies how to constrain this query
+     * @param fieldsToSelect  The fields of the named entity to get from the database; if empty or null all fields will be retrieved
+     * @param orderBy         The fields of the named entity to order the query by; optionally add " ASC" for ascending or " DESC" for descending
+     * @return List of GenericValue objects representing the result
+     */
+    public List<GenericValue> findByConditionCache(final String entityName, final EntityCondition entityCondition,
+                                                   final Collection<String> fieldsToSelect, final List<String> orderBy)
+            throws GenericEntityException {
+        checkIfLocked();
+        final ModelEntity modelEntity = getModelReader().getModelEntity(entityName);
+        final EntityConditionCacheKey cacheKey = modelEntity.getNeverCache() ? null :
+                EntityConditionCacheKey.create(entityName, entityCondition, fieldsToSelect, orderBy);
+        if (cacheKey == null) {
+            return findByCondition(entityName, entityCondition, fieldsToSelect, orderBy);
+        }
+
+        final List<GenericValue> lst = getFromConditionCache(cacheKey);
+        if (lst != null) {
+            recordCacheHit(modelEntity);
+            return lst;
+        }
+        recordCacheMiss(modelEntity);
+        final UtilCache<EntityConditionCacheKey, List<GenericValue>> cache = conditionCacheSegments.get(modelEntity);
+        if (TransactionUtil.isTransactionActive()) {
+            // the transaction may see rows that nobody else can yet, so its reads can't be shared
+            final List<GenericValue> values = timedLoad(cache, modelEntity,
+                    () -> findByCondition(entityName, entityCondition, fieldsToSelect, orderBy));
+            if (values == null) {
+                return null;
+            }
+            // as for the other list caches, the list is immutable but the values in it are not
+            final List<GenericValue> immutableValues = Collections.unmodifiableList(values);
+            putInConditionCache(cacheKey, immutableValues);
+            return immutableValues;
+        }
+        return conditionCacheLoader.load(entityName, cacheKey,
+                () -> {
+                    final List<GenericValue> values = timedLoad(cache, modelEntity,
+                            () -> findByCondition(entityName, entityCondition, fieldsToSelect, orderBy));
+                    // as for the other list caches, the list is immutable but the values in it are not
+                    return values == null ? null : Collections.unmodifiableList(values);
+                },
+                new SingleFlightLoader.CacheWriter<List<GenericValue>>() {
+                    public void write(final List<GenericValue> values) {
+                        if (values != null) {
+                            putInConditionCache(cacheKey, values);
+                        }
+                    }
+
+                    public void remove(final List<GenericValue> values) {
+                        // the index drops the key through its removal listener
+                        cache.remove(cacheKey);
+                    }
+                });
+    }
+
     /**
      * Returns the count of the results that match all of the specified expressions (i.e. combined using AND).
      *
@@ -1240,6 +1575,53 @@ public class GenericDelegator implements DelegatorInterface {
         return eli;
     }
 
+    /**
+     * Finds the values of the given entity that match the given condition, as a stream read from a database cursor,
+     * so that they don't all have to fit in memory at once. The cursor is closed when the stream is, or once its last
+     * value has been read; use the stream in a try-with-resources block so it's also closed when not read to the end.
+     * <p>
+     * The stream can be made parallel: one thread at a time reads batches of values from the cursor, and the work
+     * downstream of the stream runs on the other threads.
+     * </p>
+     *
+     * @param entityName      the name of the entity to find
+     * @param entityCondition the condition the values must match, or null for all of them
+     * @param fieldsToSelect  the fields to read, or null for all of them
+     * @param orderBy         the fields to order the values by, optionally with " ASC" or " DESC"; can be null
+     * @param findOptions     the options of the query, or null for the defaults
+     * @return a sequential stream of the values, which holds a database connection until it's closed
+     * @throws GenericEntityException if the query fails
+     * @since 1.2.6
+     */
+    public Stream<GenericValue> stream(final String entityName, final EntityCondition entityCondition,
+                                       final Collection<String> fieldsToSelect, final List<String> orderBy,
+                                       final EntityFindOptions findOptions) throws GenericEntityException {
+        checkIfLocked();
+        final EntityListIteratorSpliterator spliterator = new EntityListIteratorSpliterator(
+                findListIteratorByCondition(entityName, entityCondition, null, fieldsToSelect, orderBy, findOptions));
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Reads every value of the given entity that matches the given condition, by splitting its primary key into
+     * ranges that are read in parallel, each on a connection of its own; see {@link ParallelScan}, which also has
+     * options for the number of threads, retries and progress.
+     *
+     * @param entityName      the name of the entity to read
+     * @param entityCondition the condition the values must match, or null for all of them
+     * @param partitions      the number of ranges to split the primary key into
+     * @param consumer        the consumer of the values, which is called from several threads at once
+     * @return the partitions that were read, with the number of values in each
+     * @throws GenericEntityException if a partition still fails after being retried
+     * @since 1.2.6
+     */
+    public List<ParallelScan.Partition> parallelScan(final String entityName, final EntityCondition entityCondition,
+                                                     final int partitions, final Consumer<? super GenericValue> consumer)
+            throws GenericEntityException {
+        checkIfLocked();
+        return new ParallelScan(this, entityName, entityCondition, partitions).run(consumer);
+    }
+
     /**
      * Remove a Generic Entity corresponding to the primaryKey.
      *
@@ -1699,9 +2081,9 @@ public class GenericDelegator implements DelegatorInterface {
         if (newValue == null) {
             throw new IllegalArgumentException("[GenericDelegator.refresh] could not refresh value: " + value);
         }
-        value.fields = newValue.fields;
+        value.resetFields(newValue.fields);
+        value.copyOriginalDbValues();
         value.setDelegator(this);
-        value.modified = false;
     }
 
     /**
@@ -1772,25 +2154,62 @@ public class GenericDelegator implements DelegatorInterface {
     public int storeAll(final List<? extends GenericValue> values, final boolean doCacheClear)
             throws GenericEntityException {
         checkIfLocked();
+        return storeAll(values, doCacheClear, false);
+    }
+
+    /**
+     * Inserts the given value, or updates its row if it exists, with the database's own insert-or-update statement
+     * where there is one, so that the row doesn't have to be read first.
+     *
+     * @param value the GenericValue to store
+     * @return int representing number of rows affected by this operation
+     * @see #upsertAll(List, boolean)
+     */
+    public int upsert(final GenericValue value) throws GenericEntityException {
+        checkIfLocked();
+        return upsertAll(Collections.singletonList(value), true);
+    }
+
+    /**
+     * Store the Entities from the List GenericValue instances to the persistent store like storeAll, but with the
+     * database's own insert-or-update statement where there is one.
+     *
+     * @param values List of GenericValue instances containing the entities to store
+     * @return int representing number of rows affected by this operation
+     * @see #upsertAll(List, boolean)
+     */
+    public int upsertAll(final List<? extends GenericValue> values) throws GenericEntityException {
+        checkIfLocked();
+        return upsertAll(values, true);
+    }
+
+    /**
+     * Store the Entities from the List GenericValue instances to the persistent store like storeAll, but with the
+     * database's own insert-or-update statement where there is one, e.g. MERGE or INSERT ... ON CONFLICT.
+     * <br>This saves reading each row before writing it, and two callers storing the same new row at the same time
+     * can't both try to insert it. Existing rows get all the fields the values have, not just those that changed.
+     * <br>Values of views or of entities with optimistic locking, and all values if the database has no such
+     * statement, are stored as storeAll would.
+     *
+     * @param values       List of GenericValue instances containing the entities to store
+     * @param doCacheClear whether to automatically clear cache entries related to this operation
+     * @return int representing number of rows affected by this operation
+     */
+    public int upsertAll(final List<? extends GenericValue> values, final boolean doCacheClear)
+            throws GenericEntityException {
+        checkIfLocked();
+        return storeAll(values, doCacheClear, true);
+    }
+
+    private int storeAll(final List<? extends GenericValue> values, final boolean doCacheClear, final boolean upsert)
+            throws GenericEntityException {
         if (values == null) {
             return 0;
         }
 
         // from the delegator level this is complicated because different GenericValue
         // objects in the list may correspond to different helpers
-        Map<String, List<GenericValue>> valuesPerHelper = new HashMap<String, List<GenericValue>>();
-        Iterator<? extends GenericValue> viter = values.iterator();
-
-        while (viter.hasNext()) {
-            GenericValue value = viter.next();
-            String helperName = getEntityHelperName(value.getEntityName());
-            List<GenericValue> helperValues = valuesPerHelper.get(helperName);
-            if (helperValues == null) {
-                helperValues = new LinkedList<GenericValue>();
-                valuesPerHelper.put(helperName, helperValues);
-            }
-            helperValues.add(value);
-        }
+        Map<String, List<GenericValue>> valuesPerHelper = getValuesPerHelper(values);
 
         boolean beganTransaction = false;
         int numberChanged = 0;
@@ -1810,8 +2229,17 @@ public class GenericDelegator implements DelegatorInterface {
 
                 if (doCacheClear) {
                     clearAllCacheLinesByValue(stringListEntry.getValue());
+                } else {
+                    // storing may create rows, which must not stay hidden by the missing cache
+                    for (GenericValue value : stringListEntry.getValue()) {
+                        missingPrimaryKeyCache.remove(EntityCacheKey.ofPrimaryKey(value));
+                    }
+                }
+                if (upsert) {
+                    numberChanged += helper.upsertAll(stringListEntry.getValue());
+                } else {
+                    numberChanged += helper.storeAll(stringListEntry.getValue());
                 }
-                numberChanged += helper.storeAll(stringListEntry.getValue());
             }
 
             // only commit the transaction if we started one...
@@ -1829,7 +2257,7 @@ public class GenericDelegator implements DelegatorInterface {
         }
 
         // Refresh the valueObjects to get the new version
-        viter = values.iterator();
+        Iterator<? extends GenericValue> viter = values.iterator();
         while (viter.hasNext()) {
             GenericValue value = viter.next();
             if (value.lockEnabled()) {
@@ -1840,6 +2268,20 @@ public class GenericDelegator implements DelegatorInterface {
         return numberChanged;
     }
 
+    private Map<String, List<GenericValue>> getValuesPerHelper(final List<? extends GenericValue> values) {
+        final Map<String, List<GenericValue>> valuesPerHelper = new HashMap<String, List<GenericValue>>();
+        for (GenericValue value : values) {
+            String helperName = getEntityHelperName(value.getEntityName());
+            List<GenericValue> helperValues = valuesPerHelper.get(helperName);
+            if (helperValues == null) {
+                helperValues = new LinkedList<GenericValue>();
+                valuesPerHelper.put(helperName, helperValues);
+            }
+            helperValues.add(value);
+        }
+        return valuesPerHelper;
+    }
+
     /**
      * Remove the Entities from the List from the persistent store.
      * <br>The List contains GenericEntity objects, can be either GenericPK or GenericValue.
@@ -1940,16 +2382,96 @@ public class GenericDelegator implements DelegatorInterface {
 
     public void clearAllCaches(boolean distribute) {
         checkIfLocked();
-        if (allCache != null) allCache.clear();
-        if (andCache != null) andCache.clear();
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.allInvalidated(() -> clearAllCaches(distribute));
+            return;
+        }
+        // before removing the lines, so that no load in flight can put back what it read before the change
+        primaryKeyCacheLoader.invalidated();
+        andCacheLoader.invalidated();
+        conditionCacheLoader.invalidated();
+        if (allCacheSegments != null) allCacheSegments.clear();
+        if (andCacheSegments != null) andCacheSegments.clear();
         if (andCacheFieldSets != null) andCacheFieldSets.clear();
-        if (primaryKeyCache != null) primaryKeyCache.clear();
+        if (conditionCacheSegments != null) conditionCacheSegments.clear();
+        if (primaryKeyCacheSegments != null) primaryKeyCacheSegments.clear();
+        if (missingPrimaryKeyCache != null) missingPrimaryKeyCache.clear();
 
         if (distribute && distributedCacheClear != null) {
             distributedCacheClear.clearAllCaches();
         }
     }
 
+    /**
+     * Removes all the CACHED lines of the given entity from all of the caches, which is cheaper than clearing them one
+     * at a time when many of them have changed.
+     *
+     * @param entityName The Name of the Entity as defined in the entity XML file
+     */
+    public void clearCacheLines(final String entityName) {
+        checkIfLocked();
+        clearCacheLines(entityName, true);
+    }
+
+    public void clearCacheLines(final String entityName, final boolean distribute) {
+        checkIfLocked();
+        final ModelEntity entity = getModelEntity(entityName);
+        if (entity == null) {
+            throw new IllegalArgumentException(
+                    "[GenericDelegator.clearCacheLines] could not find entity for entityName: " + entityName);
+        }
+        // if never cached, then don't bother clearing
+        if (entity.getNeverCache()) {
+            return;
+        }
+
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.invalidated(entityName, () -> clearCacheLines(entityName, distribute));
+            return;
+        }
+
+        recordCacheInvalidation(entity, "clearCacheLines");
+        primaryKeyCacheLoader.invalidated(entityName);
+        andCacheLoader.invalidated(entityName);
+        if (allCacheSegments != null) {
+            allCacheSegments.get(entity).remove(entityName);
+        }
+        clearConditionCacheLines(entity);
+        if (andCacheSegments != null) {
+            final UtilCache<EntityCacheKey, List<GenericValue>> entityAndCache = andCacheSegments.get(entity);
+            // the index drops the keys through its removal listener
+            for (EntityCacheKey andCacheKey : andCacheIndex.getKeys(entityName)) {
+                entityAndCache.remove(andCacheKey);
+            }
+        }
+        if (primaryKeyCacheSegments != null) {
+            if (primaryKeyCacheSegments.isSegmented(entity)) {
+                // the entity has the segment to itself
+                primaryKeyCacheSegments.get(entity).clear();
+            } else {
+                // the shared cache isn't indexed by entity, but this is only done for large batches of changes
+                removeEntityLines(primaryKeyCache, entityName);
+            }
+        }
+        if (missingPrimaryKeyCache != null) {
+            removeEntityLines(missingPrimaryKeyCache, entityName);
+        }
+
+        if (distribute && distributedCacheClear != null) {
+            distributedCacheClear.distributedClearCacheLines(entityName);
+        }
+    }
+
+    private static void removeEntityLines(final UtilCache<EntityCacheKey, ?> cache, final String entityName) {
+        for (EntityCacheKey key : cache.getCacheLineKeys()) {
+            if (entityName.equals(key.getEntityName())) {
+                cache.remove(key);
+            }
+        }
+    }
+
     /**
      * Remove a CACHED Generic Entity (List) from the cache, either a PK, ByAnd, or All
      *
@@ -1959,16 +2481,22 @@ public class GenericDelegator implements DelegatorInterface {
     public void clearCacheLine(String entityName, Map<String, ?> fields) {
         checkIfLocked();
         // if no fields passed, do the all cache quickly and return
-        if (fields == null && allCache != null) {
-            allCache.remove(entityName);
-            return;
-        }
-
         ModelEntity entity = getModelEntity(entityName);
         if (entity == null) {
             throw new IllegalArgumentException(
                     "[GenericDelegator.clearCacheLine] could not find entity for entityName: " + entityName);
         }
+        if (fields == null && allCacheSegments != null) {
+            final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+            if (overlay != null) {
+                overlay.invalidated(entityName, () -> clearCacheLine(entityName, null));
+                return;
+            }
+            recordCacheInvalidation(entity, "clearCacheLine(all)");
+            allCacheSegments.get(entity).remove(entityName);
+            clearConditionCacheLines(entity);
+            return;
+        }
         //if never cached, then don't bother clearing
         if (entity.getNeverCache()) return;
 
@@ -1996,22 +2524,40 @@ public class GenericDelegator implements DelegatorInterface {
             //if never cached, then don't bother clearing
             if (dummyPK.getModelEntity().getNeverCache()) return;
 
+            final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+            if (overlay != null) {
+                final GenericEntity dummyPKCopy = (GenericEntity) dummyPK.clone();
+                overlay.invalidated(dummyPK.getEntityName(), () -> clearCacheLineFlexible(dummyPKCopy, distribute));
+                return;
+            }
+
             // always auto clear the all cache too, since we know it's messed up in any case
-            if (allCache != null) {
-                allCache.remove(dummyPK.getEntityName());
+            final ModelEntity entity = dummyPK.getModelEntity();
+            recordCacheInvalidation(entity, "clearCacheLineFlexible");
+            if (allCacheSegments != null) {
+                allCacheSegments.get(entity).remove(dummyPK.getEntityName());
             }
 
+            // we only know some of the fields of whatever changed, so any condition could be affected
+            clearConditionCacheLines(entity);
+
             // check to see if passed fields names exactly make the primary key...
             if (dummyPK.isPrimaryKey()) {
                 // findByPrimaryKey
-                if (primaryKeyCache != null) {
-                    primaryKeyCache.remove(dummyPK);
+                final EntityCacheKey cacheKey = EntityCacheKey.of(dummyPK);
+                primaryKeyCacheLoader.invalidated(dummyPK.getEntityName());
+                if (primaryKeyCacheSegments != null) {
+                    primaryKeyCacheSegments.get(entity).remove(cacheKey);
+                }
+                if (missingPrimaryKeyCache != null) {
+                    missingPrimaryKeyCache.remove(cacheKey);
                 }
             } else {
                 if (dummyPK.size() > 0) {
                     // findByAnd
-                    if (andCache != null) {
-                        andCache.remove(dummyPK);
+                    andCacheLoader.invalidated(dummyPK.getEntityName());
+                    if (andCacheSegments != null) {
+                        andCacheSegments.get(entity).remove(EntityCacheKey.of(dummyPK));
                     }
                 }
             }
@@ -2045,13 +2591,30 @@ public class GenericDelegator implements DelegatorInterface {
             return;
         }
 
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            final GenericPK primaryKeyCopy = (GenericPK) primaryKey.clone();
+            overlay.invalidated(primaryKey.getEntityName(), () -> clearCacheLine(primaryKeyCopy, distribute));
+            return;
+        }
+
         // always auto clear the all cache too, since we know it's messed up in any case
-        if (allCache != null) {
-            allCache.remove(primaryKey.getEntityName());
+        final ModelEntity entity = primaryKey.getModelEntity();
+        recordCacheInvalidation(entity, "clearCacheLine(primaryKey)");
+        if (allCacheSegments != null) {
+            allCacheSegments.get(entity).remove(primaryKey.getEntityName());
         }
 
-        if (primaryKeyCache != null) {
-            primaryKeyCache.remove(primaryKey);
+        // we only know the primary key of whatever changed, so any condition could be affected
+        clearConditionCacheLines(entity);
+
+        final EntityCacheKey cacheKey = EntityCacheKey.of(primaryKey);
+        primaryKeyCacheLoader.invalidated(primaryKey.getEntityName());
+        if (primaryKeyCacheSegments != null) {
+            primaryKeyCacheSegments.get(entity).remove(cacheKey);
+        }
+        if (missingPrimaryKeyCache != null) {
+            missingPrimaryKeyCache.remove(cacheKey);
         }
 
         if (distribute && distributedCacheClear != null) {
@@ -2088,76 +2651,160 @@ public class GenericDelegator implements DelegatorInterface {
         // If never cached, then don't bother clearing
         if (value.getModelEntity().getNeverCache()) return;
 
+        // inside a transaction, clear the lines once the change is visible to everyone, as the value is now
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            final GenericValue snapshot = TransactionCacheOverlay.snapshot(value);
+            overlay.invalidated(value.getEntityName(), () -> clearCacheLine(snapshot, distribute));
+            return;
+        }
+
         // always auto clear the all cache too, since we know it's messed up in any case
-        if (allCache != null) {
-            allCache.remove(value.getEntityName());
+        final ModelEntity entity = value.getModelEntity();
+        recordCacheInvalidation(entity, "clearCacheLine(value)");
+        if (allCacheSegments != null) {
+            allCacheSegments.get(entity).remove(value.getEntityName());
         }
 
-        if (primaryKeyCache != null) {
-            primaryKeyCache.remove(value.getPrimaryKey());
+        primaryKeyCacheLoader.invalidated(value.getEntityName());
+        if (primaryKeyCacheSegments != null) {
+            primaryKeyCacheSegments.get(entity).remove(EntityCacheKey.ofPrimaryKey(value));
+        }
+        if (missingPrimaryKeyCache != null) {
+            missingPrimaryKeyCache.remove(EntityCacheKey.ofPrimaryKey(value));
         }
 
         // now for the tricky part, automatically clearing from the by and cache
 
-        // get a set of all field combination sets used in the by and cache for this entity
-        Set<Set<String>> fieldNameSets = andCacheFieldSets.get(value.getEntityName());
-
-        if (fieldNameSets != null) {
-            // note that if fieldNameSets is null then no by and caches have been
-            // stored for this entity, so do nothing; ie only run this if not null
-
-            // iterate through the list of field combination sets and do a cache clear
-            // for each one using field values from this entity value object
+        // lines being loaded aren't in the index yet, but may have read this value before it changed
+        andCacheLoader.invalidated(value.getEntityName());
+
+        // The index finds the by and lines whose fields all have the same values as this value, which are the lines
+        // that will have the entity. If the value was read from the database and has been modified since, this
+        // includes the lines that match its original values, which are the lines that currently have the entity.
+        if (andCacheSegments != null) {
+            final UtilCache<EntityCacheKey, List<GenericValue>> entityAndCache = andCacheSegments.get(entity);
+            // the index drops the keys through its removal listener
+            for (EntityCacheKey andCacheKey : andCacheIndex.getMatchingKeys(value)) {
+                entityAndCache.remove(andCacheKey);
+            }
+        }
 
-            for (Set<String> fieldNameSet : fieldNameSets) {
+        // and the condition cache lines whose condition the value matches, before or after the change
+        conditionCacheLoader.invalidated(value.getEntityName());
+        if (conditionCacheSegments != null) {
+            final UtilCache<EntityConditionCacheKey, List<GenericValue>> entityConditionCache =
+                    conditionCacheSegments.get(entity);
+            // the index drops the keys through its removal listener
+            for (EntityConditionCacheKey conditionCacheKey : conditionCacheIndex.getMatchingKeys(value)) {
+                entityConditionCache.remove(conditionCacheKey);
+            }
+        }
 
-                // In this loop get the original values in addition to the
-                // current values and clear the cache line with those values
-                // too... This is necessary so that by and lists that currently
-                // have the entity will be cleared in addition to the by and
-                // lists that will have the entity
-                // For this we will need to have the GenericValue object keep a
-                // map of original values in addition to the "current" values.
-                // That may have to be done when an entity is read from the
-                // database and not when a put/set is done because a null value
-                // is a perfectly valid original value. NOTE: the original value
-                // map should be clear by default to denote that there was no
-                // original value. When a GenericValue is created from a read
-                // from the database only THEN should the original value map
-                // be created and set to the same values that are put in the
-                // normal field value map.
+        if (distribute && distributedCacheClear != null) {
+            distributedCacheClear.distributedClearCacheLine(value);
+        }
+    }
 
+    private List<GenericValue> getFromConditionCache(final EntityConditionCacheKey cacheKey) {
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(false);
+        if (overlay != null) {
+            final List<GenericValue> values = overlay.getConditionCache().get(cacheKey);
+            if (values != null || overlay.isDirty(cacheKey.getEntityName())) {
+                return values;
+            }
+        }
+        return conditionCacheSegments.get(getModelEntity(cacheKey.getEntityName())).get(cacheKey);
+    }
 
-                Map<String, Object> originalFieldValues = null;
+    private void putInConditionCache(final EntityConditionCacheKey cacheKey, final List<GenericValue> values) {
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.getConditionCache().put(cacheKey, values);
+            return;
+        }
+        // index the key first, as for the by and cache, so that a value stored while the line is being put clears it;
+        // if the cache declines the line, its removal listener drops the key again
+        conditionCacheIndex.add(cacheKey);
+        conditionCacheSegments.get(getModelEntity(cacheKey.getEntityName())).put(cacheKey, values);
+    }
 
-                if (value.isModified() && value.originalDbValuesAvailable()) {
-                    originalFieldValues = new HashMap<String, Object>();
-                }
-                Map<String, Object> fieldValues = new HashMap<String, Object>();
+    /**
+     * Returns the statistics of the cached finds of the given entity across all the delegator's caches: hits and
+     * misses of the findXxxCache methods, loads from the database on a miss, and invalidations by clear method.
+     * Evictions and sizes are only known per cache, see {@link UtilCache#getStatistics()}; to see them for one
+     * entity, give it a cache policy of its own so that it gets its own cache segments.
+     *
+     * @param entityName the name of the entity
+     * @return the live statistics, never null
+     */
+    public CacheStatistics getEntityCacheStatistics(final String entityName) {
+        checkIfLocked();
+        CacheStatistics statistics = entityCacheStatistics.get(entityName);
+        if (statistics == null) {
+            final CacheStatistics newStatistics = new CacheStatistics();
+            statistics = entityCacheStatistics.putIfAbsent(entityName, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
 
-                for (String fieldName : fieldNameSet) {
+    private void recordCacheHit(final ModelEntity entity) {
+        getEntityCacheStatistics(entity.getEntityName()).recordHit();
+    }
 
-                    fieldValues.put(fieldName, value.get(fieldName));
-                    if (originalFieldValues != null) {
-                        originalFieldValues.put(fieldName, value.getOriginalDbValue(fieldName));
-                    }
-                }
+    private void recordCacheMiss(final ModelEntity entity) {
+        getEntityCacheStatistics(entity.getEntityName()).recordMiss();
+    }
 
-                // now we have a map of values for this field set for this entity, so clear the by and line...
-                GenericPK dummyPK = new GenericPK(value.getModelEntity(), fieldValues);
+    private void recordCacheInvalidation(final ModelEntity entity, final String operation) {
+        getEntityCacheStatistics(entity.getEntityName()).recordInvalidation(operation);
+    }
 
-                andCache.remove(dummyPK);
+    private void recordLoad(final UtilCache<?, ?> cache, final ModelEntity entity, final long nanos) {
+        cache.getStatistics().recordLoad(nanos);
+        getEntityCacheStatistics(entity.getEntityName()).recordLoad(nanos);
+    }
 
-                if (originalFieldValues != null && !originalFieldValues.equals(fieldValues)) {
-                    GenericPK dummyPKOriginal = new GenericPK(value.getModelEntity(), originalFieldValues);
+    /**
+     * Loads a missing cache line from the database, recording how long it took in the statistics of the cache and of
+     * the entity.
+     */
+    private <T> T timedLoad(final UtilCache<?, ?> cache, final ModelEntity entity,
+                            final SingleFlightLoader.Loader<T> loader) throws GenericEntityException {
+        final long start = System.nanoTime();
+        final T loaded = loader.load();
+        recordLoad(cache, entity, System.nanoTime() - start);
+        return loaded;
+    }
 
-                    andCache.remove(dummyPKOriginal);
-                }
-            }
+    /**
+     * Returns the cache overlay of the current thread's local transaction, if it has one.
+     *
+     * @param create whether to create the overlay if the transaction doesn't have one yet
+     * @return null if there is no local transaction, or it has no overlay and create is false
+     */
+    private TransactionCacheOverlay getTransactionCacheOverlay(final boolean create) {
+        TransactionCacheOverlay overlay = (TransactionCacheOverlay) TransactionUtil.getLocalTransactionResource(this);
+        if (overlay == null && create && TransactionUtil.isTransactionActive()) {
+            overlay = new TransactionCacheOverlay();
+            TransactionUtil.bindLocalTransactionResource(this, overlay);
+            TransactionUtil.addLocalTransactionListener(overlay);
         }
+        return overlay;
+    }
 
-        if (distribute && distributedCacheClear != null) {
-            distributedCacheClear.distributedClearCacheLine(value);
+    private void clearConditionCacheLines(final ModelEntity entity) {
+        conditionCacheLoader.invalidated(entity.getEntityName());
+        if (conditionCacheSegments != null) {
+            final UtilCache<EntityConditionCacheKey, List<GenericValue>> entityConditionCache =
+                    conditionCacheSegments.get(entity);
+            // the index drops the keys through its removal listener
+            for (EntityConditionCacheKey conditionCacheKey : conditionCacheIndex.getKeys(entity.getEntityName())) {
+                entityConditionCache.remove(conditionCacheKey);
+            }
         }
     }
 
@@ -2207,7 +2854,15 @@ public class GenericDelegator implements DelegatorInterface {
         if (primaryKey == null) {
             return null;
         }
-        return primaryKeyCache.get(primaryKey);
+        final EntityCacheKey cacheKey = EntityCacheKey.of(primaryKey);
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(false);
+        if (overlay != null) {
+            final GenericValue value = overlay.getPrimaryKeyCache().get(cacheKey);
+            if (value != null || overlay.isDirty(primaryKey.getEntityName())) {
+                return value;
+            }
+        }
+        return primaryKeyCacheSegments.get(primaryKey.getModelEntity()).get(cacheKey);
     }
 
     public List<GenericValue> getFromAllCache(final String entityName) {
@@ -2215,7 +2870,18 @@ public class GenericDelegator implements DelegatorInterface {
         if (entityName == null) {
             return null;
         }
-        return allCache.get(entityName);
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(false);
+        if (overlay != null) {
+            final List<GenericValue> values = overlay.getAllCache().get(entityName);
+            if (values != null || overlay.isDirty(entityName)) {
+                return values;
+            }
+        }
+        final ModelEntity entity = getModelEntity(entityName);
+        if (entity == null) {
+            return null;
+        }
+        return allCacheSegments.get(entity).get(entityName);
     }
 
     public List<GenericValue> getFromAndCache(final String entityName, final Map<String, ?> fields) {
@@ -2233,8 +2899,15 @@ public class GenericDelegator implements DelegatorInterface {
         if (entity == null || fields == null) {
             return null;
         }
-        final GenericPK tempPK = new GenericPK(entity, fields);
-        return andCache.get(tempPK);
+        final EntityCacheKey cacheKey = EntityCacheKey.of(new GenericPK(entity, fields));
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(false);
+        if (overlay != null) {
+            final List<GenericValue> values = overlay.getAndCache().get(cacheKey);
+            if (values != null || overlay.isDirty(entity.getEntityName())) {
+                return values;
+            }
+        }
+        return andCacheSegments.get(entity).get(cacheKey);
     }
 
     public void putInPrimaryKeyCache(final GenericPK primaryKey, final GenericValue value) {
@@ -2249,7 +2922,61 @@ public class GenericDelegator implements DelegatorInterface {
             return;
         }
 
-        primaryKeyCache.put(primaryKey, value);
+        final EntityCacheKey cacheKey = EntityCacheKey.of(primaryKey);
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.getPrimaryKeyCache().put(cacheKey, value);
+            return;
+        }
+        primaryKeyCacheSegments.get(value.getModelEntity()).put(cacheKey, value);
+    }
+
+    /**
+     * Remembers that the given primary key has no row, for as long as its entity's missing-cache-ttl says; does
+     * nothing for entities that don't cache missing rows.
+     *
+     * @param primaryKey the primary key that was looked up (can be null)
+     */
+    public void putInMissingPrimaryKeyCache(final GenericPK primaryKey) {
+        checkIfLocked();
+        if (primaryKey == null) {
+            return;
+        }
+        final ModelEntity entity = primaryKey.getModelEntity();
+        if (entity.getNeverCache() || entity.getMissingCacheTtl() <= 0 || TransactionUtil.isTransactionActive()) {
+            // a transaction's reads can't be shared until it commits, and a missing row is not worth keeping privately
+            return;
+        }
+        missingPrimaryKeyCache.put(
+                EntityCacheKey.of(primaryKey), System.currentTimeMillis() + entity.getMissingCacheTtl());
+    }
+
+    /**
+     * Indicates whether the given primary key is known to have no row, i.e. was found missing less than its entity's
+     * missing-cache-ttl ago and hasn't been written since.
+     *
+     * @param primaryKey the primary key to check (can be null)
+     * @return false if the row may exist
+     */
+    public boolean isKnownMissing(final GenericPK primaryKey) {
+        checkIfLocked();
+        if (primaryKey == null) {
+            return false;
+        }
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(false);
+        if (overlay != null && overlay.isDirty(primaryKey.getEntityName())) {
+            return false;
+        }
+        final EntityCacheKey cacheKey = EntityCacheKey.of(primaryKey);
+        final Long expiryTime = missingPrimaryKeyCache.get(cacheKey);
+        if (expiryTime == null) {
+            return false;
+        }
+        if (expiryTime > System.currentTimeMillis()) {
+            return true;
+        }
+        missingPrimaryKeyCache.remove(cacheKey);
+        return false;
     }
 
     public void putAllInPrimaryKeyCache(final List<? extends GenericValue> values) {
@@ -2282,6 +3009,10 @@ public class GenericDelegator implements DelegatorInterface {
                     " entity in the ALL cache but this entity has never-cache set to true, not caching.");
             return;
         }
+        if (!entity.getCacheAll()) {
+            // the entity is too big to keep all of its rows in one line; findAllCache still works but doesn't cache
+            return;
+        }
 
         /*
             Make the values immutable so that the list can be returned directly
@@ -2289,7 +3020,12 @@ public class GenericDelegator implements DelegatorInterface {
             makes the list immutable, but not the elements in it, which will
             still be mutable GenericValue objects.
          */
-        allCache.put(entity.getEntityName(), Collections.unmodifiableList(values));
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.getAllCache().put(entity.getEntityName(), Collections.unmodifiableList(values));
+            return;
+        }
+        allCacheSegments.get(entity).put(entity.getEntityName(), Collections.unmodifiableList(values));
     }
 
     public void putInAndCache(
@@ -2315,7 +3051,7 @@ public class GenericDelegator implements DelegatorInterface {
             return;
         }
 
-        final GenericPK tempPK = new GenericPK(entity, fields);
+        final EntityCacheKey cacheKey = EntityCacheKey.of(new GenericPK(entity, fields));
 
         /*
             Make the values immutable so that the list can be returned directly
@@ -2323,7 +3059,15 @@ public class GenericDelegator implements DelegatorInterface {
             makes the list immutable, but not the elements in it, which will
             still be mutable GenericValue objects.
          */
-        andCache.put(tempPK, Collections.unmodifiableList(values));
+        final TransactionCacheOverlay overlay = getTransactionCacheOverlay(true);
+        if (overlay != null) {
+            overlay.getAndCache().put(cacheKey, Collections.unmodifiableList(values));
+            return;
+        }
+        // index the key first, so that a value stored while the line is being put still finds (and clears) it; if the
+        // cache declines the line, e.g. as too heavy, its removal listener drops the key again
+        andCacheIndex.add(cacheKey);
+        andCacheSegments.get(entity).put(cacheKey, Collections.unmodifiableList(values));
 
         // now make sure the fieldName set used for this entry is in the
         // andCacheFieldSets Map which contains a Set of Sets of fieldNames for each entityName
@@ -2500,12 +3244,40 @@ public class GenericDelegator implements DelegatorInterface {
         }
     }
 
+    /**
+     * @deprecated since 1.2.6 the cache is keyed on {@link EntityCacheKey}s and split by entity, see
+     * {@link #getPrimaryKeyCacheByCacheKey()} and {@link #getPrimaryKeyCacheSegments()}; this returns a view of all the
+     * segments that converts the keys. The view's {@code cacheLineTable} is always empty, so use
+     * {@link UtilCache#getCacheLineKeys()} to list the lines; setting its weigher or removal listener is ignored
+     */
+    @Deprecated
     public UtilCache<GenericEntity, GenericValue> getPrimaryKeyCache() {
         checkIfLocked();
-        return primaryKeyCache;
+        return new EntityCacheView<GenericEntity, GenericValue>(this, primaryKeyCacheSegments,
+                (key, value) -> putInPrimaryKeyCache(
+                        key instanceof GenericPK ? (GenericPK) key : new GenericPK(key.getModelEntity(), key.fields),
+                        value));
     }
 
+    /**
+     * @deprecated since 1.2.6 the cache is keyed on {@link EntityCacheKey}s and split by entity, see
+     * {@link #getAndCacheByCacheKey()} and {@link #getAndCacheSegments()}; this returns a view of all the
+     * segments that converts the keys. The view's {@code cacheLineTable} is always empty, so use
+     * {@link UtilCache#getCacheLineKeys()} to list the lines; setting its weigher or removal listener is ignored
+     */
+    @Deprecated
     public UtilCache<GenericPK, List<GenericValue>> getAndCache() {
+        checkIfLocked();
+        return new EntityCacheView<GenericPK, List<GenericValue>>(this, andCacheSegments,
+                (key, values) -> putInAndCache(key.getModelEntity(), key.fields, values));
+    }
+
+    public UtilCache<EntityCacheKey, GenericValue> getPrimaryKeyCacheByCacheKey() {
+        checkIfLocked();
+        return primaryKeyCache;
+    }
+
+    public UtilCache<EntityCacheKey, List<GenericValue>> getAndCacheByCacheKey() {
         checkIfLocked();
         return andCache;
     }
@@ -2515,6 +3287,55 @@ public class GenericDelegator implements DelegatorInterface {
         return allCache;
     }
 
+    public UtilCache<EntityConditionCacheKey, List<GenericValue>> getConditionCache() {
+        checkIfLocked();
+        return conditionCache;
+    }
+
+    /**
+     * The segments of the primary key cache; the cache returned by {@link #getPrimaryKeyCacheByCacheKey()} is the
+     * one shared by the entities that have no cache policy of their own.
+     */
+    public EntityCacheSegments<EntityCacheKey, GenericValue> getPrimaryKeyCacheSegments() {
+        checkIfLocked();
+        return primaryKeyCacheSegments;
+    }
+
+    public EntityCacheSegments<EntityCacheKey, List<GenericValue>> getAndCacheSegments() {
+        checkIfLocked();
+        return andCacheSegments;
+    }
+
+    public EntityCacheSegments<String, List<GenericValue>> getAllCacheSegments() {
+        checkIfLocked();
+        return allCacheSegments;
+    }
+
+    public EntityCacheSegments<EntityConditionCacheKey, List<GenericValue>> getConditionCacheSegments() {
+        checkIfLocked();
+        return conditionCacheSegments;
+    }
+
+    public UtilCache<EntityCacheKey, Long> getMissingPrimaryKeyCache() {
+        checkIfLocked();
+        return missingPrimaryKeyCache;
+    }
+
+    public SingleFlightLoader<EntityCacheKey, GenericValue> getPrimaryKeyCacheLoader() {
+        checkIfLocked();
+        return primaryKeyCacheLoader;
+    }
+
+    public SingleFlightLoader<List<?>, List<GenericValue>> getAndCacheLoader() {
+        checkIfLocked();
+        return andCacheLoader;
+    }
+
+    public SingleFlightLoader<EntityConditionCacheKey, List<GenericValue>> getConditionCacheLoader() {
+        checkIfLocked();
+        return conditionCacheLoader;
+    }
+
     @Override
     public List<GenericValue> transform(final String entityName, final EntityCondition entityCondition,
                                         final List<String> orderBy, final String lockField, final Transformation transformation)
@@ -30,6 +30,7 @@ import org.ofbiz.core.entity.jdbc.SqlJdbcUtil;
 import org.ofbiz.core.entity.jdbc.SqlJdbcUtil.FieldType;
 import org.ofbiz.core.entity.model.ModelEntity;
 import org.ofbiz.core.entity.model.ModelField;
+import org.ofbiz.core.entity.model.ModelFieldIndex;
 import org.ofbiz.core.entity.model.ModelFieldType;
 import org.ofbiz.core.entity.model.ModelFieldTypeReader;
 import org.ofbiz.core.util.Debug;
@@ -39,17 +40,20 @@ import org.ofbiz.core.util.UtilXml;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import java.io.ObjectStreamException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Observable;
+import java.util.Observer;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -62,17 +66,16 @@ import static org.ofbiz.core.entity.jdbc.SqlJdbcUtil.getFieldType;
 
 /**
  * Generic Entity Value Object - Handles persistence for any defined entity.
- * <p>Note that this class extends <code>Observable</code> to achieve change notification for
- * <code>Observer</code>s. Whenever a field changes the name of the field will be passed to
- * the <code>notifyObservers()</code> method, and through that to the <code>update()</code> method of each
- * <code>Observer</code>.
+ * <p>Whenever a field is set, each {@link FieldChangeListener} is told the name of the field. Setting a field
+ * costs nothing extra when there are none, which is almost always. <code>Observer</code>s can still be added
+ * through {@link #getObservable()}.
  *
  * @author <a href="mailto:jonesde@ofbiz.org">David E. Jones</a>
  * @author <a href="mailto:jaz@ofbiz.org">Andy Zeneski</a>
  * @version 1.0
  * @created Wed Aug 08 2001
  */
-public class GenericEntity extends Observable implements Map<String, Object>, Serializable, Comparable<GenericEntity>, Cloneable {
+public class GenericEntity implements Map<String, Object>, Serializable, Comparable<GenericEntity>, Cloneable {
 
     /**
      * Name of the GenericDelegator, used to re-get the GenericDelegator when deserialized
@@ -84,6 +87,12 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
      */
     public transient GenericDelegator internalDelegator = null;
 
+    /**
+     * Whether the fields of entities are kept in an array by their position in the model, rather than in a
+     * <code>HashMap</code>; true unless the <code>entity.compact.fields</code> system property is false.
+     */
+    private static final boolean COMPACT_FIELDS = !"false".equals(System.getProperty("entity.compact.fields"));
+
     /**
      * Contains the fields for this entity.
      */
@@ -104,6 +113,17 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
      */
     public boolean modified = false;
 
+    /**
+     * The listeners to tell when a field is set, or null if there are none; replaced rather than changed, so that
+     * {@link #set(String, Object, boolean)} can read it without locking.
+     */
+    private transient volatile FieldChangeListener[] fieldChangeListeners = null;
+
+    /**
+     * Adapts the listeners to <code>Observer</code>s, created by the first call to {@link #getObservable()}.
+     */
+    private transient GenericEntityObservable observable = null;
+
     /**
      * Creates new GenericEntity
      *
@@ -127,7 +147,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
             throw new IllegalArgumentException("Cannont create a GenericEntity with a null modelEntity parameter");
         this.modelEntity = modelEntity;
         this.entityName = modelEntity.getEntityName();
-        this.fields = new HashMap<String, Object>();
+        this.fields = newFields(modelEntity);
     }
 
     /**
@@ -141,7 +161,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
             throw new IllegalArgumentException("Cannont create a GenericEntity with a null modelEntity parameter");
         this.modelEntity = modelEntity;
         this.entityName = modelEntity.getEntityName();
-        this.fields = new HashMap<String, Object>();
+        this.fields = newFields(modelEntity);
         setFields(fields);
     }
 
@@ -166,7 +186,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
             throw new IllegalArgumentException("Cannont create a GenericEntity with a null modelEntity parameter");
         this.modelEntity = modelEntity;
         this.entityName = modelEntity.getEntityName();
-        this.fields = new HashMap<String, Object>();
+        this.fields = newFields(modelEntity);
     }
 
     /**
@@ -179,7 +199,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
             throw new IllegalArgumentException("Cannont create a GenericEntity with a null modelEntity parameter");
         this.modelEntity = modelEntity;
         this.entityName = modelEntity.getEntityName();
-        this.fields = new HashMap<String, Object>();
+        this.fields = newFields(modelEntity);
         setFields(fields);
     }
 
@@ -189,11 +209,60 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     public GenericEntity(GenericEntity value) {
         this.entityName = value.modelEntity.getEntityName();
         this.modelEntity = value.modelEntity;
-        this.fields = (value.fields == null ? new HashMap<String, Object>() : new HashMap<String, Object>(value.fields));
+        this.fields = (value.fields == null ? newFields(value.modelEntity) : FieldValueMap.copyOf(value.fields));
         this.delegatorName = value.delegatorName;
         this.internalDelegator = value.internalDelegator;
     }
 
+    private static Map<String, Object> newFields(final ModelEntity modelEntity) {
+        final ModelFieldIndex fieldIndex = COMPACT_FIELDS ? modelEntity.getFieldIndex() : null;
+        if (fieldIndex == null) {
+            return new HashMap<String, Object>();
+        }
+        return new FieldValueMap(fieldIndex);
+    }
+
+    /**
+     * Makes the fields compact again once this entity has been read from a stream, as a {@link FieldValueMap} is
+     * written as a <code>HashMap</code>.
+     *
+     * @return this entity
+     * @throws ObjectStreamException never
+     */
+    protected Object readResolve() throws ObjectStreamException {
+        fields = compactFields(fields);
+        return this;
+    }
+
+    /**
+     * Returns the given field values in a map of the kind {@link #newFields} would make for this entity, if its model
+     * can be found without making a delegator, e.g. on a client that has none.
+     *
+     * @param fieldValues the field values of this entity, as read from a stream
+     * @return the same values, in a new map or the given one
+     */
+    Map<String, Object> compactFields(final Map<String, Object> fieldValues) {
+        if (!COMPACT_FIELDS || fieldValues == null || fieldValues instanceof FieldValueMap) {
+            return fieldValues;
+        }
+        if (modelEntity == null && entityName != null && delegatorName != null && !GenericDelegator.isLocked()) {
+            final GenericDelegator delegator = GenericDelegator.getGenericDelegatorIfPresent(delegatorName);
+            if (delegator != null) {
+                try {
+                    modelEntity = delegator.getModelReader().getModelEntity(entityName);
+                } catch (GenericEntityException e) {
+                    // the fields stay as they were read
+                }
+            }
+        }
+        if (modelEntity == null || modelEntity.getFieldIndex() == null) {
+            return fieldValues;
+        }
+        final Map<String, Object> compactFields = newFields(modelEntity);
+        compactFields.putAll(fieldValues);
+        return compactFields;
+    }
+
     public boolean isModified() {
         return modified;
     }
@@ -305,10 +374,15 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
             return fields.get(field);
         }
         final Object valueToPut = getValueToPut(value, modelField.getType());
+        beforeFieldChange();
         final Object previousValue = fields.put(field, valueToPut);
         modified = true;
-        setChanged();
-        notifyObservers(field);
+        final FieldChangeListener[] listeners = fieldChangeListeners;
+        if (listeners != null) {
+            for (FieldChangeListener listener : listeners) {
+                listener.fieldChanged(this, field);
+            }
+        }
         return previousValue;
     }
 
@@ -336,6 +410,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public void dangerousSetNoCheckButFast(ModelField modelField, Object value) {
+        beforeFieldChange();
         this.fields.put(modelField.getName(), value);
     }
 
@@ -343,6 +418,116 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
         return this.fields.get(modelField.getName());
     }
 
+    /**
+     * Called before the field values are changed, whether directly or through one of the views of this map.
+     * Does nothing here; a subclass that shares the field values with something else can take its own copy.
+     *
+     * @since 1.2.6
+     */
+    protected void beforeFieldChange() {
+    }
+
+    /**
+     * Adds a listener to tell whenever a field is set.
+     *
+     * @param listener the listener to add
+     * @since 1.2.6
+     */
+    public synchronized void addFieldChangeListener(final FieldChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+        final FieldChangeListener[] listeners = fieldChangeListeners;
+        if (listeners == null) {
+            fieldChangeListeners = new FieldChangeListener[] { listener };
+        } else {
+            final FieldChangeListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            newListeners[listeners.length] = listener;
+            fieldChangeListeners = newListeners;
+        }
+    }
+
+    /**
+     * Removes a listener added by {@link #addFieldChangeListener(FieldChangeListener)}; does nothing if it was not
+     * added.
+     *
+     * @param listener the listener to remove
+     * @since 1.2.6
+     */
+    public synchronized void removeFieldChangeListener(final FieldChangeListener listener) {
+        final FieldChangeListener[] listeners = fieldChangeListeners;
+        if (listeners == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                if (listeners.length == 1) {
+                    fieldChangeListeners = null;
+                } else {
+                    final FieldChangeListener[] newListeners = new FieldChangeListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, newListeners, 0, i);
+                    System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                    fieldChangeListeners = newListeners;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns an <code>Observable</code> whose <code>Observer</code>s are passed the name of each field that is set.
+     * It listens to this entity from the first call on.
+     *
+     * @return the same adapter each time
+     * @since 1.2.6
+     */
+    public synchronized GenericEntityObservable getObservable() {
+        if (observable == null) {
+            observable = new GenericEntityObservable(this);
+            addFieldChangeListener(observable);
+        }
+        return observable;
+    }
+
+    /**
+     * @deprecated since 1.2.6 this class is no longer <code>Observable</code>; use
+     * {@link #addFieldChangeListener(FieldChangeListener)}, or add the observer to {@link #getObservable()}, which is
+     * what this does. The observer is passed that adapter rather than this entity.
+     */
+    @Deprecated
+    public void addObserver(final Observer observer) {
+        getObservable().addObserver(observer);
+    }
+
+    /**
+     * @deprecated since 1.2.6 use {@link #removeFieldChangeListener(FieldChangeListener)}, or remove the observer from
+     * {@link #getObservable()}, which is what this does.
+     */
+    @Deprecated
+    public synchronized void deleteObserver(final Observer observer) {
+        if (observable != null) {
+            observable.deleteObserver(observer);
+        }
+    }
+
+    /**
+     * @deprecated since 1.2.6 remove the observers from {@link #getObservable()}, which is what this does.
+     */
+    @Deprecated
+    public synchronized void deleteObservers() {
+        if (observable != null) {
+            observable.deleteObservers();
+        }
+    }
+
+    /**
+     * @deprecated since 1.2.6 count the observers of {@link #getObservable()}, which is what this does.
+     */
+    @Deprecated
+    public synchronized int countObservers() {
+        return observable == null ? 0 : observable.countObservers();
+    }
+
     /**
      * Sets the named field to the passed value, converting the value from a String to the correct type using
      * {@code Type.valueOf()} or similar.
@@ -503,15 +688,14 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public GenericPK getPrimaryKey() {
-        Collection<String> pkNames = new LinkedList<String>();
-        Iterator<ModelField> iter = this.getModelEntity().getPksIterator();
-
-        while (iter != null && iter.hasNext()) {
-            ModelField curField = iter.next();
-
-            pkNames.add(curField.getName());
+        final ModelEntity modelEntity = getModelEntity();
+        final GenericPK primaryKey = new GenericPK(modelEntity);
+        // our values have been through set() already, so can be copied as they are
+        for (int i = 0; i < modelEntity.getPksSize(); i++) {
+            final String pkName = modelEntity.getPk(i).getName();
+            primaryKey.fields.put(pkName, fields.get(pkName));
         }
-        return new GenericPK(getModelEntity(), this.getFields(pkNames));
+        return primaryKey;
     }
 
     /**
@@ -612,7 +796,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
      * @return java.util.Collection
      */
     public Collection<String> getAllKeys() {
-        return fields.keySet();
+        return keySet();
     }
 
     /**
@@ -909,7 +1093,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
      */
     public int hashCode() {
         // divide both by two (shift to right one bit) to maintain scale and add together
-        return getEntityName().hashCode() >> 1 + fields.hashCode() >> 1;
+        return (getEntityName().hashCode() >> 1) + (fields.hashCode() >> 1);
     }
 
     /**
@@ -1024,6 +1208,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     // ---- Methods added to implement the Map interface: ----
 
     public Object remove(Object key) {
+        beforeFieldChange();
         return fields.remove(key);
     }
 
@@ -1032,7 +1217,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public java.util.Set<Map.Entry<String, Object>> entrySet() {
-        return fields.entrySet();
+        return new FieldEntries();
     }
 
     public Object put(String key, Object value) {
@@ -1044,6 +1229,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public void clear() {
+        beforeFieldChange();
         this.fields.clear();
     }
 
@@ -1052,7 +1238,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public Set<String> keySet() {
-        return this.fields.keySet();
+        return new FieldNames();
     }
 
     public boolean isEmpty() {
@@ -1060,7 +1246,7 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     }
 
     public Collection<Object> values() {
-        return this.fields.values();
+        return new FieldValues();
     }
 
     public boolean containsValue(Object value) {
@@ -1070,4 +1256,135 @@ public class GenericEntity extends Observable implements Map<String, Object>, Se
     public int size() {
         return this.fields.size();
     }
+
+    // ---- The views of the field values, which only call beforeFieldChange() when they are changed: ----
+
+    private final class FieldNames extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            return new FieldIterator<String>(fields.keySet().iterator());
+        }
+
+        @Override
+        public int size() {
+            return fields.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return fields.containsKey(o);
+        }
+
+        @Override
+        public void clear() {
+            GenericEntity.this.clear();
+        }
+    }
+
+    private final class FieldValues extends AbstractCollection<Object> {
+        @Override
+        public Iterator<Object> iterator() {
+            return new FieldIterator<Object>(fields.values().iterator());
+        }
+
+        @Override
+        public int size() {
+            return fields.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return fields.containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            GenericEntity.this.clear();
+        }
+    }
+
+    private final class FieldEntries extends AbstractSet<Map.Entry<String, Object>> {
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            final Iterator<Map.Entry<String, Object>> entries = fields.entrySet().iterator();
+            return new FieldIterator<Map.Entry<String, Object>>(entries) {
+                @Override
+                public Map.Entry<String, Object> next() {
+                    return new FieldEntry(super.next());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return fields.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return fields.entrySet().contains(o);
+        }
+
+        @Override
+        public void clear() {
+            GenericEntity.this.clear();
+        }
+    }
+
+    private class FieldIterator<T> implements Iterator<T> {
+        private final Iterator<T> iterator;
+
+        FieldIterator(final Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        public T next() {
+            return iterator.next();
+        }
+
+        public void remove() {
+            beforeFieldChange();
+            iterator.remove();
+        }
+    }
+
+    private final class FieldEntry implements Map.Entry<String, Object> {
+        private final Map.Entry<String, Object> entry;
+
+        FieldEntry(final Map.Entry<String, Object> entry) {
+            this.entry = entry;
+        }
+
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        public Object setValue(final Object value) {
+            beforeFieldChange();
+            return entry.setValue(value);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return entry.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package org.ofbiz.core.entity;
+
+import java.util.Observable;
+
+/**
+ * Adapts the {@link FieldChangeListener}s of a {@link GenericEntity} to an <code>Observable</code>, for code written
+ * when <code>GenericEntity</code> was itself <code>Observable</code>. Whenever a field is set, each
+ * <code>Observer</code> is passed this object and the name of the field; {@link #getEntity()} gives the entity.
+ *
+ * @see GenericEntity#addObserver(java.util.Observer)
+ * @since 1.2.6
+ */
+public class GenericEntityObservable extends Observable implements FieldChangeListener {
+
+    private final GenericEntity entity;
+
+    /**
+     * Creates an adapter that is not yet listening to the entity; see {@link GenericEntity#getObservable()}.
+     *
+     * @param entity the entity to observe
+     */
+    GenericEntityObservable(final GenericEntity entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * @return the entity being observed
+     */
+    public GenericEntity getEntity() {
+        return entity;
+    }
+
+    public void fieldChanged(final GenericEntity entity, final String fieldName) {
+        setChanged();
+        notifyObservers(fieldName);
+    }
+}
@@ -51,6 +51,24 @@ public interface GenericHelper {
      */
     GenericValue create(GenericValue value) throws GenericEntityException;
 
+    /**
+     * Creates the Entities from the List of GenericValue instances in the persistent store. These inserts all happen in
+     * one transaction, so they will either all succeed or all fail, if the data source supports transactions. This
+     * default creates them one at a time, each in its own transaction; the {@link GenericHelperDAO} does it in batches.
+     *
+     * @param values List of GenericValue instances containing the entities to create
+     * @return int representing number of rows effected by this operation
+     */
+    default int createAll(List<? extends GenericValue> values) throws GenericEntityException {
+        int count = 0;
+        for (GenericValue value : values) {
+            if (create(value) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Find a Generic Entity by its Primary Key
      *
@@ -188,6 +206,18 @@ public interface GenericHelper {
      */
     int storeAll(List<? extends GenericValue> values) throws GenericEntityException;
 
+    /**
+     * Store the Entities from the List GenericValue instances to the persistent store like storeAll, but using the
+     * data source's own insert-or-update statement if it has one, instead of reading each entity first. This default
+     * uses {@link #storeAll(List)}, which reads each entity first.
+     *
+     * @param values List of GenericValue instances containing the entities to store
+     * @return int representing number of rows effected by this operation
+     */
+    default int upsertAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return storeAll(values);
+    }
+
     /**
      * Remove the Entities from the List from the persistent store. <br>The List contains GenericEntity objects, can be
      * either GenericPK or GenericValue. <br>If a certain entity contains a complete primary key, the entity in the
@@ -29,7 +29,6 @@ import org.ofbiz.core.entity.model.ModelRelation;
 import org.ofbiz.core.util.Debug;
 
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -90,6 +89,18 @@ public class GenericHelperDAO implements GenericHelper {
         return value;
     }
 
+    /**
+     * Creates the Entities from the List of GenericValue instances in the persistent store.
+     * These inserts all happen in one transaction, so they will either all succeed or all fail,
+     * if the data source supports transactions.
+     *
+     * @param values List of GenericValue instances containing the entities to create
+     * @return int representing number of rows effected by this operation
+     */
+    public int createAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return genericDAO.insertAll(values);
+    }
+
     /**
      * Find a Generic Entity by its Primary Key
      *
@@ -129,17 +140,12 @@ public class GenericHelperDAO implements GenericHelper {
      * would be done on the server side to reduce network round trips.
      *
      * @param primaryKeys A List of primary keys to find by.
-     * @return List of GenericValue objects corresponding to the passed primaryKey objects
+     * @return List of GenericValue objects corresponding to the passed primaryKey objects, in the same order;
+     * keys that have no row are left out
      */
     public List<GenericValue> findAllByPrimaryKeys(List<? extends GenericPK> primaryKeys) throws GenericEntityException {
         if (primaryKeys == null) return null;
-        List<GenericValue> results = new LinkedList<GenericValue>();
-
-        for (GenericPK pk : primaryKeys) {
-            GenericValue result = this.findByPrimaryKey(pk);
-            if (result != null) results.add(result);
-        }
-        return results;
+        return genericDAO.selectByPrimaryKeys(primaryKeys);
     }
 
     /**
@@ -273,6 +279,18 @@ public class GenericHelperDAO implements GenericHelper {
         return genericDAO.storeAll(values);
     }
 
+    /**
+     * Store the Entities from the List GenericValue instances to the persistent store like storeAll,
+     * but using the database's own insert-or-update statement if it has one, instead of reading
+     * each entity first.
+     *
+     * @param values List of GenericValue instances containing the entities to store
+     * @return int representing number of rows effected by this operation
+     */
+    public int upsertAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return genericDAO.upsertAll(values);
+    }
+
     /**
      * Remove the Entities from the List from the persistent store.
      * <br>The List contains GenericEntity objects, can be either GenericPK or GenericValue.
@@ -28,6 +28,7 @@ package org.ofbiz.core.entity;
 import org.ofbiz.core.entity.model.ModelEntity;
 import org.ofbiz.core.util.UtilValidate;
 
+import java.io.ObjectStreamException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,7 +57,8 @@ public class GenericValue extends GenericEntity {
     /**
      * This Map will contain the original field values from the database iff
      * this GenericValue came from the database. If it was made manually it will
-     * no have this Map, ie it will be null to not take up memory.
+     * no have this Map, ie it will be null to not take up memory. Until a field
+     * is changed it is the same Map as the fields, see {@link #beforeFieldChange()}.
      */
     protected Map<String, Object> originalDbValues = null;
 
@@ -143,7 +145,49 @@ public class GenericValue extends GenericEntity {
      * values from the Db.
      */
     public void copyOriginalDbValues() {
-        this.originalDbValues = new HashMap<String, Object>(this.fields);
+        this.originalDbValues = this.fields;
+    }
+
+    @Override
+    protected Object readResolve() throws ObjectStreamException {
+        final Map<String, Object> readFields = fields;
+        super.readResolve();
+        // the stream keeps the original DB values the same map as the fields if they were, see copyOriginalDbValues()
+        originalDbValues = originalDbValues == readFields ? fields : compactFields(originalDbValues);
+        return this;
+    }
+
+    /**
+     * Forgets the row this value was read from, so that it can be filled with another row from the database: the
+     * original DB values, the related caches and the modified flag go, and the field values are emptied, or replaced
+     * by the given ones. This is the only place that replaces or refills the fields of a value read from the
+     * database, so that they can't end up shared with the original DB values of another row; call
+     * {@link #copyOriginalDbValues()} once the fields hold the new row.
+     *
+     * @param newFields the field values of the new row, which nothing else may hold; null to refill the current map
+     */
+    void resetFields(final Map<String, Object> newFields) {
+        // first, as until the fields are changed they may be the same map
+        originalDbValues = null;
+        relatedCache = null;
+        relatedOneCache = null;
+        modified = false;
+        if (newFields == null) {
+            fields.clear();
+        } else {
+            fields = newFields;
+        }
+    }
+
+    /**
+     * Most values read from the database are never changed, so the original values are shared with the fields
+     * until the first change, when they are copied.
+     */
+    @Override
+    protected void beforeFieldChange() {
+        if (originalDbValues == fields) {
+            originalDbValues = FieldValueMap.copyOf(fields);
+        }
     }
 
     /**
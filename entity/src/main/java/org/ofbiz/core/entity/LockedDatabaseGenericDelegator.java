@@ -6,6 +6,7 @@ import org.ofbiz.core.entity.model.ModelEntity;
 import org.ofbiz.core.entity.model.ModelFieldType;
 import org.ofbiz.core.entity.model.ModelGroupReader;
 import org.ofbiz.core.entity.model.ModelReader;
+import org.ofbiz.core.util.CacheStatistics;
 import org.ofbiz.core.util.UtilCache;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -18,6 +19,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Copyright All Rights Reserved.
@@ -71,6 +74,14 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public void clearCacheLines(String entityName) {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public void clearCacheLines(String entityName, boolean distribute) {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public void clearCacheLineFlexible(GenericEntity dummyPK) {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -91,6 +102,14 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public int createAll(List<? extends GenericValue> values) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public int createAll(List<? extends GenericValue> values, boolean doCacheClear) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public GenericValue create(GenericValue value) throws GenericEntityException {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -159,6 +178,10 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public List<GenericValue> findByConditionCache(String entityName, EntityCondition entityCondition, Collection<String> fieldsToSelect, List<String> orderBy) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public List<GenericValue> findByLike(String entityName, Map<String, ?> fields) throws GenericEntityException {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -207,6 +230,14 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public Stream<GenericValue> stream(String entityName, EntityCondition entityCondition, Collection<String> fieldsToSelect, List<String> orderBy, EntityFindOptions findOptions) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public List<ParallelScan.Partition> parallelScan(String entityName, EntityCondition entityCondition, int partitions, Consumer<? super GenericValue> consumer) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public EntityListIterator findListIteratorByCondition(String entityName, EntityCondition whereEntityCondition, EntityCondition havingEntityCondition, Collection<String> fieldsToSelect, List<String> orderBy, EntityFindOptions findOptions) throws GenericEntityException {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -219,10 +250,39 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public EntityCacheSegments<String, List<GenericValue>> getAllCacheSegments() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    @Deprecated
     public UtilCache<GenericPK, List<GenericValue>> getAndCache() {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public UtilCache<EntityCacheKey, List<GenericValue>> getAndCacheByCacheKey() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public SingleFlightLoader<List<?>, List<GenericValue>> getAndCacheLoader() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public EntityCacheSegments<EntityCacheKey, List<GenericValue>> getAndCacheSegments() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public UtilCache<EntityConditionCacheKey, List<GenericValue>> getConditionCache() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public EntityCacheSegments<EntityConditionCacheKey, List<GenericValue>> getConditionCacheSegments() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public SingleFlightLoader<EntityConditionCacheKey, List<GenericValue>> getConditionCacheLoader() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     protected EntityConfigUtil.DelegatorInfo getDelegatorInfo() {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -247,6 +307,10 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public CacheStatistics getEntityCacheStatistics(String entityName) {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public GenericHelper getEntityHelper(ModelEntity entity) throws GenericEntityException {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -287,6 +351,14 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public UtilCache<EntityCacheKey, Long> getMissingPrimaryKeyCache() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public boolean isKnownMissing(GenericPK primaryKey) {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public List<ModelEntity> getModelEntitiesByGroup(String groupName) {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -319,10 +391,23 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    @Deprecated
     public UtilCache<GenericEntity, GenericValue> getPrimaryKeyCache() {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public UtilCache<EntityCacheKey, GenericValue> getPrimaryKeyCacheByCacheKey() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public SingleFlightLoader<EntityCacheKey, GenericValue> getPrimaryKeyCacheLoader() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public EntityCacheSegments<EntityCacheKey, GenericValue> getPrimaryKeyCacheSegments() {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public List<GenericValue> getRelated(String relationName, Map<String, ?> byAndFields, List<String> orderBy, GenericValue value) throws GenericEntityException {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -395,6 +480,10 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public void putInMissingPrimaryKeyCache(GenericPK primaryKey) {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     public void putInPrimaryKeyCache(GenericPK primaryKey, GenericValue value) {
         throw new UnsupportedOperationException(MESSAGE);
     }
@@ -476,6 +565,18 @@ public class LockedDatabaseGenericDelegator extends GenericDelegator {
         throw new UnsupportedOperationException(MESSAGE);
     }
 
+    public int upsert(GenericValue value) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public int upsertAll(List<? extends GenericValue> values) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
+    public int upsertAll(List<? extends GenericValue> values, boolean doCacheClear) throws GenericEntityException {
+        throw new UnsupportedOperationException(MESSAGE);
+    }
+
     @Override
     public List<GenericValue> transform(final String entityName, final EntityCondition entityCondition,
                                         final List<String> orderBy, final String lockField, final Transformation transformation) {
@@ -0,0 +1,82 @@
+package org.ofbiz.core.entity;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link DistributedCacheClear} that "sends" the cache clears of a delegator to the other delegators in the same
+ * JVM that use this class, which stand in for the other servers of a cluster. This makes it possible to test
+ * distributed cache clearing without a network. Delegators stay joined until they {@link #leave(GenericDelegator)}.
+ *
+ * @since 1.2.6
+ */
+public class LoopbackDistributedCacheClear implements DistributedCacheClear {
+
+    private static final Set<GenericDelegator> delegators = new CopyOnWriteArraySet<GenericDelegator>();
+
+    private GenericDelegator delegator;
+
+    public void setDelegator(final GenericDelegator delegator, final String userLoginId) {
+        this.delegator = delegator;
+        join(delegator);
+    }
+
+    /**
+     * Makes the given delegator receive the cache clears sent through this class.
+     *
+     * @param delegator the delegator to join
+     */
+    public static void join(final GenericDelegator delegator) {
+        delegators.add(delegator);
+    }
+
+    /**
+     * Stops the given delegator receiving the cache clears sent through this class.
+     *
+     * @param delegator the delegator to leave
+     */
+    public static void leave(final GenericDelegator delegator) {
+        delegators.remove(delegator);
+    }
+
+    public void distributedClearCacheLine(final GenericValue value) {
+        for (GenericDelegator peer : getPeers()) {
+            peer.clearCacheLine(value, false);
+        }
+    }
+
+    public void distributedClearCacheLineFlexible(final GenericEntity dummyPK) {
+        for (GenericDelegator peer : getPeers()) {
+            peer.clearCacheLineFlexible(dummyPK, false);
+        }
+    }
+
+    public void distributedClearCacheLine(final GenericPK primaryKey) {
+        for (GenericDelegator peer : getPeers()) {
+            peer.clearCacheLine(primaryKey, false);
+        }
+    }
+
+    public void distributedClearCacheLines(final String entityName) {
+        for (GenericDelegator peer : getPeers()) {
+            peer.clearCacheLines(entityName, false);
+        }
+    }
+
+    public boolean supportsEntityClears() {
+        return true;
+    }
+
+    public void clearAllCaches() {
+        for (GenericDelegator peer : getPeers()) {
+            peer.clearAllCaches(false);
+        }
+    }
+
+    private Iterable<GenericDelegator> getPeers() {
+        final Set<GenericDelegator> peers = new HashSet<GenericDelegator>(delegators);
+        peers.remove(delegator);
+        return peers;
+    }
+}
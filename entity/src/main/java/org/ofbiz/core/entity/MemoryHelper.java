@@ -275,6 +275,17 @@ public class MemoryHelper implements GenericHelper {
         }
     }
 
+    public int createAll(List<? extends GenericValue> values) throws GenericEntityException {
+        int count = 0;
+        for (GenericValue gv : values) {
+            if (addToCache(gv)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
     public GenericValue create(GenericPK primaryKey) throws GenericEntityException {
         return create(new GenericValue(primaryKey));
     }
@@ -530,6 +541,10 @@ public class MemoryHelper implements GenericHelper {
         return count;
     }
 
+    public int upsertAll(List<? extends GenericValue> values) throws GenericEntityException {
+        return storeAll(values);
+    }
+
     public int removeAll(List<? extends GenericEntity> dummyPKs) throws GenericEntityException {
         int count = 0;
         for (GenericEntity ge : dummyPKs) {
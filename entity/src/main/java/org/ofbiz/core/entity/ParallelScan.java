@@ -0,0 +1,415 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.util.Debug;
+import org.ofbiz.core.util.GeneralRuntimeException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Reads every value of an entity that matches a condition by splitting its primary key into ranges that are read in
+ * parallel, each on a connection of its own, for bulk jobs over whole tables such as reindexing or exports.
+ * <p>
+ * The ranges of an integral key split the span between its lowest and highest values evenly; those of any other key
+ * are bounded by the keys found at even offsets into the matching rows. An entity whose primary key has more than one
+ * field is read as a single partition. Each partition is read in key order as a
+ * {@link EntityFindOptions#streaming() streaming} query; if reading it fails, it's read again from the row after the
+ * last one passed to the consumer, see {@link EntityFindOptions#after(Map)}, so no value is consumed twice.
+ * </p>
+ * <p>
+ * The consumer is called from several threads at once, so it must be thread-safe. An exception that it throws is not
+ * retried, and ends the scan.
+ * </p>
+ *
+ * @see GenericDelegator#parallelScan(String, EntityCondition, int, Consumer)
+ * @since 1.2.6
+ */
+public class ParallelScan {
+
+    public static final String module = ParallelScan.class.getName();
+
+    /**
+     * The number of times a partition is read before giving up, by default.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * The number of values read between two progress notifications of a partition.
+     */
+    public static final int PROGRESS_INTERVAL = 10000;
+
+    private static final AtomicInteger scanCounter = new AtomicInteger();
+
+    private final DelegatorInterface delegator;
+    private final String entityName;
+    private final EntityCondition condition;
+    private final int partitionCount;
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private ProgressListener progressListener;
+
+    /**
+     * @param delegator      the delegator to read with
+     * @param entityName     the name of the entity to read
+     * @param condition      the condition the values must match, or null for all of them
+     * @param partitionCount the number of ranges to split the primary key into, at least one
+     */
+    public ParallelScan(final DelegatorInterface delegator, final String entityName, final EntityCondition condition,
+                        final int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("A scan needs at least one partition, not " + partitionCount);
+        }
+        this.delegator = delegator;
+        this.entityName = entityName;
+        this.condition = condition;
+        this.partitionCount = partitionCount;
+    }
+
+    /**
+     * Sets the most partitions read at once, which is the number of available processors by default; each of them
+     * holds a database connection while it's read.
+     *
+     * @param maxThreads at least one
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public ParallelScan maxThreads(final int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("A scan needs at least one thread, not " + maxThreads);
+        }
+        this.maxThreads = maxThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of times a partition is read before giving up, {@link #DEFAULT_MAX_ATTEMPTS} by default.
+     *
+     * @param maxAttempts at least one
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public ParallelScan maxAttempts(final int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("A partition needs at least one attempt, not " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the listener to tell about the progress of each partition.
+     *
+     * @param progressListener null for none
+     * @return {@code this}, for convenient use as a chained builder
+     */
+    public ParallelScan progressListener(final ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Reads every matching value, returning once they have all been consumed.
+     *
+     * @param consumer the thread-safe consumer of the values
+     * @return the partitions that were read, in key order
+     * @throws GenericEntityException if the key can't be split, or a partition still fails on its last attempt
+     */
+    public List<Partition> run(final Consumer<? super GenericValue> consumer) throws GenericEntityException {
+        final ModelEntity modelEntity = delegator.getModelEntity(entityName);
+        if (modelEntity == null) {
+            throw new GenericModelException("There is no entity called " + entityName);
+        }
+        final List<Partition> partitions = split(modelEntity);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(partitions.size(), maxThreads),
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("entity-parallel-scan-" + scanCounter.incrementAndGet() + "-%d").build());
+        try {
+            final CompletionService<Partition> completionService = new ExecutorCompletionService<Partition>(executor);
+            for (final Partition partition : partitions) {
+                completionService.submit(() -> scan(modelEntity, partition, consumer));
+            }
+            for (int i = 0; i < partitions.size(); i++) {
+                final Partition partition = completionService.take().get();
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Scanned " + partition, module);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityException("Interrupted while scanning " + entityName, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GenericEntityException("Error scanning " + entityName, cause);
+        } finally {
+            // stops the partitions still being read when one has failed
+            executor.shutdownNow();
+        }
+        return partitions;
+    }
+
+    private List<Partition> split(final ModelEntity modelEntity) throws GenericEntityException {
+        if (partitionCount == 1 || modelEntity.getPksSize() != 1) {
+            return singletonList(new Partition(0, null, null));
+        }
+        final String keyName = modelEntity.getPk(0).getName();
+        final Object lowestKey = findKeyAt(keyName, keyName, 0);
+        if (lowestKey == null) {
+            return singletonList(new Partition(0, null, null));
+        }
+
+        final List<Object> boundaries = new ArrayList<Object>(partitionCount - 1);
+        if (lowestKey instanceof Long || lowestKey instanceof Integer || lowestKey instanceof Short) {
+            final Object highestKey = findKeyAt(keyName, keyName + " DESC", 0);
+            if (highestKey == null) {
+                // the matching rows were removed since we found the lowest key
+                return singletonList(new Partition(0, null, null));
+            }
+            for (long boundary : splitRange(((Number) lowestKey).longValue(), ((Number) highestKey).longValue(),
+                    partitionCount)) {
+                boundaries.add(toKeyType(boundary, lowestKey));
+            }
+        } else {
+            // sample the keys found at even offsets into the matching rows
+            final long count = delegator.countByCondition(entityName, null, condition, null);
+            for (int i = 1; i < partitionCount; i++) {
+                final Object boundary = findKeyAt(keyName, keyName, (int) (count * i / partitionCount));
+                if (boundary != null && !boundary.equals(lowestKey) &&
+                        (boundaries.isEmpty() || !boundary.equals(boundaries.get(boundaries.size() - 1)))) {
+                    boundaries.add(boundary);
+                }
+            }
+        }
+
+        // the first and last partitions are open-ended, so that together they cover the whole key
+        final List<Partition> partitions = new ArrayList<Partition>(boundaries.size() + 1);
+        Object lowerBound = null;
+        for (Object boundary : boundaries) {
+            partitions.add(new Partition(partitions.size(), lowerBound, boundary));
+            lowerBound = boundary;
+        }
+        partitions.add(new Partition(partitions.size(), lowerBound, null));
+        return partitions;
+    }
+
+    /**
+     * Splits the range of keys from <code>min</code> to <code>max</code> into at most <code>partitionCount</code>
+     * ranges of about the same size.
+     *
+     * @return the lowest key of each range after the first, in increasing order
+     */
+    @VisibleForTesting
+    static List<Long> splitRange(final long min, final long max, final int partitionCount) {
+        final BigInteger lowest = BigInteger.valueOf(min);
+        final BigInteger span = BigInteger.valueOf(max).subtract(lowest).add(BigInteger.ONE);
+        final List<Long> boundaries = new ArrayList<Long>(partitionCount - 1);
+        long previous = min;
+        for (int i = 1; i < partitionCount; i++) {
+            final long boundary = lowest.add(span.multiply(BigInteger.valueOf(i))
+                    .divide(BigInteger.valueOf(partitionCount))).longValue();
+            if (boundary > previous) {
+                boundaries.add(boundary);
+                previous = boundary;
+            }
+        }
+        return boundaries;
+    }
+
+    private static Object toKeyType(final long boundary, final Object sample) {
+        if (sample instanceof Integer) {
+            return (int) boundary;
+        }
+        if (sample instanceof Short) {
+            return (short) boundary;
+        }
+        return boundary;
+    }
+
+    private Object findKeyAt(final String keyName, final String orderBy, final int offset)
+            throws GenericEntityException {
+        final EntityListIterator keys = delegator.findListIteratorByCondition(entityName, condition, null,
+                singletonList(keyName), singletonList(orderBy), EntityFindOptions.findOptions().range(offset, 1));
+        try {
+            final GenericValue key = keys.next();
+            return key == null ? null : key.get(keyName);
+        } finally {
+            keys.close();
+        }
+    }
+
+    private Partition scan(final ModelEntity modelEntity, final Partition partition,
+                           final Consumer<? super GenericValue> consumer) throws GenericEntityException {
+        while (true) {
+            partition.attempts.incrementAndGet();
+            try {
+                scanFromLastKey(modelEntity, partition, consumer);
+                return partition;
+            } catch (GenericEntityException e) {
+                // without a primary key, a partition can't carry on from where it failed
+                if (partition.getAttempts() >= maxAttempts || Thread.currentThread().isInterrupted() ||
+                        (partition.lastKey == null && partition.getRowCount() > 0)) {
+                    throw e;
+                }
+                Debug.logWarning(e, "Error reading " + partition + " of " + entityName + ", reading it again", module);
+            }
+        }
+    }
+
+    private void scanFromLastKey(final ModelEntity modelEntity, final Partition partition,
+                                 final Consumer<? super GenericValue> consumer) throws GenericEntityException {
+        final List<String> keyNames = modelEntity.getPkFieldNames();
+        final EntityFindOptions findOptions = EntityFindOptions.findOptions().streaming();
+        if (partition.lastKey != null) {
+            findOptions.after(partition.lastKey);
+        }
+        final EntityListIterator values = delegator.findListIteratorByCondition(entityName,
+                partition.getCondition(keyNames.isEmpty() ? null : keyNames.get(0), condition), null, null,
+                keyNames.isEmpty() ? null : keyNames, findOptions);
+        try {
+            GenericValue value;
+            while ((value = next(values)) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                // a consumer may keep the value, so it must not be one the iterator refills
+                consumer.accept(values.isReuseValue() ? values.detach() : value);
+                if (!keyNames.isEmpty()) {
+                    partition.lastKey = values.getContinuationKey();
+                }
+                if (partition.rowCount.incrementAndGet() % PROGRESS_INTERVAL == 0 && progressListener != null) {
+                    progressListener.onProgress(partition);
+                }
+            }
+        } finally {
+            values.close();
+        }
+        partition.complete = true;
+        if (progressListener != null) {
+            progressListener.onProgress(partition);
+        }
+    }
+
+    private static GenericValue next(final EntityListIterator values) throws GenericEntityException {
+        try {
+            return values.next();
+        } catch (GeneralRuntimeException e) {
+            throw new GenericEntityException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Is told about the progress of the partitions of a scan.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called from the thread reading a partition, every {@link #PROGRESS_INTERVAL} values and once it's complete.
+         *
+         * @param partition the partition being read
+         */
+        void onProgress(Partition partition);
+    }
+
+    /**
+     * A range of primary keys read by a scan, from its lower bound, inclusive, to its upper bound, exclusive.
+     */
+    public static final class Partition {
+
+        private final int index;
+        private final Object lowerBound;
+        private final Object upperBound;
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicInteger attempts = new AtomicInteger();
+        // the key of the last value consumed, which a retry starts after
+        private volatile Map<String, Object> lastKey;
+        private volatile boolean complete;
+
+        Partition(final int index, final Object lowerBound, final Object upperBound) {
+            this.index = index;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        EntityCondition getCondition(final String keyName, final EntityCondition condition) {
+            final List<EntityCondition> conditions = new ArrayList<EntityCondition>(3);
+            if (condition != null) {
+                conditions.add(condition);
+            }
+            if (lowerBound != null) {
+                conditions.add(new EntityExpr(keyName, EntityOperator.GREATER_THAN_EQUAL_TO, lowerBound));
+            }
+            if (upperBound != null) {
+                conditions.add(new EntityExpr(keyName, EntityOperator.LESS_THAN, upperBound));
+            }
+            if (conditions.size() <= 1) {
+                return conditions.isEmpty() ? null : conditions.get(0);
+            }
+            return new EntityConditionList(conditions, EntityOperator.AND);
+        }
+
+        /**
+         * @return the position of this partition in the key order, from zero
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the lowest key of this partition, or null if it's the first one
+         */
+        public Object getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * @return the key after the highest one of this partition, or null if it's the last one
+         */
+        public Object getUpperBound() {
+            return upperBound;
+        }
+
+        /**
+         * @return the number of values consumed so far
+         */
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        /**
+         * @return the number of times this partition has been read so far
+         */
+        public int getAttempts() {
+            return attempts.get();
+        }
+
+        /**
+         * @return whether every value of this partition has been consumed
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public String toString() {
+            return "[Partition " + index + "::[" + lowerBound + ", " + upperBound + ")::rows=" + rowCount +
+                    "::attempts=" + attempts + (complete ? "::complete]" : "]");
+        }
+    }
+}
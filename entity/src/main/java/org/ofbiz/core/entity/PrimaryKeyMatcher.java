@@ -0,0 +1,102 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.entity.model.ModelEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches the rows read for some primary keys with one query back to those keys.
+ * <p>
+ * The keys are compared on their values rather than with {@link GenericPK#equals}, with integral numbers compared
+ * as Longs, so that a key set with an Integer finds its row, which is read back with a Long. The database may still
+ * match a row that this can't, e.g. when its collation ignores case or pads CHAR columns, so a row that matches no
+ * key is remembered: when there is one, the keys without a row must be looked up one at a time before they can be
+ * taken to be missing.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+final class PrimaryKeyMatcher {
+
+    private final Set<List<Object>> keyValues = new HashSet<List<Object>>();
+    private final Map<List<Object>, GenericValue> rows = new HashMap<List<Object>, GenericValue>();
+    private boolean unmatchedRows;
+
+    /**
+     * @param primaryKeys the keys the rows are read for, which can be of different entities
+     */
+    PrimaryKeyMatcher(final Collection<? extends GenericEntity> primaryKeys) {
+        for (final GenericEntity primaryKey : primaryKeys) {
+            keyValues.add(getKeyValues(primaryKey));
+        }
+    }
+
+    /**
+     * Returns the entity name and primary key values of the given entity, in the order of its model, with integral
+     * numbers widened to Longs.
+     *
+     * @param entity an entity with a model
+     * @return a list that equals that of any entity with the same primary key
+     */
+    static List<Object> getKeyValues(final GenericEntity entity) {
+        final ModelEntity modelEntity = entity.getModelEntity();
+        final List<Object> keyValues = new ArrayList<Object>(modelEntity.getPksSize() + 1);
+        keyValues.add(entity.getEntityName());
+        for (int i = 0; i < modelEntity.getPksSize(); i++) {
+            final Object value = entity.get(modelEntity.getPk(i).getName());
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                keyValues.add(((Number) value).longValue());
+            } else {
+                keyValues.add(value);
+            }
+        }
+        return keyValues;
+    }
+
+    /**
+     * Matches the given row to the keys with its primary key values.
+     *
+     * @param row a row read for some of the keys
+     * @return false if it matches none of them
+     */
+    boolean add(final GenericValue row) {
+        final List<Object> rowKeyValues = getKeyValues(row);
+        if (!keyValues.contains(rowKeyValues)) {
+            unmatchedRows = true;
+            return false;
+        }
+        rows.put(rowKeyValues, row);
+        return true;
+    }
+
+    /**
+     * Records the row of the given key, as found on its own.
+     *
+     * @param primaryKey one of the keys
+     * @param row        its row
+     */
+    void put(final GenericEntity primaryKey, final GenericValue row) {
+        rows.put(getKeyValues(primaryKey), row);
+    }
+
+    /**
+     * @param primaryKey one of the keys, or an entity with the same primary key
+     * @return the row matched to it, or null if there is none
+     */
+    GenericValue get(final GenericEntity primaryKey) {
+        return rows.get(getKeyValues(primaryKey));
+    }
+
+    /**
+     * @return whether a row has matched none of the keys, in which case the keys without a row may still have one
+     */
+    boolean hasUnmatchedRows() {
+        return unmatchedRows;
+    }
+}
@@ -0,0 +1,262 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.util.Debug;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent loads of the same cache key, so that when a popular line is missing from a cache (e.g. just
+ * after it was cleared) only one caller reads it from the database while the others wait for its result.
+ * <p>
+ * A caller waits at most {@link #getWaitMillis()} for the load in flight, after which it gives up and reads from the
+ * database itself; it does the same if the load in flight fails, so that each caller still sees its own errors.
+ * </p>
+ * <p>
+ * Loads that are in flight when the cache is invalidated may have read the old data, so {@link #invalidated(String)}
+ * (or {@link #invalidated()} for every entity) must be called whenever lines are removed from the cache, and
+ * <em>before</em> they are removed: callers arriving afterwards start a new load instead of joining the old one, and
+ * the old load's result is not written to the cache. The generation is checked again once the result has been
+ * written, and the result removed if it moved meanwhile; together with invalidating before removing, this means a
+ * stale result can never outlive the invalidation.
+ * </p>
+ *
+ * @param <K> the type of the cache keys
+ * @param <V> the type of the loaded values
+ * @since 1.2.6
+ */
+public class SingleFlightLoader<K, V> {
+
+    public static final String module = SingleFlightLoader.class.getName();
+
+    /**
+     * Reads a value from the database.
+     *
+     * @param <V> the type of the value
+     */
+    public interface Loader<V> {
+        V load() throws GenericEntityException;
+    }
+
+    /**
+     * Writes a loaded value to the cache.
+     *
+     * @param <V> the type of the value
+     */
+    public interface CacheWriter<V> {
+        void write(V value);
+
+        /**
+         * Removes a value written by {@link #write} again, because the cache was invalidated while it was written.
+         * It doesn't matter if the line has since been replaced; it will just be loaded again.
+         *
+         * @param value the value that was written
+         */
+        void remove(V value);
+    }
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<K, Flight<V>>();
+    // bumped when the whole cache is invalidated
+    private final AtomicLong allGeneration = new AtomicLong();
+    // entity name -> bumped when the lines of that entity are invalidated
+    private final ConcurrentMap<String, AtomicLong> entityGenerations = new ConcurrentHashMap<String, AtomicLong>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder timedOutWaits = new LongAdder();
+    private volatile long waitMillis;
+
+    /**
+     * @param waitMillis how long callers wait for a load in flight before reading from the database themselves;
+     *                   zero or less turns coalescing off
+     */
+    public SingleFlightLoader(final long waitMillis) {
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Loads the value for the given key, joining a load of the same key that is already in flight if there is one.
+     * Only the caller that actually reads from the database writes the result to the cache, and only if the lines
+     * of the entity haven't been invalidated since it started reading.
+     *
+     * @param entityName  the entity of the line being loaded, whose invalidations make the load stale
+     * @param key         the cache key being loaded
+     * @param loader      reads the value from the database
+     * @param cacheWriter writes the value to the cache
+     * @return the loaded value
+     * @throws GenericEntityException if the value could not be read
+     */
+    public V load(final String entityName, final K key, final Loader<? extends V> loader,
+                  final CacheWriter<? super V> cacheWriter) throws GenericEntityException {
+        final Generation generation = new Generation(allGeneration, getEntityGeneration(entityName));
+        final long waitMillis = this.waitMillis;
+        if (waitMillis <= 0) {
+            return loadAndWrite(loader, cacheWriter, generation);
+        }
+
+        final Flight<V> flight = new Flight<V>(generation);
+        final Flight<V> existingFlight = flights.putIfAbsent(key, flight);
+        if (existingFlight == null) {
+            return lead(key, flight, loader, cacheWriter);
+        }
+        if (!existingFlight.generation.sameAs(generation)) {
+            // the load in flight started before the entity was last invalidated, so it may have read old data
+            if (flights.replace(key, existingFlight, flight)) {
+                return lead(key, flight, loader, cacheWriter);
+            }
+            return loadAndWrite(loader, cacheWriter, generation);
+        }
+
+        coalescedLoads.increment();
+        try {
+            if (existingFlight.await(waitMillis)) {
+                if (existingFlight.succeeded) {
+                    return existingFlight.value;
+                }
+            } else {
+                timedOutWaits.increment();
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Timed out after " + waitMillis + "ms waiting for the load of " + key +
+                            ", reading it directly", module);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loads.increment();
+        return loader.load();
+    }
+
+    private V lead(final K key, final Flight<V> flight, final Loader<? extends V> loader,
+                   final CacheWriter<? super V> cacheWriter) throws GenericEntityException {
+        try {
+            final V value = loadAndWrite(loader, cacheWriter, flight.generation);
+            flight.succeeded(value);
+            return value;
+        } finally {
+            flights.remove(key, flight);
+            // let the waiters read for themselves if we failed
+            flight.done();
+        }
+    }
+
+    private V loadAndWrite(final Loader<? extends V> loader, final CacheWriter<? super V> cacheWriter,
+                           final Generation startGeneration) throws GenericEntityException {
+        loads.increment();
+        final V value = loader.load();
+        if (startGeneration.isCurrent()) {
+            cacheWriter.write(value);
+            // an invalidation that came between the check and the write may already have removed the lines
+            if (!startGeneration.isCurrent()) {
+                cacheWriter.remove(value);
+            }
+        }
+        return value;
+    }
+
+    private AtomicLong getEntityGeneration(final String entityName) {
+        return entityGenerations.computeIfAbsent(entityName, name -> new AtomicLong());
+    }
+
+    /**
+     * Tells this loader that lines of the given entity are about to be removed from the cache, so that loads of that
+     * entity in flight are not joined and don't write their results to the cache.
+     *
+     * @param entityName the entity whose lines are being removed
+     */
+    public void invalidated(final String entityName) {
+        getEntityGeneration(entityName).incrementAndGet();
+    }
+
+    /**
+     * Tells this loader that all the lines are about to be removed from the cache, so that no load in flight is
+     * joined or writes its result to the cache.
+     */
+    public void invalidated() {
+        allGeneration.incrementAndGet();
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public void setWaitMillis(final long waitMillis) {
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * @return the number of times this loader read from the database
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the number of times a caller joined a load that was already in flight instead of starting its own
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * @return the number of times a caller gave up waiting for a load in flight and read from the database itself
+     */
+    public long getTimedOutWaitCount() {
+        return timedOutWaits.sum();
+    }
+
+    /**
+     * The generations of the whole cache and of one entity when a load started.
+     */
+    private static final class Generation {
+        final AtomicLong allGeneration;
+        final AtomicLong entityGeneration;
+        final long all;
+        final long entity;
+
+        Generation(final AtomicLong allGeneration, final AtomicLong entityGeneration) {
+            this.allGeneration = allGeneration;
+            this.entityGeneration = entityGeneration;
+            this.all = allGeneration.get();
+            this.entity = entityGeneration.get();
+        }
+
+        boolean isCurrent() {
+            return allGeneration.get() == all && entityGeneration.get() == entity;
+        }
+
+        boolean sameAs(final Generation other) {
+            return all == other.all && entity == other.entity;
+        }
+    }
+
+    private static final class Flight<V> {
+        final Generation generation;
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile boolean succeeded;
+        volatile V value;
+
+        Flight(final Generation generation) {
+            this.generation = generation;
+        }
+
+        void succeeded(final V value) {
+            this.value = value;
+            this.succeeded = true;
+        }
+
+        void done() {
+            latch.countDown();
+        }
+
+        /**
+         * Waits for the load to finish, returning false if it didn't in time.
+         */
+        boolean await(final long waitMillis) throws InterruptedException {
+            return latch.await(waitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
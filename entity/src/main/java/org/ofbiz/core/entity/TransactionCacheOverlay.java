@@ -0,0 +1,150 @@
+package org.ofbiz.core.entity;
+
+import org.ofbiz.core.util.Debug;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The caches of a {@link GenericDelegator} as seen from inside a local transaction (see
+ * {@link TransactionUtil#beginLocalTransaction(String, int)}).
+ * <p>
+ * Until the transaction commits, its writes must neither be visible to other threads nor hidden from itself, so the
+ * cache lines it invalidates are not removed from the shared caches straight away; the invalidations are recorded
+ * here and replayed against the shared caches after the commit, or dropped if the transaction rolls back. Meanwhile
+ * the entities that the transaction has written are "dirty": the transaction reads them from its own private cache
+ * lines, which are discarded when it completes, and never from or into the shared caches.
+ * </p>
+ * <p>
+ * An overlay belongs to a single transaction, so to a single thread, and is not thread-safe.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class TransactionCacheOverlay implements TransactionUtil.LocalTransactionListener {
+
+    public static final String module = TransactionCacheOverlay.class.getName();
+
+    private final Set<String> dirtyEntities = new HashSet<String>();
+    private boolean allDirty;
+    private final List<Runnable> deferredInvalidations = new ArrayList<Runnable>();
+
+    private final Map<EntityCacheKey, GenericValue> primaryKeyCache = new HashMap<EntityCacheKey, GenericValue>();
+    private final Map<EntityCacheKey, List<GenericValue>> andCache = new HashMap<EntityCacheKey, List<GenericValue>>();
+    private final Map<String, List<GenericValue>> allCache = new HashMap<String, List<GenericValue>>();
+    private final Map<EntityConditionCacheKey, List<GenericValue>> conditionCache =
+            new HashMap<EntityConditionCacheKey, List<GenericValue>>();
+
+    /**
+     * Indicates whether the transaction has written the given entity, in which case the shared caches must not be
+     * used for it until the transaction completes.
+     *
+     * @param entityName the name of the entity
+     * @return true if the private cache lines must be used
+     */
+    public boolean isDirty(final String entityName) {
+        return allDirty || dirtyEntities.contains(entityName);
+    }
+
+    /**
+     * Records that the transaction has written the given entity: its private cache lines are dropped and the given
+     * invalidation of the shared caches is deferred until the transaction commits.
+     *
+     * @param entityName   the name of the entity that was written
+     * @param invalidation clears the affected lines of the shared caches
+     */
+    public void invalidated(final String entityName, final Runnable invalidation) {
+        dirtyEntities.add(entityName);
+        deferredInvalidations.add(invalidation);
+        removeEntity(primaryKeyCache, entityName);
+        removeEntity(andCache, entityName);
+        removeEntity(conditionCache, entityName);
+        allCache.remove(entityName);
+    }
+
+    /**
+     * Records that all the caches have been cleared: every entity is now dirty, and the given invalidation of the
+     * shared caches is deferred until the transaction commits.
+     *
+     * @param invalidation clears the shared caches
+     */
+    public void allInvalidated(final Runnable invalidation) {
+        allDirty = true;
+        deferredInvalidations.add(invalidation);
+        primaryKeyCache.clear();
+        andCache.clear();
+        allCache.clear();
+        conditionCache.clear();
+    }
+
+    public Map<EntityCacheKey, GenericValue> getPrimaryKeyCache() {
+        return primaryKeyCache;
+    }
+
+    public Map<EntityCacheKey, List<GenericValue>> getAndCache() {
+        return andCache;
+    }
+
+    public Map<String, List<GenericValue>> getAllCache() {
+        return allCache;
+    }
+
+    public Map<EntityConditionCacheKey, List<GenericValue>> getConditionCache() {
+        return conditionCache;
+    }
+
+    public void afterCompletion(final boolean committed) {
+        if (committed) {
+            for (Runnable invalidation : deferredInvalidations) {
+                try {
+                    invalidation.run();
+                } catch (RuntimeException e) {
+                    Debug.logError(e, "Could not clear the cache after committing a transaction", module);
+                }
+            }
+        }
+        deferredInvalidations.clear();
+        dirtyEntities.clear();
+        allDirty = false;
+        primaryKeyCache.clear();
+        andCache.clear();
+        allCache.clear();
+        conditionCache.clear();
+    }
+
+    /**
+     * Copies the given value as it is now, including its original database values, so that the cache lines it
+     * affects can still be worked out after the transaction has changed it further.
+     *
+     * @param value the value to copy
+     * @return the copy
+     */
+    public static GenericValue snapshot(final GenericValue value) {
+        final GenericValue snapshot = (GenericValue) value.clone();
+        if (value.originalDbValues != null) {
+            snapshot.originalDbValues = new HashMap<String, Object>(value.originalDbValues);
+        }
+        snapshot.modified = value.modified;
+        return snapshot;
+    }
+
+    private static void removeEntity(final Map<?, ?> cache, final String entityName) {
+        for (Iterator<?> keys = cache.keySet().iterator(); keys.hasNext(); ) {
+            if (entityName.equals(entityName(keys.next()))) {
+                keys.remove();
+            }
+        }
+    }
+
+    private static String entityName(final Object key) {
+        if (key instanceof EntityCacheKey) {
+            return ((EntityCacheKey) key).getEntityName();
+        }
+        return ((EntityConditionCacheKey) key).getEntityName();
+    }
+}
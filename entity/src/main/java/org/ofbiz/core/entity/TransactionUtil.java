@@ -23,6 +23,7 @@
  */
 package org.ofbiz.core.entity;
 
+import org.ofbiz.core.entity.jdbc.PreparedStatementCache;
 import org.ofbiz.core.util.Debug;
 
 import javax.sql.XAConnection;
@@ -37,6 +38,10 @@ import javax.transaction.UserTransaction;
 import javax.transaction.xa.XAResource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>Transaction Utility to help with some common transaction tasks
@@ -307,6 +312,22 @@ public class TransactionUtil implements javax.transaction.Status {
         return transaction == null ? null : transaction.getConnection();
     }
 
+    /**
+     * Returns the cache of prepared statements of the local transaction of the current thread, if the given
+     * connection is the one of that transaction. The statements are closed when the transaction completes, before
+     * its connection is released.
+     *
+     * @param connection the connection that a statement is to be prepared on
+     * @return null if there is no active local transaction, or it has another connection
+     */
+    public static PreparedStatementCache getLocalTransactionStatementCache(final Connection connection) {
+        final LocalTransaction transaction = localTransaction.get();
+        if (transaction == null || connection == null || transaction.getConnection() != connection) {
+            return null;
+        }
+        return transaction.getStatementCache();
+    }
+
     /**
      * Checks if there is a {@link Connection} with a transaction for the current thread.
      *
@@ -347,6 +368,7 @@ public class TransactionUtil implements javax.transaction.Status {
                 try {
                     Debug.logInfo("[TransactionUtil.commitLocalTransaction] Transaction started and active so committing transaction.", module);
                     getLocalTransactionConnection().commit();
+                    transaction.setCommitted();
                     Debug.logInfo("[TransactionUtil.commitLocalTransaction] Transaction committed.", module);
 
                 } catch (SQLException e) {
@@ -405,6 +427,49 @@ public class TransactionUtil implements javax.transaction.Status {
         }
     }
 
+    /**
+     * Registers a listener to be told when the local transaction of the current thread completes, i.e. once it has
+     * been committed or rolled back and its connection has been released.
+     *
+     * @param listener the listener to register
+     * @return false if there is no active local transaction, in which case the listener is not registered
+     */
+    public static boolean addLocalTransactionListener(final LocalTransactionListener listener) {
+        final LocalTransaction transaction = localTransaction.get();
+        if (transaction == null) {
+            return false;
+        }
+        transaction.listeners.add(listener);
+        return true;
+    }
+
+    /**
+     * Returns the resource bound to the local transaction of the current thread under the given key.
+     *
+     * @param key the key under which the resource was bound
+     * @return null if there is no active local transaction or nothing is bound to the key
+     */
+    public static Object getLocalTransactionResource(final Object key) {
+        final LocalTransaction transaction = localTransaction.get();
+        return transaction == null ? null : transaction.resources.get(key);
+    }
+
+    /**
+     * Binds a resource to the local transaction of the current thread, for as long as the transaction lasts.
+     *
+     * @param key      the key to bind the resource under
+     * @param resource the resource to bind
+     * @return false if there is no active local transaction, in which case the resource is not bound
+     */
+    public static boolean bindLocalTransactionResource(final Object key, final Object resource) {
+        final LocalTransaction transaction = localTransaction.get();
+        if (transaction == null) {
+            return false;
+        }
+        transaction.resources.put(key, resource);
+        return true;
+    }
+
     /**
      * If a connection exists in the thread local close it. Clear the thread local no matter what.
      */
@@ -413,6 +478,7 @@ public class TransactionUtil implements javax.transaction.Status {
 
         try {
             if (connection != null) {
+                localTransaction.get().closeStatementCache();
                 connection.close();
                 Debug.logInfo("Connection closed.", module);
             }
@@ -429,13 +495,34 @@ public class TransactionUtil implements javax.transaction.Status {
      * connections are not leaked anywhere.
      */
     public static void clearTransactionThreadLocal() {
+        final LocalTransaction transaction = localTransaction.get();
         localTransaction.remove();
         Debug.logInfo("Thread local cleared.", module);
+        if (transaction != null) {
+            transaction.closeStatementCache();
+            transaction.completed();
+        }
+    }
+
+    /**
+     * Told when a local transaction completes; see {@link #addLocalTransactionListener(LocalTransactionListener)}.
+     */
+    public interface LocalTransactionListener {
+        /**
+         * Called once the transaction has completed and is no longer the current thread's transaction.
+         *
+         * @param committed true if the transaction was committed, false if it was rolled back or abandoned
+         */
+        void afterCompletion(boolean committed);
     }
 
     private static class LocalTransaction {
         private final Connection connection;
+        private final List<LocalTransactionListener> listeners = new ArrayList<LocalTransactionListener>();
+        private final Map<Object, Object> resources = new HashMap<Object, Object>();
+        private PreparedStatementCache statementCache;
         private volatile boolean rollbackRequired;
+        private boolean committed;
 
         private LocalTransaction(final Connection connection) {
             this.connection = connection;
@@ -445,6 +532,19 @@ public class TransactionUtil implements javax.transaction.Status {
             return connection;
         }
 
+        public PreparedStatementCache getStatementCache() {
+            if (statementCache == null) {
+                statementCache = new PreparedStatementCache();
+            }
+            return statementCache;
+        }
+
+        public void closeStatementCache() {
+            if (statementCache != null) {
+                statementCache.close();
+            }
+        }
+
         public boolean isRollbackRequired() {
             return rollbackRequired;
         }
@@ -452,5 +552,19 @@ public class TransactionUtil implements javax.transaction.Status {
         public void setRollbackRequired() {
             this.rollbackRequired = true;
         }
+
+        public void setCommitted() {
+            this.committed = true;
+        }
+
+        public void completed() {
+            for (LocalTransactionListener listener : listeners) {
+                try {
+                    listener.afterCompletion(committed);
+                } catch (RuntimeException e) {
+                    Debug.logError(e, "[TransactionUtil.LocalTransaction] Error notifying a listener of the completion of a transaction.", module);
+                }
+            }
+        }
     }
 }
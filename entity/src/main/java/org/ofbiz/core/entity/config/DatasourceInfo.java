@@ -22,6 +22,11 @@ import static org.ofbiz.core.util.UtilValidate.isEmpty;
 public class DatasourceInfo {
     static final int DEFAULT_POOL_MAX_SIZE = 50;
 
+    /**
+     * How many rows a bulk write sends to the database in one JDBC batch, unless the datasource says otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     private final String name;
     private final String helperClass;
     private String fieldTypeName;
@@ -47,6 +52,7 @@ public class DatasourceInfo {
     private boolean useIndices = true;
     private boolean useFunctionBasedIndices = true;
     private String joinStyle = "ansi";
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
     protected static final Properties CONFIGURATION;
 
@@ -165,6 +171,7 @@ public class DatasourceInfo {
         if (joinStyle == null || joinStyle.length() == 0) {
             joinStyle = "ansi";
         }
+        batchSize = getIntValueFromElement(element, "batch-size", DEFAULT_BATCH_SIZE);
 
         Element jndiDatasourceElement = UtilXml.firstChildElement(element, "jndi-jdbc");
         if (jndiDatasourceElement != null) {
@@ -436,6 +443,18 @@ public class DatasourceInfo {
         return joinStyle;
     }
 
+    /**
+     * @return the maximum number of rows that bulk writes such as storeAll send to the database in one JDBC batch;
+     * 1 or less means that rows are written one at a time
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     private void silentlyClose(final Connection connection) {
         if (connection != null) {
             try {
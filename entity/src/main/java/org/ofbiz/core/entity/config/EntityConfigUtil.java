@@ -316,6 +316,22 @@ public class EntityConfigUtil {
 
 
     public static class DelegatorInfo {
+        /**
+         * How long callers wait by default for another caller to load a missing cache line, in milliseconds.
+         */
+        public static final long DEFAULT_CACHE_LOAD_WAIT_MILLIS = 10000;
+
+        /**
+         * How many distributed cache clears can wait before they are sent, by default.
+         */
+        public static final int DEFAULT_DISTRIBUTED_CACHE_CLEAR_BATCH_SIZE = 1000;
+
+        /**
+         * How many distributed clears of one entity's cache lines can wait before they are replaced by a clear of all
+         * of the entity's lines, by default.
+         */
+        public static final int DEFAULT_DISTRIBUTED_CACHE_CLEAR_ENTITY_THRESHOLD = 100;
+
         public String name;
         public String entityModelReader;
         public String entityGroupReader;
@@ -323,6 +339,10 @@ public class EntityConfigUtil {
         public boolean useDistributedCacheClear;
         public String distributedCacheClearClassName;
         public String distributedCacheClearUserLoginId;
+        public long cacheLoadWaitMillis = DEFAULT_CACHE_LOAD_WAIT_MILLIS;
+        public long distributedCacheClearFlushMillis;
+        public int distributedCacheClearBatchSize = DEFAULT_DISTRIBUTED_CACHE_CLEAR_BATCH_SIZE;
+        public int distributedCacheClearEntityThreshold = DEFAULT_DISTRIBUTED_CACHE_CLEAR_ENTITY_THRESHOLD;
         public Map<String, String> groupMap = new HashMap<String, String>();
 
         public DelegatorInfo(String name, String entityModelReader, String entityGroupReader, Map<String, String> groupMap) {
@@ -349,12 +369,36 @@ public class EntityConfigUtil {
                 this.distributedCacheClearUserLoginId = "admin";
             }
 
+            // zero turns off the coalescing of cache loads
+            this.cacheLoadWaitMillis = getLongAttribute(element, "cache-load-wait-millis", DEFAULT_CACHE_LOAD_WAIT_MILLIS);
+
+            // zero (the default) sends the distributed cache clears synchronously, one by one
+            this.distributedCacheClearFlushMillis = getLongAttribute(element, "distributed-cache-clear-flush-millis", 0);
+            this.distributedCacheClearBatchSize = (int) getLongAttribute(element, "distributed-cache-clear-batch-size",
+                    DEFAULT_DISTRIBUTED_CACHE_CLEAR_BATCH_SIZE);
+            this.distributedCacheClearEntityThreshold = (int) getLongAttribute(element,
+                    "distributed-cache-clear-entity-threshold", DEFAULT_DISTRIBUTED_CACHE_CLEAR_ENTITY_THRESHOLD);
+
             List<Element> groupMapList = UtilXml.childElementList(element, "group-map");
 
             for (Element groupMapElement : groupMapList) {
                 groupMap.put(groupMapElement.getAttribute("group-name"), groupMapElement.getAttribute("datasource-name"));
             }
         }
+
+        private long getLongAttribute(final Element element, final String attributeName, final long defaultValue) {
+            final String value = element.getAttribute(attributeName);
+            if (UtilValidate.isEmpty(value)) {
+                return defaultValue;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                Debug.logWarning("Invalid " + attributeName + " \"" + value + "\" for delegator " + name +
+                        ", using the default of " + defaultValue);
+                return defaultValue;
+            }
+        }
     }
 
 
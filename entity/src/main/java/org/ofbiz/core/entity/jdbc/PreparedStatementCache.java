@@ -0,0 +1,214 @@
+package org.ofbiz.core.entity.jdbc;
+
+import org.ofbiz.core.util.Debug;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The prepared statements of one connection, kept open between uses so that a statement run over and over, e.g. the
+ * INSERT of every row written in a local transaction, is only prepared once. Statements are keyed by their SQL and
+ * result set type and concurrency; a statement is taken out of the cache while it is in use, so two processors never
+ * share one, and the least recently used idle statements are closed once there are more than the maximum.
+ * <p>
+ * This works on top of any statement pooling of the connection pool, e.g. DBCP's <code>poolPreparedStatements</code>:
+ * closing a statement just hands it back to that pool. A cache belongs to the thread that owns the connection, so it
+ * is not thread-safe; see {@link org.ofbiz.core.entity.TransactionUtil#getLocalTransactionStatementCache(Connection)}.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class PreparedStatementCache {
+
+    public static final String module = PreparedStatementCache.class.getName();
+
+    /**
+     * The most idle statements that a cache keeps open by default.
+     */
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final int maxSize;
+    private final Map<Key, CachedStatement> idleStatements;
+    private final Map<PreparedStatement, CachedStatement> statementsInUse =
+            new IdentityHashMap<PreparedStatement, CachedStatement>();
+    private boolean closed;
+    private long hitCount;
+    private long missCount;
+
+    public PreparedStatementCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the most idle statements to keep open
+     */
+    public PreparedStatementCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.idleStatements = new LinkedHashMap<Key, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedStatement> eldest) {
+                if (size() > PreparedStatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue().statement);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns an idle statement with the given SQL, or prepares a new one; either way the statement is in use until
+     * it is {@link #release(PreparedStatement) released}.
+     *
+     * @param connection           the connection of this cache
+     * @param sql                  the SQL of the statement
+     * @param specifyTypeAndConcur true if the result set type and concurrency are given
+     * @param resultSetType        the result set type, see {@link Connection#prepareStatement(String, int, int)}
+     * @param resultSetConcurrency the result set concurrency, see {@link Connection#prepareStatement(String, int, int)}
+     * @return the statement, with no parameters set
+     * @throws SQLException if the statement can't be prepared
+     */
+    public PreparedStatement prepare(final Connection connection, final String sql, final boolean specifyTypeAndConcur,
+                                     final int resultSetType, final int resultSetConcurrency) throws SQLException {
+        final Key key = specifyTypeAndConcur ? new Key(sql, resultSetType, resultSetConcurrency) : new Key(sql, -1, -1);
+        CachedStatement cachedStatement = idleStatements.remove(key);
+        if (cachedStatement == null) {
+            missCount++;
+            final PreparedStatement statement = specifyTypeAndConcur ?
+                    connection.prepareStatement(sql, resultSetType, resultSetConcurrency) : connection.prepareStatement(sql);
+            try {
+                cachedStatement = new CachedStatement(key, statement);
+            } catch (SQLException e) {
+                closeQuietly(statement);
+                throw e;
+            }
+        } else {
+            hitCount++;
+        }
+        if (!closed) {
+            statementsInUse.put(cachedStatement.statement, cachedStatement);
+        }
+        return cachedStatement.statement;
+    }
+
+    /**
+     * Puts a statement that is no longer in use back in the cache, after clearing its parameters and batch; it's
+     * closed instead if it didn't come from this cache, if it can't be cleared or if this cache is closed.
+     *
+     * @param statement the statement returned by {@link #prepare}
+     */
+    public void release(final PreparedStatement statement) {
+        final CachedStatement cachedStatement = statementsInUse.remove(statement);
+        if (cachedStatement == null || closed) {
+            closeQuietly(statement);
+            return;
+        }
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setFetchSize(cachedStatement.fetchSize);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        final CachedStatement replaced = idleStatements.put(cachedStatement.key, cachedStatement);
+        if (replaced != null) {
+            // the same SQL was in use twice at once
+            closeQuietly(replaced.statement);
+        }
+    }
+
+    /**
+     * Closes all the statements of this cache, including those still in use; from now on, statements are not kept.
+     * Must be called before the connection is closed or handed back to its pool.
+     */
+    public void close() {
+        closed = true;
+        final List<CachedStatement> statements = new ArrayList<CachedStatement>(idleStatements.values());
+        statements.addAll(statementsInUse.values());
+        idleStatements.clear();
+        statementsInUse.clear();
+        for (CachedStatement cachedStatement : statements) {
+            closeQuietly(cachedStatement.statement);
+        }
+    }
+
+    /**
+     * @return the number of idle statements
+     */
+    public int size() {
+        return idleStatements.size();
+    }
+
+    /**
+     * @return the number of times an idle statement was reused
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of times a statement had to be prepared
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    private static void closeQuietly(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Debug.logWarning(e, "Error closing PreparedStatement", module);
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+
+        Key(final String sql, final int resultSetType, final int resultSetConcurrency) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return resultSetType == other.resultSetType && resultSetConcurrency == other.resultSetConcurrency &&
+                    sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * sql.hashCode() + resultSetType) + resultSetConcurrency;
+        }
+    }
+
+    private static final class CachedStatement {
+        private final Key key;
+        private final PreparedStatement statement;
+        // restored when the statement is released, as callers may change it
+        private final int fetchSize;
+
+        CachedStatement(final Key key, final PreparedStatement statement) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+        }
+    }
+}
@@ -104,6 +104,11 @@ public class SQLProcessor {
     // / The database resources to be used
     private PreparedStatement _ps = null;
 
+    /**
+     * The cache that the prepared statement came from, if any, and that it goes back to on close
+     */
+    private PreparedStatementCache _statementCache = null;
+
     // / The database resources to be used
     private ResultSet _rs = null;
 
@@ -264,6 +269,12 @@ public class SQLProcessor {
         }
         _ps = null;
 
+        final PreparedStatementCache statementCache = _statementCache;
+        if (statementCache != null) {
+            _statementCache = null;
+            statementCache.release(ps);
+            return;
+        }
         try {
             ps.close();
         } catch (SQLException sqle) {
@@ -468,11 +479,16 @@ public class SQLProcessor {
             _sql = sql;
             _parameterValues = new ArrayList<>();
             _ind = 1;
-            if (specifyTypeAndConcur) {
+            // inside a local transaction, the same statements tend to be run over and over on its connection
+            final PreparedStatementCache statementCache = TransactionUtil.getLocalTransactionStatementCache(connection);
+            if (statementCache != null) {
+                _ps = statementCache.prepare(connection, sql, specifyTypeAndConcur, resultSetType, resultSetConcurrency);
+            } else if (specifyTypeAndConcur) {
                 _ps = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
             } else {
                 _ps = connection.prepareStatement(sql);
             }
+            _statementCache = statementCache;
         } catch (SQLException sqle) {
             throw new GenericDataSourceException("SQL Exception while executing the following:" + sql, sqle);
         }
@@ -571,6 +587,52 @@ public class SQLProcessor {
         }
     }
 
+    /**
+     * Adds the values bound so far to the batch of the prepared statement, and starts binding the values of the
+     * next row from the first parameter again.
+     *
+     * @throws GenericDataSourceException if an SQLException occurs
+     */
+    public void addBatch() throws GenericDataSourceException {
+        try {
+            _ps.addBatch();
+        } catch (SQLException sqle) {
+            throw new GenericDataSourceException("SQL Exception while batching the following:" + _sql, sqle);
+        }
+        // the interceptors only get to see the values of the last row of a batch
+        _parameterValues = new ArrayList<>();
+        _ind = 1;
+    }
+
+    /**
+     * Execute the batch of the prepared statement, see {@link #addBatch()}.
+     *
+     * @return the number of rows updated by each row of the batch, as returned by
+     * {@link java.sql.Statement#executeBatch()}; {@link Statement#SUCCESS_NO_INFO} if the driver doesn't know
+     * @throws GenericDataSourceException if an SQLException occurs
+     */
+    public int[] executeBatch() throws GenericDataSourceException {
+        validateCommitMode();
+
+        try {
+            beforeExecution();
+
+            final int[] rcs = _ps.executeBatch();
+
+            int rowsUpdated = 0;
+            for (int rc : rcs) {
+                rowsUpdated += Math.max(rc, 0);
+            }
+            afterExecution(rowsUpdated);
+
+            return rcs;
+        } catch (SQLException sqle) {
+            onException(sqle);
+
+            throw new GenericDataSourceException("SQL Exception while executing the following:" + _sql, sqle);
+        }
+    }
+
     /**
      * Execute update based on the SQL statement given
      *
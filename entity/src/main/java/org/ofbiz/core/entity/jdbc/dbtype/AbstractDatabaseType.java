@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class AbstractDatabaseType implements DatabaseType {
 
@@ -27,6 +29,11 @@ public abstract class AbstractDatabaseType implements DatabaseType {
 
     private static final int STANDARD_CONSTRAINT_NAME_CLIP_LENGTH = 30;
 
+    /**
+     * The number of rows that a streaming query reads at a time, unless the database type says otherwise.
+     */
+    public static final int DEFAULT_STREAMING_FETCH_SIZE = 1000;
+
 
     protected AbstractDatabaseType(String name, String fieldTypeName, String[] productNamePrefix, int constraintNameClipLength) {
         this.name = name;
@@ -180,5 +187,87 @@ public abstract class AbstractDatabaseType implements DatabaseType {
     private static String appendDotIfNotEmpty(final String schemaName) {
         return schemaName != null && !schemaName.isEmpty() ? schemaName + '.' : "";
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation returns {@link #DEFAULT_STREAMING_FETCH_SIZE}, which drivers that fetch rows in batches
+     * (e.g. Oracle, DB2 and SQL Server) honour as is.
+     * </p>
+     */
+    public int getStreamingFetchSize() {
+        return DEFAULT_STREAMING_FETCH_SIZE;
+    }
+
+    /**
+     * Builds an SQL:2003 MERGE statement of the given row into the given table.
+     *
+     * @param tableName    the name of the table to write to.
+     * @param keyColumns   the names of the primary key columns.
+     * @param otherColumns the names of the other columns to write.
+     * @param sourceRow    the USING clause that turns the parameters into a row aliased as {@code s}, with one column
+     *                     per key column and other column, in that order.
+     * @return the SQL text of the merge.
+     */
+    protected static String getMergeSQL(final String tableName, final List<String> keyColumns,
+                                        final List<String> otherColumns, final String sourceRow) {
+        final StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName).append(" t USING ")
+                .append(sourceRow).append(" ON (");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0) {
+                sql.append(" AND ");
+            }
+            sql.append("t.").append(keyColumns.get(i)).append(" = s.").append(keyColumns.get(i));
+        }
+        sql.append(')');
+        if (!otherColumns.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ");
+            for (int i = 0; i < otherColumns.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(otherColumns.get(i)).append(" = s.").append(otherColumns.get(i));
+            }
+        }
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(join(columns, "", ", ")).append(") VALUES (")
+                .append(join(columns, "s.", ", ")).append(')');
+        return sql.toString();
+    }
+
+    /**
+     * @return the key columns followed by the other columns
+     */
+    protected static List<String> getAllColumns(final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = new ArrayList<String>(keyColumns.size() + otherColumns.size());
+        columns.addAll(keyColumns);
+        columns.addAll(otherColumns);
+        return columns;
+    }
+
+    /**
+     * @return the given column names, each with the given prefix, separated by the given separator
+     */
+    protected static String join(final List<String> columns, final String prefix, final String separator) {
+        final StringBuilder joined = new StringBuilder();
+        for (final String column : columns) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(prefix).append(column);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * @return as many parameter markers as there are columns, separated by commas
+     */
+    protected static String parameters(final List<String> columns) {
+        final StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            parameters.append(i == 0 ? "?" : ", ?");
+        }
+        return parameters.toString();
+    }
 }
 
@@ -3,6 +3,7 @@ package org.ofbiz.core.entity.jdbc.dbtype;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.StringTokenizer;
 
 /**
@@ -67,4 +68,48 @@ public abstract class AbstractPostgresDatabaseType extends AbstractDatabaseType
 
         return versionGreaterThanOrEqual(major, minor, vers[MAJOR], vers[MINOR]);
     }
+
+    /**
+     * PostgreSQL has INSERT ... ON CONFLICT from 9.5 on.
+     */
+    @Override
+    public boolean isUpsertSupported(final Connection con) throws SQLException {
+        return postgresVersionGreaterThanOrEqual(con, 9, 5);
+    }
+
+    /**
+     * PostgreSQL compares row values lexicographically, as the standard says, from 8.2 on; before that,
+     * <code>(A, B) &gt; (?, ?)</code> meant <code>A &gt; ? AND B &gt; ?</code>.
+     */
+    @Override
+    public boolean isRowValueComparisonSupported(final Connection con) throws SQLException {
+        return postgresVersionGreaterThanOrEqual(con, 8, 2);
+    }
+
+    /**
+     * The PostgreSQL driver ignores the fetch size, and reads the whole result set into memory, in auto-commit mode.
+     */
+    @Override
+    public boolean isAutoCommitOffForStreaming() {
+        return true;
+    }
+
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (")
+                .append(join(columns, "", ", ")).append(") VALUES (").append(parameters(columns))
+                .append(") ON CONFLICT (").append(join(keyColumns, "", ", ")).append(')');
+        if (otherColumns.isEmpty()) {
+            return sql.append(" DO NOTHING").toString();
+        }
+        sql.append(" DO UPDATE SET ");
+        for (int i = 0; i < otherColumns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(otherColumns.get(i)).append(" = EXCLUDED.").append(otherColumns.get(i));
+        }
+        return sql.toString();
+    }
 }
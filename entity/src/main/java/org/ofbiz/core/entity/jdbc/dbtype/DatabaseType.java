@@ -2,6 +2,7 @@ package org.ofbiz.core.entity.jdbc.dbtype;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Interface representing the different types of databases.  If you implement this interface,
@@ -47,4 +48,64 @@ public interface DatabaseType {
      * @return the SQL text to drop the index.
      */
     String getDropIndexSQL(String schemaName, String tableName, String indexName);
+
+    /**
+     * Indicates whether the connected database can insert-or-update a row in one statement, see
+     * {@link #getUpsertSQL(String, List, List)}. This default returns false.
+     *
+     * @param con a connection to the database
+     * @return false if rows must be read to know whether to insert or update them
+     * @throws SQLException if the version of the database can't be read
+     */
+    default boolean isUpsertSupported(Connection con) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Builds a DB-specific SQL statement that inserts a row, or updates the other columns of the row that has the same
+     * key if there is one. The statement has one parameter per column, the key columns first. This default returns
+     * {@code null}.
+     *
+     * @param tableName    the name of the table to write to.
+     * @param keyColumns   the names of the primary key columns.
+     * @param otherColumns the names of the columns to write besides the key, can be empty.
+     * @return the SQL text of the upsert, or {@code null}, if not supported.
+     */
+    default String getUpsertSQL(String tableName, List<String> keyColumns, List<String> otherColumns) {
+        return null;
+    }
+
+    /**
+     * Indicates whether the database can compare row values, as in <code>(A, B) &gt; (?, ?)</code>, which lets keyset
+     * pagination use one comparison instead of its expanded OR form. This default returns false, which is always
+     * safe.
+     *
+     * @param con a connection to the database
+     * @return false if row values must be compared column by column
+     * @throws SQLException if the version of the database can't be read
+     */
+    default boolean isRowValueComparisonSupported(Connection con) throws SQLException {
+        return false;
+    }
+
+    /**
+     * Returns the fetch size that makes the driver stream a forward only, read only result set from the database
+     * rather than read all of it into memory, see {@link org.ofbiz.core.entity.EntityFindOptions#streaming()}. This
+     * default returns -1.
+     *
+     * @return the fetch size to set on the statement, or -1 to leave the driver's default
+     */
+    default int getStreamingFetchSize() {
+        return -1;
+    }
+
+    /**
+     * Indicates whether the driver only streams a result set when the connection is not in auto-commit mode, in which
+     * case a streaming query runs in a transaction of its own unless there is one already. This default returns false.
+     *
+     * @return false if the auto-commit mode of the connection doesn't matter
+     */
+    default boolean isAutoCommitOffForStreaming() {
+        return false;
+    }
 }
@@ -1,5 +1,8 @@
 package org.ofbiz.core.entity.jdbc.dbtype;
 
+import java.sql.Connection;
+import java.util.List;
+
 public class H2DatabaseType extends SimpleDatabaseType {
     public H2DatabaseType() {
         super("H2", "h2", new String[]{"H2"});
@@ -14,4 +17,24 @@ public class H2DatabaseType extends SimpleDatabaseType {
     public String getDropIndexStructure() {
         return DROP_INDEX_SCHEMA_DOT_INDEX;
     }
+
+    @Override
+    public boolean isUpsertSupported(final Connection con) {
+        return true;
+    }
+
+    @Override
+    public boolean isRowValueComparisonSupported(final Connection con) {
+        return true;
+    }
+
+    /**
+     * Uses H2's own MERGE ... KEY syntax, which every version of H2 has.
+     */
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        return "MERGE INTO " + tableName + " (" + join(columns, "", ", ") + ") KEY (" + join(keyColumns, "", ", ") +
+                ") VALUES (" + parameters(columns) + ")";
+    }
 }
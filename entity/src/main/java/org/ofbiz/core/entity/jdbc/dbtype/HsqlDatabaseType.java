@@ -1,5 +1,9 @@
 package org.ofbiz.core.entity.jdbc.dbtype;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
 public class HsqlDatabaseType extends SimpleDatabaseType {
     public HsqlDatabaseType() {
         super("HSQL", "hsql", new String[]{"HSQL Database Engine"});
@@ -14,4 +18,19 @@ public class HsqlDatabaseType extends SimpleDatabaseType {
     public String getDropIndexStructure() {
         return DROP_INDEX_SCHEMA_DOT_INDEX;
     }
+
+    /**
+     * HSQLDB has MERGE from 2.0 on.
+     */
+    @Override
+    public boolean isUpsertSupported(final Connection con) throws SQLException {
+        return versionGreaterThanOrEqual(con, 2, 0);
+    }
+
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        return getMergeSQL(tableName, keyColumns, otherColumns,
+                "(VALUES (" + parameters(columns) + ")) AS s (" + join(columns, "", ", ") + ")");
+    }
 }
@@ -1,5 +1,9 @@
 package org.ofbiz.core.entity.jdbc.dbtype;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
 public class MsSqlDatabaseType extends SimpleDatabaseType {
     public MsSqlDatabaseType() {
         super("MS SQL", "mssql", new String[]{"Microsoft SQL Server"});
@@ -9,4 +13,21 @@ public class MsSqlDatabaseType extends SimpleDatabaseType {
     protected String getChangeColumnTypeStructure() {
         return CHANGE_COLUMN_TYPE_CLAUSE_STRUCTURE_STANDARD_ALTER_COLUMN;
     }
+
+    /**
+     * SQL Server has MERGE from 2008 (version 10) on.
+     */
+    @Override
+    public boolean isUpsertSupported(final Connection con) throws SQLException {
+        return versionGreaterThanOrEqual(con, 10, 0);
+    }
+
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        // without HOLDLOCK, concurrent merges of the same new key can all take the NOT MATCHED branch and all but one
+        // fail on the primary key; SQL Server insists on the semicolon after a MERGE
+        return getMergeSQL(tableName + " WITH (HOLDLOCK)", keyColumns, otherColumns,
+                "(VALUES (" + parameters(columns) + ")) AS s (" + join(columns, "", ", ") + ")") + ";";
+    }
 }
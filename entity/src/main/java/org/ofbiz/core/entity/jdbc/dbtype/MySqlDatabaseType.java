@@ -1,5 +1,8 @@
 package org.ofbiz.core.entity.jdbc.dbtype;
 
+import java.sql.Connection;
+import java.util.List;
+
 public class MySqlDatabaseType extends SimpleDatabaseType {
     public MySqlDatabaseType() {
         super("MySQL", "mysql", new String[]{"MySQL"});
@@ -14,4 +17,42 @@ public class MySqlDatabaseType extends SimpleDatabaseType {
     public String getDropIndexStructure() {
         return ALTER_TABLE_DROP_INDEX;
     }
+
+    @Override
+    public boolean isUpsertSupported(final Connection con) {
+        return true;
+    }
+
+    @Override
+    public boolean isRowValueComparisonSupported(final Connection con) {
+        return true;
+    }
+
+    /**
+     * Connector/J reads the whole result set into memory unless the fetch size is <code>Integer.MIN_VALUE</code>, in
+     * which case it streams the rows one at a time; no other statement can run on the connection until it's closed.
+     */
+    @Override
+    public int getStreamingFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        final List<String> columns = getAllColumns(keyColumns, otherColumns);
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (")
+                .append(join(columns, "", ", ")).append(") VALUES (").append(parameters(columns))
+                .append(") ON DUPLICATE KEY UPDATE ");
+        if (otherColumns.isEmpty()) {
+            // there has to be an assignment, so make one that changes nothing
+            sql.append(keyColumns.get(0)).append(" = ").append(keyColumns.get(0));
+        }
+        for (int i = 0; i < otherColumns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(otherColumns.get(i)).append(" = VALUES(").append(otherColumns.get(i)).append(')');
+        }
+        return sql.toString();
+    }
 }
@@ -4,6 +4,7 @@ import org.ofbiz.core.entity.jdbc.DatabaseUtil;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 public class Oracle10GDatabaseType extends AbstractDatabaseType {
     public Oracle10GDatabaseType() {
@@ -60,4 +61,15 @@ public class Oracle10GDatabaseType extends AbstractDatabaseType {
     public String getDropIndexStructure() {
         return DROP_INDEX_SCHEMA_DOT_INDEX;
     }
+
+    @Override
+    public boolean isUpsertSupported(final Connection con) {
+        return true;
+    }
+
+    @Override
+    public String getUpsertSQL(final String tableName, final List<String> keyColumns, final List<String> otherColumns) {
+        return getMergeSQL(tableName, keyColumns, otherColumns,
+                "(SELECT " + join(getAllColumns(keyColumns, otherColumns), "? ", ", ") + " FROM DUAL) s");
+    }
 }
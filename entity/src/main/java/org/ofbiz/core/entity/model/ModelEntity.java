@@ -23,22 +23,28 @@
  */
 package org.ofbiz.core.entity.model;
 
+import org.ofbiz.core.entity.GenericEntityException;
 import org.ofbiz.core.entity.config.DatasourceInfo;
 import org.ofbiz.core.entity.config.EntityConfigUtil;
 import org.ofbiz.core.entity.jdbc.DatabaseUtil;
 import org.ofbiz.core.util.Debug;
 import org.ofbiz.core.util.UtilTimer;
+import org.ofbiz.core.util.UtilValidate;
 import org.ofbiz.core.util.UtilXml;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Generic Entity - Entity model class
@@ -152,6 +158,40 @@ public class ModelEntity implements Comparable<ModelEntity> {
      */
     protected boolean neverCache = false;
 
+    /**
+     * How long, in milliseconds, the delegator remembers that a primary key has no row, so that looking it up in the
+     * cache again doesn't go to the database; zero (the default) means missing rows are not cached.
+     */
+    protected long missingCacheTtl = 0;
+
+    /**
+     * The cache policy of this entity: the most lines, the milliseconds a line lives and the most estimated weight
+     * that each of the delegator's caches may hold for it, and whether those lines are softly referenced. If any of
+     * them is set, the entity gets cache segments of its own instead of competing for the delegator-wide ones; zero
+     * (or null) means not set.
+     */
+    protected long cacheMaxEntries = 0;
+    protected long cacheExpireTime = 0;
+    protected long cacheMaxWeight = 0;
+    protected Boolean cacheSoftReference = null;
+
+    /**
+     * Whether all the rows of this entity may be kept in one line of the ALL cache; worth turning off for big tables.
+     */
+    protected boolean cacheAll = true;
+
+    /**
+     * The SQL statement templates of this entity, by the datasource settings that shape them (schema and join style);
+     * cleared whenever the fields or table change.
+     */
+    private final ConcurrentMap<List<String>, ModelEntityStatements> statements =
+            new ConcurrentHashMap<List<String>, ModelEntityStatements>();
+
+    /**
+     * The position of each field, where a GenericEntity keeps its value; cleared whenever the fields change.
+     */
+    private volatile ModelFieldIndex fieldIndex;
+
     // ===== CONSTRUCTORS =====
 
     /**
@@ -233,6 +273,13 @@ public class ModelEntity implements Comparable<ModelEntity> {
         this.dependentOn = UtilXml.checkEmpty(entityElement.getAttribute("dependent-on"));
         this.doLock = UtilXml.checkBoolean(entityElement.getAttribute("enable-lock"), false);
         this.neverCache = UtilXml.checkBoolean(entityElement.getAttribute("never-cache"), false);
+        this.missingCacheTtl = parseNonNegativeLong(entityElement, "missing-cache-ttl");
+        this.cacheMaxEntries = parseNonNegativeLong(entityElement, "cache-max-entries");
+        this.cacheExpireTime = parseNonNegativeLong(entityElement, "cache-expire-time");
+        this.cacheMaxWeight = parseNonNegativeLong(entityElement, "cache-max-weight");
+        final String cacheSoftReference = UtilXml.checkEmpty(entityElement.getAttribute("cache-soft-reference"));
+        this.cacheSoftReference = cacheSoftReference == null ? null : Boolean.valueOf("true".equals(cacheSoftReference));
+        this.cacheAll = UtilXml.checkBoolean(entityElement.getAttribute("cache-all"), true);
 
         if (docElementValues == null) {
             this.title = UtilXml.checkEmpty(entityElement.getAttribute("title"), UtilXml.childElementValue(docElement, "title"), "None");
@@ -336,6 +383,7 @@ public class ModelEntity implements Comparable<ModelEntity> {
 
     public void setTableName(String tableName) {
         this.tableName = tableName;
+        clearDerivedState();
     }
 
     /**
@@ -430,6 +478,96 @@ public class ModelEntity implements Comparable<ModelEntity> {
         this.neverCache = neverCache;
     }
 
+    /**
+     * How long, in milliseconds, the delegator remembers that a primary key has no row; zero means missing rows are
+     * not cached.
+     */
+    public long getMissingCacheTtl() {
+        return this.missingCacheTtl;
+    }
+
+    public void setMissingCacheTtl(long missingCacheTtl) {
+        this.missingCacheTtl = missingCacheTtl;
+    }
+
+    /**
+     * The most lines that each of the delegator's caches may hold for this entity; zero means not set.
+     */
+    public long getCacheMaxEntries() {
+        return this.cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(long cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    /**
+     * How long, in milliseconds, the cache lines of this entity live; zero means not set.
+     */
+    public long getCacheExpireTime() {
+        return this.cacheExpireTime;
+    }
+
+    public void setCacheExpireTime(long cacheExpireTime) {
+        this.cacheExpireTime = cacheExpireTime;
+    }
+
+    /**
+     * The most estimated weight that each of the delegator's caches may hold for this entity; zero means not set.
+     */
+    public long getCacheMaxWeight() {
+        return this.cacheMaxWeight;
+    }
+
+    public void setCacheMaxWeight(long cacheMaxWeight) {
+        this.cacheMaxWeight = cacheMaxWeight;
+    }
+
+    /**
+     * Whether the cache lines of this entity are softly referenced; null means not set.
+     */
+    public Boolean getCacheSoftReference() {
+        return this.cacheSoftReference;
+    }
+
+    public void setCacheSoftReference(Boolean cacheSoftReference) {
+        this.cacheSoftReference = cacheSoftReference;
+    }
+
+    /**
+     * Whether all the rows of this entity may be kept in one line of the ALL cache.
+     */
+    public boolean getCacheAll() {
+        return this.cacheAll;
+    }
+
+    public void setCacheAll(boolean cacheAll) {
+        this.cacheAll = cacheAll;
+    }
+
+    /**
+     * Indicates whether this entity has a cache policy of its own, in which case the delegator keeps its cache lines
+     * in segments of their own rather than in the delegator-wide caches.
+     */
+    public boolean hasOwnCachePolicy() {
+        return cacheMaxEntries > 0 || cacheExpireTime > 0 || cacheMaxWeight > 0 || cacheSoftReference != null;
+    }
+
+    private long parseNonNegativeLong(Element entityElement, String attributeName) {
+        final String value = entityElement.getAttribute(attributeName);
+        if (UtilValidate.isEmpty(value)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Debug.logWarning("Invalid " + attributeName + " \"" + value + "\" on entity " + entityName +
+                    ", ignoring it", module);
+            return 0;
+        }
+    }
+
+
     /**
      * An indicator to specify if this entity requires locking for updates
      */
@@ -451,6 +589,7 @@ public class ModelEntity implements Comparable<ModelEntity> {
     }
 
     public void updatePkLists() {
+        clearDerivedState();
         pks = new ArrayList<ModelField>();
         nopks = new ArrayList<ModelField>();
         for (ModelField field : fields) {
@@ -542,6 +681,7 @@ public class ModelEntity implements Comparable<ModelEntity> {
         if (field == null) return;
         this.fields.add(field);
         this.fieldsMap.put(field.name, field);
+        clearDerivedState();
 
         if (field.isPk) {
             pks.add(field);
@@ -557,6 +697,7 @@ public class ModelEntity implements Comparable<ModelEntity> {
         if (field == null) return null;
 
         this.fieldsMap.remove(field.name);
+        clearDerivedState();
         if (field.isPk) {
             pks.remove(field);
         } else {
@@ -574,6 +715,7 @@ public class ModelEntity implements Comparable<ModelEntity> {
             if (field.name.equals(fieldName)) {
                 fields.remove(i);
                 fieldsMap.remove(field.name);
+                clearDerivedState();
                 if (field.isPk) {
                     pks.remove(field);
                 } else {
@@ -585,6 +727,50 @@ public class ModelEntity implements Comparable<ModelEntity> {
         return field;
     }
 
+    /**
+     * Returns the SQL statement templates of this entity for the given datasource, building them on first use.
+     *
+     * @param datasourceInfo the datasource the statements are run against
+     * @return the statements, shared by all callers until the fields or table of this entity change
+     * @throws GenericEntityException if the statements of a view can't be built
+     */
+    public ModelEntityStatements getStatements(final DatasourceInfo datasourceInfo) throws GenericEntityException {
+        final List<String> key = datasourceInfo == null ? Collections.<String>emptyList() :
+                Arrays.asList(datasourceInfo.getSchemaName(), datasourceInfo.getJoinStyle());
+        ModelEntityStatements entityStatements = statements.get(key);
+        if (entityStatements == null) {
+            entityStatements = new ModelEntityStatements(this, datasourceInfo);
+            final ModelEntityStatements existing = statements.putIfAbsent(key, entityStatements);
+            if (existing != null) {
+                entityStatements = existing;
+            }
+        }
+        return entityStatements;
+    }
+
+    /**
+     * Returns the position of each field of this entity, building it on first use.
+     *
+     * @return the index, shared by all callers until the fields of this entity change
+     */
+    public ModelFieldIndex getFieldIndex() {
+        ModelFieldIndex index = fieldIndex;
+        if (index == null) {
+            index = new ModelFieldIndex(fields);
+            fieldIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Drops what this entity derives from its table and fields, i.e. its SQL statement templates and field index, so
+     * they are built again from its current state.
+     */
+    protected void clearDerivedState() {
+        statements.clear();
+        fieldIndex = null;
+    }
+
     public List<String> getAllFieldNames() {
         return getFieldNamesFromFieldVector(fields);
     }
@@ -0,0 +1,137 @@
+package org.ofbiz.core.entity.model;
+
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.config.DatasourceInfo;
+import org.ofbiz.core.entity.jdbc.SqlJdbcUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.ofbiz.core.entity.jdbc.SqlJdbcUtil.makeWhereStringFromFields;
+
+/**
+ * The SQL of the statements that the DAO runs over and over for an entity, built once for a given datasource instead
+ * of once per call, together with the fields whose values are bound to their parameters, in order. The statements
+ * that address a row by its primary key assume that none of the key values is null; a row whose key has a null value
+ * needs an <code>IS NULL</code> condition, so its SQL must be built on the spot as before.
+ * <p>
+ * Instances are immutable; get them from {@link ModelEntity#getStatements(DatasourceInfo)}, which drops them when the
+ * fields of the entity change.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class ModelEntityStatements {
+
+    private final List<ModelField> primaryKeyFields;
+    private final List<ModelField> otherFields;
+    private final List<ModelField> allFields;
+    private final String selectByPrimaryKeySql;
+    private final String insertSql;
+    private final String updateAllSql;
+    private final String deleteByPrimaryKeySql;
+    private final String countAllSql;
+
+    /**
+     * Builds the statements of the given entity.
+     *
+     * @param modelEntity    the entity
+     * @param datasourceInfo the datasource they are run against
+     * @throws GenericEntityException if the FROM or WHERE clause of a view can't be built
+     */
+    public ModelEntityStatements(final ModelEntity modelEntity, final DatasourceInfo datasourceInfo)
+            throws GenericEntityException {
+        this.primaryKeyFields = Collections.unmodifiableList(modelEntity.getPksCopy());
+        this.otherFields = Collections.unmodifiableList(modelEntity.getNopksCopy());
+        this.allFields = Collections.unmodifiableList(modelEntity.getFieldsCopy());
+
+        // any non-null value makes the WHERE string bind a parameter for the field
+        final Map<String, Object> keyValues = new HashMap<String, Object>();
+        for (ModelField field : primaryKeyFields) {
+            keyValues.put(field.getName(), Boolean.TRUE);
+        }
+
+        final String tableName = modelEntity.getTableName(datasourceInfo);
+        final String joinStyle = datasourceInfo == null ? null : datasourceInfo.getJoinStyle();
+        this.selectByPrimaryKeySql = "SELECT " + (otherFields.isEmpty() ? "*" : modelEntity.colNameString(otherFields, ", ", "")) +
+                SqlJdbcUtil.makeFromClause(modelEntity, datasourceInfo) +
+                SqlJdbcUtil.makeWhereClause(modelEntity, primaryKeyFields, keyValues, "AND", joinStyle);
+        this.countAllSql = "SELECT COUNT(*) FROM " + tableName;
+
+        if (modelEntity instanceof ModelViewEntity) {
+            // views are written member by member
+            this.insertSql = null;
+            this.updateAllSql = null;
+            this.deleteByPrimaryKeySql = null;
+        } else {
+            final String whereByPrimaryKey = makeWhereStringFromFields(primaryKeyFields, keyValues, "AND");
+            this.insertSql = "INSERT INTO " + tableName + " (" + modelEntity.colNameString(allFields) + ") VALUES (" +
+                    modelEntity.fieldsStringList(allFields, "?", ", ") + ')';
+            this.updateAllSql = otherFields.isEmpty() || primaryKeyFields.isEmpty() ? null :
+                    "UPDATE " + tableName + " SET " + modelEntity.colNameString(otherFields, "=?, ", "=?") + " WHERE " +
+                            whereByPrimaryKey;
+            this.deleteByPrimaryKeySql = primaryKeyFields.isEmpty() ? null :
+                    "DELETE FROM " + tableName + " WHERE " + whereByPrimaryKey;
+        }
+    }
+
+    /**
+     * @return the primary key fields, in the order their values are bound to the WHERE clauses
+     */
+    public List<ModelField> getPrimaryKeyFields() {
+        return primaryKeyFields;
+    }
+
+    /**
+     * @return the fields other than the primary key, in the order they are selected and updated
+     */
+    public List<ModelField> getOtherFields() {
+        return otherFields;
+    }
+
+    /**
+     * @return all the fields, in the order they are inserted
+     */
+    public List<ModelField> getAllFields() {
+        return allFields;
+    }
+
+    /**
+     * @return the SELECT of the {@link #getOtherFields() other fields} of the row with a given primary key
+     */
+    public String getSelectByPrimaryKeySql() {
+        return selectByPrimaryKeySql;
+    }
+
+    /**
+     * @return the INSERT of {@link #getAllFields() all the fields}, or null for a view
+     */
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    /**
+     * @return the UPDATE of the {@link #getOtherFields() other fields} of the row with a given primary key, followed by
+     * the primary key values; null for a view, or an entity that has no such fields or no primary key
+     */
+    public String getUpdateAllSql() {
+        return updateAllSql;
+    }
+
+    /**
+     * @return the DELETE of the row with a given primary key, or null for a view or an entity without a primary key
+     */
+    public String getDeleteByPrimaryKeySql() {
+        return deleteByPrimaryKeySql;
+    }
+
+    /**
+     * @return the count of all the rows
+     */
+    public String getCountAllSql() {
+        return countAllSql;
+    }
+}
@@ -0,0 +1,70 @@
+package org.ofbiz.core.entity.model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The position of each field of an entity, in the order of {@link ModelEntity#getField(int)}, which is where a
+ * {@link org.ofbiz.core.entity.GenericEntity} keeps the value of that field. An index never changes; the
+ * {@link ModelEntity} builds a new one when its fields change, and values created before then keep the old one.
+ *
+ * @see ModelEntity#getFieldIndex()
+ * @since 1.2.6
+ */
+public final class ModelFieldIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] names;
+    // rebuilt from the names when deserialized
+    private transient Map<String, Integer> positions;
+
+    ModelFieldIndex(final List<ModelField> fields) {
+        this.names = new String[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = fields.get(i).getName();
+        }
+        this.positions = buildPositions(names);
+    }
+
+    private static Map<String, Integer> buildPositions(final String[] names) {
+        final Map<String, Integer> positions = new HashMap<String, Integer>(names.length * 4 / 3 + 1);
+        for (int i = 0; i < names.length; i++) {
+            positions.put(names[i], i);
+        }
+        return positions;
+    }
+
+    /**
+     * @param name the name of a field
+     * @return the position of the field, or -1 if the entity had no such field when this index was built
+     */
+    public int indexOf(final Object name) {
+        final Integer position = positions.get(name);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param index the position of a field
+     * @return the name of the field
+     */
+    public String getName(final int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the number of fields
+     */
+    public int size() {
+        return names.length;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        positions = buildPositions(names);
+    }
+}
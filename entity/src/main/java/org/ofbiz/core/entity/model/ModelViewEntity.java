@@ -154,6 +154,7 @@ public class ModelViewEntity extends ModelEntity {
     public void addMemberModelMemberEntity(ModelMemberEntity modelMemberEntity) {
         this.memberModelMemberEntities.put(modelMemberEntity.getEntityAlias(), modelMemberEntity);
         this.allModelMemberEntities.add(modelMemberEntity);
+        clearDerivedState();
     }
 
     public void removeMemberModelMemberEntity(String alias) {
@@ -161,6 +162,7 @@ public class ModelViewEntity extends ModelEntity {
 
         if (modelMemberEntity == null) return;
         this.allModelMemberEntities.remove(modelMemberEntity);
+        clearDerivedState();
     }
 
     /**
@@ -207,6 +209,7 @@ public class ModelViewEntity extends ModelEntity {
 
     public void addViewLink(ModelViewLink viewLink) {
         this.viewLinks.add(viewLink);
+        clearDerivedState();
     }
 
     public void populateFields(Map<String, ModelEntity> entityCache) {
@@ -313,6 +316,7 @@ public class ModelViewEntity extends ModelEntity {
 
             field.validators = aliasedField.validators;
         }
+        clearDerivedState();
     }
 
     public static class ModelMemberEntity {
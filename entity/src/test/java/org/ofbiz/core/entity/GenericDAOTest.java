@@ -12,6 +12,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.ofbiz.core.entity.config.DatasourceInfo;
 import org.ofbiz.core.entity.jdbc.SQLProcessor;
+import org.ofbiz.core.entity.jdbc.dbtype.AbstractDatabaseType;
 import org.ofbiz.core.entity.jdbc.dbtype.DatabaseType;
 import org.ofbiz.core.entity.model.ModelEntity;
 import org.ofbiz.core.entity.model.ModelField;
@@ -46,6 +47,14 @@ import static org.mockito.Mockito.when;
 import static org.ofbiz.core.entity.EntityOperator.AND;
 import static org.ofbiz.core.entity.EntityOperator.IN;
 import static org.ofbiz.core.entity.EntityOperator.OR;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.DB2;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.H2;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.HSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.MSSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.MYSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.ORACLE_10G;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.POSTGRES;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.POSTGRES_7_3;
 
 /**
  * Pure unit test of {@link GenericDAO}.
@@ -385,4 +394,47 @@ public class GenericDAOTest {
 
         assertFalse("Rewrite should not be required.", rewrite.isPresent());
     }
+
+    @Test
+    public void streamingOptionsShouldReadForwardOnlyAndReadOnlyWithTheFetchSizeOfTheDatabase() {
+        // Set up
+        final EntityFindOptions findOptions = EntityFindOptions.findOptions().streaming().maxResults(10).reuseValue();
+
+        for (DatabaseType databaseType : asList(DB2, H2, HSQL, MSSQL, ORACLE_10G, POSTGRES_7_3, POSTGRES)) {
+            // Invoke
+            final EntityFindOptions streamingOptions = GenericDAO.getStreamingFindOptions(findOptions, databaseType);
+
+            // Check
+            assertStreamingOptions(databaseType.getName(), AbstractDatabaseType.DEFAULT_STREAMING_FETCH_SIZE,
+                    streamingOptions);
+        }
+        assertStreamingOptions("MySQL", Integer.MIN_VALUE, GenericDAO.getStreamingFindOptions(findOptions, MYSQL));
+        assertStreamingOptions("unknown", AbstractDatabaseType.DEFAULT_STREAMING_FETCH_SIZE,
+                GenericDAO.getStreamingFindOptions(findOptions, null));
+    }
+
+    private static void assertStreamingOptions(final String databaseName, final int expectedFetchSize,
+                                               final EntityFindOptions streamingOptions) {
+        assertEquals(databaseName, expectedFetchSize, streamingOptions.getFetchSize());
+        assertEquals(databaseName, EntityFindOptions.TYPE_FORWARD_ONLY, streamingOptions.getResultSetType());
+        assertEquals(databaseName, EntityFindOptions.CONCUR_READ_ONLY, streamingOptions.getResultSetConcurrency());
+        assertTrue(databaseName, streamingOptions.isStreaming());
+        assertEquals(databaseName, 10, streamingOptions.getMaxResults());
+        assertTrue(databaseName, streamingOptions.isReuseValue());
+    }
+
+    @Test
+    public void onlyPostgresShouldStreamWithAutoCommitOff() {
+        // Set up
+        final EntityFindOptions streaming = EntityFindOptions.findOptions().streaming();
+
+        // Invoke and check
+        assertTrue(GenericDAO.isAutoCommitOffForStreaming(streaming, POSTGRES_7_3));
+        assertTrue(GenericDAO.isAutoCommitOffForStreaming(streaming, POSTGRES));
+        assertFalse(GenericDAO.isAutoCommitOffForStreaming(EntityFindOptions.findOptions(), POSTGRES));
+        for (DatabaseType databaseType : asList(DB2, H2, HSQL, MSSQL, MYSQL, ORACLE_10G)) {
+            assertFalse(databaseType.getName(), GenericDAO.isAutoCommitOffForStreaming(streaming, databaseType));
+        }
+        assertFalse(GenericDAO.isAutoCommitOffForStreaming(streaming, null));
+    }
 }
@@ -0,0 +1,144 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class TestBatchingDistributedCacheClear {
+
+    private static final String ISSUE = "Issue";
+    private static final String PROJECT = "Project";
+
+    // long enough that only the tests flush
+    private static final long FLUSH_INTERVAL = 60 * 60 * 1000;
+
+    private DistributedCacheClear mockDelegate;
+    private BatchingDistributedCacheClear batchingCacheClear;
+
+    @Before
+    public void setUp() {
+        mockDelegate = mock(DistributedCacheClear.class);
+        batchingCacheClear = new BatchingDistributedCacheClear(mockDelegate, FLUSH_INTERVAL, 1000, 3);
+    }
+
+    @Test
+    public void clearsShouldNotBeSentUntilFlushed() {
+        // Invoke
+        batchingCacheClear.distributedClearCacheLine(value(PROJECT, 1L, "FOO"));
+
+        // Check
+        verifyNoMoreInteractions(mockDelegate);
+        assertEquals(1, batchingCacheClear.getPendingCount());
+    }
+
+    @Test
+    public void repeatedClearsOfTheSameKeyShouldBeSentOnce() {
+        // Set up
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 1L));
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 1L));
+        batchingCacheClear.distributedClearCacheLine(value(PROJECT, 1L, "FOO"));
+        batchingCacheClear.distributedClearCacheLine(value(PROJECT, 1L, "FOO"));
+        batchingCacheClear.distributedClearCacheLine(value(PROJECT, 1L, "BAR"));
+
+        // Invoke
+        batchingCacheClear.flush();
+
+        // Check
+        verify(mockDelegate, times(1)).distributedClearCacheLine(any(GenericPK.class));
+        verify(mockDelegate, times(2)).distributedClearCacheLine(any(GenericValue.class));
+        assertEquals(0, batchingCacheClear.getPendingCount());
+    }
+
+    @Test
+    public void clearsOfAnEntityAboveTheThresholdShouldBeCoalescedIntoAnEntityClear() {
+        // Set up
+        when(mockDelegate.supportsEntityClears()).thenReturn(true);
+        for (long id = 1; id <= 4; id++) {
+            batchingCacheClear.distributedClearCacheLine(pk(PROJECT, id));
+        }
+        batchingCacheClear.distributedClearCacheLine(pk(ISSUE, 1L));
+
+        // Invoke
+        batchingCacheClear.flush();
+
+        // Check
+        verify(mockDelegate).distributedClearCacheLines(PROJECT);
+        verify(mockDelegate, never()).distributedClearCacheLines(ISSUE);
+        verify(mockDelegate, times(1)).distributedClearCacheLine(any(GenericPK.class));
+    }
+
+    @Test
+    public void clearsOfAnEntityAboveTheThresholdShouldBeSentAsLineClearsIfTheDelegateHasNoEntityClears() {
+        // Set up
+        for (long id = 1; id <= 4; id++) {
+            batchingCacheClear.distributedClearCacheLine(pk(PROJECT, id));
+        }
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 4L));
+
+        // Invoke
+        batchingCacheClear.flush();
+
+        // Check
+        verify(mockDelegate, times(4)).distributedClearCacheLine(any(GenericPK.class));
+        verify(mockDelegate, never()).distributedClearCacheLines(PROJECT);
+        verify(mockDelegate, never()).clearAllCaches();
+    }
+
+    @Test
+    public void clearingAllCachesShouldReplaceThePendingClears() {
+        // Set up
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 1L));
+        batchingCacheClear.distributedClearCacheLines(ISSUE);
+
+        // Invoke
+        batchingCacheClear.clearAllCaches();
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 2L));
+        batchingCacheClear.flush();
+
+        // Check
+        verify(mockDelegate).clearAllCaches();
+        verifyNoMoreInteractions(mockDelegate);
+    }
+
+    @Test
+    public void clearsShouldBeSentInTheBackgroundOnceTheBatchIsFull() {
+        // Set up
+        batchingCacheClear = new BatchingDistributedCacheClear(mockDelegate, FLUSH_INTERVAL, 2, 3);
+        batchingCacheClear.distributedClearCacheLine(pk(PROJECT, 1L));
+
+        // Invoke
+        batchingCacheClear.distributedClearCacheLine(pk(ISSUE, 1L));
+
+        // Check
+        verify(mockDelegate, timeout(5000).times(2)).distributedClearCacheLine(any(GenericPK.class));
+    }
+
+    private static GenericPK pk(final String entityName, final long id) {
+        final GenericPK pk = new GenericPK(modelEntity(entityName));
+        pk.fields.put("id", id);
+        return pk;
+    }
+
+    private static GenericValue value(final String entityName, final long id, final String key) {
+        final GenericValue value = new GenericValue(modelEntity(entityName));
+        value.fields.put("id", id);
+        value.fields.put("key", key);
+        return value;
+    }
+
+    private static ModelEntity modelEntity(final String entityName) {
+        final ModelEntity modelEntity = new ModelEntity();
+        modelEntity.setEntityName(entityName);
+        return modelEntity;
+    }
+}
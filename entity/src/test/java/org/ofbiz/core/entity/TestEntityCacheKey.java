@@ -0,0 +1,120 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestEntityCacheKey {
+
+    private ModelEntity modelEntity;
+
+    @Before
+    public void setUp() {
+        modelEntity = new ModelEntity();
+        modelEntity.setEntityName("Project");
+        modelEntity.addField(new ModelField("key", "short-varchar", "PKEY", false, Collections.<String>emptyList()));
+        modelEntity.addField(new ModelField("id", "numeric", "ID", true, Collections.<String>emptyList()));
+        modelEntity.updatePkLists();
+    }
+
+    private GenericPK newPK(final long id) {
+        final GenericPK primaryKey = new GenericPK(modelEntity);
+        primaryKey.fields.put("id", id);
+        return primaryKey;
+    }
+
+    @Test
+    public void keysOfEqualPrimaryKeysShouldBeEqual() {
+        // Invoke
+        final EntityCacheKey key1 = EntityCacheKey.of(newPK(10));
+        final EntityCacheKey key2 = EntityCacheKey.of(newPK(10));
+
+        // Check
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertNotEquals(key1, EntityCacheKey.of(newPK(11)));
+    }
+
+    @Test
+    public void theKeyOfTheFieldsOfAValueShouldBeTheKeyOfItsPrimaryKey() {
+        // Set up
+        final GenericValue value = new GenericValue(modelEntity);
+        value.fields.put("key", "FOO");
+        value.fields.put("id", 10L);
+
+        // Invoke
+        final EntityCacheKey key = EntityCacheKey.ofPrimaryKey(value);
+
+        // Check
+        assertEquals(EntityCacheKey.of(value.getPrimaryKey()), key);
+        assertEquals(1, key.size());
+        assertEquals("id", key.getFieldName(0));
+    }
+
+    @Test
+    public void theFieldsShouldBeInTheOrderOfTheEntity() {
+        // Set up
+        final GenericPK andFields = new GenericPK(modelEntity);
+        andFields.fields.put("id", 10L);
+        andFields.fields.put("key", "FOO");
+
+        // Invoke
+        final EntityCacheKey key = EntityCacheKey.of(andFields);
+
+        // Check
+        assertEquals("key", key.getFieldName(0));
+        assertEquals("FOO", key.getValue(0));
+        assertEquals("id", key.getFieldName(1));
+        assertEquals(10L, key.getValue(1));
+    }
+
+    @Test
+    public void changingThePrimaryKeyShouldNotChangeTheKey() {
+        // Set up
+        final GenericPK primaryKey = newPK(10);
+        final EntityCacheKey key = EntityCacheKey.of(primaryKey);
+
+        // Invoke
+        primaryKey.fields.put("id", 11L);
+
+        // Check
+        assertEquals(EntityCacheKey.of(newPK(10)), key);
+    }
+
+    @Test
+    public void aKeyShouldMatchTheRowsWithTheSameValues() {
+        // Set up
+        final EntityCacheKey key = EntityCacheKey.of(newPK(10));
+
+        // Check
+        assertTrue(key.matches(ImmutableMap.<String, Object>of("id", 10L, "key", "FOO")));
+        assertFalse(key.matches(ImmutableMap.<String, Object>of("id", 11L, "key", "FOO")));
+        assertFalse(key.matches(ImmutableMap.<String, Object>of("key", "FOO")));
+    }
+
+    @Test
+    public void sequentialIdsShouldSpreadAcrossTheLowBitsOfTheHashCode() {
+        // Set up
+        final Set<Integer> buckets = new HashSet<Integer>();
+
+        // Invoke
+        for (long id = 0; id < 1024; id++) {
+            buckets.add(EntityCacheKey.of(newPK(id)).hashCode() & 1023);
+        }
+
+        // Check
+        // random hash codes would fill about 63% of the buckets
+        assertTrue("Only " + buckets.size() + " buckets used", buckets.size() > 550);
+    }
+}
@@ -0,0 +1,96 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.util.UtilCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestEntityCacheSegments {
+
+    private EntityCacheSegments<String, String> segments;
+
+    @Before
+    public void setUp() {
+        segments = new EntityCacheSegments<String, String>("test.segments", true, null, null);
+    }
+
+    @Test
+    public void entitiesWithoutACachePolicyShouldShareTheCache() {
+        // Invoke
+        final UtilCache<String, String> projectCache = segments.get(modelEntity("Project"));
+        final UtilCache<String, String> issueCache = segments.get(modelEntity("Issue"));
+
+        // Check
+        assertSame(segments.getSharedCache(), projectCache);
+        assertSame(segments.getSharedCache(), issueCache);
+        assertEquals(1, segments.getAll().size());
+    }
+
+    @Test
+    public void anEntityWithACachePolicyShouldGetASegmentSizedByIt() {
+        // Set up
+        final ModelEntity issue = modelEntity("Issue");
+        issue.setCacheMaxEntries(2);
+        issue.setCacheExpireTime(60000);
+        issue.setCacheMaxWeight(500);
+        issue.setCacheSoftReference(false);
+
+        // Invoke
+        final UtilCache<String, String> issueCache = segments.get(issue);
+
+        // Check
+        assertNotSame(segments.getSharedCache(), issueCache);
+        assertSame(issueCache, segments.get(issue));
+        assertTrue(segments.isSegmented(issue));
+        assertEquals(2, issueCache.getMaxSize());
+        assertEquals(60000, issueCache.getExpireTime());
+        assertEquals(500, issueCache.getMaxWeight());
+        assertFalse(issueCache.getUseSoftReference());
+        assertEquals(2, segments.getAll().size());
+    }
+
+    @Test
+    public void aSegmentShouldNotEvictTheLinesOfOtherEntities() {
+        // Set up
+        final ModelEntity issue = modelEntity("Issue");
+        issue.setCacheMaxEntries(1);
+        segments.get(modelEntity("Project")).put("project", "Project 1");
+
+        // Invoke
+        segments.get(issue).put("issue1", "Issue 1");
+        segments.get(issue).put("issue2", "Issue 2");
+
+        // Check
+        assertEquals(1, segments.get(issue).size());
+        assertEquals("Project 1", segments.getSharedCache().get("project"));
+    }
+
+    @Test
+    public void clearingShouldClearEverySegment() {
+        // Set up
+        final ModelEntity issue = modelEntity("Issue");
+        issue.setCacheMaxEntries(10);
+        segments.get(modelEntity("Project")).put("project", "Project 1");
+        segments.get(issue).put("issue", "Issue 1");
+
+        // Invoke
+        segments.clear();
+
+        // Check
+        assertNull(segments.getSharedCache().get("project"));
+        assertNull(segments.get(issue).get("issue"));
+    }
+
+    private static ModelEntity modelEntity(final String entityName) {
+        final ModelEntity modelEntity = new ModelEntity();
+        modelEntity.setEntityName(entityName);
+        return modelEntity;
+    }
+}
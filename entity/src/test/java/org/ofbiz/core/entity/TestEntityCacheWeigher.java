@@ -0,0 +1,152 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+import org.ofbiz.core.entity.model.ModelFieldType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestEntityCacheWeigher {
+
+    private static final String ID_FIELD = "id";
+    private static final String NAME_FIELD = "name";
+
+    @Mock
+    private GenericDelegator mockGenericDelegator;
+    @Mock
+    private ModelEntity mockModelEntity;
+    private EntityCacheWeigher weigher;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        weigher = new EntityCacheWeigher();
+        when(mockModelEntity.getFieldsSize()).thenReturn(2);
+        setUpField(0, ID_FIELD, Long.class);
+        setUpField(1, NAME_FIELD, String.class);
+    }
+
+    private void setUpField(final int index, final String name, final Class<?> javaType) throws Exception {
+        final ModelField mockField = mock(ModelField.class);
+        final String fieldType = name + "Type";
+        when(mockField.getName()).thenReturn(name);
+        when(mockField.getType()).thenReturn(fieldType);
+        when(mockModelEntity.getField(index)).thenReturn(mockField);
+        when(mockModelEntity.getField(name)).thenReturn(mockField);
+        final ModelFieldType mockModelFieldType = mockModelFieldType(javaType);
+        when(mockGenericDelegator.getEntityFieldType(mockModelEntity, fieldType)).thenReturn(mockModelFieldType);
+    }
+
+    private static ModelFieldType mockModelFieldType(final Class<?> javaType) {
+        final ModelFieldType mockModelFieldType = mock(ModelFieldType.class);
+        when(mockModelFieldType.getJavaType()).thenReturn(javaType.getName());
+        return mockModelFieldType;
+    }
+
+    private GenericValue newValue(final long id, final String name) {
+        final GenericValue value = new GenericValue(mockGenericDelegator, mockModelEntity);
+        value.fields.put(ID_FIELD, id);
+        value.fields.put(NAME_FIELD, name);
+        return value;
+    }
+
+    @Test
+    public void longerStringsShouldWeighMore() {
+        // Set up
+        final GenericValue shortValue = newValue(1, "a");
+        final GenericValue longValue = newValue(1, "a much, much longer name than the other one");
+
+        // Invoke
+        final long shortWeight = weigher.weighEntity(shortValue);
+        final long longWeight = weigher.weighEntity(longValue);
+
+        // Check
+        assertEquals(2 * ("a much, much longer name than the other one".length() - 1), longWeight - shortWeight);
+    }
+
+    @Test
+    public void listShouldWeighAtLeastTheSumOfItsValues() {
+        // Set up
+        final List<GenericValue> values = new ArrayList<GenericValue>();
+        long sumOfValues = 0;
+        for (int i = 0; i < 100; i++) {
+            final GenericValue value = newValue(i, "name" + i);
+            values.add(value);
+            sumOfValues += weigher.weighEntity(value);
+        }
+
+        // Invoke
+        final long listWeight = weigher.weigh(null, values);
+
+        // Check
+        assertTrue(listWeight > sumOfValues);
+    }
+
+    @Test
+    public void originalDbValuesShouldBeCountedOnceAFieldHasChanged() {
+        // Set up
+        final GenericValue value = newValue(1, "name");
+        final long weightWithoutOriginals = weigher.weighEntity(value);
+        value.copyOriginalDbValues();
+
+        // Invoke
+        value.set(NAME_FIELD, "other");
+
+        // Check
+        assertTrue(weigher.weighEntity(value) > weightWithoutOriginals);
+    }
+
+    @Test
+    public void originalDbValuesSharedWithTheFieldsShouldNotBeCountedAgain() {
+        // Set up
+        final GenericValue value = newValue(1, "name");
+        final long weightWithoutOriginals = weigher.weighEntity(value);
+
+        // Invoke
+        value.copyOriginalDbValues();
+
+        // Check
+        assertEquals(weightWithoutOriginals, weigher.weighEntity(value));
+    }
+
+    @Test
+    public void aFailedFieldTypeLookupShouldBeTriedAgainForTheNextValue() throws Exception {
+        // Set up
+        final ModelFieldType longType = mockModelFieldType(Long.class);
+        when(mockGenericDelegator.getEntityFieldType(mockModelEntity, ID_FIELD + "Type"))
+                .thenThrow(new GenericEntityException("Not yet"));
+        final long untypedWeight = weigher.weighEntity(newValue(1, "name"));
+        when(mockGenericDelegator.getEntityFieldType(mockModelEntity, ID_FIELD + "Type")).thenReturn(longType);
+
+        // Invoke
+        final long typedWeight = weigher.weighEntity(newValue(1, "name"));
+
+        // Check
+        // a Long we know the type of weighs less than a value we know nothing about
+        assertTrue(typedWeight < untypedWeight);
+    }
+
+    @Test
+    public void aValueWithoutADelegatorShouldBeWeighedByItsValues() {
+        // Set up
+        final GenericValue value = new GenericValue(mockModelEntity);
+        value.fields.put(ID_FIELD, 1L);
+        value.fields.put(NAME_FIELD, "name");
+
+        // Invoke
+        final long weight = weigher.weighEntity(value);
+
+        // Check
+        assertTrue(weight > weigher.weighEntity(newValue(1, "name")));
+    }
+}
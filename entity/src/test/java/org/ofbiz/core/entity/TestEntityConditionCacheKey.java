@@ -0,0 +1,124 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.ofbiz.core.entity.EntityOperator.AND;
+import static org.ofbiz.core.entity.EntityOperator.EQUALS;
+import static org.ofbiz.core.entity.EntityOperator.GREATER_THAN;
+import static org.ofbiz.core.entity.EntityOperator.GREATER_THAN_EQUAL_TO;
+import static org.ofbiz.core.entity.EntityOperator.IN;
+import static org.ofbiz.core.entity.EntityOperator.LESS_THAN;
+import static org.ofbiz.core.entity.EntityOperator.LIKE;
+import static org.ofbiz.core.entity.EntityOperator.NOT_EQUAL;
+import static org.ofbiz.core.entity.EntityOperator.OR;
+
+public class TestEntityConditionCacheKey {
+
+    private static final String ENTITY = "Project";
+    private static final EntityExpr KEY_IN_FOO_BAR = new EntityExpr("key", IN, asList("FOO", "BAR"));
+    private static final EntityExpr KEY_IN_BAR_FOO = new EntityExpr("key", IN, asList("BAR", "FOO"));
+    private static final EntityExpr COUNTER_AT_LEAST_10 = new EntityExpr("counter", GREATER_THAN_EQUAL_TO, 10L);
+    private static final EntityExpr COUNTER_BELOW_20 = new EntityExpr("counter", LESS_THAN, 20L);
+
+    private static EntityConditionCacheKey key(final EntityCondition condition) {
+        return EntityConditionCacheKey.create(ENTITY, condition, null, null);
+    }
+
+    private static Map<String, Object> row(final String key, final long counter) {
+        return ImmutableMap.<String, Object>of("key", key, "counter", counter);
+    }
+
+    @Test
+    public void orderOfConditionsAndInValuesShouldNotMatter() {
+        // Set up
+        final EntityCondition condition1 = new EntityConditionList(asList(KEY_IN_FOO_BAR, COUNTER_AT_LEAST_10), AND);
+        final EntityCondition condition2 = new EntityConditionList(asList(COUNTER_AT_LEAST_10, KEY_IN_BAR_FOO), AND);
+
+        // Invoke
+        final EntityConditionCacheKey key1 = key(condition1);
+        final EntityConditionCacheKey key2 = key(condition2);
+
+        // Check
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+    }
+
+    @Test
+    public void differentOperatorsValuesOrderByOrEntitiesShouldMakeDifferentKeys() {
+        final EntityCondition and = new EntityConditionList(asList(KEY_IN_FOO_BAR, COUNTER_AT_LEAST_10), AND);
+        final EntityCondition or = new EntityConditionList(asList(KEY_IN_FOO_BAR, COUNTER_AT_LEAST_10), OR);
+        assertNotEquals(key(and), key(or));
+        assertNotEquals(key(new EntityExpr("key", EQUALS, "1")), key(new EntityExpr("key", EQUALS, 1L)));
+        assertNotEquals(key(and), EntityConditionCacheKey.create(ENTITY, and, null, singletonList("key")));
+        assertNotEquals(key(and), EntityConditionCacheKey.create("Issue", and, null, null));
+    }
+
+    @Test
+    public void conditionsThatCannotBeEvaluatedInMemoryShouldNotBeCacheable() {
+        assertNull(key(new EntityWhereString("pkey = 'FOO'")));
+        assertNull(key(new EntityConditionList(asList(KEY_IN_FOO_BAR, new EntityWhereString("1 = 1")), AND)));
+        assertNull(key(new EntityExpr("key", IN, new EntityWhereString("SELECT pkey FROM project"))));
+    }
+
+    @Test
+    public void shouldMatchRowsThatSatisfyTheCondition() {
+        // Set up
+        final EntityConditionCacheKey key = key(
+                new EntityConditionList(asList(KEY_IN_FOO_BAR, COUNTER_AT_LEAST_10, COUNTER_BELOW_20), AND));
+
+        // Check
+        assertTrue(key.mightMatch(row("FOO", 10)));
+        assertTrue(key.mightMatch(row("BAR", 19)));
+        assertFalse(key.mightMatch(row("BAZ", 15)));
+        assertFalse(key.mightMatch(row("FOO", 20)));
+    }
+
+    @Test
+    public void shouldMatchWhenAFieldOfTheConditionIsUnknown() {
+        // Set up
+        final EntityConditionCacheKey key = key(new EntityConditionList(asList(KEY_IN_FOO_BAR, COUNTER_BELOW_20), AND));
+
+        // Check
+        assertTrue(key.mightMatch(singletonMap("key", "FOO")));
+        assertFalse(key.mightMatch(singletonMap("key", "BAZ")));
+    }
+
+    @Test
+    public void fieldMapShouldMatchLikeTheEquivalentExpressions() {
+        // Set up
+        final EntityConditionCacheKey key = key(new EntityFieldMap(singletonMap("key", "FOO"), AND));
+
+        // Check
+        assertTrue(key.mightMatch(row("FOO", 1)));
+        assertFalse(key.mightMatch(row("BAR", 1)));
+    }
+
+    @Test
+    public void stringsThatOnlyDifferInCaseShouldMatchAsTheDatabaseMightIgnoreCase() {
+        final Map<String, Object> row = row("bar", 1);
+        assertTrue(key(new EntityExpr("key", EQUALS, "BAR")).mightMatch(row));
+        assertTrue(key(KEY_IN_FOO_BAR).mightMatch(row));
+        assertTrue(key(new EntityExpr("key", LIKE, "B%")).mightMatch(row));
+        assertFalse(key(new EntityExpr("key", EQUALS, "BAZ")).mightMatch(row));
+        assertFalse(key(new EntityExpr("key", NOT_EQUAL, "bar")).mightMatch(row));
+    }
+
+    @Test
+    public void anyStringShouldMatchARangeAsTheOrderDependsOnTheCollation() {
+        final Map<String, Object> row = row("bar", 1);
+        assertTrue(key(new EntityExpr("key", GREATER_THAN, "a")).mightMatch(row));
+        // "bar" sorts after "C" in Java, but not in a case-insensitive collation
+        assertTrue(key(new EntityExpr("key", LESS_THAN, "C")).mightMatch(row));
+    }
+}
@@ -0,0 +1,90 @@
+package org.ofbiz.core.entity;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class TestEntityKeysetCondition {
+
+    private static final Map<String, Object> LAST_ROW_KEY = ImmutableMap.<String, Object>of("key", "FOO", "id", 10L);
+
+    private ModelEntity modelEntity;
+
+    @Before
+    public void setUp() {
+        modelEntity = new ModelEntity();
+        modelEntity.setEntityName("Project");
+        modelEntity.addField(new ModelField("id", "numeric", "ID", true, Collections.<String>emptyList()));
+        modelEntity.addField(new ModelField("key", "short-varchar", "PKEY", false, Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void theExpandedFormShouldCompareEachFieldAfterTheEqualOnesBeforeIt() {
+        // Set up
+        final EntityKeysetCondition condition = new EntityKeysetCondition(asList("key", "id"), LAST_ROW_KEY, false);
+        final List<EntityConditionParam> params = new ArrayList<EntityConditionParam>();
+
+        // Invoke
+        final String whereString = condition.makeWhereString(modelEntity, params);
+
+        // Check
+        assertEquals("(PKEY > ?) OR (PKEY = ? AND ID > ?)", whereString);
+        assertEquals(asList((Object) "FOO", "FOO", 10L), getValues(params));
+        assertEquals(3, condition.getParameterCount(modelEntity));
+    }
+
+    @Test
+    public void descendingFieldsShouldBeComparedTheOtherWay() {
+        // Set up
+        final EntityKeysetCondition condition = new EntityKeysetCondition(asList("key", "id DESC"), LAST_ROW_KEY, true);
+
+        // Invoke
+        final String whereString = condition.makeWhereString(modelEntity, new ArrayList<EntityConditionParam>());
+
+        // Check
+        assertEquals("(PKEY > ?) OR (PKEY = ? AND ID < ?)", whereString);
+    }
+
+    @Test
+    public void theRowValueFormShouldBeUsedWhenTheDatabaseSupportsIt() {
+        // Set up
+        final EntityKeysetCondition condition = new EntityKeysetCondition(asList("-key", "-id"), LAST_ROW_KEY, true);
+        final List<EntityConditionParam> params = new ArrayList<EntityConditionParam>();
+
+        // Invoke
+        final String whereString = condition.makeWhereString(modelEntity, params);
+
+        // Check
+        assertEquals("(PKEY, ID) < (?, ?)", whereString);
+        assertEquals(asList((Object) "FOO", 10L), getValues(params));
+        assertEquals(2, condition.getParameterCount(modelEntity));
+    }
+
+    @Test(expected = GenericModelException.class)
+    public void aLastRowKeyWithoutAValueForAnOrderedFieldShouldBeRejected() throws Exception {
+        new EntityKeysetCondition(asList("key", "id"), ImmutableMap.of("key", "FOO"), false).checkCondition(modelEntity);
+    }
+
+    @Test
+    public void theFieldNamesShouldNotIncludeTheSortDirection() {
+        assertEquals(asList("key", "id", "name"), EntityKeysetCondition.getFieldNames(asList("key DESC", "+id", "name")));
+    }
+
+    private static List<Object> getValues(final List<EntityConditionParam> params) {
+        final List<Object> values = new ArrayList<Object>();
+        for (EntityConditionParam param : params) {
+            values.add(param.getFieldValue());
+        }
+        return values;
+    }
+}
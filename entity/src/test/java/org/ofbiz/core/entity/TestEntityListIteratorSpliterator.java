@@ -0,0 +1,98 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestEntityListIteratorSpliterator {
+
+    private EntityListIterator mockEntityListIterator;
+    private GenericValue first;
+    private GenericValue second;
+    private EntityListIteratorSpliterator spliterator;
+
+    @Before
+    public void setUp() {
+        mockEntityListIterator = mock(EntityListIterator.class);
+        first = mock(GenericValue.class);
+        second = mock(GenericValue.class);
+        when(mockEntityListIterator.next()).thenReturn(first, second, null);
+        spliterator = new EntityListIteratorSpliterator(mockEntityListIterator);
+    }
+
+    @Test
+    public void theSizeShouldBeUnknownAndTheValuesOrderedAndNonNull() {
+        assertEquals(Long.MAX_VALUE, spliterator.estimateSize());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL));
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+    }
+
+    @Test
+    public void theIteratorShouldBeClosedOnceItsLastValueHasBeenRead() throws Exception {
+        // Set up
+        final List<GenericValue> values = new ArrayList<GenericValue>();
+
+        // Invoke
+        spliterator.forEachRemaining(values::add);
+        spliterator.close();
+
+        // Check
+        assertEquals(asList(first, second), values);
+        verify(mockEntityListIterator, times(1)).close();
+    }
+
+    @Test
+    public void aSplitShouldTakeTheNextBatchOfValues() throws Exception {
+        // Invoke
+        final Spliterator<GenericValue> batch = spliterator.trySplit();
+
+        // Check
+        assertNotNull(batch);
+        assertTrue(batch.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(2, batch.estimateSize());
+        assertFalse(spliterator.tryAdvance(value -> {}));
+        verify(mockEntityListIterator, times(1)).close();
+    }
+
+    @Test
+    public void aReusedValueShouldBeHandedOnDetached() throws Exception {
+        // Set up
+        final GenericValue firstCopy = mock(GenericValue.class);
+        final GenericValue secondCopy = mock(GenericValue.class);
+        when(mockEntityListIterator.next()).thenReturn(first, first, null);
+        when(mockEntityListIterator.isReuseValue()).thenReturn(true);
+        when(mockEntityListIterator.detach()).thenReturn(firstCopy, secondCopy);
+        final List<GenericValue> values = new ArrayList<GenericValue>();
+
+        // Invoke
+        spliterator.forEachRemaining(values::add);
+
+        // Check
+        assertEquals(asList(firstCopy, secondCopy), values);
+    }
+
+    @Test
+    public void closingBeforeTheEndShouldStopTheIteration() throws Exception {
+        // Invoke
+        spliterator.close();
+
+        // Check
+        assertFalse(spliterator.tryAdvance(value -> {}));
+        verify(mockEntityListIterator).close();
+        verify(mockEntityListIterator, never()).next();
+    }
+}
@@ -2,11 +2,68 @@ package org.ofbiz.core.entity;
 
 import org.junit.Test;
 
+import java.sql.Timestamp;
+
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.ofbiz.core.entity.EntityOperator.BETWEEN;
+import static org.ofbiz.core.entity.EntityOperator.EQUALS;
+import static org.ofbiz.core.entity.EntityOperator.GREATER_THAN;
+import static org.ofbiz.core.entity.EntityOperator.GREATER_THAN_EQUAL_TO;
+import static org.ofbiz.core.entity.EntityOperator.IN;
+import static org.ofbiz.core.entity.EntityOperator.LESS_THAN;
+import static org.ofbiz.core.entity.EntityOperator.LIKE;
 
 public class TestEntityOperator {
     @Test
     public void instanceShouldNotEqualObjectOfDifferentType() {
         assertFalse(new EntityOperator(1, "a").equals("a string"));
     }
+
+    @Test
+    public void equalsShouldTreatNumbersOfDifferentTypesWithTheSameValueAsEqual() {
+        assertTrue(EQUALS.compare(23L, 23));
+        assertFalse(EQUALS.compare(23L, 24));
+    }
+
+    @Test
+    public void lessThanAndGreaterThanShouldCompareTheTwoValues() {
+        assertTrue(LESS_THAN.compare(1L, 2L));
+        assertFalse(LESS_THAN.compare(2L, 1L));
+        assertTrue(GREATER_THAN.compare("b", "a"));
+        assertFalse(GREATER_THAN.compare("a", "a"));
+        assertTrue(GREATER_THAN_EQUAL_TO.compare("a", "a"));
+    }
+
+    @Test
+    public void comparisonsWithNullShouldBeFalseAsInSql() {
+        assertFalse(LESS_THAN.compare(null, 2L));
+        assertFalse(GREATER_THAN_EQUAL_TO.compare(null, 2L));
+        assertFalse(IN.compare(null, asList(1L, 2L)));
+    }
+
+    @Test
+    public void inShouldMatchAnyValueOfTheCollection() {
+        assertTrue(IN.compare(2L, asList(1, 2, 3)));
+        assertFalse(IN.compare(4L, asList(1, 2, 3)));
+    }
+
+    @Test
+    public void betweenShouldIncludeBothBounds() {
+        final Timestamp start = new Timestamp(1000);
+        final Timestamp end = new Timestamp(2000);
+        assertTrue(BETWEEN.compare(new Timestamp(1000), asList(start, end)));
+        assertTrue(BETWEEN.compare(new Timestamp(2000), asList(start, end)));
+        assertFalse(BETWEEN.compare(new Timestamp(2001), asList(start, end)));
+    }
+
+    @Test
+    public void likeShouldSupportSqlWildcards() {
+        assertTrue(LIKE.compare("BAZ", "B%"));
+        assertTrue(LIKE.compare("BAZ", "B_Z"));
+        assertFalse(LIKE.compare("ABAZ", "B%"));
+        assertTrue(LIKE.compare("a.b", "a.b"));
+        assertFalse(LIKE.compare("axb", "a.b"));
+    }
 }
@@ -0,0 +1,198 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestFieldValueMap {
+
+    private ModelEntity modelEntity;
+    private FieldValueMap fields;
+
+    @Before
+    public void setUp() {
+        modelEntity = new ModelEntity();
+        modelEntity.setEntityName("Project");
+        modelEntity.addField(new ModelField("id", "numeric", "ID", true, Collections.<String>emptyList()));
+        modelEntity.addField(new ModelField("key", "short-varchar", "PKEY", false, Collections.<String>emptyList()));
+        modelEntity.addField(new ModelField("counter", "numeric", "PCOUNTER", false, Collections.<String>emptyList()));
+        fields = new FieldValueMap(modelEntity.getFieldIndex());
+    }
+
+    @Test
+    public void aFieldSetToNullShouldBeToldFromAFieldThatIsNotSet() {
+        // Invoke
+        fields.put("key", null);
+
+        // Check
+        assertTrue(fields.containsKey("key"));
+        assertFalse(fields.containsKey("id"));
+        assertNull(fields.get("key"));
+        assertEquals(1, fields.size());
+    }
+
+    @Test
+    public void theFieldsShouldBeIteratedInTheOrderOfTheEntity() {
+        // Set up
+        fields.put("counter", 3L);
+        fields.put("id", 1L);
+
+        // Invoke
+        final ArrayList<String> keys = new ArrayList<String>(fields.keySet());
+
+        // Check
+        assertEquals(asList("id", "counter"), keys);
+    }
+
+    @Test
+    public void theMapShouldEqualAHashMapWithTheSameEntries() {
+        // Set up
+        fields.put("id", 1L);
+        fields.put("key", null);
+        final Map<String, Object> hashMap = new HashMap<String, Object>();
+        hashMap.put("id", 1L);
+        hashMap.put("key", null);
+
+        // Check
+        assertEquals(hashMap, fields);
+        assertEquals(fields, hashMap);
+        assertEquals(hashMap.hashCode(), fields.hashCode());
+        assertEquals(hashMap.toString().length(), fields.toString().length());
+    }
+
+    @Test
+    public void aKeyThatIsNotAFieldShouldStillBeKept() {
+        // Set up
+        fields.put("id", 1L);
+
+        // Invoke
+        fields.put("extra", "value");
+
+        // Check
+        assertEquals("value", fields.get("extra"));
+        assertEquals(asList("id", "extra"), new ArrayList<String>(fields.keySet()));
+        assertEquals(2, fields.size());
+    }
+
+    @Test
+    public void removingAnEntryThroughTheIteratorShouldUnsetTheField() {
+        // Set up
+        fields.put("id", 1L);
+        fields.put("key", "FOO");
+
+        // Invoke
+        final Iterator<Map.Entry<String, Object>> entries = fields.entrySet().iterator();
+        entries.next();
+        entries.remove();
+
+        // Check
+        assertFalse(fields.containsKey("id"));
+        assertEquals(Collections.<String, Object>singletonMap("key", "FOO"), fields);
+    }
+
+    @Test
+    public void aCopyShouldBeIndependentOfTheOriginal() {
+        // Set up
+        fields.put("id", 1L);
+
+        // Invoke
+        final Map<String, Object> copy = FieldValueMap.copyOf(fields);
+        fields.put("id", 2L);
+        fields.put("key", "FOO");
+
+        // Check
+        assertEquals(Collections.<String, Object>singletonMap("id", 1L), copy);
+    }
+
+    @Test
+    public void aFieldAddedToTheModelShouldNotDisturbExistingMaps() {
+        // Set up
+        fields.put("counter", 3L);
+
+        // Invoke
+        modelEntity.addField(new ModelField("name", "short-varchar", "PNAME", false, Collections.<String>emptyList()));
+        fields.put("name", "Foo");
+
+        // Check
+        assertEquals(3L, fields.get("counter"));
+        assertEquals("Foo", fields.get("name"));
+        assertEquals(4, modelEntity.getFieldIndex().size());
+    }
+
+    private static Object serializeAndRead(final Object object) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        assertFalse("The stream names FieldValueMap",
+                new String(bytes.toByteArray(), "ISO-8859-1").contains(FieldValueMap.class.getName()));
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void theMapShouldBeSerializedAsAHashMap() throws Exception {
+        // Set up
+        fields.put("id", 1L);
+        fields.put("key", null);
+
+        // Invoke
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> copy = (Map<String, Object>) serializeAndRead(fields);
+
+        // Check
+        assertEquals(HashMap.class, copy.getClass());
+        assertEquals(fields, copy);
+        assertTrue(copy.containsKey("key"));
+    }
+
+    @Test
+    public void aValueReadWithoutItsDelegatorShouldKeepItsOriginalDbValuesSharedWithItsFields() throws Exception {
+        // Set up
+        final GenericValue value = new GenericValue(modelEntity);
+        value.fields.put("id", 1L);
+        value.fields.put("key", "FOO");
+        value.copyOriginalDbValues();
+
+        // Invoke
+        final GenericValue copy = (GenericValue) serializeAndRead(value);
+
+        // Check
+        assertEquals(value.fields, copy.fields);
+        assertSame(copy.fields, copy.originalDbValues);
+        assertEquals("FOO", copy.originalDbValues.get("key"));
+    }
+
+    @Test
+    public void anEntityShouldOnlySetANullValueWhenAskedTo() {
+        // Set up
+        final GenericEntity entity = new GenericEntity((GenericDelegator) null, modelEntity);
+
+        // Invoke
+        entity.set("key", null, false);
+        entity.set("counter", null, true);
+
+        // Check
+        assertTrue(entity.fields instanceof FieldValueMap);
+        assertFalse(entity.containsKey("key"));
+        assertTrue(entity.containsKey("counter"));
+        assertEquals(Collections.singleton("counter"), entity.keySet());
+    }
+}
@@ -5,9 +5,16 @@ import com.google.common.collect.ImmutableMap;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
 import org.junit.Before;
 import org.junit.Test;
+import org.ofbiz.core.entity.jdbc.PreparedStatementCache;
 import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.util.CacheStatistics;
+import org.ofbiz.core.util.UtilCache;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -18,12 +25,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.lang.Thread.currentThread;
 import static java.util.Arrays.asList;
@@ -46,6 +56,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.ofbiz.core.entity.EntityOperator.EQUALS;
 import static org.ofbiz.core.entity.EntityOperator.LIKE;
+import static org.ofbiz.core.entity.EntityOperator.NOT_EQUAL;
 import static org.ofbiz.core.entity.GenericDelegator.getGenericDelegator;
 
 /**
@@ -63,9 +74,16 @@ public class TestGenericDelegator {
     private static final String PROJECT_KEY_FIELD = "key";
     private static final EntityExpr PROJECT_KEY_LIKE_B_PERCENT = new EntityExpr(PROJECT_KEY_FIELD, LIKE, "B%");
     private static final String SEQUENCE_ENTITY = "SequenceValueItem";
+    // has missing-cache-ttl set
+    private static final String VERSION_ENTITY = "Version";
+    // has cache-max-entries and cache-all="false" set
+    private static final String COMPONENT_ENTITY = "Component";
+    private static final String NAME_FIELD = "name";
+    // how LoggingSQLInterceptorFactory logs each execution
+    private static final String EXECUTED_PREFIX = "Successfully executed '";
 
     // Be sure to list all entities in the "default" group here
-    private static final String[] ENTITIES = {ISSUE_ENTITY, SEQUENCE_ENTITY, PROJECT_ENTITY};
+    private static final String[] ENTITIES = {COMPONENT_ENTITY, ISSUE_ENTITY, SEQUENCE_ENTITY, PROJECT_ENTITY, VERSION_ENTITY};
     private static final int PROJECT_ID_1 = 23;
 
     private GenericDelegator genericDelegator;
@@ -81,6 +99,8 @@ public class TestGenericDelegator {
     private void resetDatabase() throws Exception {
         genericDelegator.removeByCondition(PROJECT_ENTITY, null);
         genericDelegator.removeByCondition(ISSUE_ENTITY, null);
+        genericDelegator.removeByCondition(VERSION_ENTITY, null);
+        genericDelegator.removeByCondition(COMPONENT_ENTITY, null);
     }
 
     @Test
@@ -130,6 +150,211 @@ public class TestGenericDelegator {
         assertProject(projectId, projectKey, issueCount, project);
     }
 
+    @Test
+    public void createAllShouldInsertEveryValue() throws Exception {
+        // Set up
+        final List<GenericValue> projects = new ArrayList<GenericValue>();
+        for (long projectId = 1; projectId <= 3; projectId++) {
+            projects.add(genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(projectId, "P" + projectId, projectId)));
+        }
+
+        // Invoke
+        final int created = genericDelegator.createAll(projects);
+
+        // Check
+        assertEquals(3, created);
+        assertEquals(3, genericDelegator.countAll(PROJECT_ENTITY));
+        for (long projectId = 1; projectId <= 3; projectId++) {
+            final GenericValue project = genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, projectId));
+            assertProject(projectId, "P" + projectId, projectId, project);
+        }
+        assertFalse(projects.get(0).isModified());
+    }
+
+    @Test
+    public void storeAllShouldInsertAndUpdateInOneCallEvenWhenAValueIsRepeated() throws Exception {
+        // Set up
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(1, "OLD", 10));
+        final GenericValue existingProject = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(1, "NEW", 10));
+        final GenericValue newProject = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(2, "TWO", 20));
+        final GenericValue newProjectAgain = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(2, "TWO", 21));
+
+        // Invoke
+        final int stored = genericDelegator.storeAll(asList(existingProject, newProject, newProjectAgain));
+
+        // Check
+        assertEquals(3, stored);
+        assertEquals(2, genericDelegator.countAll(PROJECT_ENTITY));
+        assertProject(1, "NEW", 10, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 1L)));
+        assertProject(2, "TWO", 21, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 2L)));
+    }
+
+    @Test
+    public void createAllShouldBatchInterleavedParentsAndChildrenByTable() throws Exception {
+        // Set up
+        final List<GenericValue> values = new ArrayList<GenericValue>();
+        for (long id = 1; id <= 3; id++) {
+            values.add(genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(id, "P" + id, id)));
+            values.add(genericDelegator.makeValue(ISSUE_ENTITY, getIssueFields(id, "I" + id)));
+        }
+
+        // Invoke
+        final List<String> executedSql = recordExecutedSql(() -> genericDelegator.createAll(values));
+
+        // Check
+        assertEquals(2, countStartingWith("INSERT", executedSql));
+        assertEquals(3, genericDelegator.countAll(PROJECT_ENTITY));
+        assertEquals(3, genericDelegator.countAll(ISSUE_ENTITY));
+    }
+
+    @Test
+    public void createAllShouldNotBatchAChildBeforeAParentWrittenAfterItsBatch() throws Exception {
+        // Set up
+        final List<GenericValue> values = asList(
+                genericDelegator.makeValue(ISSUE_ENTITY, getIssueFields(1, "I1")),
+                genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(1, "P1", 1)),
+                genericDelegator.makeValue(ISSUE_ENTITY, getIssueFields(2, "I2")));
+
+        // Invoke
+        final List<String> executedSql = recordExecutedSql(() -> genericDelegator.createAll(values));
+
+        // Check
+        assertEquals(3, countStartingWith("INSERT", executedSql));
+        assertEquals(2, genericDelegator.countAll(ISSUE_ENTITY));
+    }
+
+    @Test
+    public void storeAllShouldOnlyWriteTheChangedColumnsAndBatchValuesThatChangeTheSameOnes() throws Exception {
+        // Set up
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(1, "P1", 10));
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(2, "P2", 20));
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(3, "P3", 30));
+        final List<GenericValue> projects = asList(
+                genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(1, "NEW", 10)),
+                genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(2, "P2", 21)),
+                genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(3, "NEWER", 30)));
+
+        // Invoke
+        final List<String> executedSql = recordExecutedSql(() -> genericDelegator.storeAll(projects));
+
+        // Check
+        final List<String> updates = executedSql.stream()
+                .filter(sql -> sql.startsWith("UPDATE"))
+                .collect(Collectors.toList());
+        assertEquals(2, updates.size());
+        assertEquals(1, updates.stream().filter(sql -> sql.contains("pkey") && !sql.contains("pcounter")).count());
+        assertEquals(1, updates.stream().filter(sql -> sql.contains("pcounter") && !sql.contains("pkey")).count());
+        assertProject(1, "NEW", 10, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 1L)));
+        assertProject(2, "P2", 21, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 2L)));
+        assertProject(3, "NEWER", 30, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 3L)));
+    }
+
+    private interface Write {
+        void run() throws GenericEntityException;
+    }
+
+    /**
+     * Returns the SQL that the test interceptor sees executed by the given write, once per statement or batch.
+     */
+    private static List<String> recordExecutedSql(final Write write) throws GenericEntityException {
+        final List<String> executedSql = new ArrayList<String>();
+        final Logger logger = Logger.getLogger(LoggingSQLInterceptorFactory.class);
+        final Level level = logger.getLevel();
+        final AppenderSkeleton recorder = new AppenderSkeleton() {
+            @Override
+            protected void append(final LoggingEvent event) {
+                final String message = event.getRenderedMessage();
+                if (message.startsWith(EXECUTED_PREFIX)) {
+                    executedSql.add(message.substring(EXECUTED_PREFIX.length()));
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean requiresLayout() {
+                return false;
+            }
+        };
+        logger.setLevel(Level.DEBUG);
+        logger.addAppender(recorder);
+        try {
+            write.run();
+        } finally {
+            logger.removeAppender(recorder);
+            logger.setLevel(level);
+        }
+        return executedSql;
+    }
+
+    private static int countStartingWith(final String prefix, final List<String> sql) {
+        int count = 0;
+        for (final String statement : sql) {
+            if (statement.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void upsertAllShouldInsertTheMissingValuesAndUpdateTheExistingOnes() throws Exception {
+        // Set up, on HSQL 1.8, which has no MERGE, so this checks the fallback to storeAll
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(1, "OLD", 10));
+        final GenericValue existingProject = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(1, "NEW", 11));
+        final GenericValue newProject = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(2, "TWO", 20));
+
+        // Invoke
+        final int stored = genericDelegator.upsertAll(asList(existingProject, newProject));
+
+        // Check
+        assertEquals(2, stored);
+        assertProject(1, "NEW", 11, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 1L)));
+        assertProject(2, "TWO", 20, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 2L)));
+    }
+
+    @Test
+    public void storeAllShouldInsertTheMissingValuesAndUpdateTheExistingOnes() throws Exception {
+        // Set up
+        final List<GenericValue> projects = new ArrayList<GenericValue>();
+        for (long projectId = 1; projectId <= 10; projectId++) {
+            if (projectId % 2 == 0) {
+                genericDelegator.create(PROJECT_ENTITY, getProjectFields(projectId, "OLD" + projectId, projectId));
+            }
+            projects.add(genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(projectId, "NEW" + projectId, projectId)));
+        }
+
+        // Invoke
+        final int stored = genericDelegator.storeAll(projects);
+
+        // Check
+        assertEquals(10, stored);
+        assertEquals(10, genericDelegator.countAll(PROJECT_ENTITY));
+        for (long projectId = 1; projectId <= 10; projectId++) {
+            final GenericValue project = genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, projectId));
+            assertProject(projectId, "NEW" + projectId, projectId, project);
+        }
+    }
+
+    @Test
+    public void storeAllShouldUpdateTheRowOfAKeySetAsAnInteger() throws Exception {
+        // Set up
+        genericDelegator.create(PROJECT_ENTITY, getProjectFields(1, "OLD", 10));
+        final GenericValue existingProject = genericDelegator.makeValue(PROJECT_ENTITY,
+                ImmutableMap.<String, Object>of(ID_FIELD, 1, PROJECT_KEY_FIELD, "NEW", ISSUE_COUNT_FIELD, 11L));
+        final GenericValue newProject = genericDelegator.makeValue(PROJECT_ENTITY, getProjectFields(2, "TWO", 20));
+
+        // Invoke
+        final int stored = genericDelegator.storeAll(asList(existingProject, newProject));
+
+        // Check
+        assertEquals(2, stored);
+        assertEquals(2, genericDelegator.countAll(PROJECT_ENTITY));
+        assertProject(1, "NEW", 11, genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 1L)));
+    }
+
     private Map<String, Object> getProjectFields(final long projectId, final String projectKey, final long issueCount) {
         return ImmutableMap.<String, Object>of(
                 ID_FIELD, projectId,
@@ -390,10 +615,55 @@ public class TestGenericDelegator {
         assertEquals(issue, entities.get(1));
     }
 
+    @Test
+    public void findAllByPrimaryKeysShouldKeepTheOrderOfTheKeysAndLeaveOutMissingRows() throws Exception {
+        // Set up
+        final List<GenericPK> primaryKeys = new ArrayList<GenericPK>();
+        for (long projectId = 5; projectId >= 1; projectId--) {
+            if (projectId != 3) {
+                genericDelegator.create(PROJECT_ENTITY, getProjectFields(projectId, "P" + projectId, projectId));
+            }
+            primaryKeys.add(genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, projectId)));
+        }
+
+        // Invoke
+        final List<GenericValue> projects = genericDelegator.findAllByPrimaryKeys(primaryKeys);
+        final List<GenericValue> cachedProjects = genericDelegator.findAllByPrimaryKeysCache(primaryKeys);
+
+        // Check
+        assertEquals(4, projects.size());
+        assertProject(5, "P5", 5, projects.get(0));
+        assertProject(4, "P4", 4, projects.get(1));
+        assertProject(2, "P2", 2, projects.get(2));
+        assertProject(1, "P1", 1, projects.get(3));
+        assertEquals(projects, cachedProjects);
+    }
+
+    @Test
+    public void findAllByPrimaryKeysShouldFindTheRowOfAKeySetAsAnInteger() throws Exception {
+        // Set up
+        genericDelegator.create(VERSION_ENTITY, getNamedFields(1, "V1"));
+        final GenericPK integerKey = genericDelegator.makePK(VERSION_ENTITY, singletonMap(ID_FIELD, 1));
+
+        // Invoke
+        final List<GenericValue> versions = genericDelegator.findAllByPrimaryKeys(singletonList(integerKey));
+        final List<GenericValue> cachedVersions = genericDelegator.findAllByPrimaryKeysCache(singletonList(integerKey));
+
+        // Check
+        assertEquals(1, versions.size());
+        assertEquals("V1", versions.get(0).getString(NAME_FIELD));
+        assertEquals(versions, cachedVersions);
+        assertFalse(genericDelegator.isKnownMissing(integerKey));
+    }
+
     private Map<String, ?> getIssueFields(final long id, final String key) {
         return ImmutableMap.of(ID_FIELD, id, ISSUE_KEY_FIELD, key);
     }
 
+    private Map<String, ?> getNamedFields(final long id, final String name) {
+        return ImmutableMap.of(ID_FIELD, id, NAME_FIELD, name);
+    }
+
     @Test
     public void clearAllCacheLinesByDummyPKShouldAcceptNullArgument() {
         genericDelegator.clearAllCacheLinesByDummyPK(null);
@@ -419,6 +689,421 @@ public class TestGenericDelegator {
         assertNull(genericDelegator.getFromAndCache((ModelEntity) null, singletonMap(ID_FIELD, 789L)));
     }
 
+    @Test
+    public void storingAValueShouldClearTheByAndCacheLinesItLeavesAndJoinsButNoOthers() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final Map<String, String> bazKey = singletonMap(PROJECT_KEY_FIELD, "BAZ");
+        final Map<String, String> quxKey = singletonMap(PROJECT_KEY_FIELD, "QUX");
+        final Map<String, String> fooKey = singletonMap(PROJECT_KEY_FIELD, "FOO");
+        assertEquals(1, genericDelegator.findByAndCache(PROJECT_ENTITY, bazKey).size());
+        assertEquals(0, genericDelegator.findByAndCache(PROJECT_ENTITY, quxKey).size());
+        assertEquals(1, genericDelegator.findByAndCache(PROJECT_ENTITY, fooKey).size());
+        final GenericValue project = genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        project.set(PROJECT_KEY_FIELD, "QUX");
+
+        // Invoke
+        genericDelegator.store(project);
+
+        // Check
+        assertNull(genericDelegator.getFromAndCache(PROJECT_ENTITY, bazKey));
+        assertNull(genericDelegator.getFromAndCache(PROJECT_ENTITY, quxKey));
+        assertNotNull(genericDelegator.getFromAndCache(PROJECT_ENTITY, fooKey));
+        assertEquals(1, genericDelegator.findByAndCache(PROJECT_ENTITY, quxKey).size());
+    }
+
+    @Test
+    public void storingAValueShouldClearTheConditionCacheLinesItLeavesButNoOthers() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final EntityCondition bazOrFoo = new EntityExpr(PROJECT_KEY_FIELD, EntityOperator.IN, asList("BAZ", "FOO"));
+        final EntityCondition bar = new EntityExpr(PROJECT_KEY_FIELD, EQUALS, "BAR");
+        assertEquals(2, genericDelegator.findByConditionCache(PROJECT_ENTITY, bazOrFoo, null, null).size());
+        assertEquals(1, genericDelegator.findByConditionCache(PROJECT_ENTITY, bar, null, null).size());
+        assertEquals(2, genericDelegator.getConditionCache().size());
+        final GenericValue project = genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        project.set(PROJECT_KEY_FIELD, "QUX");
+
+        // Invoke
+        genericDelegator.store(project);
+
+        // Check
+        assertEquals(1, genericDelegator.getConditionCache().size());
+        assertEquals(1, genericDelegator.findByConditionCache(PROJECT_ENTITY, bazOrFoo, null, null).size());
+        assertEquals(1, genericDelegator.findByConditionCache(PROJECT_ENTITY, bar, null, null).size());
+    }
+
+    @Test
+    public void storingAValueShouldClearTheConditionCacheLinesItMightJoinInACaseInsensitiveDatabase() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final EntityCondition bar = new EntityExpr(PROJECT_KEY_FIELD, EQUALS, "BAR");
+        assertEquals(1, genericDelegator.findByConditionCache(PROJECT_ENTITY, bar, null, null).size());
+        assertEquals(1, genericDelegator.getConditionCache().size());
+        final GenericValue project = genericDelegator.findByPrimaryKey(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        project.set(PROJECT_KEY_FIELD, "bar");
+
+        // Invoke
+        genericDelegator.store(project);
+
+        // Check
+        assertEquals(0, genericDelegator.getConditionCache().size());
+    }
+
+    @Test
+    public void findingAMissingPrimaryKeyInTheCacheShouldRememberItIsMissingUntilItIsCreated() throws Exception {
+        // Set up
+        final GenericPK missingVersionKey = genericDelegator.makePK(VERSION_ENTITY, singletonMap(ID_FIELD, 99L));
+        assertNull(genericDelegator.findByPrimaryKeyCache(missingVersionKey));
+        assertTrue(genericDelegator.isKnownMissing(missingVersionKey));
+
+        // Invoke
+        genericDelegator.create(VERSION_ENTITY, getNamedFields(99L, "NEW"));
+
+        // Check
+        assertFalse(genericDelegator.isKnownMissing(missingVersionKey));
+        assertEquals("NEW", genericDelegator.findByPrimaryKeyCache(missingVersionKey).getString(NAME_FIELD));
+    }
+
+    @Test
+    public void missingPrimaryKeysShouldNotBeRememberedForEntitiesWithoutAMissingCacheTtl() throws Exception {
+        // Set up
+        final GenericPK missingIssueKey = genericDelegator.makePK(ISSUE_ENTITY, singletonMap(ID_FIELD, 99L));
+
+        // Invoke
+        assertNull(genericDelegator.findByPrimaryKeyCache(missingIssueKey));
+
+        // Check
+        assertFalse(genericDelegator.isKnownMissing(missingIssueKey));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void theGenericPKKeyedPrimaryKeyCacheShouldBeAViewOfTheCacheKeyedOne() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final GenericPK projectKey = genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        final UtilCache<GenericEntity, GenericValue> primaryKeyCache = genericDelegator.getPrimaryKeyCache();
+
+        // Invoke
+        final GenericValue project = genericDelegator.findByPrimaryKeyCache(projectKey);
+
+        // Check
+        assertSame(project, primaryKeyCache.get(projectKey));
+        assertTrue(primaryKeyCache.getCacheLineKeys().contains(projectKey));
+
+        // Invoke
+        primaryKeyCache.remove(projectKey);
+
+        // Check
+        assertNull(genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(projectKey)));
+
+        // Invoke
+        primaryKeyCache.put(projectKey, project);
+
+        // Check
+        assertSame(project, genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(projectKey)));
+    }
+
+    @Test
+    public void storingAValueInALocalTransactionShouldOnlyClearTheSharedCacheOnCommit() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final GenericPK projectKey = genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        final boolean began = TransactionUtil.beginLocalTransaction("defaultDS", -1);
+        final GenericValue project = genericDelegator.findByPrimaryKey(projectKey);
+        project.set(PROJECT_KEY_FIELD, "QUX");
+        genericDelegator.store(project);
+        // the transaction sees its own change, everyone else still sees the committed row
+        assertEquals("QUX", genericDelegator.findByPrimaryKeyCache(projectKey).getString(PROJECT_KEY_FIELD));
+        assertEquals("BAZ", genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(projectKey)).getString(PROJECT_KEY_FIELD));
+
+        // Invoke
+        TransactionUtil.commitLocalTransaction(began);
+
+        // Check
+        assertNull(genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(projectKey)));
+        assertEquals("QUX", genericDelegator.findByPrimaryKeyCache(projectKey).getString(PROJECT_KEY_FIELD));
+    }
+
+    @Test
+    public void storingAValueInALocalTransactionThatRollsBackShouldLeaveTheSharedCacheAlone() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final GenericPK projectKey = genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        final Map<String, String> bazKey = singletonMap(PROJECT_KEY_FIELD, "BAZ");
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        genericDelegator.findByAndCache(PROJECT_ENTITY, bazKey);
+        final boolean began = TransactionUtil.beginLocalTransaction("defaultDS", -1);
+        final GenericValue project = genericDelegator.findByPrimaryKey(projectKey);
+        project.set(PROJECT_KEY_FIELD, "QUX");
+        genericDelegator.store(project);
+        assertEquals(0, genericDelegator.findByAndCache(PROJECT_ENTITY, bazKey).size());
+
+        // Invoke
+        TransactionUtil.rollbackLocalTransaction(began);
+
+        // Check
+        assertEquals("BAZ", genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(projectKey)).getString(PROJECT_KEY_FIELD));
+        assertEquals(1, genericDelegator.findByAndCache(PROJECT_ENTITY, bazKey).size());
+        assertEquals("BAZ", genericDelegator.findByPrimaryKey(projectKey).getString(PROJECT_KEY_FIELD));
+    }
+
+    @Test
+    public void keysetPagesShouldFollowEachOtherWithoutGapsOrOverlaps() throws Exception {
+        // Set up
+        final long[] issueCounts = {3, 1, 2, 1, 3};
+        for (int i = 0; i < issueCounts.length; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i + 1, "P" + (i + 1), issueCounts[i]));
+        }
+        final List<String> orderBy = asList(ISSUE_COUNT_FIELD, ID_FIELD);
+        final List<Long> projectIds = new ArrayList<Long>();
+        Map<String, Object> continuationKey = null;
+        int pages = 0;
+
+        // Invoke
+        do {
+            final EntityFindOptions findOptions = EntityFindOptions.findOptions().maxResults(2);
+            if (continuationKey != null) {
+                findOptions.after(continuationKey);
+            }
+            final EntityListIterator page = genericDelegator.findListIteratorByCondition(
+                    PROJECT_ENTITY, null, null, null, orderBy, findOptions);
+            try {
+                GenericValue project;
+                continuationKey = null;
+                while ((project = page.next()) != null) {
+                    projectIds.add(project.getLong(ID_FIELD));
+                    continuationKey = page.getContinuationKey();
+                }
+            } finally {
+                page.close();
+            }
+            pages++;
+        } while (continuationKey != null);
+
+        // Check
+        assertEquals(asList(2L, 4L, 3L, 1L, 5L), projectIds);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    public void aStreamShouldReturnTheMatchingValuesInOrder() throws Exception {
+        // Set up
+        final long[] issueCounts = {3, 1, 2, 1, 3};
+        for (int i = 0; i < issueCounts.length; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i + 1, "P" + (i + 1), issueCounts[i]));
+        }
+        final EntityCondition notTwoIssues = new EntityExpr(ISSUE_COUNT_FIELD, NOT_EQUAL, 2L);
+        final List<Long> projectIds;
+
+        // Invoke
+        try (Stream<GenericValue> projects = genericDelegator.stream(
+                PROJECT_ENTITY, notTwoIssues, null, asList(ISSUE_COUNT_FIELD, ID_FIELD), null)) {
+            projectIds = projects.map(project -> project.getLong(ID_FIELD)).collect(Collectors.toList());
+        }
+
+        // Check
+        assertEquals(asList(2L, 4L, 1L, 5L), projectIds);
+    }
+
+    @Test
+    public void aParallelStreamShouldReturnEveryValueOnce() throws Exception {
+        // Set up
+        final int projectCount = 2500;
+        for (int i = 1; i <= projectCount; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i, "P" + i, 0));
+        }
+        final long sum;
+        final long count;
+
+        // Invoke
+        try (Stream<GenericValue> projects = genericDelegator.stream(PROJECT_ENTITY, null, null, null, null)) {
+            final List<Long> projectIds = projects.parallel()
+                    .map(project -> project.getLong(ID_FIELD))
+                    .collect(Collectors.toList());
+            sum = projectIds.stream().mapToLong(Long::longValue).sum();
+            count = projectIds.stream().distinct().count();
+        }
+
+        // Check
+        assertEquals(projectCount, count);
+        assertEquals((long) projectCount * (projectCount + 1) / 2, sum);
+    }
+
+    @Test
+    public void aStreamReusingItsValueShouldStillReturnADistinctValuePerRow() throws Exception {
+        // Set up
+        for (int i = 1; i <= 3; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i, "P" + i, i));
+        }
+        final List<GenericValue> projects;
+
+        // Invoke
+        try (Stream<GenericValue> stream = genericDelegator.stream(PROJECT_ENTITY, null, null,
+                singletonList(ID_FIELD), EntityFindOptions.findOptions().streaming().reuseValue())) {
+            projects = stream.collect(Collectors.toList());
+        }
+
+        // Check
+        final Set<GenericValue> distinct = Collections.newSetFromMap(new IdentityHashMap<GenericValue, Boolean>());
+        distinct.addAll(projects);
+        assertEquals(3, distinct.size());
+        for (int i = 0; i < projects.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), projects.get(i).getLong(ID_FIELD));
+            assertEquals("P" + (i + 1), projects.get(i).getString(PROJECT_KEY_FIELD));
+        }
+    }
+
+    @Test
+    public void aQueryReusingItsValueShouldRefillOneValueThatCanBeDetached() throws Exception {
+        // Set up
+        for (int i = 1; i <= 3; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i, "P" + i, i));
+        }
+        final List<GenericValue> detached = new ArrayList<GenericValue>();
+        final Set<GenericValue> returned = Collections.newSetFromMap(new IdentityHashMap<GenericValue, Boolean>());
+
+        // Invoke
+        final EntityListIterator projects = genericDelegator.findListIteratorByCondition(PROJECT_ENTITY, null, null,
+                null, singletonList(ID_FIELD), EntityFindOptions.findOptions().streaming().reuseValue());
+        try {
+            GenericValue project;
+            while ((project = projects.next()) != null) {
+                returned.add(project);
+                detached.add(projects.detach());
+            }
+        } finally {
+            projects.close();
+        }
+
+        // Check
+        assertEquals(1, returned.size());
+        assertEquals(3, detached.size());
+        for (int i = 0; i < detached.size(); i++) {
+            final GenericValue project = detached.get(i);
+            assertEquals("P" + (i + 1), project.getString(PROJECT_KEY_FIELD));
+            assertEquals("P" + (i + 1), project.getOriginalDbValue(PROJECT_KEY_FIELD));
+            assertFalse(returned.contains(project));
+        }
+    }
+
+    @Test
+    public void aParallelScanShouldConsumeEveryMatchingValueOnce() throws Exception {
+        // Set up
+        final int projectCount = 100;
+        for (int i = 1; i <= projectCount; i++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(i, "P" + i, i % 2));
+        }
+        final EntityCondition oneIssue = new EntityExpr(ISSUE_COUNT_FIELD, EQUALS, 1L);
+        final Set<Long> projectIds = Collections.synchronizedSet(new HashSet<Long>());
+
+        // Invoke
+        final List<ParallelScan.Partition> partitions = genericDelegator.parallelScan(PROJECT_ENTITY, oneIssue, 4,
+                project -> assertTrue(projectIds.add(project.getLong(ID_FIELD))));
+
+        // Check
+        assertEquals(projectCount / 2, projectIds.size());
+        assertEquals(4, partitions.size());
+        long rowCount = 0;
+        for (ParallelScan.Partition partition : partitions) {
+            assertTrue(partition.isComplete());
+            assertEquals(1, partition.getAttempts());
+            rowCount += partition.getRowCount();
+        }
+        assertEquals(projectCount / 2, rowCount);
+        assertNull(partitions.get(0).getLowerBound());
+        assertEquals(partitions.get(0).getUpperBound(), partitions.get(1).getLowerBound());
+        assertNull(partitions.get(3).getUpperBound());
+    }
+
+    @Test
+    public void aLocalTransactionShouldPrepareARepeatedStatementOnlyOnce() throws Exception {
+        // Set up
+        final boolean began = TransactionUtil.beginLocalTransaction("defaultDS", -1);
+        final PreparedStatementCache statementCache =
+                TransactionUtil.getLocalTransactionStatementCache(TransactionUtil.getLocalTransactionConnection());
+
+        // Invoke
+        for (long projectId = 1; projectId <= 3; projectId++) {
+            genericDelegator.create(PROJECT_ENTITY, getProjectFields(projectId, "P" + projectId, projectId));
+        }
+        TransactionUtil.commitLocalTransaction(began);
+
+        // Check
+        assertEquals(1, statementCache.getMissCount());
+        assertEquals(2, statementCache.getHitCount());
+        assertEquals(0, statementCache.size());
+        assertEquals(3, genericDelegator.countAll(PROJECT_ENTITY));
+    }
+
+    @Test
+    public void anEntityWithACachePolicyShouldBeCachedInItsOwnSegment() throws Exception {
+        // Set up
+        genericDelegator.create(COMPONENT_ENTITY, getNamedFields(25L, "C25"));
+        final GenericPK componentKey = genericDelegator.makePK(COMPONENT_ENTITY, singletonMap(ID_FIELD, 25L));
+        final ModelEntity componentEntity = genericDelegator.getModelEntity(COMPONENT_ENTITY);
+
+        // Invoke
+        genericDelegator.findByPrimaryKeyCache(componentKey);
+        genericDelegator.findAllCache(COMPONENT_ENTITY);
+
+        // Check
+        final UtilCache<EntityCacheKey, GenericValue> componentCache =
+                genericDelegator.getPrimaryKeyCacheSegments().get(componentEntity);
+        assertNotSame(genericDelegator.getPrimaryKeyCacheByCacheKey(), componentCache);
+        assertEquals(1000, componentCache.getMaxSize());
+        assertNotNull(componentCache.get(EntityCacheKey.of(componentKey)));
+        assertNull(genericDelegator.getPrimaryKeyCacheByCacheKey().get(EntityCacheKey.of(componentKey)));
+        // Component has cache-all="false"
+        assertNull(genericDelegator.getFromAllCache(COMPONENT_ENTITY));
+    }
+
+    @Test
+    public void cachedFindsShouldBeCountedInTheStatisticsOfTheirEntity() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final GenericPK projectKey = genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        final CacheStatistics statistics = genericDelegator.getEntityCacheStatistics(PROJECT_ENTITY);
+        statistics.reset();
+
+        // Invoke
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        genericDelegator.clearCacheLine(projectKey);
+
+        // Check
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getLoadCount());
+        assertEquals(1, statistics.getInvalidationCount("clearCacheLine(primaryKey)"));
+        assertNotSame(statistics, genericDelegator.getEntityCacheStatistics(ISSUE_ENTITY));
+    }
+
+    @Test
+    public void clearingTheCacheLinesOfAnEntityShouldClearThemFromEveryCache() throws Exception {
+        // Set up
+        genericDelegator.storeAll(loadTestEntitiesFromXml("test-entities.xml"));
+        final GenericPK projectKey = genericDelegator.makePK(PROJECT_ENTITY, singletonMap(ID_FIELD, 23L));
+        final GenericPK issueKey = genericDelegator.makePK(ISSUE_ENTITY, singletonMap(ID_FIELD, 25L));
+        final Map<String, String> bazKey = singletonMap(PROJECT_KEY_FIELD, "BAZ");
+        genericDelegator.findByPrimaryKeyCache(projectKey);
+        genericDelegator.findByPrimaryKeyCache(issueKey);
+        genericDelegator.findByAndCache(PROJECT_ENTITY, bazKey);
+        genericDelegator.findAllCache(PROJECT_ENTITY);
+
+        // Invoke
+        genericDelegator.clearCacheLines(PROJECT_ENTITY);
+
+        // Check
+        assertNull(genericDelegator.getFromPrimaryKeyCache(projectKey));
+        assertNull(genericDelegator.getFromAndCache(PROJECT_ENTITY, bazKey));
+        assertNull(genericDelegator.getFromAllCache(PROJECT_ENTITY));
+        assertNotNull(genericDelegator.getFromPrimaryKeyCache(issueKey));
+    }
+
     @Test
     public void gettingFromAndCacheWithNullFieldMapShouldReturnNull() {
         assertNull(genericDelegator.getFromAndCache(ISSUE_ENTITY, null));
@@ -8,12 +8,17 @@ import org.ofbiz.core.entity.model.ModelEntity;
 import org.ofbiz.core.entity.model.ModelField;
 import org.ofbiz.core.entity.model.ModelFieldType;
 
+import java.util.Observer;
+
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TestGenericEntity {
@@ -148,4 +153,54 @@ public class TestGenericEntity {
         assertEquals(previousValue, returnedValue);
         assertEquals(expectedFieldValue, entity.fields.get(modifiedField));
     }
+
+    @Test
+    public void settingAFieldShouldTellEachFieldChangeListener() {
+        // Set up
+        final String modifiedField = "modifiedField";
+        setUpValidField(modifiedField);
+        final FieldChangeListener mockListener1 = mock(FieldChangeListener.class);
+        final FieldChangeListener mockListener2 = mock(FieldChangeListener.class);
+        entity.addFieldChangeListener(mockListener1);
+        entity.addFieldChangeListener(mockListener2);
+
+        // Invoke
+        entity.set(modifiedField, "newValue");
+
+        // Check
+        verify(mockListener1).fieldChanged(entity, modifiedField);
+        verify(mockListener2).fieldChanged(entity, modifiedField);
+    }
+
+    @Test
+    public void aRemovedFieldChangeListenerShouldNotBeTold() {
+        // Set up
+        final String modifiedField = "modifiedField";
+        setUpValidField(modifiedField);
+        final FieldChangeListener mockListener = mock(FieldChangeListener.class);
+        entity.addFieldChangeListener(mockListener);
+
+        // Invoke
+        entity.removeFieldChangeListener(mockListener);
+        entity.set(modifiedField, "newValue");
+
+        // Check
+        verifyZeroInteractions(mockListener);
+    }
+
+    @Test
+    public void settingAFieldShouldUpdateTheObserversOfTheObservable() {
+        // Set up
+        final String modifiedField = "modifiedField";
+        setUpValidField(modifiedField);
+        final Observer mockObserver = mock(Observer.class);
+        entity.getObservable().addObserver(mockObserver);
+
+        // Invoke
+        entity.set(modifiedField, "newValue");
+
+        // Check
+        verify(mockObserver).update(entity.getObservable(), modifiedField);
+        assertSame(entity, entity.getObservable().getEntity());
+    }
 }
@@ -0,0 +1,136 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+import org.ofbiz.core.entity.model.ModelFieldType;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestGenericValue {
+
+    private static final String NAME_FIELD = "name";
+
+    @Mock
+    private GenericDelegator mockGenericDelegator;
+    @Mock
+    private ModelEntity mockModelEntity;
+    private GenericValue value;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        final ModelField mockField = mock(ModelField.class);
+        when(mockField.getName()).thenReturn(NAME_FIELD);
+        when(mockField.getType()).thenReturn("nameType");
+        when(mockModelEntity.getField(NAME_FIELD)).thenReturn(mockField);
+        final ModelFieldType mockModelFieldType = mock(ModelFieldType.class);
+        when(mockModelFieldType.getJavaType()).thenReturn(String.class.getName());
+        when(mockGenericDelegator.getEntityFieldType(mockModelEntity, "nameType")).thenReturn(mockModelFieldType);
+        value = new GenericValue(mockGenericDelegator, mockModelEntity);
+        value.fields.put(NAME_FIELD, "original");
+    }
+
+    @Test
+    public void originalDbValuesShouldBeSharedWithTheFieldsUntilAFieldIsSet() {
+        // Invoke
+        value.copyOriginalDbValues();
+
+        // Check
+        assertSame(value.fields, value.originalDbValues);
+        assertEquals("original", value.getOriginalDbValue(NAME_FIELD));
+    }
+
+    @Test
+    public void settingAFieldShouldKeepTheOriginalDbValue() {
+        // Set up
+        value.copyOriginalDbValues();
+
+        // Invoke
+        value.set(NAME_FIELD, "changed");
+
+        // Check
+        assertNotSame(value.fields, value.originalDbValues);
+        assertTrue(value.originalDbValuesAvailable());
+        assertEquals("original", value.getOriginalDbValue(NAME_FIELD));
+        assertEquals("changed", value.get(NAME_FIELD));
+    }
+
+    @Test
+    public void changingTheFieldsThroughAViewShouldKeepTheOriginalDbValue() {
+        // Set up
+        value.copyOriginalDbValues();
+
+        // Invoke
+        for (Map.Entry<String, Object> entry : value.entrySet()) {
+            entry.setValue("changed");
+        }
+
+        // Check
+        assertEquals("original", value.getOriginalDbValue(NAME_FIELD));
+        assertEquals("changed", value.get(NAME_FIELD));
+    }
+
+    @Test
+    public void readingTheFieldsThroughTheViewsShouldKeepThemShared() {
+        // Set up
+        value.copyOriginalDbValues();
+
+        // Invoke
+        for (Map.Entry<String, Object> entry : value.entrySet()) {
+            assertEquals(NAME_FIELD, entry.getKey());
+        }
+        assertTrue(value.keySet().contains(NAME_FIELD));
+        assertTrue(value.values().contains("original"));
+        assertEquals(1, value.getAllKeys().size());
+
+        // Check
+        assertSame(value.fields, value.originalDbValues);
+    }
+
+    @Test
+    public void removingAFieldThroughAViewShouldKeepTheOriginalDbValue() {
+        // Set up
+        value.copyOriginalDbValues();
+
+        // Invoke
+        final Iterator<String> fieldNames = value.keySet().iterator();
+        fieldNames.next();
+        fieldNames.remove();
+
+        // Check
+        assertFalse(value.containsKey(NAME_FIELD));
+        assertEquals("original", value.getOriginalDbValue(NAME_FIELD));
+    }
+
+    @Test
+    public void resettingTheFieldsShouldForgetThePreviousRow() {
+        // Set up
+        value.copyOriginalDbValues();
+        value.set(NAME_FIELD, "changed");
+        final Map<String, Object> originalFields = value.fields;
+
+        // Invoke
+        value.resetFields(null);
+
+        // Check
+        assertSame(originalFields, value.fields);
+        assertTrue(value.fields.isEmpty());
+        assertFalse(value.originalDbValuesAvailable());
+        assertFalse(value.isModified());
+        assertNull(value.relatedCache);
+    }
+}
@@ -0,0 +1,64 @@
+package org.ofbiz.core.entity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TestLoopbackDistributedCacheClear {
+
+    private GenericDelegator mockSender;
+    private GenericDelegator mockPeer;
+    private LoopbackDistributedCacheClear cacheClear;
+
+    @Before
+    public void setUp() {
+        mockSender = mock(GenericDelegator.class);
+        mockPeer = mock(GenericDelegator.class);
+        cacheClear = new LoopbackDistributedCacheClear();
+        cacheClear.setDelegator(mockSender, "admin");
+        LoopbackDistributedCacheClear.join(mockPeer);
+    }
+
+    @After
+    public void tearDown() {
+        LoopbackDistributedCacheClear.leave(mockSender);
+        LoopbackDistributedCacheClear.leave(mockPeer);
+    }
+
+    @Test
+    public void lineClearsShouldBeDeliveredToTheOtherDelegatorsWithoutBeingDistributedAgain() {
+        // Set up
+        final GenericPK primaryKey = mock(GenericPK.class);
+
+        // Invoke
+        cacheClear.distributedClearCacheLine(primaryKey);
+
+        // Check
+        verify(mockPeer).clearCacheLine(primaryKey, false);
+        verify(mockSender, never()).clearCacheLine(primaryKey, false);
+    }
+
+    @Test
+    public void entityClearsShouldBeDeliveredToTheOtherDelegators() {
+        // Invoke
+        cacheClear.distributedClearCacheLines("Project");
+
+        // Check
+        verify(mockPeer).clearCacheLines("Project", false);
+        verify(mockSender, never()).clearCacheLines("Project", false);
+    }
+
+    @Test
+    public void clearingAllCachesShouldBeDeliveredToTheOtherDelegators() {
+        // Invoke
+        cacheClear.clearAllCaches();
+
+        // Check
+        verify(mockPeer).clearAllCaches(false);
+        verify(mockSender, never()).clearAllCaches(false);
+    }
+}
@@ -0,0 +1,36 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelScan {
+
+    @Test
+    public void aRangeShouldBeSplitIntoEvenParts() {
+        assertEquals(asList(26L, 51L, 76L), ParallelScan.splitRange(1, 100, 4));
+    }
+
+    @Test
+    public void aRangeSmallerThanThePartitionCountShouldHaveOnePartPerKey() {
+        assertEquals(asList(11L, 12L), ParallelScan.splitRange(10, 12, 5));
+    }
+
+    @Test
+    public void aSingleKeyShouldNotBeSplit() {
+        assertEquals(Collections.<Long>emptyList(), ParallelScan.splitRange(7, 7, 3));
+    }
+
+    @Test
+    public void theWholeRangeOfLongsShouldBeSplitWithoutOverflowing() {
+        assertEquals(asList(0L), ParallelScan.splitRange(Long.MIN_VALUE, Long.MAX_VALUE, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aScanShouldNeedAtLeastOnePartition() {
+        new ParallelScan(null, "Project", null, 0);
+    }
+}
@@ -0,0 +1,74 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.model.ModelEntity;
+import org.ofbiz.core.entity.model.ModelField;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPrimaryKeyMatcher {
+
+    private ModelEntity modelEntity;
+
+    @Before
+    public void setUp() {
+        modelEntity = new ModelEntity();
+        modelEntity.setEntityName("Project");
+        modelEntity.addField(new ModelField("id", "numeric", "ID", true, Collections.<String>emptyList()));
+        modelEntity.addField(new ModelField("key", "short-varchar", "PKEY", false, Collections.<String>emptyList()));
+        modelEntity.updatePkLists();
+    }
+
+    private GenericPK newPK(final Object id) {
+        final GenericPK primaryKey = new GenericPK(modelEntity);
+        primaryKey.fields.put("id", id);
+        return primaryKey;
+    }
+
+    private GenericValue newRow(final long id) {
+        final GenericValue row = new GenericValue(modelEntity);
+        row.fields.put("id", id);
+        row.fields.put("key", "P" + id);
+        return row;
+    }
+
+    @Test
+    public void aKeySetAsAnIntegerShouldMatchTheRowReadWithALong() {
+        // Set up
+        final GenericPK integerKey = newPK(1);
+        final GenericPK longKey = newPK(1L);
+        final PrimaryKeyMatcher matcher = new PrimaryKeyMatcher(asList(integerKey, longKey));
+        final GenericValue row = newRow(1);
+
+        // Invoke
+        final boolean matched = matcher.add(row);
+
+        // Check
+        assertTrue(matched);
+        assertSame(row, matcher.get(integerKey));
+        assertSame(row, matcher.get(longKey));
+        assertFalse(matcher.hasUnmatchedRows());
+    }
+
+    @Test
+    public void aRowThatMatchesNoKeyShouldBeReported() {
+        // Set up
+        final GenericPK missingKey = newPK(1L);
+        final PrimaryKeyMatcher matcher = new PrimaryKeyMatcher(asList(missingKey));
+
+        // Invoke
+        final boolean matched = matcher.add(newRow(2));
+
+        // Check
+        assertFalse(matched);
+        assertTrue(matcher.hasUnmatchedRows());
+        assertNull(matcher.get(missingKey));
+    }
+}
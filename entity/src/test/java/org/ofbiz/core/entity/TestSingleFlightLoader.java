@@ -0,0 +1,286 @@
+package org.ofbiz.core.entity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSingleFlightLoader {
+
+    private static final String ENTITY = "Project";
+    private static final String OTHER_ENTITY = "Issue";
+    private static final String KEY = "key";
+
+    private final List<String> cache = new ArrayList<String>();
+
+    private final SingleFlightLoader.CacheWriter<String> cacheWriter = new SingleFlightLoader.CacheWriter<String>() {
+        public void write(final String value) {
+            synchronized (cache) {
+                cache.add(value);
+            }
+        }
+
+        public void remove(final String value) {
+            synchronized (cache) {
+                cache.remove(value);
+            }
+        }
+    };
+
+    @Test
+    public void loadingWithoutContentionShouldReadAndWriteTheValue() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(1000);
+
+        // Invoke
+        final String value = loader.load(ENTITY, KEY, () -> "value", cacheWriter);
+
+        // Check
+        assertEquals("value", value);
+        assertEquals(1, cache.size());
+        assertEquals(1, loader.getLoadCount());
+        assertEquals(0, loader.getCoalescedLoadCount());
+    }
+
+    @Test
+    public void concurrentLoadsOfTheSameKeyShouldBeCoalesced() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        final SingleFlightLoader.Loader<String> slowLoader = () -> {
+            reads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "value";
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<String> leader = executor.submit(load(loader, slowLoader));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            final List<Future<String>> followers = new ArrayList<Future<String>>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(load(loader, slowLoader)));
+            }
+            waitForCoalescedLoads(loader, 3);
+
+            // Invoke
+            release.countDown();
+
+            // Check
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, reads.get());
+        assertEquals(1, loader.getLoadCount());
+        assertEquals(3, loader.getCoalescedLoadCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void callersShouldReadDirectlyWhenTheLoadInFlightTakesTooLong() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> leader = executor.submit(load(loader, () -> {
+                loading.countDown();
+                await(release);
+                return "slow";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // Invoke
+            final String value = loader.load(ENTITY, KEY, () -> "direct", cacheWriter);
+
+            // Check
+            assertEquals("direct", value);
+            release.countDown();
+            assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loader.getTimedOutWaitCount());
+        assertEquals(2, loader.getLoadCount());
+        // only the leader writes to the cache
+        assertEquals(1, cache.size());
+        assertEquals("slow", cache.get(0));
+    }
+
+    @Test
+    public void callersShouldReadDirectlyWhenTheLoadInFlightFails() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> leader = executor.submit(load(loader, () -> {
+                loading.countDown();
+                await(release);
+                throw new GenericEntityException("Boom");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            final Future<String> follower = executor.submit(load(loader, () -> "value"));
+            waitForCoalescedLoads(loader, 1);
+
+            // Invoke
+            release.countDown();
+
+            // Check
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail("Expected the leader to fail");
+            } catch (java.util.concurrent.ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof GenericEntityException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, loader.getTimedOutWaitCount());
+    }
+
+    @Test
+    public void loadsInFlightWhenTheCacheIsInvalidatedShouldNotBeJoinedOrWritten() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> leader = executor.submit(load(loader, () -> {
+                loading.countDown();
+                await(release);
+                return "old";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // Invoke
+            loader.invalidated(ENTITY);
+            final String value = loader.load(ENTITY, KEY, () -> "new", cacheWriter);
+
+            // Check
+            assertEquals("new", value);
+            release.countDown();
+            assertEquals("old", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, loader.getCoalescedLoadCount());
+        assertEquals(1, cache.size());
+        assertEquals("new", cache.get(0));
+    }
+
+    @Test
+    public void invalidatingAnotherEntityShouldNotStopALoadFromBeingWritten() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+
+        // Invoke
+        final String value = loader.load(ENTITY, KEY, () -> {
+            loader.invalidated(OTHER_ENTITY);
+            return "value";
+        }, cacheWriter);
+
+        // Check
+        assertEquals("value", value);
+        assertEquals(1, cache.size());
+        assertEquals("value", cache.get(0));
+    }
+
+    @Test
+    public void invalidatingEverythingShouldStopALoadOfAnyEntityFromBeingWritten() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+
+        // Invoke
+        final String value = loader.load(ENTITY, KEY, () -> {
+            loader.invalidated();
+            return "old";
+        }, cacheWriter);
+
+        // Check
+        assertEquals("old", value);
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void aValueWrittenWhileTheEntityIsInvalidatedShouldBeRemovedAgain() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(10000);
+        final SingleFlightLoader.CacheWriter<String> racingCacheWriter = new SingleFlightLoader.CacheWriter<String>() {
+            public void write(final String value) {
+                cacheWriter.write(value);
+                // the invalidation comes after the check, but may have removed the lines before this write
+                loader.invalidated(ENTITY);
+            }
+
+            public void remove(final String value) {
+                cacheWriter.remove(value);
+            }
+        };
+
+        // Invoke
+        final String value = loader.load(ENTITY, KEY, () -> "old", racingCacheWriter);
+
+        // Check
+        assertEquals("old", value);
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void coalescingShouldBeOffWhenTheWaitIsZero() throws Exception {
+        // Set up
+        final SingleFlightLoader<String, String> loader = new SingleFlightLoader<String, String>(0);
+
+        // Invoke
+        final String value = loader.load(ENTITY, KEY, () -> null, cacheWriter);
+
+        // Check
+        assertNull(value);
+        assertEquals(1, loader.getLoadCount());
+        assertEquals(1, cache.size());
+    }
+
+    private Callable<String> load(final SingleFlightLoader<String, String> loader,
+                                  final SingleFlightLoader.Loader<String> valueLoader) {
+        return () -> loader.load(ENTITY, KEY, valueLoader, cacheWriter);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForCoalescedLoads(final SingleFlightLoader<?, ?> loader, final long count)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (loader.getCoalescedLoadCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, loader.getCoalescedLoadCount());
+    }
+}
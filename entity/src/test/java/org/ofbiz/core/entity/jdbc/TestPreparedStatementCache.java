@@ -0,0 +1,123 @@
+package org.ofbiz.core.entity.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TestPreparedStatementCache {
+
+    private static final String INSERT = "INSERT INTO PROJECT (ID, PKEY) VALUES (?, ?)";
+    private static final String UPDATE = "UPDATE PROJECT SET PKEY=? WHERE ID=?";
+    private static final String SELECT = "SELECT PKEY FROM PROJECT WHERE ID=?";
+
+    private Connection mockConnection;
+    private PreparedStatementCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        mockConnection = mock(Connection.class);
+        when(mockConnection.prepareStatement(INSERT)).thenReturn(mock(PreparedStatement.class), mock(PreparedStatement.class));
+        when(mockConnection.prepareStatement(UPDATE)).thenReturn(mock(PreparedStatement.class));
+        when(mockConnection.prepareStatement(SELECT)).thenReturn(mock(PreparedStatement.class));
+        cache = new PreparedStatementCache(2);
+    }
+
+    @Test
+    public void aReleasedStatementShouldBeReusedForTheSameSql() throws Exception {
+        // Set up
+        final PreparedStatement statement = cache.prepare(mockConnection, INSERT, false, 0, 0);
+        cache.release(statement);
+
+        // Invoke
+        final PreparedStatement reused = cache.prepare(mockConnection, INSERT, false, 0, 0);
+
+        // Check
+        assertSame(statement, reused);
+        verify(mockConnection, times(1)).prepareStatement(INSERT);
+        verify(statement).clearParameters();
+        verify(statement, never()).close();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void aStatementInUseShouldNotBeSharedWithAnotherCaller() throws Exception {
+        // Invoke
+        final PreparedStatement first = cache.prepare(mockConnection, INSERT, false, 0, 0);
+        final PreparedStatement second = cache.prepare(mockConnection, INSERT, false, 0, 0);
+        cache.release(first);
+        cache.release(second);
+
+        // Check
+        assertNotSame(first, second);
+        verify(first).close();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedStatementShouldBeClosedWhenTheCacheIsFull() throws Exception {
+        // Set up
+        final PreparedStatement insert = cache.prepare(mockConnection, INSERT, false, 0, 0);
+        final PreparedStatement update = cache.prepare(mockConnection, UPDATE, false, 0, 0);
+        final PreparedStatement select = cache.prepare(mockConnection, SELECT, false, 0, 0);
+        cache.release(insert);
+        cache.release(update);
+
+        // Invoke
+        cache.release(select);
+
+        // Check
+        verify(insert).close();
+        verify(update, never()).close();
+        verify(select, never()).close();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void theResultSetTypeShouldBePartOfTheKey() throws Exception {
+        // Set up
+        when(mockConnection.prepareStatement(SELECT, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+                .thenReturn(mock(PreparedStatement.class));
+        cache.release(cache.prepare(mockConnection, SELECT, false, 0, 0));
+
+        // Invoke
+        final PreparedStatement statement = cache.prepare(mockConnection, SELECT, true,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+        // Check
+        verify(mockConnection).prepareStatement(SELECT, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        assertEquals(0, cache.getHitCount());
+        assertNotSame(statement, cache.prepare(mockConnection, SELECT, false, 0, 0));
+    }
+
+    @Test
+    public void closingShouldCloseEveryStatementAndStopCaching() throws Exception {
+        // Set up
+        final PreparedStatement idle = cache.prepare(mockConnection, UPDATE, false, 0, 0);
+        cache.release(idle);
+        final PreparedStatement inUse = cache.prepare(mockConnection, INSERT, false, 0, 0);
+
+        // Invoke
+        cache.close();
+        final PreparedStatement afterClose = cache.prepare(mockConnection, SELECT, false, 0, 0);
+        cache.release(afterClose);
+
+        // Check
+        verify(idle).close();
+        verify(inUse).close();
+        verify(afterClose).close();
+        assertEquals(0, cache.size());
+    }
+}
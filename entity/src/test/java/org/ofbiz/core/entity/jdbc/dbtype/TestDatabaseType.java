@@ -2,7 +2,26 @@ package org.ofbiz.core.entity.jdbc.dbtype;
 
 import org.junit.Test;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.DB2;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.H2;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.HSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.MSSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.MYSQL;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.ORACLE_10G;
+import static org.ofbiz.core.entity.jdbc.dbtype.DatabaseTypeFactory.POSTGRES_7_3;
 
 
 public class TestDatabaseType {
@@ -15,4 +34,114 @@ public class TestDatabaseType {
         // See comments in the DatabaseUtil#getIndexInfo for details
         assertEquals(15, DatabaseTypeFactory.DATABASE_TYPES.size());
     }
+
+    private static final List<String> KEY = Collections.singletonList("ID");
+    private static final List<String> OTHERS = asList("PKEY", "COUNTER");
+
+    @Test
+    public void hsqlShouldUpsertWithMerge() {
+        assertEquals("MERGE INTO PROJECT t USING (VALUES (?, ?, ?)) AS s (ID, PKEY, COUNTER) ON (t.ID = s.ID)" +
+                        " WHEN MATCHED THEN UPDATE SET PKEY = s.PKEY, COUNTER = s.COUNTER" +
+                        " WHEN NOT MATCHED THEN INSERT (ID, PKEY, COUNTER) VALUES (s.ID, s.PKEY, s.COUNTER)",
+                HSQL.getUpsertSQL("PROJECT", KEY, OTHERS));
+    }
+
+    @Test
+    public void mergeWithoutOtherColumnsShouldOnlyInsert() {
+        assertEquals("MERGE INTO LINK t USING (VALUES (?, ?)) AS s (SOURCE, SINK) ON (t.SOURCE = s.SOURCE AND t.SINK = s.SINK)" +
+                        " WHEN NOT MATCHED THEN INSERT (SOURCE, SINK) VALUES (s.SOURCE, s.SINK)",
+                HSQL.getUpsertSQL("LINK", asList("SOURCE", "SINK"), Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void h2ShouldUpsertWithMergeKey() {
+        assertEquals("MERGE INTO PROJECT (ID, PKEY, COUNTER) KEY (ID) VALUES (?, ?, ?)",
+                H2.getUpsertSQL("PROJECT", KEY, OTHERS));
+    }
+
+    @Test
+    public void sqlServerShouldHoldItsLocksAndTerminateItsMerge() {
+        assertEquals("MERGE INTO PROJECT WITH (HOLDLOCK) t USING (VALUES (?, ?, ?)) AS s (ID, PKEY, COUNTER) ON (t.ID = s.ID)" +
+                        " WHEN MATCHED THEN UPDATE SET PKEY = s.PKEY, COUNTER = s.COUNTER" +
+                        " WHEN NOT MATCHED THEN INSERT (ID, PKEY, COUNTER) VALUES (s.ID, s.PKEY, s.COUNTER);",
+                MSSQL.getUpsertSQL("PROJECT", KEY, OTHERS));
+    }
+
+    @Test
+    public void oracleShouldMergeFromDual() {
+        assertEquals("MERGE INTO PROJECT t USING (SELECT ? ID, ? PKEY, ? COUNTER FROM DUAL) s ON (t.ID = s.ID)" +
+                        " WHEN MATCHED THEN UPDATE SET PKEY = s.PKEY, COUNTER = s.COUNTER" +
+                        " WHEN NOT MATCHED THEN INSERT (ID, PKEY, COUNTER) VALUES (s.ID, s.PKEY, s.COUNTER)",
+                ORACLE_10G.getUpsertSQL("PROJECT", KEY, OTHERS));
+    }
+
+    @Test
+    public void postgresShouldUpsertOnConflict() {
+        assertEquals("INSERT INTO PROJECT (ID, PKEY, COUNTER) VALUES (?, ?, ?)" +
+                        " ON CONFLICT (ID) DO UPDATE SET PKEY = EXCLUDED.PKEY, COUNTER = EXCLUDED.COUNTER",
+                POSTGRES_7_3.getUpsertSQL("PROJECT", KEY, OTHERS));
+        assertEquals("INSERT INTO PROJECT (ID) VALUES (?) ON CONFLICT (ID) DO NOTHING",
+                POSTGRES_7_3.getUpsertSQL("PROJECT", KEY, Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void mySqlShouldUpsertOnDuplicateKey() {
+        assertEquals("INSERT INTO PROJECT (ID, PKEY, COUNTER) VALUES (?, ?, ?)" +
+                        " ON DUPLICATE KEY UPDATE PKEY = VALUES(PKEY), COUNTER = VALUES(COUNTER)",
+                MYSQL.getUpsertSQL("PROJECT", KEY, OTHERS));
+        assertEquals("INSERT INTO PROJECT (ID) VALUES (?) ON DUPLICATE KEY UPDATE ID = ID",
+                MYSQL.getUpsertSQL("PROJECT", KEY, Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void otherDatabasesShouldNotUpsert() {
+        assertNull(DB2.getUpsertSQL("PROJECT", KEY, OTHERS));
+    }
+
+    @Test
+    public void mySqlShouldStreamWithTheMinimumFetchSize() {
+        assertEquals(Integer.MIN_VALUE, MYSQL.getStreamingFetchSize());
+        assertFalse(MYSQL.isAutoCommitOffForStreaming());
+    }
+
+    @Test
+    public void postgresShouldStreamWithAutoCommitOff() {
+        assertEquals(AbstractDatabaseType.DEFAULT_STREAMING_FETCH_SIZE, POSTGRES_7_3.getStreamingFetchSize());
+        assertTrue(POSTGRES_7_3.isAutoCommitOffForStreaming());
+    }
+
+    @Test
+    public void otherDatabasesShouldStreamWithTheDefaultFetchSize() {
+        assertEquals(AbstractDatabaseType.DEFAULT_STREAMING_FETCH_SIZE, ORACLE_10G.getStreamingFetchSize());
+        assertFalse(ORACLE_10G.isAutoCommitOffForStreaming());
+    }
+
+    @Test
+    public void postgresShouldCompareRowValuesFromVersion82() throws Exception {
+        assertFalse(POSTGRES_7_3.isRowValueComparisonSupported(mockConnection(7, 4)));
+        assertFalse(POSTGRES_7_3.isRowValueComparisonSupported(mockConnection(8, 1)));
+        assertTrue(POSTGRES_7_3.isRowValueComparisonSupported(mockConnection(8, 2)));
+        assertTrue(POSTGRES_7_3.isRowValueComparisonSupported(mockConnection(9, 0)));
+    }
+
+    @Test
+    public void mySqlAndH2ShouldCompareRowValues() throws Exception {
+        assertTrue(MYSQL.isRowValueComparisonSupported(mockConnection(5, 0)));
+        assertTrue(H2.isRowValueComparisonSupported(mockConnection(1, 4)));
+    }
+
+    @Test
+    public void otherDatabasesShouldNotCompareRowValues() throws Exception {
+        assertFalse(DB2.isRowValueComparisonSupported(mockConnection(9, 7)));
+        assertFalse(ORACLE_10G.isRowValueComparisonSupported(mockConnection(10, 2)));
+    }
+
+    private static Connection mockConnection(final int majorVersion, final int minorVersion) throws SQLException {
+        final DatabaseMetaData mockMetaData = mock(DatabaseMetaData.class);
+        when(mockMetaData.getDatabaseMajorVersion()).thenReturn(majorVersion);
+        when(mockMetaData.getDatabaseMinorVersion()).thenReturn(minorVersion);
+        final Connection mockConnection = mock(Connection.class);
+        when(mockConnection.getMetaData()).thenReturn(mockMetaData);
+        return mockConnection;
+    }
 }
@@ -0,0 +1,83 @@
+package org.ofbiz.core.entity.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ofbiz.core.entity.config.DatasourceInfo;
+import org.ofbiz.core.entity.config.JdbcDatasourceInfo;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestModelEntityStatements {
+
+    private ModelEntity modelEntity;
+    private ModelField idField;
+    private ModelField keyField;
+    private ModelField nameField;
+    private DatasourceInfo datasourceInfo;
+
+    @Before
+    public void setUp() {
+        modelEntity = new ModelEntity();
+        modelEntity.setEntityName("Project");
+        modelEntity.setTableName("PROJECT");
+        idField = new ModelField("id", "numeric", "ID", true, Collections.<String>emptyList());
+        keyField = new ModelField("key", "short-varchar", "PKEY", false, Collections.<String>emptyList());
+        nameField = new ModelField("name", "long-varchar", "PNAME", false, Collections.<String>emptyList());
+        modelEntity.addField(idField);
+        modelEntity.addField(keyField);
+        modelEntity.addField(nameField);
+        datasourceInfo = new DatasourceInfo("test", "hsql", "PUBLIC", (JdbcDatasourceInfo) null);
+    }
+
+    @Test
+    public void statementsShouldBeBuiltFromTheFieldsOfTheEntity() throws Exception {
+        // Invoke
+        final ModelEntityStatements statements = modelEntity.getStatements(datasourceInfo);
+
+        // Check
+        assertEquals("SELECT PKEY, PNAME FROM PUBLIC.PROJECT WHERE ID=?", statements.getSelectByPrimaryKeySql());
+        assertEquals("INSERT INTO PUBLIC.PROJECT (ID, PKEY, PNAME) VALUES (?, ?, ?)", statements.getInsertSql());
+        assertEquals("UPDATE PUBLIC.PROJECT SET PKEY=?, PNAME=? WHERE ID=?", statements.getUpdateAllSql());
+        assertEquals("DELETE FROM PUBLIC.PROJECT WHERE ID=?", statements.getDeleteByPrimaryKeySql());
+        assertEquals("SELECT COUNT(*) FROM PUBLIC.PROJECT", statements.getCountAllSql());
+        assertEquals(Arrays.asList(idField), statements.getPrimaryKeyFields());
+        assertEquals(Arrays.asList(keyField, nameField), statements.getOtherFields());
+        assertEquals(Arrays.asList(idField, keyField, nameField), statements.getAllFields());
+    }
+
+    @Test
+    public void statementsShouldBeSharedUntilTheFieldsChange() throws Exception {
+        // Set up
+        final ModelEntityStatements statements = modelEntity.getStatements(datasourceInfo);
+
+        // Invoke
+        final ModelEntityStatements sameStatements = modelEntity.getStatements(datasourceInfo);
+        modelEntity.removeField("name");
+        final ModelEntityStatements newStatements = modelEntity.getStatements(datasourceInfo);
+
+        // Check
+        assertSame(statements, sameStatements);
+        assertNotSame(statements, newStatements);
+        assertEquals("UPDATE PUBLIC.PROJECT SET PKEY=? WHERE ID=?", newStatements.getUpdateAllSql());
+    }
+
+    @Test
+    public void anEntityWithoutOtherFieldsShouldHaveNoUpdateStatement() throws Exception {
+        // Set up
+        modelEntity.removeField("key");
+        modelEntity.removeField("name");
+
+        // Invoke
+        final ModelEntityStatements statements = modelEntity.getStatements(datasourceInfo);
+
+        // Check
+        assertEquals("SELECT * FROM PUBLIC.PROJECT WHERE ID=?", statements.getSelectByPrimaryKeySql());
+        assertNull(statements.getUpdateAllSql());
+    }
+}
@@ -0,0 +1,183 @@
+package org.ofbiz.core.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of a cache, or of the cache lines of one entity: hits, misses, loads and how long they took,
+ * evictions by cause and invalidations by operation. The counters are {@link LongAdder}s, so recording is accurate
+ * under contention without making the hot path of the cache contend on a shared counter; reading them while they are
+ * being updated gives a close but not atomic snapshot.
+ *
+ * @since 1.2.6
+ */
+public class CacheStatistics {
+
+    /**
+     * Why a line left a cache without anyone asking for it to be removed.
+     */
+    public enum EvictionCause {
+        /** The cache had more lines than its maxSize */
+        SIZE,
+        /** The cache weighed more than its maxWeight */
+        WEIGHT,
+        /** The line was older than the expireTime of the cache */
+        EXPIRED,
+        /** The garbage collector cleared the soft reference to the value */
+        COLLECTED
+    }
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    // filled in up front and never changed, so it can be read without locking
+    private final Map<EvictionCause, LongAdder> evictions = new EnumMap<EvictionCause, LongAdder>(EvictionCause.class);
+    private final ConcurrentMap<String, LongAdder> invalidations = new ConcurrentHashMap<String, LongAdder>();
+
+    public CacheStatistics() {
+        for (EvictionCause cause : EvictionCause.values()) {
+            evictions.put(cause, new LongAdder());
+        }
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Records that a missing line was loaded from its source, e.g. the database.
+     *
+     * @param nanos how long the load took, in nanoseconds
+     */
+    public void recordLoad(final long nanos) {
+        loads.increment();
+        loadNanos.add(nanos);
+    }
+
+    public void recordEviction(final EvictionCause cause) {
+        evictions.get(cause).increment();
+    }
+
+    /**
+     * Records that lines were invalidated because their data changed or was removed.
+     *
+     * @param operation what invalidated them, e.g. "remove" or "clear"
+     */
+    public void recordInvalidation(final String operation) {
+        LongAdder count = invalidations.get(operation);
+        if (count == null) {
+            final LongAdder newCount = new LongAdder();
+            count = invalidations.putIfAbsent(operation, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.increment();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the ratio of the lookups that were hits, or 1.0 if there haven't been any
+     */
+    public double getHitRatio() {
+        final long hitCount = getHitCount();
+        final long requestCount = hitCount + getMissCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return loadNanos.sum();
+    }
+
+    /**
+     * @return how long a load took on average, in milliseconds, or 0 if there haven't been any
+     */
+    public double getAverageLoadMillis() {
+        final long loadCount = getLoadCount();
+        if (loadCount == 0) {
+            return 0;
+        }
+        return (double) getTotalLoadTimeNanos() / loadCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getEvictionCount(final EvictionCause cause) {
+        return evictions.get(cause).sum();
+    }
+
+    public long getEvictionCount() {
+        long evictionCount = 0;
+        for (LongAdder count : evictions.values()) {
+            evictionCount += count.sum();
+        }
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of evictions by the name of their cause
+     */
+    public Map<String, Long> getEvictionCounts() {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<EvictionCause, LongAdder> entry : evictions.entrySet()) {
+            counts.put(entry.getKey().name(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    public long getInvalidationCount(final String operation) {
+        final LongAdder count = invalidations.get(operation);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the number of invalidations by operation
+     */
+    public Map<String, Long> getInvalidationCounts() {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : invalidations.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        loads.reset();
+        loadNanos.reset();
+        for (LongAdder count : evictions.values()) {
+            count.reset();
+        }
+        invalidations.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[hits=" + getHitCount() + ", misses=" + getMissCount() + ", loads=" + getLoadCount() +
+                ", averageLoadMillis=" + getAverageLoadMillis() + ", evictions=" + getEvictionCounts() +
+                ", invalidations=" + getInvalidationCounts() + "]";
+    }
+}
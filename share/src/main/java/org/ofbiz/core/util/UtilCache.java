@@ -24,20 +24,31 @@
 package org.ofbiz.core.util;
 
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p> Generalized caching utility. Provides a number of caching features:
  * <ul>
- * <li>Limited or unlimited element capacity
- * <li>If limited, removes elements with the LRU (Least Recently Used) algorithm
+ * <li>Limited or unlimited element capacity, counted in elements and/or in the estimated weight of the elements
+ * <li>If limited, removes elements with the CLOCK (second chance) approximation of LRU (Least Recently Used)
  * <li>Keeps track of when each element was loaded into the cache
  * <li>Using the expireTime can report whether a given element has expired
- * <li>Counts misses and hits
+ * <li>Counts misses, hits, evictions and invalidations, see {@link #getStatistics()}; can be published to JMX, see
+ * {@link UtilCacheJmx}
  * </ul>
+ * <p>The cache lines are held in a {@link ConcurrentHashMap}, so reads never block and writes only contend
+ * on the affected bin. Recency is tracked with a "recently used" bit on each line instead of a linked list,
+ * which makes both lookups and evictions O(1) (amortized) and lets {@link #get} run without any locking.
  *
  * @author <a href="mailto:jonesde@ofbiz.org">David E. Jones</a>
  * @version $Revision: 1.1 $
@@ -48,12 +59,12 @@ public class UtilCache<K, V> {
     /**
      * A static Map to keep track of all of the UtilCache instances.
      */
-    public static Map<String, UtilCache<?, ?>> utilCacheTable = new HashMap<String, UtilCache<?, ?>>();
+    public static Map<String, UtilCache<?, ?>> utilCacheTable = new ConcurrentHashMap<String, UtilCache<?, ?>>();
 
     /**
      * An index number appended to utilCacheTable names when there are conflicts.
      */
-    protected static Map<String, Integer> defaultIndices = new HashMap<String, Integer>();
+    protected static Map<String, Integer> defaultIndices = new ConcurrentHashMap<String, Integer>();
 
     /**
      * The name of the UtilCache instance, is also the key for the instance in utilCacheTable.
@@ -62,40 +73,75 @@ public class UtilCache<K, V> {
 
     /**
      * A list of the elements order by Least Recent Use
+     *
+     * @deprecated no longer maintained, recency is now tracked on each {@link CacheLine}; always empty
      */
+    @Deprecated
     public LinkedList<K> keyLRUList = new LinkedList<K>();
 
     /**
      * A hashtable containing a CacheLine object with a value and a loadTime for each element.
      */
-    public Map<K, CacheLine<V>> cacheLineTable = new HashMap<K, CacheLine<V>>();
+    public Map<K, CacheLine<V>> cacheLineTable = new ConcurrentHashMap<K, CacheLine<V>>();
+
+    /**
+     * The "clock" of the cache: every line that was put while the cache is size or weight limited, in insertion order.
+     * Entries for lines that have since been replaced or removed are skipped (and dropped) lazily.
+     */
+    private final ConcurrentLinkedQueue<EvictionNode<K, V>> evictionQueue = new ConcurrentLinkedQueue<EvictionNode<K, V>>();
 
     /**
-     * A count of the number of cache hits
+     * The number of nodes in the evictionQueue; ConcurrentLinkedQueue.size() is O(n) so we count ourselves
      */
-    protected long hitCount = 0;
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
 
     /**
-     * A count of the number of cache misses
+     * Guards the purging of stale nodes from the evictionQueue, so only one thread does it at a time
      */
-    protected long missCount = 0;
+    private final AtomicBoolean purgingEvictionQueue = new AtomicBoolean();
+
+    /**
+     * The hits, misses, loads, evictions and invalidations of this cache
+     */
+    private final CacheStatistics statistics = new CacheStatistics();
 
     /**
      * The maximum number of elements in the cache.
      * If set to 0, there will be no limit on the number of elements in the cache.
      */
-    protected long maxSize = 0;
+    protected volatile long maxSize = 0;
+
+    /**
+     * The maximum total weight of the elements in the cache, as estimated by the weigher.
+     * If set to 0, there will be no limit on the weight of the cache.
+     */
+    protected volatile long maxWeight = 0;
+
+    /**
+     * Estimates the weight of each element; if null, every element weighs 1
+     */
+    protected volatile Weigher<? super K, ? super V> weigher = null;
+
+    /**
+     * The sum of the weights of the elements currently in the cache
+     */
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    /**
+     * Told about every element that leaves the cache, for whatever reason; null if nobody is interested
+     */
+    protected volatile RemovalListener<? super K> removalListener = null;
 
     /**
      * Specifies the amount of time since initial loading before an element will be reported as expired.
      * If set to 0, elements will never expire.
      */
-    protected long expireTime = 0;
+    protected volatile long expireTime = 0;
 
     /**
      * Specifies whether or not to use soft references for this cache, defaults to false
      */
-    protected boolean useSoftReference = false;
+    protected volatile boolean useSoftReference = false;
 
     /**
      * Constructor which specifies the cacheName as well as the maxSize, expireTime and useSoftReference.
@@ -113,7 +159,7 @@ public class UtilCache<K, V> {
         setPropertiesParams(cacheName);
 
         name = cacheName + this.getNextDefaultIndex(cacheName);
-        utilCacheTable.put(name, this);
+        register();
     }
 
     /**
@@ -138,10 +184,10 @@ public class UtilCache<K, V> {
         this.useSoftReference = false;
         this.maxSize = maxSize;
         this.expireTime = expireTime;
-        String name = "specified" + this.getNextDefaultIndex("specified");
+        name = "specified" + this.getNextDefaultIndex("specified");
 
         setPropertiesParams(name);
-        utilCacheTable.put(name, this);
+        register();
     }
 
     /**
@@ -155,7 +201,7 @@ public class UtilCache<K, V> {
         setPropertiesParams(cacheName);
 
         name = cacheName + this.getNextDefaultIndex(cacheName);
-        utilCacheTable.put(name, this);
+        register();
     }
 
     /**
@@ -165,18 +211,50 @@ public class UtilCache<K, V> {
         setPropertiesParams("default");
 
         name = "default" + this.getNextDefaultIndex("default");
+        register();
+    }
+
+    /**
+     * Constructor for a subclass that is a view of the given cache rather than a cache of its own. It has the name of
+     * that cache, but is not configured from cache.properties, nor registered in utilCacheTable or JMX, so looking
+     * the name up still finds the cache itself.
+     *
+     * @param backingCache the cache this is a view of
+     * @since 1.2.6
+     */
+    protected UtilCache(UtilCache<?, ?> backingCache) {
+        name = backingCache.getName();
+    }
+
+    private void register() {
         utilCacheTable.put(name, this);
+        UtilCacheJmx.cacheCreated(this);
+    }
+
+    /**
+     * Removes the named cache from utilCacheTable (and from JMX, if it is registered there), e.g. because it is no
+     * longer used.
+     *
+     * @param cacheName the name of the cache, as returned by {@link #getName()}
+     */
+    public static void removeCache(String cacheName) {
+        final UtilCache<?, ?> cache = utilCacheTable.remove(cacheName);
+        if (cache != null) {
+            UtilCacheJmx.cacheRemoved(cache);
+        }
     }
 
     protected String getNextDefaultIndex(String cacheName) {
-        Integer curInd = UtilCache.defaultIndices.get(cacheName);
+        synchronized (UtilCache.defaultIndices) {
+            Integer curInd = UtilCache.defaultIndices.get(cacheName);
 
-        if (curInd == null) {
-            UtilCache.defaultIndices.put(cacheName, 1);
-            return "";
-        } else {
-            UtilCache.defaultIndices.put(cacheName, curInd + 1);
-            return Integer.toString(curInd + 1);
+            if (curInd == null) {
+                UtilCache.defaultIndices.put(cacheName, 1);
+                return "";
+            } else {
+                UtilCache.defaultIndices.put(cacheName, curInd + 1);
+                return Integer.toString(curInd + 1);
+            }
         }
     }
 
@@ -193,6 +271,15 @@ public class UtilCache<K, V> {
                 }
             } catch (Exception e) {
             }
+            try {
+                String value = res.getString(cacheName + ".maxWeight");
+                Long longValue = new Long(value);
+
+                if (longValue != null) {
+                    maxWeight = longValue;
+                }
+            } catch (Exception e) {
+            }
             try {
                 String value = res.getString(cacheName + ".expireTime");
                 Long longValue = new Long(value);
@@ -220,28 +307,72 @@ public class UtilCache<K, V> {
      * @param key   The key for the element, used to reference it in the hastables and LRU linked list
      * @param value The value of the element
      */
-    public synchronized void put(K key, V value) {
+    public void put(K key, V value) {
         if (key == null)
             return;
 
-        if (maxSize > 0) {
-            // when maxSize is changed, the setter will take care of filling the LRU list
-            if (cacheLineTable.containsKey(key)) {
-                keyLRUList.remove(key);
-                keyLRUList.addFirst(key);
-            } else {
-                keyLRUList.addFirst(key);
+        final long weight = weigh(key, value);
+        if (maxWeight > 0 && weight > maxWeight) {
+            // this element alone would push everything else out of the cache, so don't cache it at all; the
+            // previous value for the key (if any) is out of date now, so it must go too
+            if (remove(key) == null) {
+                // the listener may have been told about the key ahead of the put, so tell it the key has no line
+                notifyRemoval(key);
             }
+            return;
         }
 
+        final CacheLine<V> line;
         if (expireTime > 0) {
-            cacheLineTable.put(key, new UtilCache.CacheLine<V>(value, useSoftReference, System.currentTimeMillis()));
+            line = new UtilCache.CacheLine<V>(value, useSoftReference, System.currentTimeMillis());
         } else {
-            cacheLineTable.put(key, new UtilCache.CacheLine<V>(value, useSoftReference));
+            line = new UtilCache.CacheLine<V>(value, useSoftReference);
         }
-        if (maxSize > 0 && cacheLineTable.size() > maxSize) {
-            K lastKey = keyLRUList.getLast();
-            remove(lastKey);
+        line.weight = weight;
+        final CacheLine<V> oldLine = cacheLineTable.put(key, line);
+        totalWeight.addAndGet(oldLine != null ? weight - oldLine.weight : weight);
+
+        if (isLimited()) {
+            // when maxSize or maxWeight is changed, the setter will take care of filling the eviction queue
+            enqueueForEviction(key, line);
+            evictIfNecessary();
+        }
+    }
+
+    private long weigh(K key, V value) {
+        final Weigher<? super K, ? super V> weigher = this.weigher;
+        if (weigher == null) {
+            return 1;
+        }
+        return Math.max(weigher.weigh(key, value), 0);
+    }
+
+    private boolean isLimited() {
+        return maxSize > 0 || maxWeight > 0;
+    }
+
+    private boolean isOverLimit() {
+        return (maxSize > 0 && cacheLineTable.size() > maxSize) || (maxWeight > 0 && totalWeight.get() > maxWeight);
+    }
+
+    /**
+     * Removes the line for the key, but only if it is still the passed line, and keeps the total weight up to date.
+     */
+    private boolean removeLine(Object key, CacheLine<V> line) {
+        if (cacheLineTable.remove(key, line)) {
+            totalWeight.addAndGet(-line.weight);
+            notifyRemoval(key);
+            return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyRemoval(Object key) {
+        final RemovalListener<? super K> listener = this.removalListener;
+        if (listener != null) {
+            // only keys that were in the table get here, so they are Ks
+            listener.removed((K) key);
         }
     }
 
@@ -254,7 +385,7 @@ public class UtilCache<K, V> {
      */
     public V get(K key) {
         if (key == null) {
-            missCount++;
+            statistics.recordMiss();
             return null;
         }
         UtilCache.CacheLine<V> line = cacheLineTable.get(key);
@@ -262,21 +393,21 @@ public class UtilCache<K, V> {
         if (hasExpired(line)) {
             // note that print.info in debug.properties cannot be checked through UtilProperties here, it would cause infinite recursion...
             // if (Debug.infoOn()) Debug.logInfo("Element has expired with key " + key);
-            remove(key);
+            removeExpiredLine(key, line);
             line = null;
         }
 
         if (line == null) {
             // if (Debug.infoOn()) Debug.logInfo("Element not found with key " + key);
-            missCount++;
+            statistics.recordMiss();
             return null;
         }
         // if (Debug.infoOn()) Debug.logInfo("Element found with key " + key);
-        hitCount++;
+        statistics.recordHit();
 
-        if (maxSize > 0) {
-            keyLRUList.remove(key);
-            keyLRUList.addFirst(key);
+        // only write the flag when it changes, to avoid needless cache coherency traffic on hot lines
+        if (isLimited() && !line.recentlyUsed) {
+            line.recentlyUsed = true;
         }
         return line.getValue();
     }
@@ -287,18 +418,19 @@ public class UtilCache<K, V> {
      * @param key The key for the element, used to reference it in the hastables and LRU linked list
      * @return The value of the removed element specified by the key
      */
-    public synchronized Object remove(Object key) {
+    public Object remove(Object key) {
         if (key == null) {
-            missCount++;
             return null;
         }
 
+        // the node in the eviction queue (if any) is now stale and will be dropped when the clock hand reaches it
         UtilCache.CacheLine<V> line = cacheLineTable.remove(key);
         if (line != null) {
-            if (maxSize > 0) keyLRUList.remove(key);
+            totalWeight.addAndGet(-line.weight);
+            statistics.recordInvalidation("remove");
+            notifyRemoval(key);
             return line.getValue();
         } else {
-            missCount++;
             return null;
         }
     }
@@ -306,10 +438,81 @@ public class UtilCache<K, V> {
     /**
      * Removes all elements from this cache
      */
-    public synchronized void clear() {
-        cacheLineTable.clear();
-        keyLRUList.clear();
-        clearCounters();
+    public void clear() {
+        // remove the lines one at a time so that the total weight stays exact even with concurrent puts
+        for (Map.Entry<K, CacheLine<V>> entry : cacheLineTable.entrySet()) {
+            removeLine(entry.getKey(), entry.getValue());
+        }
+        // The eviction queue is left alone: a line put while the lines are being removed may already be queued, and
+        // emptying the queue would leave it without a node, so that it could never be evicted. The nodes of the
+        // removed lines are stale and get skipped or swept like any others.
+        // the statistics are kept, as they are meant to show how the cache does over time, clears included
+        statistics.recordInvalidation("clear");
+    }
+
+    private void enqueueForEviction(K key, CacheLine<V> line) {
+        evictionQueue.offer(new EvictionNode<K, V>(key, line));
+
+        // Replaced and removed lines leave stale nodes behind; if they pile up (e.g. lots of churn in a cache that
+        // never fills up), sweep them out. Sweeping is O(n) but only happens once every O(maxSize) puts.
+        final int queued = evictionQueueSize.incrementAndGet();
+        if (queued > 2 * Math.max(maxSize, cacheLineTable.size()) && purgingEvictionQueue.compareAndSet(false, true)) {
+            try {
+                purgeStaleEvictionNodes();
+            } finally {
+                purgingEvictionQueue.set(false);
+            }
+        }
+    }
+
+    private void purgeStaleEvictionNodes() {
+        for (Iterator<EvictionNode<K, V>> nodes = evictionQueue.iterator(); nodes.hasNext(); ) {
+            final EvictionNode<K, V> node = nodes.next();
+            if (node.isStale(cacheLineTable)) {
+                nodes.remove();
+                evictionQueueSize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Advances the clock hand until the cache is back within its size and weight limits. Lines that have been used since the
+     * hand last passed them get a second chance (their flag is cleared and they go to the back of the queue), the
+     * first line that has not been used is evicted. Each line can only be passed over once per use, so the cost is
+     * O(1) amortized over the gets and puts.
+     */
+    private void evictIfNecessary() {
+        while (isOverLimit()) {
+            final EvictionNode<K, V> node = evictionQueue.poll();
+            if (node == null) {
+                return;
+            }
+            evictionQueueSize.decrementAndGet();
+
+            if (node.isStale(cacheLineTable)) {
+                continue;
+            }
+            if (node.line.recentlyUsed) {
+                node.line.recentlyUsed = false;
+                evictionQueue.offer(node);
+                evictionQueueSize.incrementAndGet();
+                continue;
+            }
+            // work out the cause before the line goes, as it changes the size and weight
+            final CacheStatistics.EvictionCause cause = maxSize > 0 && cacheLineTable.size() > maxSize ?
+                    CacheStatistics.EvictionCause.SIZE : CacheStatistics.EvictionCause.WEIGHT;
+            if (removeLine(node.key, node.line)) {
+                statistics.recordEviction(cause);
+            }
+        }
+    }
+
+    private void removeExpiredLine(Object key, CacheLine<V> line) {
+        final CacheStatistics.EvictionCause cause = useSoftReference && line.getValue() == null ?
+                CacheStatistics.EvictionCause.COLLECTED : CacheStatistics.EvictionCause.EXPIRED;
+        if (removeLine(key, line)) {
+            statistics.recordEviction(cause);
+        }
     }
 
     /**
@@ -336,7 +539,7 @@ public class UtilCache<K, V> {
      * @return The number of successful cache hits
      */
     public long getHitCount() {
-        return hitCount;
+        return statistics.getHitCount();
     }
 
     /**
@@ -345,15 +548,24 @@ public class UtilCache<K, V> {
      * @return The number of cache misses
      */
     public long getMissCount() {
-        return missCount;
+        return statistics.getMissCount();
     }
 
     /**
-     * Clears the hit and miss counters
+     * Returns the statistics of this cache. The owner of the cache can record its loads there, see
+     * {@link CacheStatistics#recordLoad(long)}.
+     *
+     * @return the live statistics, never null
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Clears the statistics of this cache, including the hit and miss counters
      */
     public void clearCounters() {
-        hitCount = 0;
-        missCount = 0;
+        statistics.reset();
     }
 
     /**
@@ -362,26 +574,10 @@ public class UtilCache<K, V> {
      *
      * @param maxSize The maximum number of elements in the cache
      */
-    public void setMaxSize(long maxSize) {
-        // if the new maxSize is <= 0, clear keyLRUList
-        if (maxSize <= 0) {
-            keyLRUList.clear();
-        } else if (maxSize > 0 && this.maxSize <= 0) {
-            // if the new maxSize > 0 and the old is <= 0, fill in LRU list - order will be meaningless for now
-            for (K key : cacheLineTable.keySet()) {
-                keyLRUList.add(key);
-            }
-        }
-
-        // if the new maxSize is less than the current cache size, shrink the cache.
-        if (maxSize > 0 && cacheLineTable.size() > maxSize) {
-            while (cacheLineTable.size() > maxSize) {
-                K lastKey = keyLRUList.getLast();
-                remove(lastKey);
-            }
-        }
-
+    public synchronized void setMaxSize(long maxSize) {
+        final boolean wasLimited = isLimited();
         this.maxSize = maxSize;
+        limitsChanged(wasLimited);
     }
 
     /**
@@ -393,6 +589,105 @@ public class UtilCache<K, V> {
         return maxSize;
     }
 
+    /**
+     * Sets the maximum total weight of the elements in the cache, as estimated by the weigher.
+     * If 0, there is no maximum.
+     *
+     * @param maxWeight The maximum total weight of the elements in the cache
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        final boolean wasLimited = isLimited();
+        this.maxWeight = maxWeight;
+        limitsChanged(wasLimited);
+    }
+
+    /**
+     * Returns the current maximum total weight of the elements in the cache
+     *
+     * @return The maximum total weight of the elements in the cache, 0 if there is no maximum
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the sum of the weights of the elements currently in the cache. Without a weigher, every element
+     * weighs 1 and this is the same as {@link #size()}.
+     *
+     * @return The current total weight of the cache
+     */
+    public long getTotalWeight() {
+        return totalWeight.get();
+    }
+
+    /**
+     * Sets the weigher used to estimate the weight of each element; the elements already in the cache are weighed
+     * again, the total weight is worked out from scratch, and lines are evicted if the cache is now over its
+     * maxWeight.
+     * <p>
+     * The weigher should be set before the cache is used: a put that runs at the same time as this method may
+     * weigh its element with the old weigher, or be counted twice or not at all in the total weight, until the
+     * next call to this method.
+     * </p>
+     *
+     * @param weigher The weigher to use, or null to give every element a weight of 1
+     */
+    public synchronized void setWeigher(Weigher<? super K, ? super V> weigher) {
+        this.weigher = weigher;
+        long total = 0;
+        for (Map.Entry<K, CacheLine<V>> entry : cacheLineTable.entrySet()) {
+            final CacheLine<V> line = entry.getValue();
+            final V value = line.getValue();
+            if (value != null) {
+                line.weight = weigh(entry.getKey(), value);
+            }
+            total += line.weight;
+        }
+        // rather than adding up the differences, which would keep any error made by a concurrent put for good
+        totalWeight.set(total);
+        evictIfNecessary();
+    }
+
+    /**
+     * Returns the weigher used to estimate the weight of each element
+     *
+     * @return The weigher, null if every element weighs 1
+     */
+    public Weigher<? super K, ? super V> getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Sets the listener that is told about every element that leaves the cache, whether it was removed, cleared,
+     * expired or evicted. It is not told about elements that are replaced by a put of the same key.
+     *
+     * @param removalListener The listener, or null for none
+     */
+    public void setRemovalListener(RemovalListener<? super K> removalListener) {
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Called after maxSize or maxWeight has changed; sets up or drops the eviction queue, and shrinks the cache if
+     * it is over the new limits.
+     */
+    private void limitsChanged(boolean wasLimited) {
+        if (!isLimited()) {
+            // no more limits, drop the eviction queue
+            evictionQueue.clear();
+            evictionQueueSize.set(0);
+        } else if (!wasLimited) {
+            // the cache is limited now but was not before, fill in the eviction queue - order will be meaningless for now
+            for (Map.Entry<K, CacheLine<V>> entry : cacheLineTable.entrySet()) {
+                evictionQueue.offer(new EvictionNode<K, V>(entry.getKey(), entry.getValue()));
+                evictionQueueSize.incrementAndGet();
+            }
+        }
+
+        // if the cache is now too big, shrink it
+        evictIfNecessary();
+    }
+
     /**
      * Sets the expire time for the cache elements.
      * If 0, elements never expire.
@@ -451,6 +746,15 @@ public class UtilCache<K, V> {
         return cacheLineTable.size();
     }
 
+    /**
+     * Returns the keys of the lines currently in the cache, including any that have expired but not been removed yet.
+     *
+     * @return an unmodifiable, weakly consistent view of the keys
+     */
+    public Set<K> getCacheLineKeys() {
+        return Collections.unmodifiableSet(cacheLineTable.keySet());
+    }
+
     /**
      * Returns a boolean specifying whether or not an element with the specified key is in the cache.
      * If the requested element hasExpired, it is removed before it is looked up which causes the function to return false.
@@ -459,10 +763,12 @@ public class UtilCache<K, V> {
      * @return True is the cache contains an element corresponding to the specified key, otherwise false
      */
     public boolean containsKey(Object key) {
+        if (key == null) return false;
+
         UtilCache.CacheLine<V> line = cacheLineTable.get(key);
 
         if (hasExpired(line)) {
-            remove(key);
+            removeExpiredLine(key, line);
             line = null;
         }
         if (line != null) {
@@ -508,10 +814,10 @@ public class UtilCache<K, V> {
      * Clears all expired cache entries; also clear any cache entries where the SoftReference in the CacheLine object has been cleared by the gc
      */
     public void clearExpired() {
-
-        for (K k : cacheLineTable.keySet()) {
-            if (hasExpired(k)) {
-                remove(k);
+        // the iterators of ConcurrentHashMap are weakly consistent, so removing while iterating is fine
+        for (Map.Entry<K, CacheLine<V>> entry : cacheLineTable.entrySet()) {
+            if (hasExpired(entry.getValue())) {
+                removeExpiredLine(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -543,6 +849,16 @@ public class UtilCache<K, V> {
         public long loadTime = 0;
         public boolean useSoftReference = false;
 
+        /**
+         * Set on every hit, cleared when the eviction clock hand passes over this line
+         */
+        volatile boolean recentlyUsed = false;
+
+        /**
+         * The weight of the value as estimated by the weigher of the cache when the line was put
+         */
+        volatile long weight = 1;
+
         public CacheLine(T value, boolean useSoftReference) {
             if (useSoftReference) {
                 this.valueRef = new SoftReference<T>(value);
@@ -579,4 +895,60 @@ public class UtilCache<K, V> {
             }
         }
     }
+
+    /**
+     * Estimates the weight of cache elements, for caches that are bounded by {@link #setMaxWeight(long) maxWeight}
+     * rather than (or as well as) by the number of elements. The unit is up to the weigher, but it must be the
+     * same unit as the maxWeight of the cache, e.g. estimated bytes of heap.
+     *
+     * @param <K> the type of the keys of the cache
+     * @param <V> the type of the values of the cache
+     */
+    public interface Weigher<K, V> {
+
+        /**
+         * Estimates the weight of an element. This is called once for each put, so it should be cheap relative to
+         * producing the value in the first place.
+         *
+         * @param key   The key of the element
+         * @param value The value of the element
+         * @return the weight of the element, never negative
+         */
+        long weigh(K key, V value);
+    }
+
+    /**
+     * Is told about the keys of the elements that leave a cache, e.g. to keep an index of the cache in sync, and of
+     * the keys whose elements the cache declined to hold because they were too heavy. It is called on the thread that
+     * removed the element, so it should be quick and must not call back into the cache.
+     *
+     * @param <K> the type of the keys of the cache
+     */
+    public interface RemovalListener<K> {
+
+        /**
+         * Called after the element with the given key has left the cache, or was not let in.
+         *
+         * @param key The key of the element that was removed
+         */
+        void removed(K key);
+    }
+
+    /**
+     * A position of the eviction clock: the key of a line and the line itself, so that we can tell whether the key
+     * has since been removed or re-put (in which case this node is stale).
+     */
+    private static class EvictionNode<K, V> {
+        final K key;
+        final CacheLine<V> line;
+
+        EvictionNode(K key, CacheLine<V> line) {
+            this.key = key;
+            this.line = line;
+        }
+
+        boolean isStale(Map<K, CacheLine<V>> cacheLineTable) {
+            return cacheLineTable.get(key) != line;
+        }
+    }
 }
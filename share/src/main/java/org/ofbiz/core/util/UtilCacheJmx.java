@@ -0,0 +1,202 @@
+package org.ofbiz.core.util;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Publishes a {@link UtilCacheMXBean} for each of the caches in {@link UtilCache#utilCacheTable}, named
+ * <code>org.ofbiz.core.util:type=UtilCache,name="&lt;cache name&gt;"</code>, so that caches can be watched and tuned
+ * from any JMX console instead of blind.
+ * <p>
+ * Publishing is off until {@link #enable()} is called, or the JVM is started with
+ * <code>-Dofbiz.cache.jmx=true</code>; from then on, caches are also published as they are created.
+ * </p>
+ *
+ * @since 1.2.6
+ */
+public class UtilCacheJmx {
+
+    public static final String module = UtilCacheJmx.class.getName();
+
+    /**
+     * The system property that enables publishing from startup.
+     */
+    public static final String ENABLED_PROPERTY = "ofbiz.cache.jmx";
+
+    public static final String DOMAIN = "org.ofbiz.core.util";
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private UtilCacheJmx() {
+    }
+
+    /**
+     * Publishes all the existing caches, and the caches created from now on.
+     */
+    public static synchronized void enable() {
+        enabled = true;
+        for (UtilCache<?, ?> cache : UtilCache.utilCacheTable.values()) {
+            register(cache);
+        }
+    }
+
+    /**
+     * Withdraws all the published caches, and stops publishing new ones.
+     */
+    public static synchronized void disable() {
+        enabled = false;
+        for (UtilCache<?, ?> cache : UtilCache.utilCacheTable.values()) {
+            unregister(cache);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param cacheName the name of a cache, as returned by {@link UtilCache#getName()}
+     * @return the name under which the cache is published
+     */
+    public static ObjectName getObjectName(final String cacheName) {
+        try {
+            return new ObjectName(DOMAIN + ":type=UtilCache,name=" + ObjectName.quote(cacheName));
+        } catch (MalformedObjectNameException e) {
+            // can't happen, the name is quoted
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    static void cacheCreated(final UtilCache<?, ?> cache) {
+        if (enabled) {
+            register(cache);
+        }
+    }
+
+    static void cacheRemoved(final UtilCache<?, ?> cache) {
+        if (enabled) {
+            unregister(cache);
+        }
+    }
+
+    private static void register(final UtilCache<?, ?> cache) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new CacheView(cache), getObjectName(cache.getName()));
+        } catch (InstanceAlreadyExistsException e) {
+            // already published, e.g. by an earlier enable()
+        } catch (JMException e) {
+            Debug.logWarning(e, "Could not publish the " + cache.getName() + " cache to JMX", module);
+        }
+    }
+
+    private static void unregister(final UtilCache<?, ?> cache) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(getObjectName(cache.getName()));
+        } catch (InstanceNotFoundException e) {
+            // not published
+        } catch (JMException e) {
+            Debug.logWarning(e, "Could not withdraw the " + cache.getName() + " cache from JMX", module);
+        }
+    }
+
+    /**
+     * Adapts a cache to the MXBean interface, which UtilCache can't implement itself without clashing with its
+     * existing methods.
+     */
+    private static class CacheView implements UtilCacheMXBean {
+
+        private final UtilCache<?, ?> cache;
+
+        CacheView(final UtilCache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        public String getName() {
+            return cache.getName();
+        }
+
+        public long getSize() {
+            return cache.size();
+        }
+
+        public long getMaxSize() {
+            return cache.getMaxSize();
+        }
+
+        public void setMaxSize(final long maxSize) {
+            cache.setMaxSize(maxSize);
+        }
+
+        public long getTotalWeight() {
+            return cache.getTotalWeight();
+        }
+
+        public long getMaxWeight() {
+            return cache.getMaxWeight();
+        }
+
+        public void setMaxWeight(final long maxWeight) {
+            cache.setMaxWeight(maxWeight);
+        }
+
+        public long getExpireTime() {
+            return cache.getExpireTime();
+        }
+
+        public void setExpireTime(final long expireTime) {
+            cache.setExpireTime(expireTime);
+        }
+
+        public boolean isUseSoftReference() {
+            return cache.getUseSoftReference();
+        }
+
+        public long getHitCount() {
+            return cache.getStatistics().getHitCount();
+        }
+
+        public long getMissCount() {
+            return cache.getStatistics().getMissCount();
+        }
+
+        public double getHitRatio() {
+            return cache.getStatistics().getHitRatio();
+        }
+
+        public long getLoadCount() {
+            return cache.getStatistics().getLoadCount();
+        }
+
+        public double getAverageLoadMillis() {
+            return cache.getStatistics().getAverageLoadMillis();
+        }
+
+        public long getEvictionCount() {
+            return cache.getStatistics().getEvictionCount();
+        }
+
+        public Map<String, Long> getEvictionCounts() {
+            return cache.getStatistics().getEvictionCounts();
+        }
+
+        public Map<String, Long> getInvalidationCounts() {
+            return cache.getStatistics().getInvalidationCounts();
+        }
+
+        public void clear() {
+            cache.clear();
+        }
+
+        public void resetStatistics() {
+            cache.getStatistics().reset();
+        }
+    }
+}
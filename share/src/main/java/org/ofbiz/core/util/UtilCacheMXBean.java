@@ -0,0 +1,61 @@
+package org.ofbiz.core.util;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a {@link UtilCache}: its size, limits and {@link CacheStatistics}, with the limits writable so that
+ * a cache can be tuned while it runs. See {@link UtilCacheJmx} for how the caches are registered.
+ *
+ * @since 1.2.6
+ */
+public interface UtilCacheMXBean {
+
+    String getName();
+
+    long getSize();
+
+    long getMaxSize();
+
+    void setMaxSize(long maxSize);
+
+    /**
+     * @return the estimated total weight of the lines, as estimated by the weigher of the cache
+     */
+    long getTotalWeight();
+
+    long getMaxWeight();
+
+    void setMaxWeight(long maxWeight);
+
+    long getExpireTime();
+
+    void setExpireTime(long expireTime);
+
+    boolean isUseSoftReference();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRatio();
+
+    long getLoadCount();
+
+    double getAverageLoadMillis();
+
+    long getEvictionCount();
+
+    Map<String, Long> getEvictionCounts();
+
+    Map<String, Long> getInvalidationCounts();
+
+    /**
+     * Removes all the lines of the cache.
+     */
+    void clear();
+
+    /**
+     * Sets the statistics of the cache back to zero.
+     */
+    void resetStatistics();
+}
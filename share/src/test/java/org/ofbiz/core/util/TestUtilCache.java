@@ -0,0 +1,248 @@
+package org.ofbiz.core.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestUtilCache {
+
+    private static final UtilCache.Weigher<String, String> LENGTH_WEIGHER = new UtilCache.Weigher<String, String>() {
+        @Override
+        public long weigh(final String key, final String value) {
+            return value.length();
+        }
+    };
+
+    private UtilCache<String, String> cache;
+
+    @Before
+    public void setUp() {
+        cache = new UtilCache<String, String>("TestUtilCache", 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        UtilCache.removeCache(cache.getName());
+    }
+
+    @Test
+    public void aFullCacheShouldEvictALineThatHasNotBeenUsed() {
+        // Set up
+        cache.setMaxSize(3);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        cache.get("a");
+        cache.get("c");
+
+        // Invoke
+        cache.put("d", "D");
+
+        // Check
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+        assertEquals(1, cache.getStatistics().getEvictionCount(CacheStatistics.EvictionCause.SIZE));
+    }
+
+    @Test
+    public void aLineShouldOnlyGetOneSecondChancePerUse() {
+        // Set up
+        cache.setMaxSize(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        // the hand spares "a" but clears its flag, and evicts "b"
+        cache.put("c", "C");
+        cache.get("c");
+
+        // Invoke
+        cache.put("d", "D");
+
+        // Check
+        assertFalse(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+    }
+
+    @Test
+    public void theTotalWeightShouldFollowPutsReplacesAndRemoves() {
+        // Set up
+        cache.setWeigher(LENGTH_WEIGHER);
+
+        // Invoke
+        cache.put("a", "AAAA");
+        cache.put("b", "BB");
+        cache.put("a", "A");
+        cache.remove("b");
+
+        // Check
+        assertEquals(1, cache.getTotalWeight());
+
+        // Invoke
+        cache.clear();
+
+        // Check
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    @Test
+    public void aCacheOverItsMaxWeightShouldEvictUntilItFits() {
+        // Set up
+        cache.setWeigher(LENGTH_WEIGHER);
+        cache.setMaxWeight(10);
+        cache.put("a", "AAAA");
+        cache.put("b", "BBBB");
+
+        // Invoke
+        cache.put("c", "CCCC");
+
+        // Check
+        assertEquals(2, cache.size());
+        assertFalse(cache.containsKey("a"));
+        assertEquals(8, cache.getTotalWeight());
+        assertEquals(1, cache.getStatistics().getEvictionCount(CacheStatistics.EvictionCause.WEIGHT));
+    }
+
+    @Test
+    public void anElementHeavierThanTheMaxWeightShouldNotBeCached() {
+        // Set up
+        cache.setWeigher(LENGTH_WEIGHER);
+        cache.setMaxWeight(3);
+        cache.put("a", "A");
+
+        // Invoke
+        cache.put("a", "AAAA");
+
+        // Check
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    @Test
+    public void settingTheWeigherShouldWorkOutTheTotalWeightAgain() {
+        // Set up
+        cache.put("a", "AAAA");
+        cache.put("b", "BB");
+        assertEquals(2, cache.getTotalWeight());
+
+        // Invoke
+        cache.setWeigher(LENGTH_WEIGHER);
+
+        // Check
+        assertEquals(6, cache.getTotalWeight());
+
+        // Invoke
+        cache.setWeigher(null);
+
+        // Check
+        assertEquals(2, cache.getTotalWeight());
+    }
+
+    @Test
+    public void theRemovalListenerShouldBeToldAboutEveryKeyThatLeaves() {
+        // Set up
+        final List<String> removedKeys = new ArrayList<String>();
+        cache.setRemovalListener(new UtilCache.RemovalListener<String>() {
+            @Override
+            public void removed(final String key) {
+                removedKeys.add(key);
+            }
+        });
+        cache.setMaxSize(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+
+        // Invoke
+        cache.remove("b");
+        cache.remove("missing");
+        cache.clear();
+
+        // Check
+        assertEquals(3, removedKeys.size());
+        assertEquals("a", removedKeys.get(0));
+        assertEquals("b", removedKeys.get(1));
+        assertEquals("c", removedKeys.get(2));
+    }
+
+    @Test
+    public void theRemovalListenerShouldBeToldAboutAKeyWhoseElementIsTooHeavy() {
+        // Set up
+        final List<String> removedKeys = new ArrayList<String>();
+        cache.setRemovalListener(new UtilCache.RemovalListener<String>() {
+            @Override
+            public void removed(final String key) {
+                removedKeys.add(key);
+            }
+        });
+        cache.setWeigher(LENGTH_WEIGHER);
+        cache.setMaxWeight(3);
+
+        // Invoke
+        cache.put("a", "AAAA");
+
+        // Check
+        assertNull(cache.get("a"));
+        assertEquals(1, removedKeys.size());
+        assertEquals("a", removedKeys.get(0));
+    }
+
+    @Test
+    public void clearingWhileOtherThreadsPutShouldNotLetTheCacheOutgrowItsMaxSize() throws Exception {
+        // Set up
+        final int maxSize = 50;
+        cache.setMaxSize(maxSize);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> putters = new ArrayList<Future<?>>();
+        try {
+            for (int t = 0; t < 3; t++) {
+                final String prefix = "t" + t + "-";
+                putters.add(executor.submit(() -> {
+                    for (int i = 0; running.get(); i++) {
+                        cache.put(prefix + i, "V");
+                    }
+                }));
+            }
+
+            // Invoke
+            for (int i = 0; i < 2000; i++) {
+                cache.clear();
+            }
+            running.set(false);
+            for (Future<?> putter : putters) {
+                putter.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < 10 * maxSize; i++) {
+            cache.put("after-" + i, "V");
+        }
+
+        // Check
+        assertEquals(maxSize, cache.size());
+        // a line that lost its place in the eviction queue would never be evicted, so it would still be here
+        for (String key : cache.getCacheLineKeys()) {
+            assertTrue(key, key.startsWith("after-"));
+        }
+    }
+}